@@ -22,12 +22,13 @@ OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
 
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.util.concurrent.ExecutionException;
 
 import org.secureauth.sarestapi.SAAccess;
 import org.secureauth.sarestapi.data.Factors;
 import org.secureauth.sarestapi.data.FactorsResponse;
 import org.secureauth.sarestapi.data.PushAcceptStatus;
-import org.secureauth.sarestapi.data.ResponseObject;
+import org.secureauth.sarestapi.push.PushAcceptTracker;
 
 public class SendPushRequest {
 
@@ -43,11 +44,13 @@ public class SendPushRequest {
 	private static String applicationKey = "...........";
 
 	public static void main(String[] args) throws MalformedURLException,
-			URISyntaxException, InterruptedException {
+			URISyntaxException, InterruptedException, ExecutionException {
 
 		// Create Instance of SAAccess Object
 		SAAccess saAccess = new SAAccess(applianceHost, appliancePort,
 				applianceSSL, realm, applicationID, applicationKey);
+		// Polls pending pushes from a shared scheduler instead of a sleeping thread per push
+		PushAcceptTracker pushAcceptTracker = saAccess.getPushAcceptTracker();
 
 		System.out.println("Start Test++++++++++++++++++");
 		FactorsResponse factorsResponse = saAccess.factorsByUser(user);
@@ -57,15 +60,8 @@ public class SendPushRequest {
                 for (String capability : factor.getCapabilities()) {
                     //Test
                     if (capability.equalsIgnoreCase("push_accept")) {
-                    	ResponseObject ro = saAccess.sendPushToAcceptReq(user, factor.getId(), "192.168.2.192", null, null);
-                    	System.out.println(ro);
-                        String refId = ro.getReference_id();
-                        PushAcceptStatus status;
-                        do {
-	                        Thread.sleep(2000);
-	                        status = saAccess.queryPushAcceptStatus(refId);
-	                        System.out.println(status);
-                        } while("PENDING".equals(status.getMessage()));
+                        PushAcceptStatus status = pushAcceptTracker.sendAndTrack(user, factor.getId(), "192.168.2.192", null, null).get();
+                        System.out.println(status);
                         //break;
                     }
                 }
@@ -0,0 +1,135 @@
+package org.secureauth.sarestapi.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import javax.ws.rs.ProcessingException;
+
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.OutboundMessageContext;
+import org.glassfish.jersey.message.internal.Statuses;
+
+/**
+ * <p>
+ *     Jersey connector sending requests with java.net.http.HttpClient. Request bodies are already serialized by the
+ *     SDK, so the entity is buffered and sent with its length.
+ * </p>
+ */
+final class HttpClientConnector implements Connector {
+
+    //Headers HttpClient sets itself and refuses from the caller
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add("Connection");
+        RESTRICTED_HEADERS.add("Content-Length");
+        RESTRICTED_HEADERS.add("Expect");
+        RESTRICTED_HEADERS.add("Host");
+        RESTRICTED_HEADERS.add("Upgrade");
+    }
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+
+    HttpClientConnector(HttpClient httpClient, Duration readTimeout){
+        this.httpClient = httpClient;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public ClientResponse apply(ClientRequest request) {
+        try{
+            return toClientResponse(request, httpClient.send(toHttpRequest(request), HttpResponse.BodyHandlers.ofInputStream()));
+        }catch(IOException e){
+            throw new ProcessingException(e.getMessage(), e);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new ProcessingException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+        HttpRequest httpRequest;
+        try{
+            httpRequest = toHttpRequest(request);
+        }catch(IOException e){
+            callback.failure(new ProcessingException(e.getMessage(), e));
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream()).whenComplete(new BiConsumer<HttpResponse<InputStream>, Throwable>() {
+            @Override
+            public void accept(HttpResponse<InputStream> response, Throwable throwable) {
+                if(throwable != null){
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    callback.failure(new ProcessingException(cause.getMessage(), cause));
+                }else{
+                    callback.response(toClientResponse(request, response));
+                }
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "java.net.http.HttpClient";
+    }
+
+    //The HttpClient belongs to the transport, which shuts it down
+    @Override
+    public void close() {
+    }
+
+    private HttpRequest toHttpRequest(ClientRequest request) throws IOException {
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+        if(request.hasEntity()){
+            final ByteArrayOutputStream entity = new ByteArrayOutputStream();
+            request.setStreamProvider(new OutboundMessageContext.StreamProvider() {
+                @Override
+                public OutputStream getOutputStream(int contentLength) {
+                    return entity;
+                }
+            });
+            request.writeEntity();
+            body = HttpRequest.BodyPublishers.ofByteArray(entity.toByteArray());
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri()).timeout(readTimeout)
+                .method(request.getMethod(), body);
+        //Read once the entity is written, writing it can still add headers
+        for(Map.Entry<String, List<String>> header : request.getStringHeaders().entrySet()){
+            if(RESTRICTED_HEADERS.contains(header.getKey())){
+                continue;
+            }
+            for(String value : header.getValue()){
+                builder.header(header.getKey(), value);
+            }
+        }
+        return builder.build();
+    }
+
+    private static ClientResponse toClientResponse(ClientRequest request, HttpResponse<InputStream> response){
+        ClientResponse clientResponse = new ClientResponse(Statuses.from(response.statusCode()), request);
+        for(Map.Entry<String, List<String>> header : response.headers().map().entrySet()){
+            clientResponse.headers(header.getKey(), header.getValue());
+        }
+        clientResponse.setEntityStream(response.body());
+        return clientResponse;
+    }
+}
@@ -0,0 +1,152 @@
+package org.secureauth.sarestapi.transport;
+
+import java.net.Socket;
+import java.net.http.HttpClient;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Configuration;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.secureauth.sarestapi.util.VirtualThreads;
+
+/**
+ * <p>
+ *     Transport for calls made from virtual threads. This is the Java 21 copy of the class, loaded from the jar's
+ *     META-INF/versions/21: requests go through java.net.http.HttpClient, which keeps its connections alive and
+ *     only uses locks, so a virtual thread waiting on the Appliance parks instead of pinning its carrier thread.
+ *     Responses are handled on virtual threads too.
+ * </p>
+ */
+public class VirtualThreadTransport extends DefaultTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    protected final int connectTimeout;
+    protected final int readTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private HttpClient httpClient;
+    private ExecutorService executor;
+
+    public VirtualThreadTransport(){
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * @param connectTimeout the connect timeout, in milliseconds
+     * @param readTimeout the time to wait for a response, in milliseconds
+     */
+    public VirtualThreadTransport(int connectTimeout, int readTimeout){
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public Client createClient(SABaseURL saBaseURL) throws Exception {
+        final HttpClientConnector connector;
+        lock.lock();
+        try{
+            close();
+            executor = VirtualThreads.newExecutor("sa-http");
+            httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofMillis(connectTimeout))
+                    .sslContext(saBaseURL.isSelfSigned() ? createSelfSignedSSLContext() : createSSLContext())
+                    .executor(executor)
+                    .build();
+            connector = new HttpClientConnector(httpClient, Duration.ofMillis(readTimeout));
+        }finally{
+            lock.unlock();
+        }
+
+        ClientConfig config = createConfig();
+        config.connectorProvider(new ConnectorProvider() {
+            @Override
+            public Connector getConnector(Client client, Configuration configuration) {
+                return connector;
+            }
+        });
+        return ClientBuilder.newClient(config);
+    }
+
+    @Override
+    public void close(){
+        lock.lock();
+        try{
+            if(httpClient != null){
+                httpClient.shutdownNow();
+                httpClient = null;
+            }
+            if(executor != null){
+                executor.shutdown();
+                executor = null;
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    @Override
+    protected ClientConfig createConfig(){
+        ClientConfig config = super.createConfig();
+        config.property(ClientProperties.CONNECT_TIMEOUT, connectTimeout);
+        config.property(ClientProperties.READ_TIMEOUT, readTimeout);
+        return config;
+    }
+
+    //HttpClient always checks the host name unless the trust manager does the checks, which this one skips
+    private static SSLContext createSelfSignedSSLContext() throws Exception {
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        TrustManager[] certs = new TrustManager[]{
+                new X509ExtendedTrustManager(){
+                    @Override
+                    public X509Certificate[] getAcceptedIssuers(){
+                        return new X509Certificate[0];
+                    }
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType){}
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType){}
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket){}
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket){}
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine){}
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine){}
+                }
+        };
+        ctx.init(null, certs, new SecureRandom());
+        return ctx;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+}
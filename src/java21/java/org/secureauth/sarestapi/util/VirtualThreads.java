@@ -0,0 +1,31 @@
+package org.secureauth.sarestapi.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ *     Creates the executors of virtual thread mode. This is the Java 21 copy of the class, loaded from the jar's
+ *     META-INF/versions/21: every task gets its own virtual thread.
+ * </p>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads(){
+    }
+
+    /**
+     * @return true when {@link #newExecutor(String)} runs tasks on virtual threads
+     */
+    public static boolean isAvailable(){
+        return true;
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @return an executor starting a virtual thread per task
+     */
+    public static ExecutorService newExecutor(String name){
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+}
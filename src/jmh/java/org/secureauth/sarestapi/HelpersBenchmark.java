@@ -0,0 +1,53 @@
+package org.secureauth.sarestapi;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ *     {@link SAAccess} helpers that run on every request. Lives in the SAAccess package to reach
+ *     {@code getServerTime()}.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HelpersBenchmark {
+
+    private SAAccess saAccess;
+
+    @Setup
+    public void setup(){
+        //Nothing is sent, the host only has to be well formed
+        saAccess = new SAAccess("localhost", "443", true, true, "secureauth1",
+                "8a1c9f2d6b3e4a5f9c0d1e2f3a4b5c6d", "0a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f9");
+    }
+
+    @Benchmark
+    public String encodeSafe(){
+        return SAAccess.encode("jdoe");
+    }
+
+    @Benchmark
+    public String encodeUnsafe(){
+        return SAAccess.encode("CN=John Doe,OU=Users/Sales+EMEA@example.com");
+    }
+
+    @Benchmark
+    public String getServerTime(){
+        return saAccess.getServerTime();
+    }
+}
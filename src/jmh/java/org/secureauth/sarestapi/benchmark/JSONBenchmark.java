@@ -0,0 +1,77 @@
+package org.secureauth.sarestapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secureauth.sarestapi.data.Requests.AuthRequest;
+import org.secureauth.sarestapi.data.Requests.DFPValidateRequest;
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
+import org.secureauth.sarestapi.util.JSONUtil;
+
+/**
+ * <p>
+ *     {@link JSONUtil} round trips, object to compact bytes and back, of the request and response types with the
+ *     largest bodies. The pretty printed form used by toString is measured separately.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JSONBenchmark {
+
+    private AuthRequest authRequest;
+    private DFPValidateRequest dfpValidateRequest;
+    private UserProfileResponse userProfileResponse;
+    private NewUserProfile newUserProfile;
+
+    @Setup
+    public void setup(){
+        authRequest = JSONUtil.convertJSONToObject(Payloads.AUTH_REQUEST, AuthRequest.class);
+        dfpValidateRequest = JSONUtil.convertJSONToObject(Payloads.DFP_VALIDATE_REQUEST, DFPValidateRequest.class);
+        userProfileResponse = JSONUtil.convertJSONToObject(Payloads.USER_PROFILE_RESPONSE, UserProfileResponse.class);
+        newUserProfile = JSONUtil.convertJSONToObject(Payloads.NEW_USER_PROFILE, NewUserProfile.class);
+    }
+
+    @Benchmark
+    public AuthRequest authRequestRoundTrip() throws Exception {
+        return roundTrip(authRequest, AuthRequest.class);
+    }
+
+    @Benchmark
+    public DFPValidateRequest dfpValidateRequestRoundTrip() throws Exception {
+        return roundTrip(dfpValidateRequest, DFPValidateRequest.class);
+    }
+
+    @Benchmark
+    public UserProfileResponse userProfileResponseRoundTrip() throws Exception {
+        return roundTrip(userProfileResponse, UserProfileResponse.class);
+    }
+
+    @Benchmark
+    public NewUserProfile newUserProfileRoundTrip() throws Exception {
+        return roundTrip(newUserProfile, NewUserProfile.class);
+    }
+
+    @Benchmark
+    public String userProfileResponseToString(){
+        return JSONUtil.convertObjectToJSON(userProfileResponse);
+    }
+
+    private static <T> T roundTrip(T object, Class<T> type) throws Exception {
+        byte[] json = JSONUtil.convertObjectToJSONBytes(object);
+        return JSONUtil.readerFor(type).readValue(json);
+    }
+}
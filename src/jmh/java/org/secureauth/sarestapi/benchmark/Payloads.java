@@ -0,0 +1,46 @@
+package org.secureauth.sarestapi.benchmark;
+
+/**
+ * <p>
+ *     Representative request and response bodies used by the benchmarks.
+ * </p>
+ */
+final class Payloads {
+
+    static final String APPLICATION_ID = "8a1c9f2d6b3e4a5f9c0d1e2f3a4b5c6d";
+    static final String APPLICATION_KEY = "0a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f9";
+    static final String REALM = "secureauth1";
+    static final String TS = "Thu, 15 Oct 2026 11:32:40 GMT";
+
+    static final String AUTH_REQUEST = "{\"user_id\":\"jdoe\",\"type\":\"password\",\"token\":\"Sup3rS3cret!\"}";
+
+    static final String DFP_VALIDATE_REQUEST = "{\"user_id\":\"jdoe\",\"host_address\":\"10.20.30.40\",\"fingerprint\":{"
+            + "\"fonts\":\"Arial, Calibri, Cambria, Candara, Consolas, Constantia, Corbel, Courier New, Georgia, Segoe UI, Tahoma, Times New Roman, Verdana\","
+            + "\"plugins\":\"Chrome PDF Viewer, Native Client, Widevine Content Decryption Module\","
+            + "\"timezone\":\"-480\",\"video\":\"1920x1080x24\",\"local_storage\":true,\"session_storage\":true,"
+            + "\"ie_user_data\":false,\"cookie_enabled\":true,"
+            + "\"user_agent\":\"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/52.0.2743.116 Safari/537.36\","
+            + "\"accept\":\"text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8\","
+            + "\"accept_charset\":\"\",\"accept_encoding\":\"gzip, deflate, sdch, br\",\"accept_language\":\"en-US,en;q=0.8\"}}";
+
+    static final String USER_PROFILE_RESPONSE = "{\"userId\":\"jdoe\",\"properties\":{"
+            + "\"firstName\":{\"value\":\"John\",\"isWritable\":\"true\",\"displayName\":\"First Name\"},"
+            + "\"lastName\":{\"value\":\"Doe\",\"isWritable\":\"true\",\"displayName\":\"Last Name\"},"
+            + "\"email1\":{\"value\":\"jdoe@example.com\",\"isWritable\":\"true\",\"displayName\":\"Email 1\"},"
+            + "\"phone1\":{\"value\":\"+1 949-777-6959\",\"isWritable\":\"true\",\"displayName\":\"Phone 1\"},"
+            + "\"auxId1\":{\"value\":\"E-10042\",\"isWritable\":\"false\",\"displayName\":\"Employee ID\"}},"
+            + "\"knowledgeBase\":{"
+            + "\"kbq1\":{\"question\":\"What was the name of your first pet?\",\"answer\":\"\"},"
+            + "\"kbq2\":{\"question\":\"What city were you born in?\",\"answer\":\"\"}},"
+            + "\"groups\":[\"Domain Users\",\"VPN Users\",\"Engineering\"],"
+            + "\"accessHistories\":[{\"userAgent\":\"Mozilla/5.0 (Windows NT 10.0; Win64; x64)\",\"ipAddress\":\"10.20.30.40\","
+            + "\"timeStamp\":\"2016-08-15T17:04:10.000Z\",\"authState\":\"Success\"}]}";
+
+    static final String NEW_USER_PROFILE = "{\"userId\":\"jdoe\",\"password\":\"Sup3rS3cret!\",\"properties\":{"
+            + "\"firstName\":\"John\",\"lastName\":\"Doe\",\"phone1\":\"+1 949-777-6959\",\"email1\":\"jdoe@example.com\","
+            + "\"auxId1\":\"E-10042\"},"
+            + "\"knowledgeBase\":{\"kbq1\":{\"question\":\"What was the name of your first pet?\",\"answer\":\"Rex\"}},"
+            + "\"groups\":{\"groups\":[\"Domain Users\",\"VPN Users\"]}}";
+
+    private Payloads(){}
+}
@@ -0,0 +1,73 @@
+package org.secureauth.sarestapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+import org.secureauth.sarestapi.stub.StubAppliance;
+import org.secureauth.sarestapi.stub.StubConfig;
+import org.secureauth.sarestapi.transport.DefaultTransport;
+import org.secureauth.sarestapi.transport.PooledTransport;
+
+/**
+ * <p>
+ *     Full {@link SAAccess} calls, signing, serialization, HTTP and response parsing, against a
+ *     {@link StubAppliance}. Run with {@code -t} to measure under concurrency.
+ * </p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SAAccessBenchmark {
+
+    @Param({"default", "pooled"})
+    public String transport;
+
+    private StubAppliance stubAppliance;
+    private SAAccess saAccess;
+
+    @Setup
+    public void setup() throws Exception {
+        StubConfig config = new StubConfig();
+        config.setRealm(Payloads.REALM);
+        config.setApplicationID(Payloads.APPLICATION_ID);
+        config.setApplicationKey(Payloads.APPLICATION_KEY);
+        config.addUser("jdoe", "Sup3rS3cret!");
+        stubAppliance = new StubAppliance(config).start();
+        saAccess = new SAAccess("127.0.0.1", String.valueOf(stubAppliance.getPort()), false, false, Payloads.REALM,
+                Payloads.APPLICATION_ID, Payloads.APPLICATION_KEY,
+                "pooled".equals(transport) ? new PooledTransport() : new DefaultTransport());
+    }
+
+    @TearDown
+    public void tearDown(){
+        saAccess.close();
+        stubAppliance.stop();
+    }
+
+    @Benchmark
+    public FactorsResponse factorsByUser(){
+        return saAccess.factorsByUser("jdoe");
+    }
+
+    @Benchmark
+    public BaseResponse validateUserPassword(){
+        return saAccess.validateUserPassword("jdoe", "Sup3rS3cret!");
+    }
+}
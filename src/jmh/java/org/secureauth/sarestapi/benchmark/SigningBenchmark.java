@@ -0,0 +1,82 @@
+package org.secureauth.sarestapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secureauth.sarestapi.data.Requests.AuthRequest;
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.util.HMACUtil;
+import org.secureauth.sarestapi.util.JSONUtil;
+import org.secureauth.sarestapi.util.RequestSigner;
+import org.secureauth.sarestapi.util.RestApiHeader;
+
+/**
+ * <p>
+ *     Cost of building the Authorization header, with and without a payload, for both {@link RestApiHeader} and
+ *     {@link RequestSigner}, and of the raw {@link HMACUtil#encode(String, String)}.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SigningBenchmark {
+
+    private static final String AUTH_PATH = Payloads.REALM + "/api/v1/auth";
+    private static final String FACTORS_PATH = Payloads.REALM + "/api/v1/users/jdoe/factors";
+
+    private SAAuth saAuth;
+    private RestApiHeader restApiHeader;
+    private RequestSigner requestSigner;
+    private AuthRequest authRequest;
+    private byte[] authRequestBytes;
+    private String stringToSign;
+
+    @Setup
+    public void setup(){
+        saAuth = new SAAuth(Payloads.APPLICATION_ID, Payloads.APPLICATION_KEY, Payloads.REALM);
+        restApiHeader = new RestApiHeader();
+        requestSigner = new RequestSigner(saAuth);
+        authRequest = JSONUtil.convertJSONToObject(Payloads.AUTH_REQUEST, AuthRequest.class);
+        authRequestBytes = JSONUtil.convertObjectToJSONBytes(authRequest);
+        stringToSign = new StringBuilder().append("POST\n").append(Payloads.TS).append("\n")
+                .append(Payloads.APPLICATION_ID).append("\n/").append(AUTH_PATH).append("\n")
+                .append(new String(authRequestBytes)).toString();
+    }
+
+    @Benchmark
+    public String restApiHeaderWithPayload(){
+        return restApiHeader.getAuthorizationHeader(saAuth, "POST", AUTH_PATH, authRequest, Payloads.TS);
+    }
+
+    @Benchmark
+    public String restApiHeaderNoPayload(){
+        return restApiHeader.getAuthorizationHeader(saAuth, "GET", FACTORS_PATH, Payloads.TS);
+    }
+
+    @Benchmark
+    public String requestSignerWithPayload(){
+        return requestSigner.getAuthorizationHeader("POST", AUTH_PATH, authRequestBytes, Payloads.TS);
+    }
+
+    @Benchmark
+    public String requestSignerNoPayload(){
+        return requestSigner.getAuthorizationHeader("GET", FACTORS_PATH, Payloads.TS);
+    }
+
+    @Benchmark
+    public byte[] hmacEncode() throws Exception {
+        return HMACUtil.encode(Payloads.APPLICATION_KEY, stringToSign);
+    }
+}
@@ -0,0 +1,135 @@
+package org.secureauth.sarestapi.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.VirtualThreadAccess;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.resources.s;
+import org.secureauth.sarestapi.stub.LatencyDistribution;
+import org.secureauth.sarestapi.stub.StubAppliance;
+import org.secureauth.sarestapi.stub.StubConfig;
+import org.secureauth.sarestapi.transport.VirtualThreadTransport;
+
+/**
+ * <p>
+ *     Blocking validateUserPassword calls, one per virtual thread, all started at once through a
+ *     {@link VirtualThreadAccess} against a {@link StubAppliance} with a fixed latency. Reports how many calls were
+ *     waiting on the Appliance at the same time and how many platform threads that took. Not a JMH benchmark, JMH
+ *     threads are platform threads; run on Java 21 with: gradle virtualThreadBenchmark [-PvtArgs='10000 5000 4']
+ * </p>
+ * <p>
+ *     Arguments: calls (10000), Appliance latency in ms (5000), carrier threads (4), and the host:port of a stub
+ *     Appliance already running. Without one the stub runs in the same JVM with a socket per call on both ends, so
+ *     the open files limit must be above twice the calls; with one each JVM needs a bit more than the calls, and the
+ *     latency is the one the stub was started with, e.g. {@code gradle stub -PstubArgs='8443 5000 5001'}.
+ * </p>
+ */
+public class VirtualThreadLoginBenchmark {
+
+    //Thousands of connections opened at once take longer than the default 5s to be accepted on a small machine
+    private static final int CONNECT_TIMEOUT = 60000;
+    private static final int READ_TIMEOUT = 120000;
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int latencyMillis = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        //Read by the JVM when the first virtual thread starts
+        if(args.length > 2){
+            System.setProperty("jdk.virtualThreadScheduler.parallelism", args[2]);
+        }else if(System.getProperty("jdk.virtualThreadScheduler.parallelism") == null){
+            System.setProperty("jdk.virtualThreadScheduler.parallelism", "4");
+        }
+
+        //The user the stub knows, in this JVM or started from the command line
+        final StubConfig config = new StubConfig();
+        final String password = config.getDefaultPassword();
+        StubAppliance stubAppliance = null;
+        String host = "127.0.0.1";
+        String port;
+        if(args.length > 3){
+            host = args[3].substring(0, args[3].lastIndexOf(s.COLON));
+            port = args[3].substring(args[3].lastIndexOf(s.COLON) + 1);
+        }else{
+            config.setRealm(Payloads.REALM);
+            config.setApplicationID(Payloads.APPLICATION_ID);
+            config.setApplicationKey(Payloads.APPLICATION_KEY);
+            config.setBacklog(calls);
+            stubAppliance = new StubAppliance(config).start();
+            port = String.valueOf(stubAppliance.getPort());
+        }
+        VirtualThreadAccess access = new VirtualThreadAccess(new SAAccess(host, port, false, false, Payloads.REALM,
+                Payloads.APPLICATION_ID, Payloads.APPLICATION_KEY, new VirtualThreadTransport(CONNECT_TIMEOUT, READ_TIMEOUT)));
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        VirtualThreadAccess.Call<BaseResponse> login = new VirtualThreadAccess.Call<BaseResponse>() {
+            @Override
+            public BaseResponse call(SAAccess saAccess) {
+                int current = inFlight.incrementAndGet();
+                int max;
+                while(current > (max = peak.get()) && !peak.compareAndSet(max, current)){
+                }
+                try{
+                    return saAccess.validateUserPassword("jdoe", password);
+                }finally{
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+
+        try{
+            //Warm up the connection and the JIT on a few calls, without latency in this JVM
+            List<CompletableFuture<BaseResponse>> warmUp = new ArrayList<>();
+            for(int i = 0; i < 100; i++){
+                warmUp.add(access.submit(login));
+            }
+            for(CompletableFuture<BaseResponse> future : warmUp){
+                future.get();
+            }
+            config.setLatency(LatencyDistribution.fixed(latencyMillis));
+            peak.set(0);
+
+            long started = System.nanoTime();
+            List<CompletableFuture<BaseResponse>> futures = new ArrayList<>(calls);
+            for(int i = 0; i < calls; i++){
+                futures.add(access.submit(login));
+            }
+            int valid = 0;
+            int failed = 0;
+            for(CompletableFuture<BaseResponse> future : futures){
+                try{
+                    BaseResponse response = future.get();
+                    if(response != null && s.STATUS_VALID.equals(response.getStatus())){
+                        valid++;
+                    }else{
+                        failed++;
+                    }
+                }catch(Exception e){
+                    failed++;
+                }
+            }
+            long elapsed = System.nanoTime() - started;
+
+            System.out.println(new StringBuilder().append("virtual threads: ").append(access.isVirtual())
+                    .append("; carrier threads: ").append(System.getProperty("jdk.virtualThreadScheduler.parallelism")).toString());
+            System.out.println(new StringBuilder().append("calls: ").append(calls).append("; valid: ").append(valid)
+                    .append("; failed: ").append(failed).append("; latency: ")
+                    .append(stubAppliance != null ? latencyMillis + "ms" : "of the stub at " + host + s.COLON + port).toString());
+            System.out.println(new StringBuilder().append("elapsed: ").append(TimeUnit.NANOSECONDS.toMillis(elapsed)).append("ms; ")
+                    .append("calls/s: ").append((long) (calls / (elapsed / 1e9))).toString());
+            System.out.println(new StringBuilder().append("peak calls in flight: ").append(peak.get())
+                    .append("; peak platform threads: ").append(ManagementFactory.getThreadMXBean().getPeakThreadCount()).toString());
+        }finally{
+            access.close();
+            if(stubAppliance != null){
+                stubAppliance.stop();
+            }
+        }
+    }
+}
@@ -17,10 +17,30 @@ import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
 import org.secureauth.sarestapi.data.UserProfile.UserProfile;
 import org.secureauth.sarestapi.data.UserProfile.UserToGroups;
 import org.secureauth.sarestapi.data.UserProfile.UsersToGroup;
+import org.secureauth.sarestapi.cache.FactorCache;
+import org.secureauth.sarestapi.cache.IPEvalCache;
+import org.secureauth.sarestapi.cache.ScriptSrcCache;
+import org.secureauth.sarestapi.cache.SACache;
+import org.secureauth.sarestapi.circuit.CircuitBreaker;
+import org.secureauth.sarestapi.circuit.CircuitBreakers;
+import org.secureauth.sarestapi.hedge.HedgePolicy;
+import org.secureauth.sarestapi.jfr.PushPollEvent;
+import org.secureauth.sarestapi.jfr.RequestEvent;
+import org.secureauth.sarestapi.jfr.SAFlightRecorder;
+import org.secureauth.sarestapi.jfr.SignEvent;
+import org.secureauth.sarestapi.metrics.MetricsListener;
+import org.secureauth.sarestapi.metrics.RequestMetrics;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.push.PushAcceptTracker;
 import org.secureauth.sarestapi.queries.*;
+import org.secureauth.sarestapi.ratelimit.RateLimiter;
+import org.secureauth.sarestapi.resources.ApplianceBalancer;
+import org.secureauth.sarestapi.resources.ConcurrencyLimiter;
 import org.secureauth.sarestapi.resources.SAExecuter;
+import org.secureauth.sarestapi.retry.RetryPolicy;
+import org.secureauth.sarestapi.transport.SATransport;
 import org.secureauth.sarestapi.util.JSONUtil;
-import org.secureauth.sarestapi.util.RestApiHeader;
+import org.secureauth.sarestapi.util.RequestSigner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,9 +55,28 @@ import org.slf4j.LoggerFactory;
  public class SAAccess {
 
     private static Logger logger = LoggerFactory.getLogger(SAAccess.class);
+    //Body sent by POST and PUT requests that carry no payload
+    static final byte[] EMPTY_BODY = new byte[0];
+    //Blocking calls reuse one RequestMetrics per thread so measuring allocates nothing
+    private static final ThreadLocal<RequestMetrics> REQUEST_METRICS = new ThreadLocal<RequestMetrics>(){
+        @Override
+        protected RequestMetrics initialValue() {
+            return new RequestMetrics();
+        }
+    };
     protected SABaseURL saBaseURL;
     protected SAAuth saAuth;
     protected SAExecuter saExecuter;
+    protected RequestSigner requestSigner;
+    protected volatile FactorCache factorCache;
+    protected volatile IPEvalCache ipEvalCache;
+    protected volatile ScriptSrcCache scriptSrcCache;
+    protected volatile MetricsListener metricsListener;
+    protected volatile CircuitBreakers circuitBreakers;
+    protected volatile HedgePolicy hedgePolicy;
+    protected volatile RetryPolicy retryPolicy;
+    protected volatile RateLimiter rateLimiter;
+    private PushAcceptTracker pushAcceptTracker;
 
     /**
      *<p>
@@ -54,6 +93,7 @@ import org.slf4j.LoggerFactory;
     public SAAccess(String host, String port,boolean ssl, String realm, String applicationID, String applicationKey){
         saBaseURL=new SABaseURL(host,port,ssl);
         saAuth = new SAAuth(applicationID,applicationKey,realm);
+        requestSigner = new RequestSigner(saAuth);
         saExecuter=new SAExecuter(saBaseURL);
     }
 
@@ -74,9 +114,223 @@ import org.slf4j.LoggerFactory;
     public SAAccess(String host, String port,boolean ssl,boolean selfSigned, String realm, String applicationID, String applicationKey){
         saBaseURL=new SABaseURL(host,port,ssl,selfSigned);
         saAuth = new SAAuth(applicationID,applicationKey,realm);
+        requestSigner = new RequestSigner(saAuth);
         saExecuter=new SAExecuter(saBaseURL);
     }
 
+    /**
+     *<p>
+     *     Returns a SAAccess Object that can be used to query the SecureAuth Rest API
+     *     This Object sends its requests through the supplied transport, e.g. a
+     *     {@link org.secureauth.sarestapi.transport.PooledTransport} to keep connections to the Appliance alive
+     *</p>
+     * @param host FQDN of the SecureAuth Appliance
+     * @param port The port used to access the web application on the Appliance.
+     * @param ssl Use SSL
+     * @param selfSigned  Support for SeflSigned Certificates. Setting to enable disable self signed cert support
+     * @param realm the Configured Realm that enables the RESTApi
+     * @param applicationID The Application ID from the Configured Realm
+     * @param applicationKey The Application Key from the Configured Realm
+     * @param transport The transport used to build the connection to the Appliance
+     */
+    public SAAccess(String host, String port,boolean ssl,boolean selfSigned, String realm, String applicationID, String applicationKey, SATransport transport){
+        saBaseURL=new SABaseURL(host,port,ssl,selfSigned);
+        saAuth = new SAAuth(applicationID,applicationKey,realm);
+        requestSigner = new RequestSigner(saAuth);
+        saExecuter=new SAExecuter(saBaseURL, transport);
+    }
+
+    /**
+     *<p>
+     *     Returns a SAAccess Object that spreads its requests over several SecureAuth Appliances, see
+     *     {@link ApplianceBalancer} for how they are chosen and how failing ones are taken out of rotation
+     *</p>
+     * @param saBaseURL The Appliances, e.g. {@code new SABaseURL(Arrays.asList("sa1.example.com", "sa2.example.com:8443"), "443", true, false)}
+     * @param realm the Configured Realm that enables the RESTApi
+     * @param applicationID The Application ID from the Configured Realm
+     * @param applicationKey The Application Key from the Configured Realm
+     * @param transport The transport used to build the connections to the Appliances
+     */
+    public SAAccess(SABaseURL saBaseURL, String realm, String applicationID, String applicationKey, SATransport transport){
+        this.saBaseURL=saBaseURL;
+        saAuth = new SAAuth(applicationID,applicationKey,realm);
+        requestSigner = new RequestSigner(saAuth);
+        saExecuter=new SAExecuter(saBaseURL, transport);
+    }
+
+    /**
+     * @return the balancer choosing the Appliance of each request, to tune it or read the state of each Appliance
+     */
+    public ApplianceBalancer getApplianceBalancer(){
+        return saExecuter.getBalancer();
+    }
+
+    /**
+     * <p>
+     *     Caches factorsByUser responses. Entries of users created, updated or added to groups through this SAAccess
+     *     are dropped when the change is made.
+     * </p>
+     * @param factorCache the cache, null to disable caching
+     */
+    public void setFactorCache(FactorCache factorCache){
+        this.factorCache = factorCache;
+    }
+
+    public FactorCache getFactorCache(){
+        return factorCache;
+    }
+
+    /**
+     * <p>
+     *     Caches iPEvaluation results by IP Address, see {@link IPEvalCache} for how long results are kept.
+     * </p>
+     * @param ipEvalCache the cache, null to disable caching
+     */
+    public void setIPEvalCache(IPEvalCache ipEvalCache){
+        this.ipEvalCache = ipEvalCache;
+    }
+
+    public IPEvalCache getIPEvalCache(){
+        return ipEvalCache;
+    }
+
+    /**
+     * <p>
+     *     Caches the javaScriptSrc and BehaveBioJSSrc responses. When the cache is set to preload, both are fetched in
+     *     the background right away so the first login page does not wait for the Appliance.
+     * </p>
+     * @param scriptSrcCache the cache, null to disable caching
+     */
+    public void setScriptSrcCache(ScriptSrcCache scriptSrcCache){
+        this.scriptSrcCache = scriptSrcCache;
+        if(scriptSrcCache != null && scriptSrcCache.isPreload()){
+            scriptSrcCache.refresh(saAuth.getRealm(), ScriptSrcCache.DFP_JS, dfpScriptLoader());
+            scriptSrcCache.refresh(saAuth.getRealm(), ScriptSrcCache.BEHAVEBIO_JS, behaveBioScriptLoader());
+        }
+    }
+
+    public ScriptSrcCache getScriptSrcCache(){
+        return scriptSrcCache;
+    }
+
+    /**
+     * <p>
+     *     Reports the endpoint, status and phase timings of every call to the Appliance, see {@link MetricsListener}.
+     *     Also used by the SAAsyncAccess built on this SAAccess.
+     * </p>
+     * @param metricsListener the listener, null to stop measuring
+     */
+    public void setMetricsListener(MetricsListener metricsListener){
+        this.metricsListener = metricsListener;
+    }
+
+    public MetricsListener getMetricsListener(){
+        return metricsListener;
+    }
+
+    /**
+     * <p>
+     *     Stops calling endpoint families the Appliance is failing or slow on, see {@link CircuitBreakers}. Also used
+     *     by the SAAsyncAccess built on this SAAccess.
+     * </p>
+     * @param circuitBreakers the breakers, null to always call the Appliance
+     */
+    public void setCircuitBreakers(CircuitBreakers circuitBreakers){
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    public CircuitBreakers getCircuitBreakers(){
+        return circuitBreakers;
+    }
+
+    /**
+     * <p>
+     *     Sends read only calls a second time when their first request is slow to answer, see {@link HedgePolicy}.
+     *     Also used by the SAAsyncAccess built on this SAAccess.
+     * </p>
+     * @param hedgePolicy the policy, null to never hedge
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy){
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    public HedgePolicy getHedgePolicy(){
+        return hedgePolicy;
+    }
+
+    /**
+     * <p>
+     *     Sends failed calls again when it is safe to, see {@link RetryPolicy}. Also used by the SAAsyncAccess built on
+     *     this SAAccess.
+     * </p>
+     * @param retryPolicy the policy, null to make a single attempt
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy){
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy(){
+        return retryPolicy;
+    }
+
+    /**
+     * <p>
+     *     Limits the calls sent for the Realm, interactive calls first, see {@link RateLimiter}. Also used by the
+     *     SAAsyncAccess built on this SAAccess.
+     * </p>
+     * @param rateLimiter the limiter, may be shared with the SAAccess of other Realms; null for no limit
+     */
+    public void setRateLimiter(RateLimiter rateLimiter){
+        this.rateLimiter = rateLimiter;
+    }
+
+    public RateLimiter getRateLimiter(){
+        return rateLimiter;
+    }
+
+    /**
+     * <p>
+     *     Caps the requests outstanding at each Appliance with a limit that adapts to its response times, see
+     *     {@link ConcurrencyLimiter}. Also applies to the SAAsyncAccess built on this SAAccess.
+     * </p>
+     * @param concurrencyLimiter the limiter, null for no cap
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter){
+        saExecuter.getBalancer().setConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter(){
+        return saExecuter.getBalancer().getConcurrencyLimiter();
+    }
+
+    /**
+     * <p>
+     *     Returns the tracker that owns and polls the pending push-to-accept requests of this SAAccess, created on
+     *     first use and closed with this SAAccess.
+     * </p>
+     * @return {@link PushAcceptTracker}
+     */
+    public synchronized PushAcceptTracker getPushAcceptTracker(){
+        if(pushAcceptTracker == null){
+            pushAcceptTracker = new PushAcceptTracker(this);
+        }
+        return pushAcceptTracker;
+    }
+
+    /**
+     * <p>
+     *     Releases the connection to the Appliance and any resources held by the transport
+     * </p>
+     */
+    public void close(){
+        synchronized (this){
+            if(pushAcceptTracker != null){
+                pushAcceptTracker.close();
+            }
+        }
+        saExecuter.close();
+    }
+
     /**
      * <p>
      *     Returns IP Risk Evaluation from the Rest API
@@ -87,24 +341,20 @@ import org.slf4j.LoggerFactory;
      *
      */
     public IPEval iPEvaluation(String userid, String ip_address){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader =new RestApiHeader();
-        IPEvalRequest ipEvalRequest =new IPEvalRequest();
+        final IPEvalRequest ipEvalRequest =new IPEvalRequest();
         ipEvalRequest.setIp_address(ip_address);
         ipEvalRequest.setUser_id(userid);
         ipEvalRequest.setType("risk");
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", IPEvalQuery.queryIPEval(saAuth.getRealm()), ipEvalRequest, ts);
-
-        try{
-
-            return saExecuter.executeIPEval(header,saBaseURL.getApplianceURL() + IPEvalQuery.queryIPEval(saAuth.getRealm()),ipEvalRequest,ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
+        if(ipEvalCache != null){
+            return ipEvalCache.get(saAuth.getRealm(), userid, ip_address, new SACache.Loader<String, IPEval>() {
+                @Override
+                public IPEval load(String key) {
+                    return execute("POST", IPEvalQuery.queryIPEval(saAuth.getRealm()), ipEvalRequest, IPEval.class);
+                }
+            });
         }
-
-        return null;
+        return execute("POST", IPEvalQuery.queryIPEval(saAuth.getRealm()), ipEvalRequest, IPEval.class);
     }
 
     /**
@@ -114,20 +364,17 @@ import org.slf4j.LoggerFactory;
      * @param userid the userid of the identity you wish to have a list of possible second factors
      * @return {@link FactorsResponse}
      */
-    public FactorsResponse factorsByUser(String userid){
+    public FactorsResponse factorsByUser(final String userid){
 //    	userid = encode(userid);
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"GET",FactorsQuery.queryFactors(saAuth.getRealm(),userid),ts);
-
-
-        try{
-            return saExecuter.executeGetRequest(header,saBaseURL.getApplianceURL() + FactorsQuery.queryFactors(saAuth.getRealm(),userid),ts, FactorsResponse.class);
-
-        }catch (Exception e){
-        logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-    }
-        return null;
+        if(factorCache != null){
+            return factorCache.get(saAuth.getRealm(), userid, new SACache.Loader<String, FactorsResponse>() {
+                @Override
+                public FactorsResponse load(String key) {
+                    return execute("GET", FactorsQuery.queryFactors(saAuth.getRealm(),userid), null, FactorsResponse.class);
+                }
+            });
+        }
+        return execute("GET", FactorsQuery.queryFactors(saAuth.getRealm(),userid), null, FactorsResponse.class);
     }
 
     /**
@@ -143,8 +390,6 @@ import org.slf4j.LoggerFactory;
      * @return {@link FactorsResponse}
      */
     public ResponseObject sendPushToAcceptReq(String userid, String factor_id, String endUserIP, String clientCompany, String clientDescription){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         PushToAcceptRequest req = new PushToAcceptRequest();
         req.setUser_id(userid);
         req.setType("push_accept");
@@ -158,14 +403,7 @@ import org.slf4j.LoggerFactory;
         	pad.setApplication_description(clientDescription);
         }
         req.setPush_accept_details(pad);
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), req,ts);
-
-        try{
-            return saExecuter.executePostRequest(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()), req,ts, ResponseObject.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), req, ResponseObject.class);
     }
     
     /**
@@ -177,31 +415,18 @@ import org.slf4j.LoggerFactory;
      * @return {@link FactorsResponse}
      */
     public AdaptiveAuthResponse adaptiveAuthQuery(String userid, String endUserIP){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AdaptiveAuthRequest req = new AdaptiveAuthRequest(userid, endUserIP);
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAAuth(saAuth.getRealm()), req,ts);
-
-        try{
-            return saExecuter.executePostRequest(header,saBaseURL.getApplianceURL() + AuthQuery.queryAAuth(saAuth.getRealm()), req, ts, AdaptiveAuthResponse.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAAuth(saAuth.getRealm()), req, AdaptiveAuthResponse.class);
     }
     
     public PushAcceptStatus queryPushAcceptStatus(String refId){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
+        PushPollEvent event = SAFlightRecorder.get().beginPushPoll();
         String getUri = AuthQuery.queryAuth(saAuth.getRealm()) + "/" + refId;
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"GET", getUri,ts);
-
-        try{
-            return saExecuter.executeGetRequest(header,saBaseURL.getApplianceURL() + getUri,ts, PushAcceptStatus.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
+        PushAcceptStatus pushAcceptStatus = execute("GET", getUri, null, PushAcceptStatus.class);
+        if(event != null){
+            commitPushPoll(event, saAuth.getRealm(), refId, pushAcceptStatus);
         }
-        return null;
+        return pushAcceptStatus;
     }
     
 
@@ -216,22 +441,12 @@ import org.slf4j.LoggerFactory;
      */
     public BaseResponse validateUser(String userid){
 
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("user_id");
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-
-        try{
-            return saExecuter.executeValidateUser(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, BaseResponse.class);
     }
 
     /**
@@ -243,22 +458,13 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public BaseResponse validateUserPassword(String userid, String password){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("password");
         authRequest.setToken(password);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeValidateUserPassword(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, BaseResponse.class);
     }
 
     /**
@@ -270,22 +476,13 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public BaseResponse validateUserPin(String userid, String pin){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("pin");
         authRequest.setToken(pin);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeValidateUserPin(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, BaseResponse.class);
     }
 
     /**
@@ -298,8 +495,6 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public BaseResponse validateKba(String userid, String answer, String factor_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
@@ -307,14 +502,7 @@ import org.slf4j.LoggerFactory;
         authRequest.setToken(answer);
         authRequest.setFactor_id(factor_id);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeValidateKba(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, BaseResponse.class);
     }
 
     /**
@@ -327,8 +515,6 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public BaseResponse validateOath(String userid, String otp, String factor_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
@@ -336,14 +522,7 @@ import org.slf4j.LoggerFactory;
         authRequest.setToken(otp);
         authRequest.setFactor_id(factor_id);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeValidateOath(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, BaseResponse.class);
     }
 
     /**
@@ -355,22 +534,13 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByPhone(String userid, String factor_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("call");
         authRequest.setFactor_id(factor_id);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeOTPByPhone(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, ResponseObject.class);
     }
 
     /**
@@ -382,21 +552,12 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPBySMS(String userid, String factor_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("sms");
         authRequest.setFactor_id(factor_id);
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeOTPBySMS(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, ResponseObject.class);
     }
 
     /**
@@ -408,21 +569,12 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByEmail(String userid, String factor_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("email");
         authRequest.setFactor_id(factor_id);
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeOTPByEmail(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, ResponseObject.class);
     }
 
     /**
@@ -434,21 +586,12 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByPush(String userid, String factor_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("push");
         authRequest.setFactor_id(factor_id);
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executePostRequest(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts, ResponseObject.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, ResponseObject.class);
     }
 
     /**
@@ -460,21 +603,12 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public ResponseObject deliverOTPByHelpDesk(String userid, String factor_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
         AuthRequest authRequest = new AuthRequest();
 
         authRequest.setUser_id(userid);
         authRequest.setType("help_desk");
         authRequest.setFactor_id(factor_id);
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest,ts);
-
-        try{
-            return saExecuter.executeOTPByHelpDesk(header,saBaseURL.getApplianceURL() + AuthQuery.queryAuth(saAuth.getRealm()),authRequest,ts);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", AuthQuery.queryAuth(saAuth.getRealm()), authRequest, ResponseObject.class);
     }
 
     /**
@@ -487,23 +621,11 @@ import org.slf4j.LoggerFactory;
      *
      */
     public ResponseObject accessHistory(String userid, String ip_address){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader =new RestApiHeader();
         AccessHistoryRequest accessHistoryRequest =new AccessHistoryRequest();
         accessHistoryRequest.setIp_address(ip_address);
         accessHistoryRequest.setUser_id(userid);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", AccessHistoryQuery.queryAccessHistory(saAuth.getRealm()), accessHistoryRequest, ts);
-
-        try{
-
-            return saExecuter.executeAccessHistory(header,saBaseURL.getApplianceURL() + AccessHistoryQuery.queryAccessHistory(saAuth.getRealm()),accessHistoryRequest,ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-
-        return null;
+        return execute("POST", AccessHistoryQuery.queryAccessHistory(saAuth.getRealm()), accessHistoryRequest, ResponseObject.class);
     }
 
     /**
@@ -516,24 +638,12 @@ import org.slf4j.LoggerFactory;
      *
      */
       public DFPConfirmResponse DFPConfirm(String userid, String fingerprint_id){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader =new RestApiHeader();
         DFPConfirmRequest dfpConfirmRequest =new DFPConfirmRequest();
         dfpConfirmRequest.setUser_id(userid);
         dfpConfirmRequest.setFingerprint_id(fingerprint_id);
 
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", DFPQuery.queryDFPConfirm(saAuth.getRealm()), dfpConfirmRequest, ts);
-
-        try{
-
-            return saExecuter.executeDFPConfirm(header,saBaseURL.getApplianceURL() + DFPQuery.queryDFPConfirm(saAuth.getRealm()), dfpConfirmRequest, ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-
-        return null;
+        return execute("POST", DFPQuery.queryDFPConfirm(saAuth.getRealm()), dfpConfirmRequest, DFPConfirmResponse.class);
     }
 
     /**
@@ -551,8 +661,6 @@ import org.slf4j.LoggerFactory;
      *
      */
     public DFPValidateResponse DFPValidateNewFingerprint(String userid, String host_address, String jsonString, String accept, String accept_charset, String accept_encoding, String accept_language){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader =new RestApiHeader();
         DFPValidateRequest dfpValidateRequest = JSONUtil.getObjectFromJSONString(jsonString);
         dfpValidateRequest.setUser_id(userid);
         dfpValidateRequest.setHost_address(host_address);
@@ -565,17 +673,7 @@ import org.slf4j.LoggerFactory;
 
 
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", DFPQuery.queryDFPValidate(saAuth.getRealm()), dfpValidateRequest, ts);
-
-        try{
-
-            return saExecuter.executeDFPValidate(header,saBaseURL.getApplianceURL() + DFPQuery.queryDFPValidate(saAuth.getRealm()), dfpValidateRequest, ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-
-        return null;
+        return execute("POST", DFPQuery.queryDFPValidate(saAuth.getRealm()), dfpValidateRequest, DFPValidateResponse.class);
     }
 
     /**
@@ -585,18 +683,11 @@ import org.slf4j.LoggerFactory;
      * @return {@link JSObjectResponse}
      */
     public JSObjectResponse javaScriptSrc(){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"GET",DFPQuery.queryDFPjs(saAuth.getRealm()),ts);
-
-
-        try{
-            return saExecuter.executeGetJSObject(header,saBaseURL.getApplianceURL() + DFPQuery.queryDFPjs(saAuth.getRealm()),ts, JSObjectResponse.class);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
+        ScriptSrcCache cache = scriptSrcCache;
+        if(cache != null){
+            return cache.get(saAuth.getRealm(), ScriptSrcCache.DFP_JS, dfpScriptLoader());
         }
-        return null;
+        return execute("GET", DFPQuery.queryDFPjs(saAuth.getRealm()), null, JSObjectResponse.class);
     }
 
     /**
@@ -612,18 +703,11 @@ import org.slf4j.LoggerFactory;
      * @return {@link JSObjectResponse}
      */
     public JSObjectResponse BehaveBioJSSrc(){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"GET",BehaveBioQuery.queryBehaveBiojs(saAuth.getRealm()),ts);
-
-
-        try{
-            return saExecuter.executeGetJSObject(header,saBaseURL.getApplianceURL() + BehaveBioQuery.queryBehaveBiojs(saAuth.getRealm()),ts, JSObjectResponse.class);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
+        ScriptSrcCache cache = scriptSrcCache;
+        if(cache != null){
+            return cache.get(saAuth.getRealm(), ScriptSrcCache.BEHAVEBIO_JS, behaveBioScriptLoader());
         }
-        return null;
+        return execute("GET", BehaveBioQuery.queryBehaveBiojs(saAuth.getRealm()), null, JSObjectResponse.class);
     }
 
 
@@ -640,25 +724,13 @@ import org.slf4j.LoggerFactory;
      *
      */
     public BehaveBioResponse BehaveBioProfileSubmit(String userid, String behaviorProfile, String hostAddress, String userAgent){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader =new RestApiHeader();
         BehaveBioRequest behaveBioRequest = new BehaveBioRequest();
         behaveBioRequest.setUserId(userid);
         behaveBioRequest.setBehaviorProfile(behaviorProfile);
         behaveBioRequest.setHostAddress(hostAddress);
         behaveBioRequest.setUserAgent(userAgent);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", BehaveBioQuery.queryBehaveBio(saAuth.getRealm()), behaveBioRequest, ts);
-
-        try{
-
-            return saExecuter.executeBehaveBioPost(header,saBaseURL.getApplianceURL() + BehaveBioQuery.queryBehaveBio(saAuth.getRealm()), behaveBioRequest, ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-
-        return null;
+        return execute("POST", BehaveBioQuery.queryBehaveBio(saAuth.getRealm()), behaveBioRequest, BehaveBioResponse.class);
     }
 
     /**
@@ -674,25 +746,13 @@ import org.slf4j.LoggerFactory;
      *
      */
     public ResponseObject BehaveBioProfileReset(String userid, String fieldName, String fieldType, String deviceType){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader =new RestApiHeader();
         BehaveBioResetRequest behaveBioResetRequest = new BehaveBioResetRequest();
         behaveBioResetRequest.setUserId(userid);
         behaveBioResetRequest.setFieldName(fieldName);
         behaveBioResetRequest.setFieldType(fieldType);
         behaveBioResetRequest.setDeviceType(deviceType);
 
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"PUT", BehaveBioQuery.queryBehaveBio(saAuth.getRealm()), behaveBioResetRequest, ts);
-
-        try{
-
-            return saExecuter.executeBehaveBioReset(header,saBaseURL.getApplianceURL() + BehaveBioQuery.queryBehaveBio(saAuth.getRealm()), behaveBioResetRequest, ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-
-        return null;
+        return execute("PUT", BehaveBioQuery.queryBehaveBio(saAuth.getRealm()), behaveBioResetRequest, ResponseObject.class);
     }
 
     /**
@@ -712,20 +772,13 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public ResponseObject createUser(NewUserProfile newUserProfile){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST",IDMQueries.queryUsers(saAuth.getRealm()),newUserProfile,ts);
-
         /*
         At a minimum creating a user requires UserId and Passowrd
          */
         if(newUserProfile.getUserId() != null && !newUserProfile.getUserId().isEmpty() && newUserProfile.getPassword() != null && !newUserProfile.getPassword().isEmpty()){
-            try{
-                return saExecuter.executeUserProfileCreateRequest(header,saBaseURL.getApplianceURL() + IDMQueries.queryUsers(saAuth.getRealm()),newUserProfile,ts,ResponseObject.class);
-
-            }catch (Exception e){
-                logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-            }
+            ResponseObject responseObject = execute("POST", IDMQueries.queryUsers(saAuth.getRealm()), newUserProfile, ResponseObject.class);
+            invalidateFactors(newUserProfile.getUserId());
+            return responseObject;
         }
         return null;
     }
@@ -739,23 +792,9 @@ import org.slf4j.LoggerFactory;
      * @return {@link ResponseObject}
      */
     public ResponseObject updateUser(String userId, NewUserProfile userProfile){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"PUT",IDMQueries.queryUserProfile(saAuth.getRealm(),userId),userProfile,ts);
-
-
-            try{
-                return saExecuter.executeUserProfileUpdateRequest(header,
-                        saBaseURL.getApplianceURL() + IDMQueries.queryUserProfile(saAuth.getRealm(),userId),
-                        userProfile,
-                        ts,
-                        ResponseObject.class);
-
-            }catch (Exception e){
-                logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-            }
-
-        return null;
+        ResponseObject responseObject = execute("PUT", IDMQueries.queryUserProfile(saAuth.getRealm(),userId), userProfile, ResponseObject.class);
+        invalidateFactors(userId);
+        return responseObject;
     }
 
     /**
@@ -767,16 +806,9 @@ import org.slf4j.LoggerFactory;
      * @return {@link GroupAssociationResponse}
      */
     public ResponseObject addUserToGroup(String userid, String groupName){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", IDMQueries.queryUserToGroup(saAuth.getRealm(),userid,groupName),ts);
-
-        try{
-            return saExecuter.executeSingleUserToSingleGroup(header,saBaseURL.getApplianceURL() + IDMQueries.queryUserToGroup(saAuth.getRealm(),userid,groupName), ts, ResponseObject.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        ResponseObject responseObject = execute("POST", IDMQueries.queryUserToGroup(saAuth.getRealm(),userid,groupName), null, ResponseObject.class);
+        invalidateFactors(userid);
+        return responseObject;
     }
 
     /**
@@ -788,16 +820,13 @@ import org.slf4j.LoggerFactory;
      * @return {@link GroupAssociationResponse}
      */
     public GroupAssociationResponse addUsersToGroup(UsersToGroup usersToGroup, String groupName){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", IDMQueries.queryGroupToUsers(saAuth.getRealm(),groupName),usersToGroup,ts);
-
-        try{
-            return saExecuter.executeGroupToUsersRequest(header,saBaseURL.getApplianceURL() + IDMQueries.queryGroupToUsers(saAuth.getRealm(),groupName), usersToGroup, ts, GroupAssociationResponse.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
+        GroupAssociationResponse groupAssociationResponse = execute("POST", IDMQueries.queryGroupToUsers(saAuth.getRealm(),groupName), usersToGroup, GroupAssociationResponse.class);
+        if(usersToGroup.getUserIds() != null){
+            for(String userId : usersToGroup.getUserIds()){
+                invalidateFactors(userId);
+            }
         }
-        return null;
+        return groupAssociationResponse;
     }
 
 
@@ -810,16 +839,9 @@ import org.slf4j.LoggerFactory;
      * @return {@link GroupAssociationResponse}
      */
     public GroupAssociationResponse addGroupToUser(String groupName, String userid){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", IDMQueries.queryGroupToUser(saAuth.getRealm(),userid,groupName),ts);
-
-        try{
-            return saExecuter.executeSingleGroupToSingleUser(header,saBaseURL.getApplianceURL() + IDMQueries.queryGroupToUser(saAuth.getRealm(),userid,groupName), ts, GroupAssociationResponse.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        GroupAssociationResponse groupAssociationResponse = execute("POST", IDMQueries.queryGroupToUser(saAuth.getRealm(),userid,groupName), null, GroupAssociationResponse.class);
+        invalidateFactors(userid);
+        return groupAssociationResponse;
     }
 
     /**
@@ -831,16 +853,9 @@ import org.slf4j.LoggerFactory;
      * @return {@link GroupAssociationResponse}
      */
     public GroupAssociationResponse addUserToGroups(String userId, UserToGroups userToGroups){
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST", IDMQueries.queryUserToGroups(saAuth.getRealm(),userId),userToGroups,ts);
-
-        try{
-            return saExecuter.executeUserToGroupsRequest(header,saBaseURL.getApplianceURL() + IDMQueries.queryUserToGroups(saAuth.getRealm(),userId), userToGroups, ts, GroupAssociationResponse.class);
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        GroupAssociationResponse groupAssociationResponse = execute("POST", IDMQueries.queryUserToGroups(saAuth.getRealm(),userId), userToGroups, GroupAssociationResponse.class);
+        invalidateFactors(userId);
+        return groupAssociationResponse;
     }
 
     /**
@@ -852,18 +867,7 @@ import org.slf4j.LoggerFactory;
      */
     public UserProfileResponse getUserProfile(String userid){
         userid = encode(userid);
-        String ts = getServerTime();
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"GET",IDMQueries.queryUserProfile(saAuth.getRealm(),userid),ts);
-
-
-        try{
-            return saExecuter.executeGetRequest(header,saBaseURL.getApplianceURL() + IDMQueries.queryUserProfile(saAuth.getRealm(),userid),ts, UserProfileResponse.class);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("GET", IDMQueries.queryUserProfile(saAuth.getRealm(),userid), null, UserProfileResponse.class);
     }
 
     /**
@@ -876,20 +880,9 @@ import org.slf4j.LoggerFactory;
      */
     public ResponseObject passwordReset(String userid, String password){
         userid = encode(userid);
-        String ts = getServerTime();
         UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
         userPasswordRequest.setPassword(password);
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST",IDMQueries.queryUserResetPwd(saAuth.getRealm(),userid),userPasswordRequest,ts);
-
-
-        try{
-            return saExecuter.executeUserPasswordReset(header,saBaseURL.getApplianceURL() + IDMQueries.queryUserResetPwd(saAuth.getRealm(),userid),userPasswordRequest,ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", IDMQueries.queryUserResetPwd(saAuth.getRealm(),userid), userPasswordRequest, ResponseObject.class);
     }
 
     /**
@@ -903,21 +896,10 @@ import org.slf4j.LoggerFactory;
      */
     public ResponseObject passwordChange(String userid, String currentPassword, String newPassword){
         userid = encode(userid);
-        String ts = getServerTime();
         UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
         userPasswordRequest.setCurrentPassword(currentPassword);
         userPasswordRequest.setNewPassword(newPassword);
-        RestApiHeader restApiHeader = new RestApiHeader();
-        String header = restApiHeader.getAuthorizationHeader(saAuth,"POST",IDMQueries.queryUserChangePwd(saAuth.getRealm(),userid),userPasswordRequest,ts);
-
-
-        try{
-            return saExecuter.executeUserPasswordChange(header,saBaseURL.getApplianceURL() + IDMQueries.queryUserChangePwd(saAuth.getRealm(),userid),userPasswordRequest,ts);
-
-        }catch (Exception e){
-            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
-        }
-        return null;
+        return execute("POST", IDMQueries.queryUserChangePwd(saAuth.getRealm(),userid), userPasswordRequest, ResponseObject.class);
     }
 
     /**
@@ -962,6 +944,220 @@ import org.slf4j.LoggerFactory;
         return " %$&+,/:;=?@<>#%".indexOf(ch) >= 0;
     }
 
+    /**
+     * <p>
+     *     Serializes the payload once, signs those bytes and sends the same bytes as the request body, so the
+     *     signature always covers exactly what goes over the wire. A null payload is signed without a body, and
+     *     POST / PUT requests without a payload send an empty body.
+     * </p>
+     */
+    private <T> T execute(String method, String uriPath, Object payload, Class<T> valueType){
+        MetricsListener listener = metricsListener;
+        CircuitBreakers breakers = circuitBreakers;
+        RateLimiter limiter = rateLimiter;
+        SAEndpoint endpoint = null;
+        CircuitBreaker breaker = null;
+        //An open circuit rejects the call before it waits for, and uses up, a token
+        if(breakers != null){
+            endpoint = SAEndpoint.of(method, uriPath);
+            breaker = breakers.get(endpoint);
+            if(!breaker.tryAcquire()){
+                return breakers.rejected(endpoint, valueType);
+            }
+        }
+        if(limiter != null){
+            if(endpoint == null){
+                endpoint = SAEndpoint.of(method, uriPath);
+            }
+            if(!limiter.acquire(saAuth.getRealm(), endpoint)){
+                if(breaker != null){
+                    breaker.release();
+                }
+                return limiter.rejected(valueType);
+            }
+        }
+        RequestEvent event = SAFlightRecorder.get().beginRequest();
+        if(listener == null && event == null && breaker == null && retryPolicy == null){
+            return execute(method, uriPath, payload, valueType, null);
+        }
+
+        RequestMetrics metrics = REQUEST_METRICS.get().reset();
+        metrics.setEndpoint(endpoint != null ? endpoint : SAEndpoint.of(method, uriPath));
+        metrics.setMethod(method);
+        metrics.setRealm(saAuth.getRealm());
+        long started = System.nanoTime();
+        T response = execute(method, uriPath, payload, valueType, metrics);
+        metrics.setTotalNanos(System.nanoTime() - started);
+        metrics.setResponseStatus(statusOf(response));
+        if(breaker != null){
+            breakers.record(breaker, metrics);
+        }
+        if(event != null){
+            commitRequest(event, metrics);
+        }
+        if(listener != null){
+            notifyMetrics(listener, metrics);
+        }
+        return response;
+    }
+
+    private <T> T execute(String method, String uriPath, Object payload, Class<T> valueType, RequestMetrics metrics){
+        //signed is what the signature covers, body what is sent
+        byte[] signed = null;
+        byte[] body = null;
+        if(payload == null){
+            if(!"GET".equals(method)){
+                body = EMPTY_BODY;
+            }
+        }else{
+            long serialized = System.nanoTime();
+            body = JSONUtil.convertObjectToJSONBytes(payload);
+            if(body == null){
+                return null;
+            }
+            if(metrics != null){
+                metrics.setSerializeNanos(System.nanoTime() - serialized);
+            }
+            signed = body;
+        }
+        if(metrics != null){
+            metrics.setRequestBytes(body != null ? body.length : 0);
+        }
+
+        //Retries need the outcome of each attempt, which only the metrics hold
+        RetryPolicy retry = metrics != null ? retryPolicy : null;
+        if(retry == null){
+            return send(method, uriPath, signed, body, valueType, metrics);
+        }
+        retry.onRequest();
+        long delay = 0;
+        for(int attempt = 1; ; attempt++){
+            T response = send(method, uriPath, signed, body, valueType, metrics);
+            if(attempt >= retry.getMaxAttempts() || !retry.isRetryable(metrics.getEndpoint(), metrics) || !retry.tryRetry()){
+                return response;
+            }
+            delay = retry.nextDelayMillis(delay);
+            logger.warn(new StringBuilder().append("Retrying ").append(method).append(" ").append(uriPath).append(" in ")
+                    .append(delay).append("ms after attempt ").append(attempt).append(" failed: ")
+                    .append(metrics.getError() != null ? metrics.getError().getMessage() : "HTTP " + metrics.getHttpStatus()).toString());
+            try{
+                Thread.sleep(delay);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return response;
+            }
+            metrics.clearResponse();
+            metrics.setRetries(attempt);
+        }
+    }
+
+    //One attempt of a call, signed with the current time
+    private <T> T send(String method, String uriPath, byte[] signed, byte[] body, Class<T> valueType, RequestMetrics metrics){
+        String ts = getServerTime();
+        String header = sign(method, uriPath, signed, ts, metrics);
+        try{
+            HedgePolicy hedge = hedgePolicy;
+            if(hedge != null){
+                SAEndpoint endpoint = metrics != null ? metrics.getEndpoint() : SAEndpoint.of(method, uriPath);
+                if(hedge.isHedged(endpoint)){
+                    return saExecuter.executeHedged(method, header, uriPath, body, ts, valueType, metrics, hedge, endpoint);
+                }
+            }
+            return saExecuter.executeBalanced(method, header, uriPath, body, ts, valueType, metrics);
+        }catch (Exception e){
+            if(metrics != null){
+                metrics.setError(e);
+            }
+            logger.error(new StringBuilder().append("Exception occurred executing REST query::\n").append(e.getMessage()).append("\n").toString(), e);
+        }
+        return null;
+    }
+
+    //Builds the Authorization header, a null body is signed as a request without payload
+    String sign(String method, String uriPath, byte[] body, String ts, RequestMetrics metrics){
+        SignEvent event = SAFlightRecorder.get().beginSign();
+        long started = System.nanoTime();
+        String header = body == null ? requestSigner.getAuthorizationHeader(method, uriPath, ts)
+                : requestSigner.getAuthorizationHeader(method, uriPath, body, ts);
+        if(metrics != null){
+            metrics.setSignNanos(System.nanoTime() - started);
+        }
+        if(event != null){
+            event.setEndpoint((metrics != null ? metrics.getEndpoint() : SAEndpoint.of(method, uriPath)).name());
+            event.setRealm(saAuth.getRealm());
+            event.setBytes(body != null ? body.length : 0);
+            event.commit();
+        }
+        return header;
+    }
+
+    static void commitRequest(RequestEvent event, RequestMetrics metrics){
+        event.setEndpoint(metrics.getEndpoint().name());
+        event.setMethod(metrics.getMethod());
+        event.setRealm(metrics.getRealm());
+        event.setHttpStatus(metrics.getHttpStatus());
+        event.setResponseStatus(metrics.getResponseStatus());
+        event.setRequestBytes(metrics.getRequestBytes());
+        event.setResponseBytes(metrics.getResponseBytes());
+        event.commit();
+    }
+
+    //The status field of a response, null when the response has none
+    static String statusOf(Object response){
+        if(response instanceof BaseResponse){
+            return ((BaseResponse) response).getStatus();
+        }
+        if(response instanceof PushAcceptStatus){
+            return ((PushAcceptStatus) response).getStatus();
+        }
+        return null;
+    }
+
+    static void commitPushPoll(PushPollEvent event, String realm, String refId, PushAcceptStatus pushAcceptStatus){
+        event.setRealm(realm);
+        event.setReferenceId(refId);
+        if(pushAcceptStatus != null){
+            event.setStatus(pushAcceptStatus.getStatus());
+            event.setMessage(pushAcceptStatus.getMessage());
+        }
+        event.commit();
+    }
+
+    //A failing listener must not fail the call it measured
+    static void notifyMetrics(MetricsListener listener, RequestMetrics metrics){
+        try{
+            listener.onRequest(metrics);
+        }catch(RuntimeException e){
+            logger.error(new StringBuilder().append("Exception occurred in MetricsListener").toString(), e);
+        }
+    }
+
+    private SACache.Loader<String, JSObjectResponse> dfpScriptLoader(){
+        return new SACache.Loader<String, JSObjectResponse>() {
+            @Override
+            public JSObjectResponse load(String key) {
+                return execute("GET", DFPQuery.queryDFPjs(saAuth.getRealm()), null, JSObjectResponse.class);
+            }
+        };
+    }
+
+    private SACache.Loader<String, JSObjectResponse> behaveBioScriptLoader(){
+        return new SACache.Loader<String, JSObjectResponse>() {
+            @Override
+            public JSObjectResponse load(String key) {
+                return execute("GET", BehaveBioQuery.queryBehaveBiojs(saAuth.getRealm()), null, JSObjectResponse.class);
+            }
+        };
+    }
+
+    //Drop the cached factors of a user changed through this SAAccess
+    void invalidateFactors(String userId){
+        FactorCache cache = factorCache;
+        if(cache != null && userId != null){
+            cache.invalidate(saAuth.getRealm(), userId);
+        }
+    }
+
     String getServerTime() {
         Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
         SimpleDateFormat dateFormat = new SimpleDateFormat(
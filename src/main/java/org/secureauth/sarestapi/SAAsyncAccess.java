@@ -0,0 +1,753 @@
+package org.secureauth.sarestapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.secureauth.sarestapi.cache.FactorCache;
+import org.secureauth.sarestapi.cache.IPEvalCache;
+import org.secureauth.sarestapi.cache.SACache;
+import org.secureauth.sarestapi.cache.ScriptSrcCache;
+import org.secureauth.sarestapi.data.*;
+import org.secureauth.sarestapi.data.BehavioralBio.BehaveBioRequest;
+import org.secureauth.sarestapi.data.Requests.*;
+import org.secureauth.sarestapi.data.Response.*;
+import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
+import org.secureauth.sarestapi.data.UserProfile.UserToGroups;
+import org.secureauth.sarestapi.data.UserProfile.UsersToGroup;
+import org.secureauth.sarestapi.circuit.CircuitBreaker;
+import org.secureauth.sarestapi.circuit.CircuitBreakers;
+import org.secureauth.sarestapi.hedge.HedgePolicy;
+import org.secureauth.sarestapi.jfr.PushPollEvent;
+import org.secureauth.sarestapi.jfr.RequestEvent;
+import org.secureauth.sarestapi.jfr.SAFlightRecorder;
+import org.secureauth.sarestapi.metrics.MetricsListener;
+import org.secureauth.sarestapi.metrics.RequestMetrics;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.queries.*;
+import org.secureauth.sarestapi.ratelimit.RateLimiter;
+import org.secureauth.sarestapi.resources.SAAsyncExecuter;
+import org.secureauth.sarestapi.retry.RetryPolicy;
+import org.secureauth.sarestapi.util.JSONUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     SAAsyncAccess offers the same operations as {@link SAAccess} without blocking the calling thread. Every method
+ *     returns a {@link CompletableFuture} which is completed with the Appliance response, or completed exceptionally
+ *     when the request fails (where SAAccess logs the error and returns null).
+ * </p>
+ * <p>
+ *     Requests share the connection of the wrapped SAAccess and are run through Jersey's async invoker. The number
+ *     of requests on the wire is capped, requests over the cap are queued without holding a thread.
+ * </p>
+ */
+public class SAAsyncAccess {
+
+    private static Logger logger=LoggerFactory.getLogger(SAAsyncAccess.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = SAAsyncExecuter.DEFAULT_MAX_IN_FLIGHT;
+
+    private final SAAccess saAccess;
+    private final SAAsyncExecuter saAsyncExecuter;
+
+    /**
+     * @param saAccess the SAAccess holding the Appliance connection and Realm credentials
+     */
+    public SAAsyncAccess(SAAccess saAccess){
+        this(saAccess, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param saAccess the SAAccess holding the Appliance connection and Realm credentials
+     * @param maxInFlight the maximum number of requests sent to the Appliance at the same time
+     */
+    public SAAsyncAccess(SAAccess saAccess, int maxInFlight){
+        this.saAccess = saAccess;
+        this.saAsyncExecuter = new SAAsyncExecuter(saAccess.saExecuter, maxInFlight);
+    }
+
+    /**
+     * @return the blocking SAAccess used by this instance
+     */
+    public SAAccess getSAAccess() {
+        return saAccess;
+    }
+
+    /**
+     * @return the executer running the asynchronous requests
+     */
+    public SAAsyncExecuter getAsyncExecuter() {
+        return saAsyncExecuter;
+    }
+
+    /**
+     * @see SAAccess#iPEvaluation(String, String)
+     * @param userid The User ID that you want to validate from
+     * @param ip_address The IP Address of the user making the request for access
+     * @return {@link IPEval}
+     */
+    public CompletableFuture<IPEval> iPEvaluation(String userid, String ip_address){
+        final IPEvalRequest ipEvalRequest =new IPEvalRequest();
+        ipEvalRequest.setIp_address(ip_address);
+        ipEvalRequest.setUser_id(userid);
+        ipEvalRequest.setType("risk");
+
+        IPEvalCache ipEvalCache = saAccess.ipEvalCache;
+        if(ipEvalCache != null){
+            return ipEvalCache.getAsync(realm(), userid, ip_address, new SACache.AsyncLoader<String, IPEval>() {
+                @Override
+                public CompletableFuture<IPEval> load(String key) {
+                    return execute("POST", IPEvalQuery.queryIPEval(realm()), ipEvalRequest, IPEval.class);
+                }
+            });
+        }
+        return execute("POST", IPEvalQuery.queryIPEval(realm()), ipEvalRequest, IPEval.class);
+    }
+
+    /**
+     * @see SAAccess#factorsByUser(String)
+     * @param userid the userid of the identity you wish to have a list of possible second factors
+     * @return {@link FactorsResponse}
+     */
+    public CompletableFuture<FactorsResponse> factorsByUser(final String userid){
+        FactorCache factorCache = saAccess.factorCache;
+        if(factorCache != null){
+            return factorCache.getAsync(realm(), userid, new SACache.AsyncLoader<String, FactorsResponse>() {
+                @Override
+                public CompletableFuture<FactorsResponse> load(String key) {
+                    return execute("GET", FactorsQuery.queryFactors(realm(), userid), null, FactorsResponse.class);
+                }
+            });
+        }
+        return execute("GET", FactorsQuery.queryFactors(realm(), userid), null, FactorsResponse.class);
+    }
+
+    /**
+     * @see SAAccess#sendPushToAcceptReq(String, String, String, String, String)
+     * @param userid  the user id of the identity
+     * @param factor_id the P2A Id to be compared against
+     * @param endUserIP The End Users IP Address
+     * @param clientCompany The Client Company Name
+     * @param clientDescription The Client Description
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> sendPushToAcceptReq(String userid, String factor_id, String endUserIP, String clientCompany, String clientDescription){
+        PushToAcceptRequest req = new PushToAcceptRequest();
+        req.setUser_id(userid);
+        req.setType("push_accept");
+        req.setFactor_id(factor_id);
+        PushAcceptDetails pad = new PushAcceptDetails();
+        pad.setEnduser_ip(endUserIP);
+        if (clientCompany != null) {
+            pad.setCompany_name(clientCompany);
+        }
+        if (clientDescription != null) {
+            pad.setApplication_description(clientDescription);
+        }
+        req.setPush_accept_details(pad);
+
+        return execute("POST", AuthQuery.queryAuth(realm()), req, ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#adaptiveAuthQuery(String, String)
+     * @param userid the user id of the identity
+     * @param endUserIP the IP of requesting client
+     * @return {@link AdaptiveAuthResponse}
+     */
+    public CompletableFuture<AdaptiveAuthResponse> adaptiveAuthQuery(String userid, String endUserIP){
+        return execute("POST", AuthQuery.queryAAuth(realm()), new AdaptiveAuthRequest(userid, endUserIP), AdaptiveAuthResponse.class);
+    }
+
+    /**
+     * @see SAAccess#queryPushAcceptStatus(String)
+     * @param refId the reference id returned when the push was sent
+     * @return {@link PushAcceptStatus}
+     */
+    public CompletableFuture<PushAcceptStatus> queryPushAcceptStatus(String refId){
+        final PushPollEvent event = SAFlightRecorder.get().beginPushPoll();
+        CompletableFuture<PushAcceptStatus> future = execute("GET", AuthQuery.queryAuth(realm()) + "/" + refId, null, PushAcceptStatus.class);
+        if(event == null){
+            return future;
+        }
+        return future.whenComplete(new BiConsumer<PushAcceptStatus, Throwable>() {
+            @Override
+            public void accept(PushAcceptStatus pushAcceptStatus, Throwable throwable) {
+                SAAccess.commitPushPoll(event, realm(), refId, pushAcceptStatus);
+            }
+        });
+    }
+
+    /**
+     * @see SAAccess#validateUser(String)
+     * @param userid the userid of the identity
+     * @return {@link BaseResponse}
+     */
+    public CompletableFuture<BaseResponse> validateUser(String userid){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "user_id", null, null), BaseResponse.class);
+    }
+
+    /**
+     * @see SAAccess#validateUserPassword(String, String)
+     * @param userid the userid of the identity
+     * @param password The password of the user to validate
+     * @return {@link BaseResponse}
+     */
+    public CompletableFuture<BaseResponse> validateUserPassword(String userid, String password){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "password", password, null), BaseResponse.class);
+    }
+
+    /**
+     * @see SAAccess#validateUserPin(String, String)
+     * @param userid the userid of the identity
+     * @param pin The pin of the user to validate
+     * @return {@link BaseResponse}
+     */
+    public CompletableFuture<BaseResponse> validateUserPin(String userid, String pin){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "pin", pin, null), BaseResponse.class);
+    }
+
+    /**
+     * @see SAAccess#validateKba(String, String, String)
+     * @param userid the userid of the identity
+     * @param answer The answer to the KBA
+     * @param factor_id the KB Id to be compared against
+     * @return {@link BaseResponse}
+     */
+    public CompletableFuture<BaseResponse> validateKba(String userid, String answer, String factor_id){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "kba", answer, factor_id), BaseResponse.class);
+    }
+
+    /**
+     * @see SAAccess#validateOath(String, String, String)
+     * @param userid the userid of the identity
+     * @param otp The One Time Passcode to validate
+     * @param factor_id The Device Identifier
+     * @return {@link BaseResponse}
+     */
+    public CompletableFuture<BaseResponse> validateOath(String userid, String otp, String factor_id){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "oath", otp, factor_id), BaseResponse.class);
+    }
+
+    /**
+     * @see SAAccess#deliverOTPByPhone(String, String)
+     * @param userid the userid of the identity
+     * @param factor_id  Phone Property   "Phone1"
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> deliverOTPByPhone(String userid, String factor_id){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "call", null, factor_id), ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#deliverOTPBySMS(String, String)
+     * @param userid the userid of the identity
+     * @param factor_id  Phone Property   "Phone1"
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> deliverOTPBySMS(String userid, String factor_id){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "sms", null, factor_id), ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#deliverOTPByEmail(String, String)
+     * @param userid the userid of the identity
+     * @param factor_id  Email Property   "Email1"
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> deliverOTPByEmail(String userid, String factor_id){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "email", null, factor_id), ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#deliverOTPByPush(String, String)
+     * @param userid the userid of the identity
+     * @param factor_id  Device Property   "z0y9x87wv6u5t43srq2p1on"
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> deliverOTPByPush(String userid, String factor_id){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "push", null, factor_id), ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#deliverOTPByHelpDesk(String, String)
+     * @param userid the userid of the identity
+     * @param factor_id  Help Desk Property   "HelpDesk1"
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> deliverOTPByHelpDesk(String userid, String factor_id){
+        return execute("POST", AuthQuery.queryAuth(realm()), authRequest(userid, "help_desk", null, factor_id), ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#accessHistory(String, String)
+     * @param userid The User ID that you want to validate from
+     * @param ip_address The IP Address of the user to be stored in the Datastore for use when evaluating Geo-Velocity
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> accessHistory(String userid, String ip_address){
+        AccessHistoryRequest accessHistoryRequest =new AccessHistoryRequest();
+        accessHistoryRequest.setIp_address(ip_address);
+        accessHistoryRequest.setUser_id(userid);
+
+        return execute("POST", AccessHistoryQuery.queryAccessHistory(realm()), accessHistoryRequest, ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#DFPConfirm(String, String)
+     * @param userid The User ID that you want to validate from
+     * @param fingerprint_id The ID of the finger print to check against the data store
+     * @return {@link DFPConfirmResponse}
+     */
+    public CompletableFuture<DFPConfirmResponse> DFPConfirm(String userid, String fingerprint_id){
+        DFPConfirmRequest dfpConfirmRequest =new DFPConfirmRequest();
+        dfpConfirmRequest.setUser_id(userid);
+        dfpConfirmRequest.setFingerprint_id(fingerprint_id);
+
+        return execute("POST", DFPQuery.queryDFPConfirm(realm()), dfpConfirmRequest, DFPConfirmResponse.class);
+    }
+
+    /**
+     * @see SAAccess#DFPValidateNewFingerprint(String, String, String, String, String, String, String)
+     * @param userid The User ID that you want to validate from
+     * @param host_address The ID of the finger print to check against the data store
+     * @param jsonString The JSON String provided by the Java Script
+     * @param accept  Accept Value provided by the application to buidl the Digital Finger Print
+     * @param accept_charset The accept Charset supplied by the client from the application server
+     * @param accept_encoding The accept Encoding supplied by the client from the application server
+     * @param accept_language The accepted language by the client supplied by the application server
+     * @return {@link DFPValidateResponse}
+     */
+    public CompletableFuture<DFPValidateResponse> DFPValidateNewFingerprint(String userid, String host_address, String jsonString, String accept, String accept_charset, String accept_encoding, String accept_language){
+        DFPValidateRequest dfpValidateRequest = JSONUtil.getObjectFromJSONString(jsonString);
+        dfpValidateRequest.setUser_id(userid);
+        dfpValidateRequest.setHost_address(host_address);
+        dfpValidateRequest.getFingerprint().setAccept(accept);
+        dfpValidateRequest.getFingerprint().setAccept_charset(accept_charset);
+        dfpValidateRequest.getFingerprint().setAccept_language(accept_language);
+        dfpValidateRequest.getFingerprint().setAccept_encoding(accept_encoding);
+
+        return execute("POST", DFPQuery.queryDFPValidate(realm()), dfpValidateRequest, DFPValidateResponse.class);
+    }
+
+    /**
+     * @see SAAccess#javaScriptSrc()
+     * @return {@link JSObjectResponse}
+     */
+    public CompletableFuture<JSObjectResponse> javaScriptSrc(){
+        ScriptSrcCache scriptSrcCache = saAccess.scriptSrcCache;
+        if(scriptSrcCache != null){
+            return scriptSrcCache.getAsync(realm(), ScriptSrcCache.DFP_JS, new SACache.AsyncLoader<String, JSObjectResponse>() {
+                @Override
+                public CompletableFuture<JSObjectResponse> load(String key) {
+                    return execute("GET", DFPQuery.queryDFPjs(realm()), null, JSObjectResponse.class);
+                }
+            });
+        }
+        return execute("GET", DFPQuery.queryDFPjs(realm()), null, JSObjectResponse.class);
+    }
+
+    /**
+     * @see SAAccess#BehaveBioJSSrc()
+     * @return {@link JSObjectResponse}
+     */
+    public CompletableFuture<JSObjectResponse> BehaveBioJSSrc(){
+        ScriptSrcCache scriptSrcCache = saAccess.scriptSrcCache;
+        if(scriptSrcCache != null){
+            return scriptSrcCache.getAsync(realm(), ScriptSrcCache.BEHAVEBIO_JS, new SACache.AsyncLoader<String, JSObjectResponse>() {
+                @Override
+                public CompletableFuture<JSObjectResponse> load(String key) {
+                    return execute("GET", BehaveBioQuery.queryBehaveBiojs(realm()), null, JSObjectResponse.class);
+                }
+            });
+        }
+        return execute("GET", BehaveBioQuery.queryBehaveBiojs(realm()), null, JSObjectResponse.class);
+    }
+
+    /**
+     * @see SAAccess#BehaveBioProfileSubmit(String, String, String, String)
+     * @param userid The User ID that you want to validate from
+     * @param behaviorProfile The Behavioral Profile of the user
+     * @param hostAddress The IP Address of the user
+     * @param userAgent  The Browser User Agent of the user
+     * @return {@link BehaveBioResponse}
+     */
+    public CompletableFuture<BehaveBioResponse> BehaveBioProfileSubmit(String userid, String behaviorProfile, String hostAddress, String userAgent){
+        BehaveBioRequest behaveBioRequest = new BehaveBioRequest();
+        behaveBioRequest.setUserId(userid);
+        behaveBioRequest.setBehaviorProfile(behaviorProfile);
+        behaveBioRequest.setHostAddress(hostAddress);
+        behaveBioRequest.setUserAgent(userAgent);
+
+        return execute("POST", BehaveBioQuery.queryBehaveBio(realm()), behaveBioRequest, BehaveBioResponse.class);
+    }
+
+    /**
+     * @see SAAccess#BehaveBioProfileReset(String, String, String, String)
+     * @param userid The User ID that you want to validate from
+     * @param fieldName The Behavioral FieldName to Reset
+     * @param fieldType The Behavioral FieldType to Reset
+     * @param deviceType  The Behavioral DeviceType to Reset
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> BehaveBioProfileReset(String userid, String fieldName, String fieldType, String deviceType){
+        BehaveBioResetRequest behaveBioResetRequest = new BehaveBioResetRequest();
+        behaveBioResetRequest.setUserId(userid);
+        behaveBioResetRequest.setFieldName(fieldName);
+        behaveBioResetRequest.setFieldType(fieldType);
+        behaveBioResetRequest.setDeviceType(deviceType);
+
+        return execute("PUT", BehaveBioQuery.queryBehaveBio(realm()), behaveBioResetRequest, ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#createUser(NewUserProfile)
+     * @param newUserProfile The newUserProfile Object
+     * @return {@link ResponseObject}, completed with null when the profile has no UserId or Password
+     */
+    public CompletableFuture<ResponseObject> createUser(NewUserProfile newUserProfile){
+        /*
+        At a minimum creating a user requires UserId and Passowrd
+         */
+        if(newUserProfile.getUserId() == null || newUserProfile.getUserId().isEmpty() || newUserProfile.getPassword() == null || newUserProfile.getPassword().isEmpty()){
+            return CompletableFuture.completedFuture(null);
+        }
+        return invalidatingFactors(execute("POST", IDMQueries.queryUsers(realm()), newUserProfile, ResponseObject.class), newUserProfile.getUserId());
+    }
+
+    /**
+     * @see SAAccess#updateUser(String, NewUserProfile)
+     * @param userId the UserID tied to the Profile Object
+     * @param userProfile The User'sProfile Object to be updated
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> updateUser(String userId, NewUserProfile userProfile){
+        return invalidatingFactors(execute("PUT", IDMQueries.queryUserProfile(realm(), userId), userProfile, ResponseObject.class), userId);
+    }
+
+    /**
+     * @see SAAccess#addUserToGroup(String, String)
+     * @param userid the user id of the identity
+     * @param groupName The Name of the group to associate the user to
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> addUserToGroup(String userid, String groupName){
+        return invalidatingFactors(execute("POST", IDMQueries.queryUserToGroup(realm(), userid, groupName), null, ResponseObject.class), userid);
+    }
+
+    /**
+     * @see SAAccess#addUsersToGroup(UsersToGroup, String)
+     * @param usersToGroup The Users to Group object holding the userIds
+     * @param groupName The Name of the group to associate the user to
+     * @return {@link GroupAssociationResponse}
+     */
+    public CompletableFuture<GroupAssociationResponse> addUsersToGroup(UsersToGroup usersToGroup, String groupName){
+        return invalidatingFactors(execute("POST", IDMQueries.queryGroupToUsers(realm(), groupName), usersToGroup, GroupAssociationResponse.class), usersToGroup.getUserIds());
+    }
+
+    /**
+     * @see SAAccess#addGroupToUser(String, String)
+     * @param groupName the Group Name
+     * @param userid The userId to associate to the group
+     * @return {@link GroupAssociationResponse}
+     */
+    public CompletableFuture<GroupAssociationResponse> addGroupToUser(String groupName, String userid){
+        return invalidatingFactors(execute("POST", IDMQueries.queryGroupToUser(realm(), userid, groupName), null, GroupAssociationResponse.class), userid);
+    }
+
+    /**
+     * @see SAAccess#addUserToGroups(String, UserToGroups)
+     * @param userId The UserId we are going to assign Groups to
+     * @param userToGroups The UserToGroups Object holding the list of groups to associate to the user
+     * @return {@link GroupAssociationResponse}
+     */
+    public CompletableFuture<GroupAssociationResponse> addUserToGroups(String userId, UserToGroups userToGroups){
+        return invalidatingFactors(execute("POST", IDMQueries.queryUserToGroups(realm(), userId), userToGroups, GroupAssociationResponse.class), userId);
+    }
+
+    /**
+     * @see SAAccess#getUserProfile(String)
+     * @param userid the userid of the identity
+     * @return {@link UserProfileResponse}
+     */
+    public CompletableFuture<UserProfileResponse> getUserProfile(String userid){
+        return execute("GET", IDMQueries.queryUserProfile(realm(), SAAccess.encode(userid)), null, UserProfileResponse.class);
+    }
+
+    /**
+     * @see SAAccess#passwordReset(String, String)
+     * @param userid the userid of the identity
+     * @param password the users new password
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> passwordReset(String userid, String password){
+        UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
+        userPasswordRequest.setPassword(password);
+
+        return execute("POST", IDMQueries.queryUserResetPwd(realm(), SAAccess.encode(userid)), userPasswordRequest, ResponseObject.class);
+    }
+
+    /**
+     * @see SAAccess#passwordChange(String, String, String)
+     * @param userid the userid of the identity
+     * @param currentPassword the users Current password
+     * @param newPassword the users new Password
+     * @return {@link ResponseObject}
+     */
+    public CompletableFuture<ResponseObject> passwordChange(String userid, String currentPassword, String newPassword){
+        UserPasswordRequest userPasswordRequest = new UserPasswordRequest();
+        userPasswordRequest.setCurrentPassword(currentPassword);
+        userPasswordRequest.setNewPassword(newPassword);
+
+        return execute("POST", IDMQueries.queryUserChangePwd(realm(), SAAccess.encode(userid)), userPasswordRequest, ResponseObject.class);
+    }
+
+    /**
+     *
+     * Start Helper Methods
+     */
+
+    private String realm(){
+        return saAccess.saAuth.getRealm();
+    }
+
+    private AuthRequest authRequest(String userid, String type, String token, String factor_id){
+        AuthRequest authRequest = new AuthRequest();
+        authRequest.setUser_id(userid);
+        authRequest.setType(type);
+        authRequest.setToken(token);
+        authRequest.setFactor_id(factor_id);
+        return authRequest;
+    }
+
+    //Drop the cached factors of the users once the change has been made
+    private <T> CompletableFuture<T> invalidatingFactors(CompletableFuture<T> future, final String... userIds){
+        return future.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T response, Throwable throwable) {
+                if(userIds != null){
+                    for(String userId : userIds){
+                        saAccess.invalidateFactors(userId);
+                    }
+                }
+            }
+        });
+    }
+
+    //Serialize the payload once, sign those bytes and hand the same bytes to the async executer
+    private <T> CompletableFuture<T> execute(String method, String uriPath, Object payload, Class<T> valueType){
+        CircuitBreakers breakers = saAccess.circuitBreakers;
+        SAEndpoint endpoint = null;
+        CircuitBreaker breaker = null;
+        //An open circuit rejects the call before it waits for, and uses up, a token
+        if(breakers != null){
+            endpoint = SAEndpoint.of(method, uriPath);
+            breaker = breakers.get(endpoint);
+            if(!breaker.tryAcquire()){
+                return CompletableFuture.completedFuture(breakers.rejected(endpoint, valueType));
+            }
+        }
+        RateLimiter rateLimiter = saAccess.rateLimiter;
+        if(rateLimiter == null){
+            return call(method, uriPath, payload, valueType, endpoint, breaker);
+        }
+        if(endpoint == null){
+            endpoint = SAEndpoint.of(method, uriPath);
+        }
+        long started = System.nanoTime();
+        long wait = rateLimiter.tryAcquire(realm(), endpoint, started);
+        if(wait == 0){
+            return call(method, uriPath, payload, valueType, endpoint, breaker);
+        }
+        if(wait < 0){
+            if(breaker != null){
+                breaker.release();
+            }
+            return CompletableFuture.completedFuture(rateLimiter.rejected(valueType));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        acquire(method, uriPath, payload, valueType, rateLimiter, endpoint, breaker, started, wait, future);
+        return future;
+    }
+
+    //Asks for a token again once the wait is over, without holding a thread meanwhile
+    private <T> void acquire(final String method, final String uriPath, final Object payload, final Class<T> valueType, final RateLimiter rateLimiter,
+                             final SAEndpoint endpoint, final CircuitBreaker breaker, final long started, long wait, final CompletableFuture<T> future){
+        DelayTimer.TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                long next = rateLimiter.tryAcquire(realm(), endpoint, started);
+                if(next > 0){
+                    acquire(method, uriPath, payload, valueType, rateLimiter, endpoint, breaker, started, next, future);
+                }else if(next < 0){
+                    if(breaker != null){
+                        breaker.release();
+                    }
+                    future.complete(rateLimiter.rejected(valueType));
+                }else{
+                    try{
+                        call(method, uriPath, payload, valueType, endpoint, breaker).whenComplete(new BiConsumer<T, Throwable>() {
+                            @Override
+                            public void accept(T response, Throwable throwable) {
+                                complete(future, response, throwable);
+                            }
+                        });
+                    }catch(RuntimeException e){
+                        future.completeExceptionally(e);
+                    }
+                }
+            }
+        }, wait, TimeUnit.NANOSECONDS);
+    }
+
+    //breaker is the circuit breaker that already allowed the call, null without CircuitBreakers
+    private <T> CompletableFuture<T> call(final String method, final String uriPath, Object payload, Class<T> valueType,
+                                          SAEndpoint endpoint, final CircuitBreaker breaker){
+        final MetricsListener listener = saAccess.metricsListener;
+        final CircuitBreakers breakers = saAccess.circuitBreakers;
+        final CircuitBreaker acquired = breaker;
+        final RequestEvent event = SAFlightRecorder.get().beginRequest();
+        final RetryPolicy retry = saAccess.retryPolicy;
+        //Requests outlive the calling thread, so metrics are only allocated while someone needs them
+        final RequestMetrics metrics = listener != null || event != null || breaker != null || retry != null ? new RequestMetrics() : null;
+        final long started = System.nanoTime();
+        if(metrics != null){
+            metrics.setEndpoint(endpoint != null ? endpoint : SAEndpoint.of(method, uriPath));
+            metrics.setMethod(method);
+            metrics.setRealm(realm());
+        }
+
+        //signed is what the signature covers, body what is sent
+        byte[] signed = null;
+        byte[] body = null;
+        if(payload == null){
+            if(!"GET".equals(method)){
+                body = SAAccess.EMPTY_BODY;
+            }
+        }else{
+            long serialized = System.nanoTime();
+            body = JSONUtil.convertObjectToJSONBytes(payload);
+            if(body == null){
+                if(breaker != null){
+                    breaker.release();
+                }
+                CompletableFuture<T> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalArgumentException(new StringBuilder()
+                        .append("Unable to serialize the request for ").append(uriPath).toString()));
+                return failed;
+            }
+            if(metrics != null){
+                metrics.setSerializeNanos(System.nanoTime() - serialized);
+            }
+            signed = body;
+        }
+
+        if(metrics == null){
+            return send(method, uriPath, signed, body, valueType, null);
+        }
+        metrics.setRequestBytes(body != null ? body.length : 0);
+        CompletableFuture<T> future;
+        if(retry != null){
+            retry.onRequest();
+            future = send(method, uriPath, signed, body, valueType, metrics, retry, 1, 0);
+        }else{
+            future = send(method, uriPath, signed, body, valueType, metrics);
+        }
+        return future.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T response, Throwable throwable) {
+                metrics.setTotalNanos(System.nanoTime() - started);
+                metrics.setResponseStatus(SAAccess.statusOf(response));
+                metrics.setError(throwable);
+                if(acquired != null){
+                    breakers.record(acquired, metrics);
+                }
+                if(event != null){
+                    SAAccess.commitRequest(event, metrics);
+                }
+                if(listener != null){
+                    SAAccess.notifyMetrics(listener, metrics);
+                }
+            }
+        });
+    }
+
+    //One attempt of a call, signed with the current time
+    private <T> CompletableFuture<T> send(String method, String uriPath, byte[] signed, byte[] body, Class<T> valueType, RequestMetrics metrics){
+        String ts = saAccess.getServerTime();
+        String header = saAccess.sign(method, uriPath, signed, ts, metrics);
+        HedgePolicy hedgePolicy = saAccess.hedgePolicy;
+        if(hedgePolicy != null){
+            SAEndpoint endpoint = metrics != null ? metrics.getEndpoint() : SAEndpoint.of(method, uriPath);
+            if(hedgePolicy.isHedged(endpoint)){
+                return saAsyncExecuter.executeHedgedAsync(method, header, uriPath, body, ts, valueType, metrics, hedgePolicy, endpoint);
+            }
+        }
+        return saAsyncExecuter.executeBalancedAsync(method, header, uriPath, body, ts, valueType, metrics);
+    }
+
+    //Sends the call, and again after a wait while the RetryPolicy allows it; no slot is held while waiting
+    private <T> CompletableFuture<T> send(final String method, final String uriPath, final byte[] signed, final byte[] body, final Class<T> valueType,
+                                          final RequestMetrics metrics, final RetryPolicy retry, final int attempt, final long delay){
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        send(method, uriPath, signed, body, valueType, metrics).whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T response, Throwable throwable) {
+                metrics.setError(throwable);
+                if(attempt >= retry.getMaxAttempts() || !retry.isRetryable(metrics.getEndpoint(), metrics) || !retry.tryRetry()){
+                    complete(result, response, throwable);
+                    return;
+                }
+                final long next = retry.nextDelayMillis(delay);
+                logger.warn(new StringBuilder().append("Retrying ").append(method).append(" ").append(uriPath).append(" in ")
+                        .append(next).append("ms after attempt ").append(attempt).append(" failed: ")
+                        .append(throwable != null ? throwable.getMessage() : "HTTP " + metrics.getHttpStatus()).toString());
+                DelayTimer.TIMER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        metrics.clearResponse();
+                        metrics.setRetries(attempt);
+                        send(method, uriPath, signed, body, valueType, metrics, retry, attempt + 1, next).whenComplete(new BiConsumer<T, Throwable>() {
+                            @Override
+                            public void accept(T response, Throwable throwable) {
+                                complete(result, response, throwable);
+                            }
+                        });
+                    }
+                }, next, TimeUnit.MILLISECONDS);
+            }
+        });
+        return result;
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, T response, Throwable throwable){
+        if(throwable != null){
+            future.completeExceptionally(throwable);
+        }else{
+            future.complete(response);
+        }
+    }
+
+    //Holds the timer of the retries and of the calls waiting for a rate limit token, only started once a call waits
+    private static final class DelayTimer {
+
+        static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sa-delay-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     *
+     * End Helper Methods
+     */
+}
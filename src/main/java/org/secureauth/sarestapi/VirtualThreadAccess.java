@@ -0,0 +1,139 @@
+package org.secureauth.sarestapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.secureauth.sarestapi.transport.VirtualThreadTransport;
+import org.secureauth.sarestapi.util.VirtualThreads;
+
+/**
+ * <p>
+ *     Runs blocking {@link SAAccess} calls on virtual threads, so thousands of calls can wait on the Appliance at
+ *     once on a few carrier threads while the code stays the plain synchronous API. Needs Java 21 or later; on older
+ *     runtimes calls run on platform threads, one per call in progress.
+ * </p>
+ * <pre>
+ *     VirtualThreadAccess access = VirtualThreadAccess.create(host, port, true, false, realm, applicationID, applicationKey);
+ *     CompletableFuture&lt;BaseResponse&gt; response = access.submit(sa -&gt; sa.validateUserPassword(userId, password));
+ * </pre>
+ * <p>
+ *     Code already running on virtual threads can call {@link #getSAAccess()} directly.
+ * </p>
+ */
+public class VirtualThreadAccess {
+
+    /**
+     * A call to make with the SAAccess
+     */
+    public interface Call<T> {
+        T call(SAAccess saAccess) throws Exception;
+    }
+
+    public static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 30000;
+
+    private final SAAccess saAccess;
+    private final ExecutorService executor;
+
+    /**
+     * @param saAccess the SAAccess to call, best built with a {@link VirtualThreadTransport}
+     */
+    public VirtualThreadAccess(SAAccess saAccess){
+        this.saAccess = saAccess;
+        this.executor = VirtualThreads.newExecutor("sa-call");
+    }
+
+    /**
+     * <p>
+     *     Builds the SAAccess with a {@link VirtualThreadTransport}.
+     * </p>
+     * @param host FQDN of the SecureAuth Appliance
+     * @param port The port used to access the web application on the Appliance.
+     * @param ssl Use SSL
+     * @param selfSigned support self signed certificates true or false
+     * @param realm the Configured Realm that enables the RESTApi
+     * @param applicationID The Application ID from the Configured Realm
+     * @param applicationKey The Application Key from the Configured Realm
+     */
+    public static VirtualThreadAccess create(String host, String port, boolean ssl, boolean selfSigned, String realm, String applicationID, String applicationKey){
+        return new VirtualThreadAccess(new SAAccess(host, port, ssl, selfSigned, realm, applicationID, applicationKey, new VirtualThreadTransport()));
+    }
+
+    /**
+     * <p>
+     *     Builds the SAAccess with a {@link VirtualThreadTransport}, spreading calls over the Appliances.
+     * </p>
+     * @param saBaseURL the Appliances
+     * @param realm the Configured Realm that enables the RESTApi
+     * @param applicationID The Application ID from the Configured Realm
+     * @param applicationKey The Application Key from the Configured Realm
+     */
+    public static VirtualThreadAccess create(SABaseURL saBaseURL, String realm, String applicationID, String applicationKey){
+        return new VirtualThreadAccess(new SAAccess(saBaseURL, realm, applicationID, applicationKey, new VirtualThreadTransport()));
+    }
+
+    /**
+     * @return a future completed with the call's result, or with the exception it threw
+     */
+    public <T> CompletableFuture<T> submit(final Call<T> call){
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try{
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try{
+                        future.complete(call.call(saAccess));
+                    }catch(Throwable e){
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        }catch(RejectedExecutionException e){
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public SAAccess getSAAccess() {
+        return saAccess;
+    }
+
+    /**
+     * @return true when calls run on virtual threads
+     */
+    public boolean isVirtual() {
+        return VirtualThreads.isAvailable();
+    }
+
+    /**
+     * <p>
+     *     Stops taking calls, waits up to {@link #DEFAULT_CLOSE_TIMEOUT_MILLIS} for the running ones to finish and
+     *     closes the SAAccess.
+     * </p>
+     */
+    public void close(){
+        close(DEFAULT_CLOSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * <p>
+     *     Stops taking calls, waits up to timeoutMillis for the running ones to finish and closes the SAAccess. Calls
+     *     still running after that fail against the closed SAAccess.
+     * </p>
+     * @return true when every call finished before the SAAccess was closed
+     */
+    public boolean close(long timeoutMillis){
+        executor.shutdown();
+        boolean finished = false;
+        try{
+            finished = executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }finally{
+            saAccess.close();
+        }
+        return finished;
+    }
+}
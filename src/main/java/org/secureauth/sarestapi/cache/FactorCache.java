@@ -0,0 +1,69 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+import org.secureauth.sarestapi.resources.s;
+
+/**
+ * <p>
+ *     Cache of {@link FactorsResponse} by Realm and user id, for the factorsByUser call made at the start of nearly
+ *     every MFA login. Only responses for users that were found are cached. SAAccess drops a user's entry when it
+ *     creates, updates or changes the groups of that user.
+ * </p>
+ * <p>
+ *     Enable it with {@code saAccess.setFactorCache(new FactorCache())}. A FactorCache may be shared by SAAccess
+ *     instances of different Realms.
+ * </p>
+ */
+public class FactorCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+    private final SACache<String, FactorsResponse> cache;
+
+    public FactorCache(){
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param maximumSize the number of users kept before the least recently used are evicted
+     * @param ttlMillis how long a factor list is used before it is read again
+     */
+    public FactorCache(int maximumSize, final long ttlMillis){
+        this.cache = new SACache<>(maximumSize, new SACache.Expiry<FactorsResponse>() {
+            @Override
+            public long expireAfter(FactorsResponse value) {
+                return s.STATUS_FOUND.equalsIgnoreCase(value.getStatus()) ? ttlMillis : 0;
+            }
+        }, 0, null);
+    }
+
+    public FactorsResponse get(String realm, String userId, SACache.Loader<String, FactorsResponse> loader){
+        return cache.get(key(realm, userId), loader);
+    }
+
+    public CompletableFuture<FactorsResponse> getAsync(String realm, String userId, SACache.AsyncLoader<String, FactorsResponse> loader){
+        return cache.getAsync(key(realm, userId), loader);
+    }
+
+    public void invalidate(String realm, String userId){
+        cache.invalidate(key(realm, userId));
+    }
+
+    public void invalidateAll(){
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the underlying cache, for its hit and miss counters
+     */
+    public SACache<String, FactorsResponse> getCache() {
+        return cache;
+    }
+
+    private static String key(String realm, String userId){
+        return new StringBuilder().append(realm).append(s.SLASH).append(userId).toString();
+    }
+}
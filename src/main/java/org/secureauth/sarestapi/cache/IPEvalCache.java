@@ -0,0 +1,144 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.resources.s;
+
+/**
+ * <p>
+ *     Cache of {@link IPEval} results by Realm and IP Address, and optionally by user id as well. Repeated
+ *     evaluations of the same egress addresses (NATs, proxies) are answered from memory.
+ * </p>
+ * <p>
+ *     How long a result is kept depends on its risk_factor band, see {@link #setRiskBandTtl(int, long)}. A
+ *     server_error response is kept for a short time so a struggling Appliance is not asked again for every login.
+ *     Once a result expires it is still served for the stale period while it is evaluated again in the background.
+ * </p>
+ * <p>
+ *     Enable it with {@code saAccess.setIPEvalCache(new IPEvalCache())}. When results are not keyed by user, a
+ *     cached result may carry the user_id of the login that first evaluated the address.
+ * </p>
+ */
+public class IPEvalCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+    public static final long DEFAULT_STALE_MILLIS = 60 * 1000;
+    public static final long DEFAULT_SERVER_ERROR_TTL_MILLIS = 5 * 1000;
+
+    private final boolean keyByUser;
+    private final SACache<String, IPEval> cache;
+
+    //risk_factor lower bound to ttl, replaced as a whole when a band changes
+    private volatile NavigableMap<Integer, Long> riskBandTtls;
+    private volatile long serverErrorTtlMillis = DEFAULT_SERVER_ERROR_TTL_MILLIS;
+
+    public IPEvalCache(){
+        this(DEFAULT_MAXIMUM_SIZE, false, DEFAULT_STALE_MILLIS);
+    }
+
+    /**
+     * @param maximumSize the number of results kept before the least recently used are evicted
+     * @param keyByUser true to evaluate each user and address pair separately, false to share results by address
+     * @param staleMillis how long an expired result is still served while it is evaluated again, 0 to wait for the
+     *                    new evaluation
+     */
+    public IPEvalCache(int maximumSize, boolean keyByUser, long staleMillis){
+        this.keyByUser = keyByUser;
+        TreeMap<Integer, Long> bands = new TreeMap<>();
+        bands.put(Integer.MIN_VALUE, DEFAULT_TTL_MILLIS);
+        this.riskBandTtls = bands;
+        this.cache = new SACache<>(maximumSize, new SACache.Expiry<IPEval>() {
+            @Override
+            public long expireAfter(IPEval value) {
+                return ttl(value);
+            }
+        }, staleMillis, null);
+    }
+
+    /**
+     * <p>
+     *     Sets how long results with a risk_factor of at least fromRiskFactor are kept, up to the next band. For
+     *     example {@code setRiskBandTtl(75, 0)} stops caching high risk addresses while lower ones keep the default.
+     * </p>
+     * @param fromRiskFactor the lowest risk_factor of the band
+     * @param ttlMillis how long results of the band are kept, 0 to not cache them
+     */
+    public synchronized void setRiskBandTtl(int fromRiskFactor, long ttlMillis){
+        TreeMap<Integer, Long> bands = new TreeMap<>(riskBandTtls);
+        bands.put(fromRiskFactor, ttlMillis);
+        riskBandTtls = bands;
+    }
+
+    /**
+     * @return the ttl of each band by its lowest risk_factor
+     */
+    public Map<Integer, Long> getRiskBandTtls(){
+        return Collections.unmodifiableMap(riskBandTtls);
+    }
+
+    public long getServerErrorTtlMillis() {
+        return serverErrorTtlMillis;
+    }
+
+    /**
+     * @param serverErrorTtlMillis how long a server_error response is returned without asking the Appliance again, 0
+     *                             to not cache them
+     */
+    public void setServerErrorTtlMillis(long serverErrorTtlMillis) {
+        this.serverErrorTtlMillis = serverErrorTtlMillis;
+    }
+
+    public boolean isKeyByUser() {
+        return keyByUser;
+    }
+
+    public IPEval get(String realm, String userId, String ipAddress, SACache.Loader<String, IPEval> loader){
+        return cache.get(key(realm, userId, ipAddress), loader);
+    }
+
+    public CompletableFuture<IPEval> getAsync(String realm, String userId, String ipAddress, SACache.AsyncLoader<String, IPEval> loader){
+        return cache.getAsync(key(realm, userId, ipAddress), loader);
+    }
+
+    public void invalidate(String realm, String userId, String ipAddress){
+        cache.invalidate(key(realm, userId, ipAddress));
+    }
+
+    public void invalidateAll(){
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the underlying cache, for its hit and miss counters
+     */
+    public SACache<String, IPEval> getCache() {
+        return cache;
+    }
+
+    private long ttl(IPEval ipEval){
+        if(s.STATUS_SERVER_ERROR.equalsIgnoreCase(ipEval.getStatus())){
+            return serverErrorTtlMillis;
+        }
+        if(ipEval.getIp_evaluation() == null || s.STATUS_CIRCUIT_OPEN.equalsIgnoreCase(ipEval.getStatus())
+                || s.STATUS_CONCURRENCY_LIMITED.equalsIgnoreCase(ipEval.getStatus())
+                || s.STATUS_RATE_LIMITED.equalsIgnoreCase(ipEval.getStatus())){
+            return 0;
+        }
+        Map.Entry<Integer, Long> band = riskBandTtls.floorEntry(ipEval.getIp_evaluation().getRisk_factor());
+        return band != null ? band.getValue() : 0;
+    }
+
+    private String key(String realm, String userId, String ipAddress){
+        StringBuilder key = new StringBuilder().append(realm).append(s.SLASH).append(ipAddress);
+        if(keyByUser){
+            key.append(s.SLASH).append(userId);
+        }
+        return key.toString();
+    }
+}
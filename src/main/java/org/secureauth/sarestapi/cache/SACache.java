@@ -0,0 +1,387 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Bounded in memory cache for Rest API responses. Entries are evicted least recently used first once the cache
+ *     is full, and expire after a time chosen per value by an {@link Expiry}, so a response type can be cached for
+ *     longer or shorter depending on its content. Null values are never cached.
+ * </p>
+ * <p>
+ *     Concurrent misses for the same key share a single load. An expired entry can be served for a further stale
+ *     period while it is reloaded in the background. Invalidating while a load is running discards that load's
+ *     result so a response read before a change is never stored after it.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class SACache<K, V> {
+
+    private static Logger logger=LoggerFactory.getLogger(SACache.class);
+
+    //Shared by every cache that is not given its own refresh executor, threads are only started on demand
+    private static final ExecutorService DEFAULT_REFRESH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "sa-cache-refresh-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    //Longest ttl or stale period, keeps System.nanoTime arithmetic from overflowing
+    private static final long MAX_NANOS = TimeUnit.DAYS.toNanos(365L * 50);
+
+    /**
+     * Loads the value of a key, returns null when there is no value to cache
+     */
+    public interface Loader<K, V> {
+        V load(K key);
+    }
+
+    /**
+     * Loads the value of a key without blocking, completes with null when there is no value to cache
+     */
+    public interface AsyncLoader<K, V> {
+        CompletableFuture<V> load(K key);
+    }
+
+    /**
+     * How long a loaded value stays fresh, in milliseconds. Zero or less does not cache the value
+     */
+    public interface Expiry<V> {
+        long expireAfter(V value);
+    }
+
+    private final int maximumSize;
+    private final Expiry<V> expiry;
+    private final long staleNanos;
+    private final Executor refreshExecutor;
+
+    private final LruMap<K, CachedValue<V>> entries;
+    //Loads running per key; invalidating removes the key's load so it does not store its result
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maximumSize the number of entries kept before the least recently used are evicted
+     * @param ttlMillis how long every value stays fresh
+     */
+    public SACache(int maximumSize, final long ttlMillis){
+        this(maximumSize, new Expiry<V>() {
+            @Override
+            public long expireAfter(V value) {
+                return ttlMillis;
+            }
+        }, 0, null);
+    }
+
+    /**
+     * @param maximumSize the number of entries kept before the least recently used are evicted
+     * @param expiry how long each value stays fresh
+     * @param staleMillis how long an expired value is still served while it is reloaded in the background, 0 to
+     *                    reload expired values in the caller
+     * @param refreshExecutor runs background reloads, null for a shared pool of daemon threads
+     */
+    public SACache(final int maximumSize, Expiry<V> expiry, long staleMillis, Executor refreshExecutor){
+        if(maximumSize < 1) throw new IllegalArgumentException("maximumSize must be at least 1");
+        this.maximumSize = maximumSize;
+        this.expiry = expiry;
+        this.staleNanos = Math.min(MAX_NANOS, TimeUnit.MILLISECONDS.toNanos(Math.max(0, staleMillis)));
+        this.refreshExecutor = refreshExecutor != null ? refreshExecutor : DEFAULT_REFRESH_EXECUTOR;
+        this.entries = new LruMap<>(maximumSize, evictions);
+    }
+
+    /**
+     * <p>
+     *     Returns the cached value, loading it in the calling thread on a miss. A stale value is returned as is and
+     *     reloaded on the refresh executor.
+     * </p>
+     * @param key the key
+     * @param loader loads the value on a miss
+     * @return the value, or null when the loader returned null
+     */
+    public V get(K key, final Loader<K, V> loader){
+        CachedValue<V> entry = lookup(key);
+        long now = System.nanoTime();
+        if(entry != null && now - entry.expiresAt < 0){
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        if(entry != null && now - entry.staleUntil < 0){
+            staleHits.incrementAndGet();
+            load(key, inBackground(loader));
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<V> future = load(key, new AsyncLoader<K, V>() {
+            @Override
+            public CompletableFuture<V> load(K key) {
+                return CompletableFuture.completedFuture(loader.load(key));
+            }
+        });
+        try{
+            return future.get();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }catch(ExecutionException e){
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * <p>
+     *     Returns the cached value without blocking. A stale value is returned as is and reloaded in the background.
+     * </p>
+     * @param key the key
+     * @param loader loads the value on a miss
+     * @return a future completed with the value, or with null when the loader completed with null
+     */
+    public CompletableFuture<V> getAsync(K key, AsyncLoader<K, V> loader){
+        CachedValue<V> entry = lookup(key);
+        long now = System.nanoTime();
+        if(entry != null && now - entry.expiresAt < 0){
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(entry.value);
+        }
+        if(entry != null && now - entry.staleUntil < 0){
+            staleHits.incrementAndGet();
+            load(key, loader);
+            return CompletableFuture.completedFuture(entry.value);
+        }
+
+        misses.incrementAndGet();
+        return load(key, loader);
+    }
+
+    /**
+     * @param key the key
+     * @return the fresh value of the key, or null when it is missing or expired
+     */
+    public V getIfPresent(K key){
+        CachedValue<V> entry = lookup(key);
+        if(entry != null && System.nanoTime() - entry.expiresAt < 0){
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     *     Stores a value loaded outside of the cache, following the {@link Expiry}.
+     * </p>
+     */
+    public void put(K key, V value){
+        if(value != null){
+            store(key, value);
+        }
+    }
+
+    /**
+     * <p>
+     *     Starts a background load of the key, unless one is already running.
+     * </p>
+     */
+    public void refresh(K key, Loader<K, V> loader){
+        load(key, inBackground(loader));
+    }
+
+    public void invalidate(K key){
+        synchronized (entries){
+            loading.remove(key);
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll(){
+        synchronized (entries){
+            loading.clear();
+            entries.clear();
+        }
+    }
+
+    public int size(){
+        synchronized (entries){
+            return entries.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return lookups answered with a fresh value
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return lookups answered with an expired value while it was reloaded
+     */
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    /**
+     * @return lookups that had to wait for a load
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return loads started, concurrent misses sharing a load count once
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private CachedValue<V> lookup(K key){
+        synchronized (entries){
+            return entries.get(key);
+        }
+    }
+
+    private void store(K key, V value){
+        long ttl = expiry.expireAfter(value);
+        synchronized (entries){
+            if(ttl <= 0){
+                entries.remove(key);
+                return;
+            }
+            long now = System.nanoTime();
+            long expiresAt = now + Math.min(MAX_NANOS, TimeUnit.MILLISECONDS.toNanos(ttl));
+            entries.put(key, new CachedValue<>(value, expiresAt, expiresAt + staleNanos));
+        }
+    }
+
+    //Single flight: the first caller runs the loader, everyone else gets the same future
+    private CompletableFuture<V> load(final K key, AsyncLoader<K, V> loader){
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, result);
+        if(existing != null){
+            return existing;
+        }
+
+        loads.incrementAndGet();
+        CompletableFuture<V> pending;
+        try{
+            pending = loader.load(key);
+        }catch(RuntimeException e){
+            pending = new CompletableFuture<>();
+            pending.completeExceptionally(e);
+        }
+
+        pending.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override
+            public void accept(V value, Throwable throwable) {
+                //Under the entries lock so an invalidation can not come between the check and the store
+                synchronized (entries){
+                    if(loading.remove(key, result) && throwable == null && value != null){
+                        store(key, value);
+                    }
+                }
+                if(throwable != null){
+                    loadFailures.incrementAndGet();
+                    logger.warn(new StringBuilder().append("Exception loading cache entry ").append(key).append(": ")
+                            .append(throwable.getMessage()).toString(), throwable);
+                    result.completeExceptionally(throwable);
+                }else{
+                    result.complete(value);
+                }
+            }
+        });
+        return result;
+    }
+
+    private AsyncLoader<K, V> inBackground(final Loader<K, V> loader){
+        return new AsyncLoader<K, V>() {
+            @Override
+            public CompletableFuture<V> load(final K key) {
+                return CompletableFuture.supplyAsync(new Supplier<V>() {
+                    @Override
+                    public V get() {
+                        return loader.load(key);
+                    }
+                }, refreshExecutor);
+            }
+        };
+    }
+
+    //Access ordered, drops the least recently used entry once over maximumSize
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumSize;
+        private final AtomicLong evictions;
+
+        private LruMap(int maximumSize, AtomicLong evictions){
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if(size() > maximumSize){
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class CachedValue<V> {
+        private final V value;
+        private final long expiresAt;
+        private final long staleUntil;
+
+        private CachedValue(V value, long expiresAt, long staleUntil){
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.staleUntil = staleUntil;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.secureauth.sarestapi.cache;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.secureauth.sarestapi.data.Response.JSObjectResponse;
+import org.secureauth.sarestapi.resources.s;
+
+/**
+ * <p>
+ *     Cache of the DFP and BehaveBio JavaScript source responses, which only change when the Realm is reconfigured.
+ *     After the refresh interval the cached response is still returned while it is fetched again in the background,
+ *     so only the very first request of a Realm waits for the Appliance.
+ * </p>
+ * <p>
+ *     Enable it with {@code saAccess.setScriptSrcCache(new ScriptSrcCache())}. With preload set, both responses are
+ *     fetched in the background as soon as the cache is set, before the first login page is rendered.
+ * </p>
+ */
+public class ScriptSrcCache {
+
+    public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 60 * 60 * 1000;
+    public static final String DFP_JS = "dfp";
+    public static final String BEHAVEBIO_JS = "behavebio";
+
+    //Responses are served for as long as the refresh keeps failing
+    private static final long STALE_MILLIS = Long.MAX_VALUE;
+
+    private final long refreshIntervalMillis;
+    private final boolean preload;
+    private final SACache<String, JSObjectResponse> cache;
+
+    public ScriptSrcCache(){
+        this(DEFAULT_REFRESH_INTERVAL_MILLIS, true);
+    }
+
+    /**
+     * @param refreshIntervalMillis how long a response is used before it is fetched again in the background
+     * @param preload true to fetch both responses as soon as the cache is set on a SAAccess
+     */
+    public ScriptSrcCache(final long refreshIntervalMillis, boolean preload){
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.preload = preload;
+        this.cache = new SACache<>(16, new SACache.Expiry<JSObjectResponse>() {
+            @Override
+            public long expireAfter(JSObjectResponse value) {
+                return value.getSrc() != null ? refreshIntervalMillis : 0;
+            }
+        }, STALE_MILLIS, null);
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public boolean isPreload() {
+        return preload;
+    }
+
+    /**
+     * @param realm the Realm of the script
+     * @param script {@link #DFP_JS} or {@link #BEHAVEBIO_JS}
+     * @param loader fetches the response from the Appliance
+     * @return the cached response, fetched in the calling thread when there is none yet
+     */
+    public JSObjectResponse get(String realm, String script, SACache.Loader<String, JSObjectResponse> loader){
+        return cache.get(key(realm, script), loader);
+    }
+
+    public CompletableFuture<JSObjectResponse> getAsync(String realm, String script, SACache.AsyncLoader<String, JSObjectResponse> loader){
+        return cache.getAsync(key(realm, script), loader);
+    }
+
+    /**
+     * <p>
+     *     Fetches the response again in the background, unless a fetch is already running.
+     * </p>
+     */
+    public void refresh(String realm, String script, SACache.Loader<String, JSObjectResponse> loader){
+        cache.refresh(key(realm, script), loader);
+    }
+
+    public void invalidateAll(){
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the underlying cache, for its hit and miss counters
+     */
+    public SACache<String, JSObjectResponse> getCache() {
+        return cache;
+    }
+
+    private static String key(String realm, String script){
+        return new StringBuilder().append(realm).append(s.SLASH).append(script).toString();
+    }
+}
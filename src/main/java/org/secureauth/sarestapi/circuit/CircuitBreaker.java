@@ -0,0 +1,240 @@
+package org.secureauth.sarestapi.circuit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     The circuit breaker of one {@link EndpointFamily}. While CLOSED every call goes through and its outcome is
+ *     counted over a sliding time window. When enough calls failed or were slow the circuit OPENs and calls are
+ *     rejected without touching the network. After the open period a few probe calls are let through (HALF_OPEN):
+ *     if they do well the circuit closes, otherwise it opens again.
+ * </p>
+ * <p>
+ *     The settings are read from the owning {@link CircuitBreakers}.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    private static Logger logger=LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final EndpointFamily family;
+    private final CircuitBreakers settings;
+
+    //Sliding window of calls, failures and slow calls, one bucket per window / BUCKETS
+    private final long[] bucketStart;
+    private final int[] calls;
+    private final int[] failures;
+    private final int[] slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesFinished;
+    private int probeFailures;
+    private int probeSlowCalls;
+    private long rejected;
+    private long opened;
+
+    CircuitBreaker(EndpointFamily family, CircuitBreakers settings){
+        this.family = family;
+        this.settings = settings;
+        this.bucketStart = new long[CircuitBreakers.BUCKETS];
+        this.calls = new int[CircuitBreakers.BUCKETS];
+        this.failures = new int[CircuitBreakers.BUCKETS];
+        this.slowCalls = new int[CircuitBreakers.BUCKETS];
+    }
+
+    public EndpointFamily getFamily() {
+        return family;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the calls rejected since this breaker was created
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the number of times the circuit opened
+     */
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    /**
+     * @return the share of failed calls in the window, between 0 and 1
+     */
+    public synchronized double getFailureRate() {
+        int total = sum(calls, System.nanoTime());
+        return total == 0 ? 0 : (double) sum(failures, System.nanoTime()) / total;
+    }
+
+    /**
+     * @return the share of slow calls in the window, between 0 and 1
+     */
+    public synchronized double getSlowCallRate() {
+        int total = sum(calls, System.nanoTime());
+        return total == 0 ? 0 : (double) sum(slowCalls, System.nanoTime()) / total;
+    }
+
+    /**
+     * <p>
+     *     Asks to make a call. Every call allowed must be followed by {@link #onResult(long, boolean)} or
+     *     {@link #release()}.
+     * </p>
+     * @return false when the call must be rejected
+     */
+    public synchronized boolean tryAcquire(){
+        long now = System.nanoTime();
+        if(state == State.OPEN && now - openedAt >= TimeUnit.MILLISECONDS.toNanos(settings.getOpenMillis())){
+            transition(State.HALF_OPEN, now);
+        }
+        if(state == State.CLOSED){
+            return true;
+        }
+        if(state == State.HALF_OPEN && probesStarted < settings.getHalfOpenCalls()){
+            probesStarted++;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * @param durationNanos how long the call took
+     * @param failed true when the Appliance failed the call
+     */
+    public synchronized void onResult(long durationNanos, boolean failed){
+        long now = System.nanoTime();
+        boolean slow = durationNanos >= TimeUnit.MILLISECONDS.toNanos(settings.getSlowCallMillis());
+        if(state == State.HALF_OPEN){
+            if(probesFinished >= probesStarted){
+                //Started before the circuit opened
+                return;
+            }
+            probesFinished++;
+            if(failed) probeFailures++;
+            if(slow) probeSlowCalls++;
+            if(probesFinished >= settings.getHalfOpenCalls()){
+                transition(exceeds(probesFinished, probeFailures, probeSlowCalls) ? State.OPEN : State.CLOSED, now);
+            }
+            return;
+        }
+        if(state == State.OPEN){
+            //Started before the circuit opened
+            return;
+        }
+
+        int bucket = bucket(now);
+        calls[bucket]++;
+        if(failed) failures[bucket]++;
+        if(slow) slowCalls[bucket]++;
+        int total = sum(calls, now);
+        if(total >= settings.getMinimumCalls() && exceeds(total, sum(failures, now), sum(slowCalls, now))){
+            transition(State.OPEN, now);
+        }
+    }
+
+    /**
+     * <p>
+     *     Gives back a call that was allowed but never reached the Appliance, e.g. because its payload could not be
+     *     serialized. It is not counted.
+     * </p>
+     */
+    public synchronized void release(){
+        if(state == State.HALF_OPEN && probesStarted > probesFinished){
+            probesStarted--;
+        }
+    }
+
+    /**
+     * <p>
+     *     Closes the circuit and forgets the calls counted so far.
+     * </p>
+     */
+    public synchronized void reset(){
+        transition(State.CLOSED, System.nanoTime());
+    }
+
+    private boolean exceeds(int total, int failed, int slow){
+        return (double) failed / total >= settings.getFailureRateThreshold()
+                || (double) slow / total >= settings.getSlowCallRateThreshold();
+    }
+
+    private void transition(State next, long now){
+        if(next != state){
+            if(next == State.OPEN){
+                opened++;
+                logger.warn(new StringBuilder().append("Circuit open for ").append(family)
+                        .append(" calls, rejecting them for ").append(settings.getOpenMillis()).append("ms").toString());
+            }else if(next == State.CLOSED){
+                logger.info(new StringBuilder().append("Circuit closed for ").append(family).append(" calls").toString());
+            }
+        }
+        state = next;
+        openedAt = now;
+        probesStarted = 0;
+        probesFinished = 0;
+        probeFailures = 0;
+        probeSlowCalls = 0;
+        if(next == State.CLOSED){
+            for(int i = 0; i < calls.length; i++){
+                calls[i] = 0;
+                failures[i] = 0;
+                slowCalls[i] = 0;
+            }
+        }
+    }
+
+    //The bucket for now, cleared when it last held an older slice of time
+    private int bucket(long now){
+        long width = bucketNanos();
+        long start = now - Math.floorMod(now, width);
+        int bucket = (int) Math.floorMod(Math.floorDiv(now, width), (long) calls.length);
+        if(bucketStart[bucket] != start){
+            bucketStart[bucket] = start;
+            calls[bucket] = 0;
+            failures[bucket] = 0;
+            slowCalls[bucket] = 0;
+        }
+        return bucket;
+    }
+
+    private int sum(int[] counts, long now){
+        long window = bucketNanos() * counts.length;
+        int total = 0;
+        for(int i = 0; i < counts.length; i++){
+            if(now - bucketStart[i] < window){
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+
+    private long bucketNanos(){
+        return Math.max(1, TimeUnit.MILLISECONDS.toNanos(settings.getWindowMillis()) / calls.length);
+    }
+
+    @Override
+    public synchronized String toString(){
+        long now = System.nanoTime();
+        return new StringBuilder().append(family).append(": ").append(state)
+                .append("; calls: ").append(sum(calls, now)).append("; failures: ").append(sum(failures, now))
+                .append("; slowCalls: ").append(sum(slowCalls, now)).append("; rejected: ").append(rejected)
+                .append("; opened: ").append(opened).toString();
+    }
+}
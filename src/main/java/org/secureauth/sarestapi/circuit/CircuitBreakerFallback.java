@@ -0,0 +1,19 @@
+package org.secureauth.sarestapi.circuit;
+
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+
+/**
+ * <p>
+ *     Supplies the response of a call rejected by an open circuit breaker, registered per family with
+ *     {@link CircuitBreakers#setFallback(EndpointFamily, CircuitBreakerFallback)}.
+ * </p>
+ */
+public interface CircuitBreakerFallback {
+
+    /**
+     * @param endpoint the endpoint of the rejected call
+     * @param valueType the response type of the call
+     * @return the response to return instead, null or an object of another type to return the circuit_open response
+     */
+    Object fallback(SAEndpoint endpoint, Class<?> valueType);
+}
@@ -0,0 +1,238 @@
+package org.secureauth.sarestapi.circuit;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.IPEvaluation;
+import org.secureauth.sarestapi.metrics.RequestMetrics;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.resources.s;
+import org.secureauth.sarestapi.util.StatusResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     One {@link CircuitBreaker} per {@link EndpointFamily}, with the settings they share. Set on an SAAccess with
+ *     {@code saAccess.setCircuitBreakers(new CircuitBreakers())}; its SAAsyncAccess uses the same breakers.
+ * </p>
+ * <p>
+ *     A call fails when it got no response (connect or read timeout, refused connection), an HTTP status of 500 or
+ *     more, or a server_error status. A call is slow when it took longer than {@link #getSlowCallMillis()}. While a
+ *     circuit is open its calls return the family's fallback, or a response of the requested type with status
+ *     {@code circuit_open} ({@link s#STATUS_CIRCUIT_OPEN}); types without a status field get null, as for any other
+ *     failed call.
+ * </p>
+ */
+public class CircuitBreakers {
+
+    private static Logger logger=LoggerFactory.getLogger(CircuitBreakers.class);
+
+    static final int BUCKETS = 10;
+
+    public static final long DEFAULT_WINDOW_MILLIS = 30000;
+    public static final int DEFAULT_MINIMUM_CALLS = 20;
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8;
+    public static final long DEFAULT_SLOW_CALL_MILLIS = 5000;
+    public static final long DEFAULT_OPEN_MILLIS = 30000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 5;
+
+    private final Map<EndpointFamily, CircuitBreaker> breakers = new EnumMap<>(EndpointFamily.class);
+    private final Map<EndpointFamily, CircuitBreakerFallback> fallbacks = new EnumMap<>(EndpointFamily.class);
+
+    private volatile long windowMillis = DEFAULT_WINDOW_MILLIS;
+    private volatile int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private volatile double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+    private volatile long slowCallMillis = DEFAULT_SLOW_CALL_MILLIS;
+    private volatile long openMillis = DEFAULT_OPEN_MILLIS;
+    private volatile int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+    public CircuitBreakers(){
+        for(EndpointFamily family : EndpointFamily.values()){
+            breakers.put(family, new CircuitBreaker(family, this));
+        }
+    }
+
+    public CircuitBreaker get(EndpointFamily family){
+        return breakers.get(family);
+    }
+
+    public CircuitBreaker get(SAEndpoint endpoint){
+        return breakers.get(EndpointFamily.of(endpoint));
+    }
+
+    /**
+     * @param family the endpoints the fallback answers for
+     * @param fallback the fallback, null to return the circuit_open response
+     */
+    public synchronized void setFallback(EndpointFamily family, CircuitBreakerFallback fallback){
+        if(fallback == null){
+            fallbacks.remove(family);
+        }else{
+            fallbacks.put(family, fallback);
+        }
+    }
+
+    public synchronized CircuitBreakerFallback getFallback(EndpointFamily family){
+        return fallbacks.get(family);
+    }
+
+    /**
+     * <p>
+     *     Counts the outcome of a call allowed by the breaker.
+     * </p>
+     */
+    public void record(CircuitBreaker breaker, RequestMetrics metrics){
+        if(metrics.getHttpStatus() == 0 && metrics.getError() == null){
+            //Never reached the Appliance
+            breaker.release();
+            return;
+        }
+        breaker.onResult(metrics.getTotalNanos(), isFailure(metrics));
+    }
+
+    public static boolean isFailure(RequestMetrics metrics){
+        return metrics.getError() != null || metrics.getHttpStatus() == 0 || metrics.getHttpStatus() >= 500
+                || s.STATUS_SERVER_ERROR.equalsIgnoreCase(metrics.getResponseStatus());
+    }
+
+    /**
+     * @return the response of a call rejected by an open circuit
+     */
+    public <T> T rejected(SAEndpoint endpoint, Class<T> valueType){
+        CircuitBreakerFallback fallback = getFallback(EndpointFamily.of(endpoint));
+        if(fallback != null){
+            try{
+                Object response = fallback.fallback(endpoint, valueType);
+                if(valueType.isInstance(response)){
+                    return valueType.cast(response);
+                }
+            }catch(RuntimeException e){
+                logger.error(new StringBuilder().append("Exception occurred in CircuitBreakerFallback for ").append(endpoint).toString(), e);
+            }
+        }
+        return circuitOpen(endpoint, valueType);
+    }
+
+    //A response of the requested type with the circuit_open status, null when the type has no status
+    static <T> T circuitOpen(SAEndpoint endpoint, Class<T> valueType){
+        return StatusResponse.create(valueType, s.STATUS_CIRCUIT_OPEN, new StringBuilder().append("Circuit open for ")
+                .append(EndpointFamily.of(endpoint)).append(" calls, request not sent").toString());
+    }
+
+    /**
+     * <p>
+     *     A fallback for {@link EndpointFamily#IPEVAL} that lets logins proceed while the Appliance can not evaluate
+     *     IP risk: the IPEval has status circuit_open, and an ip_evaluation with the given risk factor and risk
+     *     description "unknown". It is never cached by an IPEvalCache.
+     * </p>
+     * @param riskFactor the risk factor to report, e.g. 0 to treat the IP as safe
+     */
+    public static CircuitBreakerFallback unknownIPRisk(final int riskFactor){
+        return new CircuitBreakerFallback() {
+            @Override
+            public Object fallback(SAEndpoint endpoint, Class<?> valueType) {
+                IPEvaluation ipEvaluation = new IPEvaluation();
+                ipEvaluation.setRisk_factor(riskFactor);
+                ipEvaluation.setRisk_desc("unknown");
+                IPEval ipEval = new IPEval();
+                ipEval.setStatus(s.STATUS_CIRCUIT_OPEN);
+                ipEval.setMessage("IP risk unknown, circuit open");
+                ipEval.setIp_evaluation(ipEvaluation);
+                return ipEval;
+            }
+        };
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * @param windowMillis how far back failures and slow calls are counted
+     */
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * @param minimumCalls the calls needed in the window before the rates can open the circuit
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * @param failureRateThreshold the share of failed calls, between 0 and 1, that opens the circuit
+     */
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    /**
+     * @param slowCallRateThreshold the share of slow calls, between 0 and 1, that opens the circuit
+     */
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public long getSlowCallMillis() {
+        return slowCallMillis;
+    }
+
+    /**
+     * @param slowCallMillis calls taking at least this long are slow
+     */
+    public void setSlowCallMillis(long slowCallMillis) {
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * @param openMillis how long an open circuit rejects calls before probing
+     */
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    /**
+     * @param halfOpenCalls the probe calls let through when the open period ends
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * @return one line per family
+     */
+    @Override
+    public String toString(){
+        StringBuilder stringBuilder = new StringBuilder();
+        for(CircuitBreaker breaker : breakers.values()){
+            stringBuilder.append(breaker).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+}
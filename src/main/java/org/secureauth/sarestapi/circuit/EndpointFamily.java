@@ -0,0 +1,47 @@
+package org.secureauth.sarestapi.circuit;
+
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+
+/**
+ * <p>
+ *     Groups of Appliance endpoints that share a circuit breaker. Endpoints of a family are served by the same
+ *     Appliance component, so they tend to degrade together.
+ * </p>
+ */
+public enum EndpointFamily {
+
+    //Authentication, push to accept, adaptive auth, access history and factors
+    AUTH,
+    IPEVAL,
+    DFP,
+    BEHAVEBIO,
+    //Users and groups
+    IDM;
+
+    public static EndpointFamily of(SAEndpoint endpoint){
+        switch (endpoint){
+            case IPEVAL:
+                return IPEVAL;
+            case DFP_JS:
+            case DFP_VALIDATE:
+            case DFP_CONFIRM:
+                return DFP;
+            case BEHAVEBIO_JS:
+            case BEHAVEBIO_SUBMIT:
+            case BEHAVEBIO_RESET:
+                return BEHAVEBIO;
+            case CREATE_USER:
+            case GET_USER:
+            case UPDATE_USER:
+            case RESET_PASSWORD:
+            case CHANGE_PASSWORD:
+            case USER_TO_GROUP:
+            case USER_TO_GROUPS:
+            case GROUP_TO_USERS:
+            case GROUP_TO_USER:
+                return IDM;
+            default:
+                return AUTH;
+        }
+    }
+}
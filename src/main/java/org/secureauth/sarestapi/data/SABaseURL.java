@@ -1,5 +1,9 @@
 package org.secureauth.sarestapi.data;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.secureauth.sarestapi.resources.s;
 /**
  * @author rrowcliffe@secureauth.com
@@ -24,16 +28,24 @@ public class SABaseURL {
     private String port = "443";
     private boolean useSSL = true;
     private boolean selfSigned = false;
+    private List<SABaseURL> appliances = null;
+    //Built on first use and again after a setter changes it; threads racing to build it build the same string
+    private String applianceURL = null;
 
 
     public String getApplianceURL(){
-        StringBuilder stringBuilder = new StringBuilder();
-        if(useSSL){stringBuilder.append(s.HTTPS);}
-        else{ stringBuilder.append(s.HTTP);}
-
-        stringBuilder.append(appliance).append(s.COLON).append(port).append(s.SLASH);
-
-        return stringBuilder.toString();
+        String result = applianceURL;
+        if(result == null){
+            StringBuilder stringBuilder = new StringBuilder();
+            if(useSSL){stringBuilder.append(s.HTTPS);}
+            else{ stringBuilder.append(s.HTTP);}
+
+            stringBuilder.append(appliance).append(s.COLON).append(port).append(s.SLASH);
+
+            result = stringBuilder.toString();
+            applianceURL = result;
+        }
+        return result;
     }
 
     public SABaseURL(String appliance, String port){
@@ -54,6 +66,46 @@ public class SABaseURL {
         this.selfSigned=selfSigned;
     }
 
+    /**
+     * <p>
+     *     Several Appliances serving the same Realms. Requests are spread over them and fail over between them, see
+     *     {@link org.secureauth.sarestapi.resources.ApplianceBalancer}.
+     * </p>
+     * @param appliances FQDN of each Appliance, optionally followed by :port
+     * @param port the port of the Appliances given without one
+     * @param useSSL Use SSL
+     * @param selfSigned Support for SelfSigned Certificates
+     */
+    public SABaseURL(List<String> appliances, String port, boolean useSSL, boolean selfSigned){
+        if(appliances == null || appliances.isEmpty()) throw new IllegalArgumentException("At least one appliance is required");
+        List<SABaseURL> list = new ArrayList<>();
+        for(String appliance : appliances){
+            String host = appliance.trim();
+            String hostPort = port;
+            int colon = host.lastIndexOf(s.COLON);
+            //Bracketed IPv6 addresses hold colons of their own
+            if(colon > 0 && colon > host.lastIndexOf(']')){
+                hostPort = host.substring(colon + 1);
+                host = host.substring(0, colon);
+            }
+            list.add(new SABaseURL(host, hostPort, useSSL, selfSigned));
+        }
+        this.appliances = Collections.unmodifiableList(list);
+        this.appliance = list.get(0).getAppliance();
+        this.port = list.get(0).getPort();
+        this.useSSL = useSSL;
+        this.selfSigned = selfSigned;
+    }
+
+    /**
+     * @return one SABaseURL per Appliance, this one alone when a single Appliance was given
+     */
+    public List<SABaseURL> getAppliances() {
+        if(appliances == null){
+            return Collections.singletonList(this);
+        }
+        return appliances;
+    }
 
     public String getAppliance() {
         return appliance;
@@ -61,6 +113,7 @@ public class SABaseURL {
 
     public void setAppliance(String appliance) {
         this.appliance = appliance;
+        this.applianceURL = null;
     }
 
     public String getPort() {
@@ -69,6 +122,7 @@ public class SABaseURL {
 
     public void setPort(String port) {
         this.port = port;
+        this.applianceURL = null;
     }
 
     public boolean isUseSSL() {
@@ -77,6 +131,7 @@ public class SABaseURL {
 
     public void setUseSSL(boolean useSSL) {
         this.useSSL = useSSL;
+        this.applianceURL = null;
     }
 
     public boolean isSelfSigned() {
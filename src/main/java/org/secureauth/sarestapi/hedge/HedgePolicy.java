@@ -0,0 +1,252 @@
+package org.secureauth.sarestapi.hedge;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.secureauth.sarestapi.metrics.LatencyHistogram;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+
+/**
+ * <p>
+ *     Hedges read only calls: when a call has not been answered after the {@link #getPercentile()} latency of its
+ *     endpoint, the same request is sent again, to another Appliance when there is one. The first response is
+ *     returned and the other one is dropped unread. Set on an SAAccess with
+ *     {@code saAccess.setHedgePolicy(new HedgePolicy())}; its SAAsyncAccess uses the same policy.
+ * </p>
+ * <p>
+ *     Only the endpoints in {@link #READ_ONLY} can be hedged, they are all hedged by default. Until an endpoint has
+ *     {@link #getMinimumSamples()} responses its hedges wait {@link #getInitialDelayMillis()}. The budget keeps the
+ *     hedges under {@link #getBudgetPercent()} of the calls, with a burst of at most {@link #MAX_BURST} hedges.
+ * </p>
+ */
+public class HedgePolicy {
+
+    //The endpoints that don't change anything on the Appliance, so sending them twice is safe
+    public static final Set<SAEndpoint> READ_ONLY = Collections.unmodifiableSet(EnumSet.of(SAEndpoint.FACTORS,
+            SAEndpoint.GET_USER, SAEndpoint.IPEVAL, SAEndpoint.DFP_JS, SAEndpoint.BEHAVEBIO_JS));
+
+    public static final double DEFAULT_PERCENTILE = 95;
+    public static final long DEFAULT_MINIMUM_DELAY_MILLIS = 10;
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 200;
+    public static final int DEFAULT_MINIMUM_SAMPLES = 50;
+    public static final double DEFAULT_BUDGET_PERCENT = 10;
+    public static final int MAX_BURST = 10;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    //Delays are worked out again every RECOMPUTE_EVERY responses
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final Map<SAEndpoint, LatencyHistogram> latencies = new EnumMap<>(SAEndpoint.class);
+    private final Map<SAEndpoint, AtomicLong> delays = new EnumMap<>(SAEndpoint.class);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    private volatile Set<SAEndpoint> endpoints = READ_ONLY;
+    private volatile double percentile = DEFAULT_PERCENTILE;
+    private volatile long minimumDelayMillis = DEFAULT_MINIMUM_DELAY_MILLIS;
+    private volatile long initialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+    private volatile int minimumSamples = DEFAULT_MINIMUM_SAMPLES;
+    private volatile double budgetPercent = DEFAULT_BUDGET_PERCENT;
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private double budget = MAX_BURST;
+
+    public HedgePolicy(){
+        //Filled once, the maps are only read afterwards
+        for(SAEndpoint endpoint : READ_ONLY){
+            latencies.put(endpoint, new LatencyHistogram());
+            delays.put(endpoint, new AtomicLong());
+        }
+    }
+
+    /**
+     * @return true when calls to the endpoint are hedged
+     */
+    public boolean isHedged(SAEndpoint endpoint){
+        return endpoint != null && endpoints.contains(endpoint);
+    }
+
+    /**
+     * @return the time to wait for a response before sending the hedge
+     */
+    public long getDelayNanos(SAEndpoint endpoint){
+        AtomicLong delay = delays.get(endpoint);
+        long nanos = delay != null ? delay.get() : 0;
+        return nanos > 0 ? nanos : TimeUnit.MILLISECONDS.toNanos(initialDelayMillis);
+    }
+
+    /**
+     * <p>
+     *     Counts the time a hedged call took to get its first response.
+     * </p>
+     */
+    public void record(SAEndpoint endpoint, long nanos){
+        LatencyHistogram histogram = latencies.get(endpoint);
+        if(histogram == null){
+            return;
+        }
+        histogram.record(nanos);
+        long count = histogram.getCount();
+        if(count >= minimumSamples && count % RECOMPUTE_EVERY == 0){
+            delays.get(endpoint).set(Math.max(histogram.getValueAtPercentile(percentile),
+                    TimeUnit.MILLISECONDS.toNanos(minimumDelayMillis)));
+        }
+    }
+
+    /**
+     * <p>
+     *     Counts a hedged call, adding its share to the budget.
+     * </p>
+     */
+    public synchronized void onRequest(){
+        requests.incrementAndGet();
+        budget = Math.min(MAX_BURST, budget + budgetPercent / 100);
+    }
+
+    /**
+     * @return true when the budget allows one more hedge, which is then counted
+     */
+    public synchronized boolean tryHedge(){
+        if(budget < 1){
+            return false;
+        }
+        budget--;
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * <p>
+     *     Counts a call answered by its hedge rather than by the first request.
+     * </p>
+     */
+    public void onHedgeWin(){
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * <p>
+     *     Forgets the latencies measured so far, the delays start again from {@link #getInitialDelayMillis()}.
+     * </p>
+     */
+    public void reset(){
+        for(SAEndpoint endpoint : READ_ONLY){
+            latencies.get(endpoint).reset();
+            delays.get(endpoint).set(0);
+        }
+    }
+
+    public Set<SAEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @param endpoints the endpoints to hedge, all of them in {@link #READ_ONLY}
+     */
+    public void setEndpoints(Set<SAEndpoint> endpoints) {
+        if(!READ_ONLY.containsAll(endpoints)){
+            throw new IllegalArgumentException(new StringBuilder().append("Only read only endpoints can be hedged: ")
+                    .append(READ_ONLY).toString());
+        }
+        this.endpoints = endpoints.isEmpty() ? Collections.<SAEndpoint>emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(endpoints));
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @param percentile the latency percentile, between 0 and 100, after which the hedge is sent
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public long getMinimumDelayMillis() {
+        return minimumDelayMillis;
+    }
+
+    /**
+     * @param minimumDelayMillis the shortest wait before a hedge, whatever the measured latency
+     */
+    public void setMinimumDelayMillis(long minimumDelayMillis) {
+        this.minimumDelayMillis = minimumDelayMillis;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    /**
+     * @param initialDelayMillis the wait before a hedge until the endpoint has enough responses measured
+     */
+    public void setInitialDelayMillis(long initialDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    public int getMinimumSamples() {
+        return minimumSamples;
+    }
+
+    /**
+     * @param minimumSamples the responses measured before the percentile is used
+     */
+    public void setMinimumSamples(int minimumSamples) {
+        this.minimumSamples = minimumSamples;
+    }
+
+    public double getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * @param budgetPercent the most hedges sent, as a percentage of the hedged calls
+     */
+    public void setBudgetPercent(double budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @param timeoutMillis how long a blocking hedged call waits for a response, its requests are cancelled after that
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    /**
+     * @return the calls whose hedge answered first
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder stringBuilder = new StringBuilder().append("requests: ").append(requests.get())
+                .append("; hedges: ").append(hedges.get()).append("; hedgeWins: ").append(hedgeWins.get());
+        for(SAEndpoint endpoint : endpoints){
+            stringBuilder.append("\n").append(endpoint).append(": delayMillis: ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(getDelayNanos(endpoint)))
+                    .append("; samples: ").append(latencies.get(endpoint).getCount());
+        }
+        return stringBuilder.toString();
+    }
+}
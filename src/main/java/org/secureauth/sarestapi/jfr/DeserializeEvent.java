@@ -0,0 +1,19 @@
+package org.secureauth.sarestapi.jfr;
+
+/**
+ * <p>
+ *     Reading and mapping a response body. Recorded as {@code org.secureauth.sarestapi.SADeserialize}.
+ * </p>
+ */
+public interface DeserializeEvent {
+
+    void setEndpoint(String endpoint);
+
+    void setResponseType(String responseType);
+
+    void setHttpStatus(int httpStatus);
+
+    void setBytes(long bytes);
+
+    void commit();
+}
@@ -0,0 +1,71 @@
+package org.secureauth.sarestapi.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * <p>
+ *     Emits the events through jdk.jfr. Loaded by name from {@link SAFlightRecorder} only when the runtime has the
+ *     jdk.jfr API.
+ * </p>
+ */
+class JdkFlightRecorder extends SAFlightRecorder {
+
+    //Only asked whether their event type is enabled, never committed
+    private final SARequestEvent request = new SARequestEvent();
+    private final SASignEvent sign = new SASignEvent();
+    private final SADeserializeEvent deserialize = new SADeserializeEvent();
+    private final SAPushPollEvent pushPoll = new SAPushPollEvent();
+
+    JdkFlightRecorder(){
+        //Register up front so the events are listed in recordings before the first call
+        FlightRecorder.register(SARequestEvent.class);
+        FlightRecorder.register(SASignEvent.class);
+        FlightRecorder.register(SADeserializeEvent.class);
+        FlightRecorder.register(SAPushPollEvent.class);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public RequestEvent beginRequest() {
+        if(!request.isEnabled()){
+            return null;
+        }
+        SARequestEvent event = new SARequestEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public SignEvent beginSign() {
+        if(!sign.isEnabled()){
+            return null;
+        }
+        SASignEvent event = new SASignEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public DeserializeEvent beginDeserialize() {
+        if(!deserialize.isEnabled()){
+            return null;
+        }
+        SADeserializeEvent event = new SADeserializeEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public PushPollEvent beginPushPoll() {
+        if(!pushPoll.isEnabled()){
+            return null;
+        }
+        SAPushPollEvent event = new SAPushPollEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,19 @@
+package org.secureauth.sarestapi.jfr;
+
+/**
+ * <p>
+ *     One status query of a push to accept request. Recorded as {@code org.secureauth.sarestapi.SAPushPoll}.
+ * </p>
+ */
+public interface PushPollEvent {
+
+    void setRealm(String realm);
+
+    void setReferenceId(String referenceId);
+
+    void setStatus(String status);
+
+    void setMessage(String message);
+
+    void commit();
+}
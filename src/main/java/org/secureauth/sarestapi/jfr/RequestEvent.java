@@ -0,0 +1,26 @@
+package org.secureauth.sarestapi.jfr;
+
+/**
+ * <p>
+ *     A call to the Appliance, from before signing until the response was read. Recorded as
+ *     {@code org.secureauth.sarestapi.SARequest}.
+ * </p>
+ */
+public interface RequestEvent {
+
+    void setEndpoint(String endpoint);
+
+    void setMethod(String method);
+
+    void setRealm(String realm);
+
+    void setHttpStatus(int httpStatus);
+
+    void setResponseStatus(String responseStatus);
+
+    void setRequestBytes(long requestBytes);
+
+    void setResponseBytes(long responseBytes);
+
+    void commit();
+}
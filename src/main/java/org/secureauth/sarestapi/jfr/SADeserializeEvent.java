@@ -0,0 +1,51 @@
+package org.secureauth.sarestapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.secureauth.sarestapi.SADeserialize")
+@Label("SA Deserialize")
+@Category("SecureAuth SDK")
+@Description("Reading and mapping the response of the SecureAuth Appliance")
+@StackTrace(false)
+class SADeserializeEvent extends Event implements DeserializeEvent {
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("Response Type")
+    private String responseType;
+
+    @Label("HTTP Status")
+    private int httpStatus;
+
+    @Label("Bytes")
+    @Description("Content-Length of the response, -1 when not sent")
+    @DataAmount
+    private long bytes;
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void setResponseType(String responseType) {
+        this.responseType = responseType;
+    }
+
+    @Override
+    public void setHttpStatus(int httpStatus) {
+        this.httpStatus = httpStatus;
+    }
+
+    @Override
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
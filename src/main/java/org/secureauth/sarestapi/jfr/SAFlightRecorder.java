@@ -0,0 +1,89 @@
+package org.secureauth.sarestapi.jfr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Emits Java Flight Recorder events for the calls the SDK makes, so a recording attributes time to Appliance
+ *     operations instead of anonymous socket reads. The events are in the "SecureAuth SDK" category and can be
+ *     enabled, disabled or given a threshold in a .jfc settings file like any JDK event:
+ * </p>
+ * <ul>
+ *     <li>org.secureauth.sarestapi.SARequest: a whole call, with endpoint, realm, status and byte counts</li>
+ *     <li>org.secureauth.sarestapi.SASign: signing the request</li>
+ *     <li>org.secureauth.sarestapi.SADeserialize: reading and mapping the response</li>
+ *     <li>org.secureauth.sarestapi.SAPushPoll: a push to accept status query</li>
+ * </ul>
+ * <p>
+ *     The jdk.jfr classes are only loaded when the JVM has them (Java 11 and later, 8u262 and later). On other Java 8
+ *     runtimes, or with -Dorg.secureauth.sarestapi.jfr=false, this shim records nothing. The begin methods return
+ *     null when the event is not being recorded, so a call without a recording allocates nothing.
+ * </p>
+ */
+public class SAFlightRecorder {
+
+    private static Logger logger=LoggerFactory.getLogger(SAFlightRecorder.class);
+
+    public static final String ENABLED_PROPERTY = "org.secureauth.sarestapi.jfr";
+
+    private static final SAFlightRecorder INSTANCE = load();
+
+    SAFlightRecorder(){
+    }
+
+    public static SAFlightRecorder get(){
+        return INSTANCE;
+    }
+
+    /**
+     * @return true when events are emitted to Java Flight Recorder
+     */
+    public boolean isAvailable(){
+        return false;
+    }
+
+    /**
+     * @return a started event, null when it is not recorded
+     */
+    public RequestEvent beginRequest(){
+        return null;
+    }
+
+    /**
+     * @return a started event, null when it is not recorded
+     */
+    public SignEvent beginSign(){
+        return null;
+    }
+
+    /**
+     * @return a started event, null when it is not recorded
+     */
+    public DeserializeEvent beginDeserialize(){
+        return null;
+    }
+
+    /**
+     * @return a started event, null when it is not recorded
+     */
+    public PushPollEvent beginPushPoll(){
+        return null;
+    }
+
+    //JdkFlightRecorder is only touched by name so this class loads on runtimes without jdk.jfr
+    private static SAFlightRecorder load(){
+        if(!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))){
+            return new SAFlightRecorder();
+        }
+        try{
+            Class.forName("jdk.jfr.Event");
+            return (SAFlightRecorder) Class.forName("org.secureauth.sarestapi.jfr.JdkFlightRecorder").newInstance();
+        }catch(ClassNotFoundException e){
+            logger.debug(new StringBuilder().append("Java Flight Recorder API not found, SDK events are disabled").toString());
+        }catch(Exception | LinkageError e){
+            logger.warn(new StringBuilder().append("Unable to register the Java Flight Recorder events, SDK events are disabled").toString(), e);
+        }
+        return new SAFlightRecorder();
+    }
+}
@@ -0,0 +1,49 @@
+package org.secureauth.sarestapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.secureauth.sarestapi.SAPushPoll")
+@Label("SA Push Poll")
+@Category("SecureAuth SDK")
+@Description("Status query of a push to accept request")
+@StackTrace(false)
+class SAPushPollEvent extends Event implements PushPollEvent {
+
+    @Label("Realm")
+    private String realm;
+
+    @Label("Reference Id")
+    private String referenceId;
+
+    @Label("Status")
+    private String status;
+
+    @Label("Message")
+    @Description("PENDING until the user answers, then ACCEPTED or DENIED")
+    private String message;
+
+    @Override
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    @Override
+    public void setReferenceId(String referenceId) {
+        this.referenceId = referenceId;
+    }
+
+    @Override
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @Override
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
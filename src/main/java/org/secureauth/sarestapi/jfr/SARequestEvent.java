@@ -0,0 +1,76 @@
+package org.secureauth.sarestapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.secureauth.sarestapi.SARequest")
+@Label("SA Request")
+@Category("SecureAuth SDK")
+@Description("A call to the SecureAuth Appliance, from signing until the response was read")
+@StackTrace(false)
+class SARequestEvent extends Event implements RequestEvent {
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("Method")
+    private String method;
+
+    @Label("Realm")
+    private String realm;
+
+    @Label("HTTP Status")
+    private int httpStatus;
+
+    @Label("Response Status")
+    private String responseStatus;
+
+    @Label("Request Bytes")
+    @DataAmount
+    private long requestBytes;
+
+    @Label("Response Bytes")
+    @Description("Content-Length of the response, -1 when not sent")
+    @DataAmount
+    private long responseBytes;
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    @Override
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    @Override
+    public void setHttpStatus(int httpStatus) {
+        this.httpStatus = httpStatus;
+    }
+
+    @Override
+    public void setResponseStatus(String responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    @Override
+    public void setRequestBytes(long requestBytes) {
+        this.requestBytes = requestBytes;
+    }
+
+    @Override
+    public void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+}
@@ -0,0 +1,42 @@
+package org.secureauth.sarestapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.secureauth.sarestapi.SASign")
+@Label("SA Sign")
+@Category("SecureAuth SDK")
+@Description("HMAC signature of a request to the SecureAuth Appliance")
+@StackTrace(false)
+class SASignEvent extends Event implements SignEvent {
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("Realm")
+    private String realm;
+
+    @Label("Signed Bytes")
+    @DataAmount
+    private long bytes;
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    @Override
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,17 @@
+package org.secureauth.sarestapi.jfr;
+
+/**
+ * <p>
+ *     The HMAC signature of a request. Recorded as {@code org.secureauth.sarestapi.SASign}.
+ * </p>
+ */
+public interface SignEvent {
+
+    void setEndpoint(String endpoint);
+
+    void setRealm(String realm);
+
+    void setBytes(long bytes);
+
+    void commit();
+}
@@ -0,0 +1,134 @@
+package org.secureauth.sarestapi.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *     Lock free histogram of durations in nanoseconds. Values are counted in log-linear buckets, in the style of
+ *     HdrHistogram: exact below 128ns, then 64 buckets per power of two, so any percentile is reported within 1.6%
+ *     of the recorded value. Recording is a few arithmetic operations and an atomic increment, with no allocation.
+ * </p>
+ * <p>
+ *     Values above about 18 minutes are counted in the last bucket.
+ * </p>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    //Largest value tracked with full precision, 2^40ns is about 18 minutes
+    private static final int MAX_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos){
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while(value > (current = max.get()) && !max.compareAndSet(current, value)){
+            //Another thread raised the max, check again
+        }
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    public long getMaxNanos(){
+        return max.get();
+    }
+
+    public double getMeanNanos(){
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return the recorded duration at the percentile, in nanoseconds, 0 when nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile){
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++){
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += snapshot[i];
+            if(seen >= rank){
+                //Report the highest value of the bucket, but never more than was recorded
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getValueAtPercentile(double percentile, TimeUnit unit){
+        return unit.convert(getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * <p>
+     *     Clears the histogram. Values recorded while it runs may be kept or dropped.
+     * </p>
+     */
+    public void reset(){
+        for(int i = 0; i < BUCKETS; i++){
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    //Values below SUB_BUCKETS have their own bucket, above that each power of two is split in HALF buckets
+    private static int index(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    private static long lowestValue(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int shift = index / HALF - 1;
+        return (long) (index % HALF + HALF) << shift;
+    }
+
+    private static long highestValue(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int shift = index / HALF - 1;
+        return lowestValue(index) + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("count: ").append(getCount())
+                .append("; mean: ").append(String.format("%.1f", getMeanNanos() / 1000)).append("us")
+                .append("; p50: ").append(getValueAtPercentile(50) / 1000).append("us")
+                .append("; p99: ").append(getValueAtPercentile(99) / 1000).append("us")
+                .append("; p999: ").append(getValueAtPercentile(99.9) / 1000).append("us")
+                .append("; max: ").append(getMaxNanos() / 1000).append("us").toString();
+    }
+}
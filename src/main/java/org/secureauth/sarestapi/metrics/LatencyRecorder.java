@@ -0,0 +1,92 @@
+package org.secureauth.sarestapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Keeps a {@link LatencyHistogram} of the whole call and of the send time for every {@link SAEndpoint}, with the
+ *     number of failed calls. Recording takes no lock and allocates nothing, so it can stay registered in production:
+ * </p>
+ * <pre>
+ *     LatencyRecorder recorder = new LatencyRecorder();
+ *     saAccess.setMetricsListener(recorder);
+ *     ...
+ *     long p99 = recorder.getTotal(SAEndpoint.AUTH).getValueAtPercentile(99);
+ * </pre>
+ * <p>
+ *     A call counts as failed when it threw, got no response, got an HTTP status of 500 or more, or its response
+ *     status was server_error.
+ * </p>
+ */
+public class LatencyRecorder implements MetricsListener {
+
+    private static final SAEndpoint[] ENDPOINTS = SAEndpoint.values();
+
+    private final LatencyHistogram[] total = new LatencyHistogram[ENDPOINTS.length];
+    private final LatencyHistogram[] send = new LatencyHistogram[ENDPOINTS.length];
+    private final AtomicLong[] failures = new AtomicLong[ENDPOINTS.length];
+
+    public LatencyRecorder(){
+        for(int i = 0; i < ENDPOINTS.length; i++){
+            total[i] = new LatencyHistogram();
+            send[i] = new LatencyHistogram();
+            failures[i] = new AtomicLong();
+        }
+    }
+
+    @Override
+    public void onRequest(RequestMetrics metrics) {
+        int i = metrics.getEndpoint() != null ? metrics.getEndpoint().ordinal() : SAEndpoint.OTHER.ordinal();
+        total[i].record(metrics.getTotalNanos());
+        if(metrics.getHttpStatus() != 0){
+            send[i].record(metrics.getSendNanos());
+        }
+        if(metrics.getError() != null || metrics.getHttpStatus() == 0 || metrics.getHttpStatus() >= 500
+                || "server_error".equalsIgnoreCase(metrics.getResponseStatus())){
+            failures[i].incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the duration of the whole calls to the endpoint
+     */
+    public LatencyHistogram getTotal(SAEndpoint endpoint){
+        return total[endpoint.ordinal()];
+    }
+
+    /**
+     * @return the time from sending the request to receiving the response headers, for calls that got a response
+     */
+    public LatencyHistogram getSend(SAEndpoint endpoint){
+        return send[endpoint.ordinal()];
+    }
+
+    public long getFailures(SAEndpoint endpoint){
+        return failures[endpoint.ordinal()].get();
+    }
+
+    public void reset(){
+        for(int i = 0; i < ENDPOINTS.length; i++){
+            total[i].reset();
+            send[i].reset();
+            failures[i].set(0);
+        }
+    }
+
+    /**
+     * @return one line per endpoint that was called
+     */
+    @Override
+    public String toString(){
+        StringBuilder stringBuilder = new StringBuilder();
+        for(int i = 0; i < ENDPOINTS.length; i++){
+            if(total[i].getCount() == 0){
+                continue;
+            }
+            stringBuilder.append(ENDPOINTS[i]).append(": ").append(total[i])
+                    .append("; send p99: ").append(send[i].getValueAtPercentile(99) / 1000).append("us")
+                    .append("; failures: ").append(failures[i].get()).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package org.secureauth.sarestapi.metrics;
+
+/**
+ * <p>
+ *     Receives the measurements of every call an SAAccess or SAAsyncAccess makes to the Appliance. Register one with
+ *     {@code saAccess.setMetricsListener(...)}; {@link LatencyRecorder} keeps latency histograms per endpoint.
+ * </p>
+ * <p>
+ *     Called on the thread that finished the call, after the response was read. Implementations must be thread
+ *     safe, should return quickly, and must not keep the {@link RequestMetrics} instance, which is reused.
+ * </p>
+ */
+public interface MetricsListener {
+
+    void onRequest(RequestMetrics metrics);
+}
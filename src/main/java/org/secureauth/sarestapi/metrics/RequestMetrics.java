@@ -0,0 +1,250 @@
+package org.secureauth.sarestapi.metrics;
+
+/**
+ * <p>
+ *     Measurements of one call to the Appliance, passed to a {@link MetricsListener}. Blocking calls reuse one
+ *     instance per thread, so a listener must copy what it keeps before returning.
+ * </p>
+ * <p>
+ *     Durations are in nanoseconds. The send time runs from handing the request to the connection until the
+ *     response headers arrive, so it holds connecting (when no pooled connection was free), writing the request and
+ *     waiting for the Appliance; the Jersey connector does not report those separately.
+ * </p>
+ */
+public class RequestMetrics {
+
+    private SAEndpoint endpoint;
+    private String method;
+    private String realm;
+    private String appliance;
+    private int httpStatus;
+    private String responseStatus;
+    private int requestBytes;
+    private long responseBytes;
+    private long serializeNanos;
+    private long signNanos;
+    private long sendNanos;
+    private long deserializeNanos;
+    private long totalNanos;
+    private boolean hedged;
+    private int retries;
+    private Throwable error;
+
+    /**
+     * <p>
+     *     Clears the measurements of the previous request.
+     * </p>
+     */
+    public RequestMetrics reset(){
+        endpoint = null;
+        method = null;
+        realm = null;
+        appliance = null;
+        httpStatus = 0;
+        responseStatus = null;
+        requestBytes = 0;
+        responseBytes = 0;
+        serializeNanos = 0;
+        signNanos = 0;
+        sendNanos = 0;
+        deserializeNanos = 0;
+        totalNanos = 0;
+        hedged = false;
+        retries = 0;
+        error = null;
+        return this;
+    }
+
+    /**
+     * <p>
+     *     Clears the response measurements before a call is sent again.
+     * </p>
+     */
+    public void clearResponse(){
+        appliance = null;
+        httpStatus = 0;
+        responseBytes = 0;
+        sendNanos = 0;
+        deserializeNanos = 0;
+        hedged = false;
+        error = null;
+    }
+
+    /**
+     * <p>
+     *     Takes the response measurements of the attempt that answered a hedged call.
+     * </p>
+     */
+    public void copyResponse(RequestMetrics attempt){
+        appliance = attempt.appliance;
+        httpStatus = attempt.httpStatus;
+        responseBytes = attempt.responseBytes;
+        sendNanos = attempt.sendNanos;
+        deserializeNanos = attempt.deserializeNanos;
+    }
+
+    public SAEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(SAEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    /**
+     * @return the host of the Appliance the request was last sent to
+     */
+    public String getAppliance() {
+        return appliance;
+    }
+
+    public void setAppliance(String appliance) {
+        this.appliance = appliance;
+    }
+
+    /**
+     * @return the HTTP status of the response, 0 when no response was received
+     */
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+
+    public void setHttpStatus(int httpStatus) {
+        this.httpStatus = httpStatus;
+    }
+
+    /**
+     * @return the status field of the response body (valid, invalid, found, server_error...), null when it has none
+     */
+    public String getResponseStatus() {
+        return responseStatus;
+    }
+
+    public void setResponseStatus(String responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public int getRequestBytes() {
+        return requestBytes;
+    }
+
+    public void setRequestBytes(int requestBytes) {
+        this.requestBytes = requestBytes;
+    }
+
+    /**
+     * @return the Content-Length of the response, -1 when the Appliance did not send one
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    public long getSerializeNanos() {
+        return serializeNanos;
+    }
+
+    public void setSerializeNanos(long serializeNanos) {
+        this.serializeNanos = serializeNanos;
+    }
+
+    public long getSignNanos() {
+        return signNanos;
+    }
+
+    public void setSignNanos(long signNanos) {
+        this.signNanos = signNanos;
+    }
+
+    public long getSendNanos() {
+        return sendNanos;
+    }
+
+    public void setSendNanos(long sendNanos) {
+        this.sendNanos = sendNanos;
+    }
+
+    public long getDeserializeNanos() {
+        return deserializeNanos;
+    }
+
+    public void setDeserializeNanos(long deserializeNanos) {
+        this.deserializeNanos = deserializeNanos;
+    }
+
+    /**
+     * @return the whole call, including the time an asynchronous request waited for a free slot
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @return true when a hedge of the call was sent
+     */
+    public boolean isHedged() {
+        return hedged;
+    }
+
+    public void setHedged(boolean hedged) {
+        this.hedged = hedged;
+    }
+
+    /**
+     * @return the times the call was sent again, the other measurements are the ones of the last attempt
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * @return the exception that failed the call, null when a response was read
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("endpoint: ").append(endpoint).append("; method: ").append(method)
+                .append("; appliance: ").append(appliance)
+                .append("; httpStatus: ").append(httpStatus).append("; responseStatus: ").append(responseStatus)
+                .append("; requestBytes: ").append(requestBytes)
+                .append("; responseBytes: ").append(responseBytes).append("; serializeNanos: ").append(serializeNanos)
+                .append("; signNanos: ").append(signNanos).append("; sendNanos: ").append(sendNanos)
+                .append("; deserializeNanos: ").append(deserializeNanos).append("; totalNanos: ").append(totalNanos)
+                .append("; hedged: ").append(hedged).append("; retries: ").append(retries)
+                .append("; error: ").append(error).toString();
+    }
+}
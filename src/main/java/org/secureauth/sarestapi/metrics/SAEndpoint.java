@@ -0,0 +1,111 @@
+package org.secureauth.sarestapi.metrics;
+
+import org.secureauth.sarestapi.resources.s;
+
+/**
+ * <p>
+ *     The Appliance operations, one per HTTP method and path template of the Rest API. Used to group request metrics
+ *     without user ids, reference ids or group names in the key.
+ * </p>
+ */
+public enum SAEndpoint {
+
+    AUTH("POST", s.APPLIANCE_AUTH),
+    PUSH_STATUS("GET", s.APPLIANCE_AUTH + "/{referenceId}"),
+    ADAPTIVE_AUTH("POST", s.APPLIANCE_AAUTH),
+    IPEVAL("POST", s.APPLIANCE_IPEVAL),
+    ACCESS_HISTORY("POST", s.APPLIANCE_ACCESSHISTORY),
+    DFP_JS("GET", s.APPLIANCE_DFP_JS),
+    DFP_VALIDATE("POST", s.APPLIANCE_DFP_VALIDATE),
+    DFP_CONFIRM("POST", s.APPLIANCE_DFP_CONFIRM),
+    BEHAVEBIO_JS("GET", s.APPLIANCE_BEHAVEBIO_JS),
+    BEHAVEBIO_SUBMIT("POST", s.APPLIANCE_BEHAVEBIO),
+    BEHAVEBIO_RESET("PUT", s.APPLIANCE_BEHAVEBIO),
+    FACTORS("GET", s.APPLIANCE_USERS + "{userId}" + s.APPLIANCE_FACTORS),
+    CREATE_USER("POST", s.APPLIANCE_USERS),
+    GET_USER("GET", s.APPLIANCE_USERS + "{userId}"),
+    UPDATE_USER("PUT", s.APPLIANCE_USERS + "{userId}"),
+    RESET_PASSWORD("POST", s.APPLIANCE_USERS + "{userId}" + s.APPLIANCE_IDM_USERS_PASSWD_RESET),
+    CHANGE_PASSWORD("POST", s.APPLIANCE_USERS + "{userId}" + s.APPLIANCE_IDM_USERS_PASSWD_CHANGE),
+    USER_TO_GROUP("POST", s.APPLIANCE_USERS + "{userId}" + s.APPLIANCE_IDM_USERS_GROUPS + "{groupName}"),
+    USER_TO_GROUPS("POST", s.APPLIANCE_USERS + "{userId}" + s.APPLIANCE_IDM_USERS_GROUPS),
+    GROUP_TO_USERS("POST", s.APPLIANCE_IDM_GROUPS + "{groupName}/users"),
+    GROUP_TO_USER("POST", s.APPLIANCE_IDM_GROUPS + "{groupName}" + s.APPLIANCE_IDM_USERS + "{userId}"),
+    OTHER("", "");
+
+    private static final String API = "/api/";
+
+    private final String method;
+    private final String path;
+
+    SAEndpoint(String method, String path){
+        this.method = method;
+        this.path = path;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the path template below the Realm
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * <p>
+     *     Finds the operation of a request without allocating.
+     * </p>
+     * @param method the HTTP Method
+     * @param uriPath the path of the request, starting with the Realm
+     * @return the operation, {@link #OTHER} when the path is not one of the Rest API
+     */
+    public static SAEndpoint of(String method, String uriPath){
+        int start = uriPath.indexOf(API);
+        if(start < 0){
+            return OTHER;
+        }
+        int length = uriPath.length() - start;
+
+        if(matches(uriPath, start, s.APPLIANCE_AUTH)){
+            if(length == s.APPLIANCE_AUTH.length()) return AUTH;
+            if(uriPath.charAt(start + s.APPLIANCE_AUTH.length()) == '/') return PUSH_STATUS;
+            return OTHER;
+        }
+        if(equals(uriPath, start, s.APPLIANCE_AAUTH)) return ADAPTIVE_AUTH;
+        if(equals(uriPath, start, s.APPLIANCE_IPEVAL)) return IPEVAL;
+        if(equals(uriPath, start, s.APPLIANCE_ACCESSHISTORY)) return ACCESS_HISTORY;
+        if(equals(uriPath, start, s.APPLIANCE_DFP_JS)) return DFP_JS;
+        if(equals(uriPath, start, s.APPLIANCE_DFP_VALIDATE)) return DFP_VALIDATE;
+        if(equals(uriPath, start, s.APPLIANCE_DFP_CONFIRM)) return DFP_CONFIRM;
+        if(equals(uriPath, start, s.APPLIANCE_BEHAVEBIO_JS)) return BEHAVEBIO_JS;
+        if(equals(uriPath, start, s.APPLIANCE_BEHAVEBIO)) return "PUT".equals(method) ? BEHAVEBIO_RESET : BEHAVEBIO_SUBMIT;
+
+        if(matches(uriPath, start, s.APPLIANCE_USERS)){
+            int user = start + s.APPLIANCE_USERS.length();
+            if(user == uriPath.length()) return CREATE_USER;
+            if(uriPath.endsWith(s.APPLIANCE_FACTORS)) return FACTORS;
+            if(uriPath.endsWith(s.APPLIANCE_IDM_USERS_PASSWD_RESET)) return RESET_PASSWORD;
+            if(uriPath.endsWith(s.APPLIANCE_IDM_USERS_PASSWD_CHANGE)) return CHANGE_PASSWORD;
+            int groups = uriPath.indexOf(s.APPLIANCE_IDM_USERS_GROUPS, user);
+            if(groups >= 0){
+                return groups + s.APPLIANCE_IDM_USERS_GROUPS.length() == uriPath.length() ? USER_TO_GROUPS : USER_TO_GROUP;
+            }
+            return "PUT".equals(method) ? UPDATE_USER : GET_USER;
+        }
+        if(matches(uriPath, start, s.APPLIANCE_IDM_GROUPS)){
+            return uriPath.endsWith("/users") ? GROUP_TO_USERS : GROUP_TO_USER;
+        }
+        return OTHER;
+    }
+
+    private static boolean matches(String uriPath, int start, String prefix){
+        return uriPath.regionMatches(start, prefix, 0, prefix.length());
+    }
+
+    private static boolean equals(String uriPath, int start, String path){
+        return uriPath.length() - start == path.length() && matches(uriPath, start, path);
+    }
+}
@@ -0,0 +1,309 @@
+package org.secureauth.sarestapi.provisioning;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.SAAsyncAccess;
+import org.secureauth.sarestapi.data.Response.ResponseObject;
+import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
+import org.secureauth.sarestapi.resources.s;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Creates or updates large numbers of users through createUser and updateUser. Profiles are read from an
+ *     {@link Iterator}, a {@link Stream} or a CSV or JSON lines file as the pipeline has room for them: at most
+ *     concurrency users are in progress at once, reading waits until one of them finishes.
+ * </p>
+ * <p>
+ *     Calls that fail with an exception or a server_error or error status are retried with a doubling delay, other
+ *     refusals (failed, invalid, not_found) are final. Every user's outcome is passed to the
+ *     {@link ProvisioningListener}, and successful users are recorded in the {@link ProvisioningCheckpoint} so a
+ *     new run with the same checkpoint skips them.
+ * </p>
+ * <pre>
+ *     BulkProvisioner provisioner = new BulkProvisioner(saAccess);
+ *     provisioner.setMode(BulkProvisioner.Mode.CREATE_OR_UPDATE);
+ *     provisioner.setCheckpoint(new ProvisioningCheckpoint(Paths.get("hr-sync.done")));
+ *     ProvisioningSummary summary = provisioner.runCsv(Paths.get("hr-export.csv"));
+ * </pre>
+ */
+public class BulkProvisioner {
+
+    private static Logger logger=LoggerFactory.getLogger(BulkProvisioner.class);
+
+    public static final int DEFAULT_CONCURRENCY = 16;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+
+    public enum Mode {
+        /** createUser for every profile */
+        CREATE,
+        /** updateUser for every profile */
+        UPDATE,
+        /** createUser, then updateUser when the Appliance refuses the create because the user exists */
+        CREATE_OR_UPDATE
+    }
+
+    private final SAAsyncAccess saAsyncAccess;
+
+    private Mode mode = Mode.CREATE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long retryDelayMillis = DEFAULT_RETRY_DELAY_MILLIS;
+    private ProvisioningListener listener;
+    private ProvisioningCheckpoint checkpoint;
+
+    /**
+     * @param saAccess the SAAccess of the Realm the users are provisioned in
+     */
+    public BulkProvisioner(SAAccess saAccess){
+        this(new SAAsyncAccess(saAccess));
+    }
+
+    public BulkProvisioner(SAAsyncAccess saAsyncAccess){
+        this.saAsyncAccess = saAsyncAccess;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency the number of users in progress at once
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts calls made for a user before a transient failure is final, 1 to not retry
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    /**
+     * @param retryDelayMillis the wait before the first retry, doubled for every further one
+     */
+    public void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    public ProvisioningListener getListener() {
+        return listener;
+    }
+
+    public void setListener(ProvisioningListener listener) {
+        this.listener = listener;
+    }
+
+    public ProvisioningCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @param checkpoint records successful users and skips the ones already recorded, null to provision every profile
+     */
+    public void setCheckpoint(ProvisioningCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @param file a CSV file with a header row, see {@link ProfileReader#csv(Reader)}
+     * @return the totals of the run
+     */
+    public ProvisioningSummary runCsv(Path file) throws IOException, InterruptedException {
+        try(ProfileReader profiles = ProfileReader.csv(Files.newBufferedReader(file, StandardCharsets.UTF_8))){
+            return run(profiles);
+        }
+    }
+
+    /**
+     * @param file a file with one NewUserProfile JSON document per line
+     * @return the totals of the run
+     */
+    public ProvisioningSummary runJsonLines(Path file) throws IOException, InterruptedException {
+        try(ProfileReader profiles = ProfileReader.jsonLines(Files.newBufferedReader(file, StandardCharsets.UTF_8))){
+            return run(profiles);
+        }
+    }
+
+    public ProvisioningSummary run(Stream<NewUserProfile> profiles) throws InterruptedException {
+        return run(profiles.iterator());
+    }
+
+    /**
+     * <p>
+     *     Provisions every profile and returns once all of them are done.
+     * </p>
+     * @param profiles the profiles, read only as fast as they are provisioned
+     * @return the totals of the run
+     * @throws InterruptedException when the calling thread is interrupted, users in progress are finished first
+     */
+    public ProvisioningSummary run(Iterator<NewUserProfile> profiles) throws InterruptedException {
+        Run run = new Run(concurrency);
+        try{
+            while(profiles.hasNext()){
+                NewUserProfile profile = profiles.next();
+                if(profile == null || profile.getUserId() == null || profile.getUserId().isEmpty()){
+                    logger.error(new StringBuilder().append("Skipping profile without a userId").toString());
+                    run.failed.incrementAndGet();
+                    continue;
+                }
+                if(checkpoint != null && checkpoint.isDone(profile.getUserId())){
+                    run.skipped.incrementAndGet();
+                    continue;
+                }
+                run.permits.acquire();
+                run.start(profile);
+            }
+        }finally{
+            run.permits.acquireUninterruptibly(concurrency);
+            run.retryScheduler.shutdownNow();
+        }
+        return new ProvisioningSummary(run.succeeded.get(), run.failed.get(), run.skipped.get(), run.retries.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - run.started));
+    }
+
+    private static boolean isTransient(ResponseObject response, Throwable error){
+        return error != null || response == null
+                || s.STATUS_SERVER_ERROR.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_ERROR.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_CIRCUIT_OPEN.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_CONCURRENCY_LIMITED.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_RATE_LIMITED.equalsIgnoreCase(response.getStatus());
+    }
+
+    private static boolean isRefused(ResponseObject response){
+        return s.STATUS_FAILED.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_INVALID.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_NOT_FOUND.equalsIgnoreCase(response.getStatus());
+    }
+
+    //State of one call to run
+    private class Run {
+        private final Semaphore permits;
+        private final long started = System.nanoTime();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sa-bulk-provisioner-retry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        private Run(int concurrency){
+            this.permits = new Semaphore(concurrency);
+        }
+
+        private void start(NewUserProfile profile){
+            if(mode == Mode.UPDATE){
+                call(profile, ProvisioningResult.Operation.UPDATE, 1);
+            }else if(profile.getPassword() != null && !profile.getPassword().isEmpty()){
+                call(profile, ProvisioningResult.Operation.CREATE, 1);
+            }else if(mode == Mode.CREATE_OR_UPDATE){
+                //Without a password the user can only be updated
+                call(profile, ProvisioningResult.Operation.UPDATE, 1);
+            }else{
+                finish(new ProvisioningResult(profile.getUserId(), ProvisioningResult.Operation.CREATE, false, 0, null,
+                        new IllegalArgumentException("Creating a user requires a password")));
+            }
+        }
+
+        private void call(final NewUserProfile profile, final ProvisioningResult.Operation operation, final int attempt){
+            CompletableFuture<ResponseObject> future;
+            try{
+                future = operation == ProvisioningResult.Operation.CREATE
+                        ? saAsyncAccess.createUser(profile)
+                        : saAsyncAccess.updateUser(profile.getUserId(), profile);
+            }catch(RuntimeException e){
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete(new BiConsumer<ResponseObject, Throwable>() {
+                @Override
+                public void accept(ResponseObject response, Throwable error) {
+                    if(operation == ProvisioningResult.Operation.CREATE && mode == Mode.CREATE_OR_UPDATE
+                            && error == null && response != null && s.STATUS_FAILED.equalsIgnoreCase(response.getStatus())){
+                        call(profile, ProvisioningResult.Operation.UPDATE, 1);
+                        return;
+                    }
+                    if(isTransient(response, error) && attempt < maxAttempts){
+                        retries.incrementAndGet();
+                        retry(profile, operation, attempt + 1);
+                        return;
+                    }
+                    boolean success = !isTransient(response, error) && !isRefused(response);
+                    finish(new ProvisioningResult(profile.getUserId(), operation, success, attempt, response, error));
+                }
+            });
+        }
+
+        private void retry(final NewUserProfile profile, final ProvisioningResult.Operation operation, final int attempt){
+            long delay = retryDelayMillis << Math.min(attempt - 2, 20);
+            retryScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    call(profile, operation, attempt);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void finish(ProvisioningResult result){
+            try{
+                if(result.isSuccess()){
+                    succeeded.incrementAndGet();
+                    if(checkpoint != null){
+                        checkpoint.markDone(result.getUserId());
+                    }
+                }else{
+                    failed.incrementAndGet();
+                }
+                if(listener != null){
+                    listener.onResult(result);
+                }
+            }catch(RuntimeException e){
+                logger.error(new StringBuilder().append("Exception recording the result of ").append(result.getUserId()).toString(), e);
+            }finally{
+                permits.release();
+            }
+        }
+    }
+}
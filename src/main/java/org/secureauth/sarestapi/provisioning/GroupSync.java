@@ -0,0 +1,341 @@
+package org.secureauth.sarestapi.provisioning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.SAAsyncAccess;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.secureauth.sarestapi.data.Response.GroupAssociationResponse;
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+import org.secureauth.sarestapi.data.UserProfile.UserToGroups;
+import org.secureauth.sarestapi.data.UserProfile.UsersToGroup;
+import org.secureauth.sarestapi.resources.s;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Brings group memberships in line with a desired user to groups mapping using as few calls as possible. The
+ *     current groups of every user are read with getUserProfile, concurrently, and only the missing memberships are
+ *     added: groups missing for several users are added with addUsersToGroup in batches, a user missing groups no
+ *     one else needs gets them in one addUserToGroups call. Group names are compared ignoring case.
+ * </p>
+ * <p>
+ *     The Rest API can not remove a user from a group, memberships that are not desired are listed in the
+ *     {@link GroupSyncResult} instead.
+ * </p>
+ */
+public class GroupSync {
+
+    private static Logger logger=LoggerFactory.getLogger(GroupSync.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    private final SAAsyncAccess saAsyncAccess;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    /**
+     * @param saAccess the SAAccess of the Realm holding the users
+     */
+    public GroupSync(SAAccess saAccess){
+        this(new SAAsyncAccess(saAccess));
+    }
+
+    public GroupSync(SAAsyncAccess saAsyncAccess){
+        this.saAsyncAccess = saAsyncAccess;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the most users added to a group by one addUsersToGroup call
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency the number of profile reads or group calls in progress at once
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param desired the groups each user should belong to
+     * @return what was changed and what could not be
+     * @throws InterruptedException when the calling thread is interrupted, calls in progress are finished first
+     */
+    public GroupSyncResult sync(Map<String, ? extends Collection<String>> desired) throws InterruptedException {
+        long started = System.nanoTime();
+        GroupSyncResult result = new GroupSyncResult();
+        result.setUsersChecked(desired.size());
+
+        //Missing groups by user
+        Map<String, Set<String>> missing = diff(desired, result);
+
+        //Users by missing group, in name order so runs are repeatable
+        Map<String, List<String>> byGroup = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for(Map.Entry<String, Set<String>> user : missing.entrySet()){
+            for(String group : user.getValue()){
+                List<String> users = byGroup.get(group);
+                if(users == null){
+                    users = new ArrayList<>();
+                    byGroup.put(group, users);
+                }
+                users.add(user.getKey());
+            }
+        }
+
+        //Groups shared by several users go in batches, the rest per user
+        List<Call> calls = new ArrayList<>();
+        Map<String, List<String>> alone = new LinkedHashMap<>();
+        for(Map.Entry<String, List<String>> group : byGroup.entrySet()){
+            List<String> users = group.getValue();
+            if(users.size() == 1){
+                String userId = users.get(0);
+                List<String> groups = alone.get(userId);
+                if(groups == null){
+                    groups = new ArrayList<>();
+                    alone.put(userId, groups);
+                }
+                groups.add(group.getKey());
+                continue;
+            }
+            for(int i = 0; i < users.size(); i += batchSize){
+                calls.add(new GroupCall(group.getKey(), users.subList(i, Math.min(users.size(), i + batchSize))));
+            }
+        }
+        for(Map.Entry<String, List<String>> user : alone.entrySet()){
+            calls.add(new UserCall(user.getKey(), user.getValue()));
+        }
+
+        result.setUsersUnchanged(desired.size() - missing.size() - result.getUsersNotFound().size() - result.getProfileFailures().size());
+        result.setCalls(calls.size());
+        apply(calls, result);
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return result;
+    }
+
+    //Reads the current groups of every user and returns the groups each one is missing
+    private Map<String, Set<String>> diff(Map<String, ? extends Collection<String>> desired, final GroupSyncResult result) throws InterruptedException {
+        final Map<String, Set<String>> missing = Collections.synchronizedMap(new LinkedHashMap<String, Set<String>>());
+        final Semaphore permits = new Semaphore(concurrency);
+        try{
+            for(final Map.Entry<String, ? extends Collection<String>> user : desired.entrySet()){
+                permits.acquire();
+                final String userId = user.getKey();
+                final Set<String> wanted = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                wanted.addAll(user.getValue());
+                CompletableFuture<UserProfileResponse> future;
+                try{
+                    future = saAsyncAccess.getUserProfile(userId);
+                }catch(RuntimeException e){
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                }
+                future.whenComplete(new BiConsumer<UserProfileResponse, Throwable>() {
+                    @Override
+                    public void accept(UserProfileResponse profile, Throwable throwable) {
+                        try{
+                            if(throwable != null || profile == null
+                                    || !(s.STATUS_FOUND.equalsIgnoreCase(profile.getStatus()) || s.STATUS_NOT_FOUND.equalsIgnoreCase(profile.getStatus()))){
+                                logger.error(new StringBuilder().append("Unable to read the groups of ").append(userId)
+                                        .append(": ").append(profile != null ? profile.getMessage() : null).toString(), throwable);
+                                synchronized (result){
+                                    result.getProfileFailures().add(userId);
+                                }
+                                return;
+                            }
+                            if(s.STATUS_NOT_FOUND.equalsIgnoreCase(profile.getStatus())){
+                                synchronized (result){
+                                    result.getUsersNotFound().add(userId);
+                                }
+                                return;
+                            }
+
+                            Set<String> current = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                            if(profile.getGroups() != null){
+                                current.addAll(profile.getGroups());
+                            }
+                            Set<String> add = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                            add.addAll(wanted);
+                            add.removeAll(current);
+                            if(!add.isEmpty()){
+                                missing.put(userId, add);
+                            }
+                            current.removeAll(wanted);
+                            if(!current.isEmpty()){
+                                synchronized (result){
+                                    result.getExtraMemberships().put(userId, new ArrayList<>(current));
+                                }
+                            }
+                        }finally{
+                            permits.release();
+                        }
+                    }
+                });
+            }
+        }finally{
+            permits.acquireUninterruptibly(concurrency);
+        }
+        return missing;
+    }
+
+    private void apply(List<Call> calls, final GroupSyncResult result) throws InterruptedException {
+        final Semaphore permits = new Semaphore(concurrency);
+        try{
+            for(final Call call : calls){
+                permits.acquire();
+                CompletableFuture<? extends BaseResponse> future;
+                try{
+                    future = call.send();
+                }catch(RuntimeException e){
+                    CompletableFuture<BaseResponse> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(e);
+                    future = failed;
+                }
+                future.whenComplete(new BiConsumer<BaseResponse, Throwable>() {
+                    @Override
+                    public void accept(BaseResponse response, Throwable throwable) {
+                        try{
+                            synchronized (result){
+                                call.record(response, throwable, result);
+                            }
+                        }catch(RuntimeException e){
+                            logger.error(new StringBuilder().append("Exception recording group association result").toString(), e);
+                        }finally{
+                            permits.release();
+                        }
+                    }
+                });
+            }
+        }finally{
+            permits.acquireUninterruptibly(concurrency);
+        }
+    }
+
+    private static boolean isFailed(BaseResponse response, Throwable throwable){
+        return throwable != null || response == null
+                || s.STATUS_FAILED.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_INVALID.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_NOT_FOUND.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_ERROR.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_SERVER_ERROR.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_CIRCUIT_OPEN.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_CONCURRENCY_LIMITED.equalsIgnoreCase(response.getStatus())
+                || s.STATUS_RATE_LIMITED.equalsIgnoreCase(response.getStatus());
+    }
+
+    private static void addFailure(GroupSyncResult result, String group, String userId){
+        List<String> users = result.getFailures().get(group);
+        if(users == null){
+            users = new ArrayList<>();
+            result.getFailures().put(group, users);
+        }
+        users.add(userId);
+    }
+
+    private interface Call {
+        CompletableFuture<? extends BaseResponse> send();
+
+        void record(BaseResponse response, Throwable throwable, GroupSyncResult result);
+    }
+
+    //addUsersToGroup for a batch of users missing the same group
+    private class GroupCall implements Call {
+        private final String group;
+        private final List<String> userIds;
+
+        private GroupCall(String group, List<String> userIds){
+            this.group = group;
+            this.userIds = userIds;
+        }
+
+        @Override
+        public CompletableFuture<GroupAssociationResponse> send() {
+            UsersToGroup usersToGroup = new UsersToGroup();
+            usersToGroup.setUserIds(userIds.toArray(new String[userIds.size()]));
+            return saAsyncAccess.addUsersToGroup(usersToGroup, group);
+        }
+
+        @Override
+        public void record(BaseResponse response, Throwable throwable, GroupSyncResult result) {
+            List<String> failed = new ArrayList<>();
+            if(isFailed(response, throwable)){
+                failed.addAll(userIds);
+            }else if(response instanceof GroupAssociationResponse && ((GroupAssociationResponse) response).getFailures() != null){
+                for(List<String> users : ((GroupAssociationResponse) response).getFailures().values()){
+                    failed.addAll(users);
+                }
+            }
+            for(String userId : failed){
+                addFailure(result, group, userId);
+            }
+            result.setMembershipsAdded(result.getMembershipsAdded() + userIds.size() - failed.size());
+        }
+    }
+
+    //addUserToGroups for the groups only this user is missing
+    private class UserCall implements Call {
+        private final String userId;
+        private final List<String> groups;
+
+        private UserCall(String userId, List<String> groups){
+            this.userId = userId;
+            this.groups = groups;
+        }
+
+        @Override
+        public CompletableFuture<? extends BaseResponse> send() {
+            if(groups.size() == 1){
+                return saAsyncAccess.addUserToGroup(userId, groups.get(0));
+            }
+            UserToGroups userToGroups = new UserToGroups();
+            userToGroups.setGroupNames(groups.toArray(new String[groups.size()]));
+            return saAsyncAccess.addUserToGroups(userId, userToGroups);
+        }
+
+        @Override
+        public void record(BaseResponse response, Throwable throwable, GroupSyncResult result) {
+            List<String> failed = new ArrayList<>();
+            if(isFailed(response, throwable)){
+                failed.addAll(groups);
+            }else if(response instanceof GroupAssociationResponse && ((GroupAssociationResponse) response).getFailures() != null){
+                //Failures are keyed by group, or by the user with the groups that failed
+                for(Map.Entry<String, ArrayList<String>> failure : ((GroupAssociationResponse) response).getFailures().entrySet()){
+                    if(failure.getKey().equalsIgnoreCase(userId)){
+                        failed.addAll(failure.getValue());
+                    }else{
+                        failed.add(failure.getKey());
+                    }
+                }
+            }
+            for(String group : failed){
+                addFailure(result, group, userId);
+            }
+            result.setMembershipsAdded(result.getMembershipsAdded() + groups.size() - failed.size());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.secureauth.sarestapi.provisioning;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Outcome of a {@link GroupSync} run.
+ * </p>
+ */
+public class GroupSyncResult {
+
+    private int usersChecked;
+    private int usersUnchanged;
+    private int membershipsAdded;
+    private int calls;
+    private List<String> usersNotFound = new ArrayList<>();
+    private List<String> profileFailures = new ArrayList<>();
+    private Map<String, List<String>> failures = new HashMap<>();
+    private Map<String, List<String>> extraMemberships = new HashMap<>();
+    private long elapsedMillis;
+
+    public int getUsersChecked() {
+        return usersChecked;
+    }
+
+    public void setUsersChecked(int usersChecked) {
+        this.usersChecked = usersChecked;
+    }
+
+    /**
+     * @return users already in every desired group, no call was made for them
+     */
+    public int getUsersUnchanged() {
+        return usersUnchanged;
+    }
+
+    public void setUsersUnchanged(int usersUnchanged) {
+        this.usersUnchanged = usersUnchanged;
+    }
+
+    /**
+     * @return user to group memberships added
+     */
+    public int getMembershipsAdded() {
+        return membershipsAdded;
+    }
+
+    public void setMembershipsAdded(int membershipsAdded) {
+        this.membershipsAdded = membershipsAdded;
+    }
+
+    /**
+     * @return group association calls made
+     */
+    public int getCalls() {
+        return calls;
+    }
+
+    public void setCalls(int calls) {
+        this.calls = calls;
+    }
+
+    public List<String> getUsersNotFound() {
+        return usersNotFound;
+    }
+
+    public void setUsersNotFound(List<String> usersNotFound) {
+        this.usersNotFound = usersNotFound;
+    }
+
+    /**
+     * @return users whose profile could not be read, they were left unchanged
+     */
+    public List<String> getProfileFailures() {
+        return profileFailures;
+    }
+
+    public void setProfileFailures(List<String> profileFailures) {
+        this.profileFailures = profileFailures;
+    }
+
+    /**
+     * @return users by group they could not be added to
+     */
+    public Map<String, List<String>> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(Map<String, List<String>> failures) {
+        this.failures = failures;
+    }
+
+    /**
+     * @return groups by user that the user belongs to but are not in the desired mapping. The Rest API has no call to
+     * remove a user from a group, so these are only reported
+     */
+    public Map<String, List<String>> getExtraMemberships() {
+        return extraMemberships;
+    }
+
+    public void setExtraMemberships(Map<String, List<String>> extraMemberships) {
+        this.extraMemberships = extraMemberships;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("usersChecked: ").append(usersChecked).append("; usersUnchanged: ").append(usersUnchanged)
+                .append("; membershipsAdded: ").append(membershipsAdded).append("; calls: ").append(calls)
+                .append("; usersNotFound: ").append(usersNotFound.size()).append("; profileFailures: ").append(profileFailures.size())
+                .append("; failures: ").append(failures).append("; extraMemberships: ").append(extraMemberships.size())
+                .append("; elapsedMillis: ").append(elapsedMillis).toString();
+    }
+}
@@ -0,0 +1,208 @@
+package org.secureauth.sarestapi.provisioning;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
+import org.secureauth.sarestapi.util.JSONUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Reads {@link NewUserProfile}s one line at a time, so files of any size can be provisioned without loading them
+ *     in memory. Lines that can not be read are logged with their line number and skipped.
+ * </p>
+ * <p>
+ *     {@link #jsonLines(Reader)} reads one NewUserProfile JSON document per line. {@link #csv(Reader)} reads a
+ *     header row naming the columns, userId and password plus any of the profile properties (firstName, lastName,
+ *     phone1, email1, auxId1, ...), followed by one user per row. Fields may be quoted, quoted fields can hold
+ *     commas and doubled quotes but not line breaks. Empty fields are left unset.
+ * </p>
+ */
+public abstract class ProfileReader implements Iterator<NewUserProfile>, Closeable {
+
+    private static Logger logger=LoggerFactory.getLogger(ProfileReader.class);
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private NewUserProfile next;
+    private boolean done;
+
+    protected ProfileReader(Reader reader){
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * @param reader one NewUserProfile JSON document per line
+     * @return the profiles of the reader
+     */
+    public static ProfileReader jsonLines(Reader reader){
+        return new ProfileReader(reader) {
+            @Override
+            protected NewUserProfile parse(String line) throws IOException {
+                return JSONUtil.readerFor(NewUserProfile.class).readValue(line);
+            }
+        };
+    }
+
+    /**
+     * @param reader a header row followed by one user per row
+     * @return the profiles of the reader
+     * @throws IllegalArgumentException when the header has no userId column
+     */
+    public static ProfileReader csv(Reader reader){
+        final ProfileReader csv = new ProfileReader(reader) {
+            private List<String> columns;
+
+            @Override
+            protected NewUserProfile parse(String line) throws IOException {
+                if(columns == null){
+                    columns = new ArrayList<>();
+                    for(String column : splitCsv(line)){
+                        columns.add(column.trim());
+                    }
+                    if(!columns.contains("userId")){
+                        throw new IllegalArgumentException(new StringBuilder()
+                                .append("CSV header has no userId column: ").append(line).toString());
+                    }
+                    //Fail on unknown columns once instead of on every row
+                    try{
+                        toProfile(columns, columns);
+                    }catch(IOException e){
+                        throw new IllegalArgumentException(new StringBuilder()
+                                .append("CSV header has an unknown column: ").append(e.getMessage()).toString(), e);
+                    }
+                    return null;
+                }
+
+                List<String> fields = splitCsv(line);
+                if(fields.size() != columns.size()){
+                    throw new IOException(new StringBuilder().append("Expected ").append(columns.size())
+                            .append(" fields but found ").append(fields.size()).toString());
+                }
+                return toProfile(columns, fields);
+            }
+        };
+        //Read the header now so a file without one fails before provisioning starts
+        csv.hasNext();
+        return csv;
+    }
+
+    /**
+     * @param line a line of the input, never blank
+     * @return the profile, or null when the line holds no profile
+     */
+    protected abstract NewUserProfile parse(String line) throws IOException;
+
+    /**
+     * @return the number of lines read so far
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(next == null && !done){
+            String line;
+            try{
+                line = reader.readLine();
+            }catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+            if(line == null){
+                done = true;
+                break;
+            }
+            lineNumber++;
+            if(line.trim().isEmpty()){
+                continue;
+            }
+            try{
+                next = parse(line);
+            }catch(IOException e){
+                logger.error(new StringBuilder().append("Skipping line ").append(lineNumber).append(": ")
+                        .append(e.getMessage()).toString(), e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public NewUserProfile next() {
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        NewUserProfile profile = next;
+        next = null;
+        return profile;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        reader.close();
+    }
+
+    private static NewUserProfile toProfile(List<String> columns, List<String> fields) throws IOException {
+        ObjectNode profile = JsonNodeFactory.instance.objectNode();
+        ObjectNode properties = profile.putObject("properties");
+        for(int i = 0; i < columns.size(); i++){
+            String column = columns.get(i);
+            String value = fields.get(i);
+            if(value.isEmpty()){
+                continue;
+            }
+            if("userId".equals(column) || "password".equals(column)){
+                profile.put(column, value);
+            }else{
+                properties.put(column, value);
+            }
+        }
+        return JSONUtil.readerFor(NewUserProfile.class).readValue(profile);
+    }
+
+    //Splits a CSV line, honouring double quoted fields
+    static List<String> splitCsv(String line){
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+            if(quoted){
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                    field.append('"');
+                    i++;
+                }else if(c == '"'){
+                    quoted = false;
+                }else{
+                    field.append(c);
+                }
+            }else if(c == '"'){
+                quoted = true;
+            }else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            }else{
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
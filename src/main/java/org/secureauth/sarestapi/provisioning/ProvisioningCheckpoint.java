@@ -0,0 +1,94 @@
+package org.secureauth.sarestapi.provisioning;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ *     Records the users a {@link BulkProvisioner} has provisioned successfully, one user id per line appended to a
+ *     file. Running the same input again with the same checkpoint skips those users, so an interrupted run resumes
+ *     where it stopped. Users that failed are not recorded and are tried again.
+ * </p>
+ * <p>
+ *     Every line is flushed as soon as the user is done. Delete the file to start over.
+ * </p>
+ */
+public class ProvisioningCheckpoint implements Closeable {
+
+    private final Path file;
+    private final Set<String> done;
+    private final BufferedWriter writer;
+
+    /**
+     * @param file the checkpoint file, created when it does not exist
+     * @throws IOException when the file can not be read or opened for writing
+     */
+    public ProvisioningCheckpoint(Path file) throws IOException {
+        this.file = file;
+        Set<String> existing = new HashSet<>();
+        if(Files.exists(file)){
+            try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+                String line;
+                while((line = reader.readLine()) != null){
+                    if(!line.isEmpty()){
+                        existing.add(line);
+                    }
+                }
+            }
+        }
+        this.done = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(Math.max(16, existing.size() * 2)));
+        this.done.addAll(existing);
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return true when the user was provisioned by an earlier or the current run
+     */
+    public boolean isDone(String userId){
+        return done.contains(userId);
+    }
+
+    /**
+     * @return the number of users recorded
+     */
+    public int size(){
+        return done.size();
+    }
+
+    public void markDone(String userId){
+        if(!done.add(userId)){
+            return;
+        }
+        synchronized (writer){
+            try{
+                writer.write(userId);
+                writer.newLine();
+                writer.flush();
+            }catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer){
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.secureauth.sarestapi.provisioning;
+
+/**
+ * <p>
+ *     Receives the result of every user provisioned by a {@link BulkProvisioner}. Called from connection threads,
+ *     possibly concurrently, so implementations must be thread safe and return quickly.
+ * </p>
+ */
+public interface ProvisioningListener {
+
+    void onResult(ProvisioningResult result);
+}
@@ -0,0 +1,99 @@
+package org.secureauth.sarestapi.provisioning;
+
+import org.secureauth.sarestapi.data.Response.ResponseObject;
+
+/**
+ * <p>
+ *     Outcome of provisioning one user with a {@link BulkProvisioner}.
+ * </p>
+ */
+public class ProvisioningResult {
+
+    public enum Operation { CREATE, UPDATE }
+
+    private String userId;
+    private Operation operation;
+    private boolean success;
+    private int attempts;
+    private ResponseObject response;
+    private Throwable error;
+
+    public ProvisioningResult(){}
+
+    public ProvisioningResult(String userId, Operation operation, boolean success, int attempts, ResponseObject response, Throwable error){
+        this.userId = userId;
+        this.operation = operation;
+        this.success = success;
+        this.attempts = attempts;
+        this.response = response;
+        this.error = error;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * @return the last call made for the user
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    /**
+     * @return the number of calls made for the last operation, more than one when transient failures were retried
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return the last Appliance response, null when the request itself failed
+     */
+    public ResponseObject getResponse() {
+        return response;
+    }
+
+    public void setResponse(ResponseObject response) {
+        this.response = response;
+    }
+
+    /**
+     * @return the exception of the last attempt, null when the Appliance answered
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("userId: ").append(userId).append("; operation: ").append(operation)
+                .append("; success: ").append(success).append("; attempts: ").append(attempts)
+                .append("; response: ").append(response != null ? response.getStatus() + " " + response.getMessage() : null)
+                .append("; error: ").append(error).toString();
+    }
+}
@@ -0,0 +1,78 @@
+package org.secureauth.sarestapi.provisioning;
+
+/**
+ * <p>
+ *     Totals of a {@link BulkProvisioner} run.
+ * </p>
+ */
+public class ProvisioningSummary {
+
+    private long succeeded;
+    private long failed;
+    private long skipped;
+    private long retries;
+    private long elapsedMillis;
+
+    public ProvisioningSummary(){}
+
+    public ProvisioningSummary(long succeeded, long failed, long skipped, long retries, long elapsedMillis){
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.skipped = skipped;
+        this.retries = retries;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(long succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * @return users skipped because the checkpoint already held them
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return calls repeated after a transient failure
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    public void setRetries(long retries) {
+        this.retries = retries;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("succeeded: ").append(succeeded).append("; failed: ").append(failed)
+                .append("; skipped: ").append(skipped).append("; retries: ").append(retries)
+                .append("; elapsedMillis: ").append(elapsedMillis).toString();
+    }
+}
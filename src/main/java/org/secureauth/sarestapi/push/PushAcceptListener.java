@@ -0,0 +1,25 @@
+package org.secureauth.sarestapi.push;
+
+import org.secureauth.sarestapi.data.PushAcceptStatus;
+
+/**
+ * <p>
+ *     Receives the outcome of a push-to-accept request tracked by a {@link PushAcceptTracker}. Called once per
+ *     reference id, on a tracker or connection thread, so implementations should return quickly.
+ * </p>
+ */
+public interface PushAcceptListener {
+
+    /**
+     * The user answered the push, or the Appliance no longer knows the reference id
+     * @param referenceId the reference id returned when the push was sent
+     * @param status the last status returned by the Appliance, e.g. ACCEPTED or DENIED in its message
+     */
+    void onResult(String referenceId, PushAcceptStatus status);
+
+    /**
+     * The push was still pending when the tracker's timeout expired
+     * @param referenceId the reference id returned when the push was sent
+     */
+    void onTimeout(String referenceId);
+}
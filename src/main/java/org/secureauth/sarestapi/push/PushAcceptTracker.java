@@ -0,0 +1,435 @@
+package org.secureauth.sarestapi.push;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.secureauth.sarestapi.SAAccess;
+import org.secureauth.sarestapi.SAAsyncAccess;
+import org.secureauth.sarestapi.data.PushAcceptStatus;
+import org.secureauth.sarestapi.data.Response.ResponseObject;
+import org.secureauth.sarestapi.resources.s;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Waits for the answer to push-to-accept requests without parking a thread per push. Every reference id of an
+ *     SAAccess is owned by one tracker, which polls them with {@link SAAsyncAccess#queryPushAcceptStatus(String)}
+ *     from a single pacing thread.
+ * </p>
+ * <p>
+ *     Each reference is due for a poll soon after the push is sent, then less often while it stays PENDING, with
+ *     jitter so pushes sent together drift apart. Every wave interval the due polls are sent together, capped by a
+ *     global polls per second limit: when more are due than the cap allows, the most recently sent pushes, which
+ *     are the likeliest to have just been answered, go first and the rest wait for the next wave. References still
+ *     pending after the timeout are dropped.
+ * </p>
+ * <pre>
+ *     PushAcceptTracker tracker = saAccess.getPushAcceptTracker();
+ *     tracker.sendAndTrack(user, factorId, ipAddress, null, null).thenAccept(...);
+ * </pre>
+ */
+public class PushAcceptTracker {
+
+    private static Logger logger=LoggerFactory.getLogger(PushAcceptTracker.class);
+
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60 * 1000;
+    public static final long DEFAULT_WAVE_INTERVAL_MILLIS = 100;
+    public static final int DEFAULT_MAX_POLLS_PER_SECOND = 200;
+    //Resolved pushes are counted by their number of polls up to this, the last bucket holds everything above
+    public static final int MAX_COUNTED_POLLS = 32;
+
+    private static final String PENDING = "PENDING";
+    private static final double BACKOFF_MULTIPLIER = 1.5;
+    //Each delay is moved by up to this fraction either way so pushes sent together do not poll together
+    private static final double JITTER = 0.2;
+
+    //Most recently tracked first
+    private static final Comparator<Pending> MOST_RECENT_FIRST = new Comparator<Pending>() {
+        @Override
+        public int compare(Pending a, Pending b) {
+            return Long.compare(b.trackedAt, a.trackedAt);
+        }
+    };
+
+    private final SAAsyncAccess saAsyncAccess;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private volatile long initialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+    private volatile long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile int maxPollsPerSecond = DEFAULT_MAX_POLLS_PER_SECOND;
+    private volatile boolean closed;
+
+    //Polls allowed but not used by the previous wave, only touched by the pacing thread
+    private double pollBudget;
+    private long lastWave = System.nanoTime();
+
+    private final AtomicLong waves = new AtomicLong();
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong deferredPolls = new AtomicLong();
+    private final AtomicLong pollFailures = new AtomicLong();
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong resolvedPolls = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLongArray pollsPerResolved = new AtomicLongArray(MAX_COUNTED_POLLS + 1);
+
+    /**
+     * @param saAccess the SAAccess the pushes are sent through
+     */
+    public PushAcceptTracker(SAAccess saAccess){
+        this(new SAAsyncAccess(saAccess), DEFAULT_WAVE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param saAsyncAccess polls the Appliance
+     * @param waveIntervalMillis how often due polls are sent
+     */
+    public PushAcceptTracker(SAAsyncAccess saAsyncAccess, long waveIntervalMillis){
+        this.saAsyncAccess = saAsyncAccess;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sa-push-tracker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    wave();
+                }catch(RuntimeException e){
+                    logger.error(new StringBuilder().append("Exception polling push to accept requests").toString(), e);
+                }
+            }
+        }, waveIntervalMillis, waveIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>
+     *     Sends a push-to-accept request and tracks its reference id.
+     * </p>
+     * @see SAAccess#sendPushToAcceptReq(String, String, String, String, String)
+     * @return a future completed with the final {@link PushAcceptStatus}, or exceptionally with a
+     * {@link TimeoutException} when the push is still pending after the timeout
+     */
+    public CompletableFuture<PushAcceptStatus> sendAndTrack(String userid, String factor_id, String endUserIP, String clientCompany, String clientDescription){
+        return saAsyncAccess.sendPushToAcceptReq(userid, factor_id, endUserIP, clientCompany, clientDescription)
+                .thenCompose(new Function<ResponseObject, CompletableFuture<PushAcceptStatus>>() {
+                    @Override
+                    public CompletableFuture<PushAcceptStatus> apply(ResponseObject responseObject) {
+                        if(responseObject == null || responseObject.getReference_id() == null){
+                            CompletableFuture<PushAcceptStatus> failed = new CompletableFuture<>();
+                            failed.completeExceptionally(new IllegalStateException(new StringBuilder()
+                                    .append("Push to accept was not sent: ").append(responseObject).toString()));
+                            return failed;
+                        }
+                        return track(responseObject.getReference_id());
+                    }
+                });
+    }
+
+    /**
+     * @param referenceId the reference id returned by sendPushToAcceptReq
+     * @return a future completed with the final {@link PushAcceptStatus}, or exceptionally with a
+     * {@link TimeoutException} when the push is still pending after the timeout. Cancelling it stops the polling
+     */
+    public CompletableFuture<PushAcceptStatus> track(String referenceId){
+        return track(referenceId, null);
+    }
+
+    /**
+     * @param referenceId the reference id returned by sendPushToAcceptReq
+     * @param listener notified of the outcome, may be null
+     * @return a future completed with the final {@link PushAcceptStatus}, or exceptionally with a
+     * {@link TimeoutException} when the push is still pending after the timeout. Cancelling it stops the polling
+     */
+    public CompletableFuture<PushAcceptStatus> track(String referenceId, PushAcceptListener listener){
+        if(closed) throw new IllegalStateException("PushAcceptTracker is closed");
+        long now = System.nanoTime();
+        Pending push = new Pending(referenceId, listener, now, now + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        Pending existing = pending.putIfAbsent(referenceId, push);
+        if(existing != null){
+            return existing.future;
+        }
+        return push.future;
+    }
+
+    /**
+     * @return the number of pushes waiting for an answer
+     */
+    public int getPending(){
+        return pending.size();
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    /**
+     * @param initialDelayMillis the wait before the first poll of a reference id
+     */
+    public void setInitialDelayMillis(long initialDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * @param maxDelayMillis the longest wait between two polls of a reference id
+     */
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @param timeoutMillis how long a push may stay pending, applies to pushes tracked afterwards
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public int getMaxPollsPerSecond() {
+        return maxPollsPerSecond;
+    }
+
+    /**
+     * @param maxPollsPerSecond the most status polls sent to the Appliance per second, across all pending pushes
+     */
+    public void setMaxPollsPerSecond(int maxPollsPerSecond) {
+        this.maxPollsPerSecond = maxPollsPerSecond;
+    }
+
+    /**
+     * @return the number of waves that sent at least one poll
+     */
+    public long getWaves() {
+        return waves.get();
+    }
+
+    /**
+     * @return status polls sent to the Appliance
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    /**
+     * @return due polls held back to the next wave by the polls per second cap
+     */
+    public long getDeferredPolls() {
+        return deferredPolls.get();
+    }
+
+    public long getPollFailures() {
+        return pollFailures.get();
+    }
+
+    /**
+     * @return pushes answered by the user, or unknown to the Appliance
+     */
+    public long getResolved() {
+        return resolved.get();
+    }
+
+    /**
+     * @return pushes dropped after the timeout
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * @return the average number of polls it took to resolve a push
+     */
+    public double getAveragePollsPerResolved() {
+        long count = resolved.get();
+        return count == 0 ? 0 : (double) resolvedPolls.get() / count;
+    }
+
+    /**
+     * @return resolved pushes by the number of polls it took, index {@link #MAX_COUNTED_POLLS} counts that many or more
+     */
+    public long[] getPollsPerResolved() {
+        long[] counts = new long[pollsPerResolved.length()];
+        for(int i = 0; i < counts.length; i++){
+            counts[i] = pollsPerResolved.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * <p>
+     *     Stops polling. Pushes still pending are completed with a {@link CancellationException}.
+     * </p>
+     */
+    public void close(){
+        closed = true;
+        scheduler.shutdownNow();
+        for(Pending push : pending.values()){
+            finish(push).future.completeExceptionally(new CancellationException("PushAcceptTracker closed"));
+        }
+    }
+
+    //Runs on the pacing thread: drops expired pushes and sends the due polls the rate cap allows
+    private void wave(){
+        long now = System.nanoTime();
+        int rate = maxPollsPerSecond;
+        double perWave = rate * ((now - lastWave) / 1e9);
+        lastWave = now;
+        //Unused polls carry over one wave at most so an idle tracker cannot burst
+        pollBudget = Math.min(pollBudget + perWave, Math.max(1, perWave * 2));
+
+        List<Pending> due = new ArrayList<>();
+        for(Pending push : pending.values()){
+            if(push.future.isDone()){
+                finish(push);
+            }else if(now - push.deadline >= 0){
+                //A poll still in flight may never answer, its late response is ignored
+                timeout(push);
+            }else if(!push.inFlight && now - push.nextPoll >= 0){
+                due.add(push);
+            }
+        }
+        if(due.isEmpty()){
+            return;
+        }
+
+        Collections.sort(due, MOST_RECENT_FIRST);
+        int allowed = Math.min(due.size(), (int) pollBudget);
+        pollBudget -= allowed;
+        deferredPolls.addAndGet(due.size() - allowed);
+        if(allowed > 0){
+            waves.incrementAndGet();
+        }
+        for(int i = 0; i < allowed; i++){
+            poll(due.get(i));
+        }
+    }
+
+    private void poll(final Pending push){
+        push.inFlight = true;
+        push.polls++;
+        polls.incrementAndGet();
+        saAsyncAccess.queryPushAcceptStatus(push.referenceId).whenComplete(new BiConsumer<PushAcceptStatus, Throwable>() {
+            @Override
+            public void accept(PushAcceptStatus status, Throwable throwable) {
+                if(throwable != null){
+                    //Keep polling through transient failures until the push times out
+                    pollFailures.incrementAndGet();
+                    logger.warn(new StringBuilder().append("Exception polling push to accept ").append(push.referenceId)
+                            .append(": ").append(throwable.getMessage()).toString());
+                }else if(status != null && (s.STATUS_CIRCUIT_OPEN.equalsIgnoreCase(status.getStatus())
+                        || s.STATUS_CONCURRENCY_LIMITED.equalsIgnoreCase(status.getStatus())
+                        || s.STATUS_RATE_LIMITED.equalsIgnoreCase(status.getStatus()))){
+                    //Not sent, ask again once the circuit or the limits let calls through
+                    pollFailures.incrementAndGet();
+                }else if(status != null && !isPending(status)){
+                    complete(push, status);
+                    return;
+                }
+                push.nextPoll = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(nextDelay(push));
+                push.inFlight = false;
+            }
+        });
+    }
+
+    private long nextDelay(Pending push){
+        push.delayMillis = Math.min(maxDelayMillis, (long) (push.delayMillis * BACKOFF_MULTIPLIER));
+        double jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return (long) (push.delayMillis * jitter);
+    }
+
+    private static boolean isPending(PushAcceptStatus status){
+        return s.STATUS_VALID.equalsIgnoreCase(status.getStatus()) && PENDING.equalsIgnoreCase(status.getMessage());
+    }
+
+    private void complete(Pending push, PushAcceptStatus status){
+        if(!pending.remove(push.referenceId, push)){
+            //Timed out or closed while the poll was in flight
+            return;
+        }
+        resolved.incrementAndGet();
+        resolvedPolls.addAndGet(push.polls);
+        pollsPerResolved.incrementAndGet(Math.min(push.polls, MAX_COUNTED_POLLS));
+        if(push.listener != null){
+            try{
+                push.listener.onResult(push.referenceId, status);
+            }catch(RuntimeException e){
+                logger.error(new StringBuilder().append("Exception in PushAcceptListener for ").append(push.referenceId).toString(), e);
+            }
+        }
+        push.future.complete(status);
+    }
+
+    private void timeout(Pending push){
+        if(!pending.remove(push.referenceId, push)){
+            //Answered by a poll completing at the same time
+            return;
+        }
+        timedOut.incrementAndGet();
+        if(push.listener != null){
+            try{
+                push.listener.onTimeout(push.referenceId);
+            }catch(RuntimeException e){
+                logger.error(new StringBuilder().append("Exception in PushAcceptListener for ").append(push.referenceId).toString(), e);
+            }
+        }
+        push.future.completeExceptionally(new TimeoutException(new StringBuilder()
+                .append("Push to accept ").append(push.referenceId).append(" still pending after ")
+                .append(push.polls).append(" polls").toString()));
+    }
+
+    private Pending finish(Pending push){
+        pending.remove(push.referenceId, push);
+        return push;
+    }
+
+    private class Pending {
+        private final String referenceId;
+        private final PushAcceptListener listener;
+        private final long trackedAt;
+        private final long deadline;
+        private final CompletableFuture<PushAcceptStatus> future = new CompletableFuture<>();
+        //Handed between the pacing thread and the poll's completion, never touched by both at once
+        private volatile boolean inFlight;
+        private volatile long nextPoll;
+        private volatile long delayMillis = initialDelayMillis;
+        private volatile int polls;
+
+        private Pending(String referenceId, PushAcceptListener listener, long trackedAt, long deadline){
+            this.referenceId = referenceId;
+            this.listener = listener;
+            this.trackedAt = trackedAt;
+            this.deadline = deadline;
+            this.nextPoll = trackedAt + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.secureauth.sarestapi.ratelimit;
+
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+
+/**
+ * <p>
+ *     The lanes of a {@link RateLimiter}. Each lane keeps a share of the Realm's tokens out of reach of the lanes
+ *     below it, so logins always find capacity and bulk jobs take what is left.
+ * </p>
+ */
+public enum Priority {
+
+    //A user is waiting on the call: authentication, push to accept, adaptive auth, IP evaluation, DFP and BehaveBio
+    INTERACTIVE,
+    //Single user administration: profile reads, password changes, access history
+    STANDARD,
+    //Provisioning: users created or updated, group memberships
+    BACKGROUND;
+
+    public static Priority of(SAEndpoint endpoint){
+        switch (endpoint){
+            case AUTH:
+            case PUSH_STATUS:
+            case ADAPTIVE_AUTH:
+            case IPEVAL:
+            case FACTORS:
+            case DFP_JS:
+            case DFP_VALIDATE:
+            case DFP_CONFIRM:
+            case BEHAVEBIO_JS:
+            case BEHAVEBIO_SUBMIT:
+                return INTERACTIVE;
+            case CREATE_USER:
+            case UPDATE_USER:
+            case USER_TO_GROUP:
+            case USER_TO_GROUPS:
+            case GROUP_TO_USERS:
+            case GROUP_TO_USER:
+                return BACKGROUND;
+            default:
+                return STANDARD;
+        }
+    }
+}
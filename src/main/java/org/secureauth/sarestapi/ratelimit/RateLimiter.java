@@ -0,0 +1,275 @@
+package org.secureauth.sarestapi.ratelimit;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.resources.s;
+import org.secureauth.sarestapi.util.StatusResponse;
+
+/**
+ * <p>
+ *     Limits the calls sent for each Realm with a {@link TokenBucket}, shared by the {@link Priority} lanes. Set with
+ *     {@code saAccess.setRateLimiter(rateLimiter)}; one RateLimiter can be set on the SAAccess of several Realms, and
+ *     their SAAsyncAccess use it too. Limits, reserves and priorities can all be changed while calls are running.
+ * </p>
+ * <p>
+ *     Each lane keeps {@link #getReservePercent(Priority)} of the Realm's burst out of reach of the lanes below it:
+ *     by default {@link Priority#INTERACTIVE} calls can empty the bucket, {@link Priority#STANDARD} calls stop when
+ *     20% is left and {@link Priority#BACKGROUND} calls when half of it is left. A bulk job therefore only gets the
+ *     tokens logins don't use.
+ * </p>
+ * <p>
+ *     A call without a token waits for one up to {@link #getMaxWaitMillis(Priority)}, asynchronous calls without
+ *     holding a thread. When none comes in time the call is not sent and returns a response with status
+ *     {@code rate_limited} ({@link s#STATUS_RATE_LIMITED}); types without a status field get null.
+ * </p>
+ * <p>
+ *     A call takes one token however many requests it sends: the retries of a {@code RetryPolicy}, the hedges of a
+ *     {@code HedgePolicy} and the failover to another Appliance are not counted. Those have their own budgets, so
+ *     the requests reaching the Appliance can exceed the Realm's rate by at most those budgets. Calls rejected by an
+ *     open circuit breaker take no token.
+ * </p>
+ */
+public class RateLimiter {
+
+    public static final double DEFAULT_INTERACTIVE_RESERVE_PERCENT = 0;
+    public static final double DEFAULT_STANDARD_RESERVE_PERCENT = 20;
+    public static final double DEFAULT_BACKGROUND_RESERVE_PERCENT = 50;
+    public static final long DEFAULT_INTERACTIVE_MAX_WAIT_MILLIS = 500;
+    public static final long DEFAULT_STANDARD_MAX_WAIT_MILLIS = 1000;
+    public static final long DEFAULT_BACKGROUND_MAX_WAIT_MILLIS = 10000;
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    //Realms with their own limit, the others follow the default limit
+    private final Set<String> configured = ConcurrentHashMap.newKeySet();
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+    private volatile double defaultRatePerSecond;
+    private volatile int defaultBurst;
+    private volatile Map<SAEndpoint, Priority> priorities = new EnumMap<>(SAEndpoint.class);
+
+    /**
+     * <p>
+     *     A limiter without a default limit, only the Realms given one with {@link #setRealmLimit} are limited.
+     * </p>
+     */
+    public RateLimiter(){
+        this(0, 1);
+    }
+
+    /**
+     * @param defaultRatePerSecond the calls per second of each Realm without its own limit, 0 for no limit
+     * @param defaultBurst the calls such a Realm can make at once after a quiet period
+     */
+    public RateLimiter(double defaultRatePerSecond, int defaultBurst){
+        this.defaultRatePerSecond = defaultRatePerSecond;
+        this.defaultBurst = defaultBurst;
+        //Filled once, the map is only read afterwards
+        lanes.put(Priority.INTERACTIVE, new Lane(DEFAULT_INTERACTIVE_RESERVE_PERCENT, DEFAULT_INTERACTIVE_MAX_WAIT_MILLIS));
+        lanes.put(Priority.STANDARD, new Lane(DEFAULT_STANDARD_RESERVE_PERCENT, DEFAULT_STANDARD_MAX_WAIT_MILLIS));
+        lanes.put(Priority.BACKGROUND, new Lane(DEFAULT_BACKGROUND_RESERVE_PERCENT, DEFAULT_BACKGROUND_MAX_WAIT_MILLIS));
+    }
+
+    /**
+     * <p>
+     *     Takes a token for the call, waiting for one up to the lane's maximum wait.
+     * </p>
+     * @return true when the call can be sent, false when no token came in time
+     */
+    public boolean acquire(String realm, SAEndpoint endpoint){
+        long started = System.nanoTime();
+        try{
+            while(true){
+                long wait = tryAcquire(realm, endpoint, started);
+                if(wait <= 0){
+                    return wait == 0;
+                }
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            lanes.get(getPriority(endpoint)).rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * <p>
+     *     Takes a token for the call without waiting.
+     * </p>
+     * @param startedNanos the {@link System#nanoTime()} the call first asked for a token
+     * @return 0 when the call can be sent, less than 0 when it can't be within the lane's maximum wait, otherwise the
+     *     nanoseconds to wait before asking again
+     */
+    public long tryAcquire(String realm, SAEndpoint endpoint, long startedNanos){
+        Lane lane = lanes.get(getPriority(endpoint));
+        long wait = bucket(realm).tryAcquire(lane.reservePercent / 100);
+        if(wait == 0){
+            lane.permitted.incrementAndGet();
+            return 0;
+        }
+        if(System.nanoTime() + wait - startedNanos > TimeUnit.MILLISECONDS.toNanos(lane.maxWaitMillis)){
+            lane.rejected.incrementAndGet();
+            return -1;
+        }
+        return wait;
+    }
+
+    /**
+     * @return the response of a call that got no token, null when the type has no status
+     */
+    public <T> T rejected(Class<T> valueType){
+        return StatusResponse.create(valueType, s.STATUS_RATE_LIMITED, "Rate limit of the Realm reached, request not sent");
+    }
+
+    /**
+     * @return the bucket of the Realm, created with the default limit on its first call
+     */
+    public TokenBucket bucket(String realm){
+        TokenBucket bucket = buckets.get(realm);
+        if(bucket == null){
+            TokenBucket created = new TokenBucket(defaultRatePerSecond, defaultBurst);
+            bucket = buckets.putIfAbsent(realm, created);
+            if(bucket == null){
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * @param realm the Realm to limit apart from the default
+     * @param ratePerSecond the calls per second of the Realm, 0 for no limit
+     * @param burst the calls the Realm can make at once after a quiet period
+     */
+    public void setRealmLimit(String realm, double ratePerSecond, int burst){
+        configured.add(realm);
+        bucket(realm).setLimit(ratePerSecond, burst);
+    }
+
+    /**
+     * <p>
+     *     Puts the Realm back on the default limit.
+     * </p>
+     */
+    public void removeRealmLimit(String realm){
+        if(configured.remove(realm)){
+            bucket(realm).setLimit(defaultRatePerSecond, defaultBurst);
+        }
+    }
+
+    /**
+     * @param ratePerSecond the calls per second of each Realm without its own limit, 0 for no limit
+     * @param burst the calls such a Realm can make at once after a quiet period
+     */
+    public void setDefaultLimit(double ratePerSecond, int burst){
+        this.defaultRatePerSecond = ratePerSecond;
+        this.defaultBurst = burst;
+        for(Map.Entry<String, TokenBucket> entry : buckets.entrySet()){
+            if(!configured.contains(entry.getKey())){
+                entry.getValue().setLimit(ratePerSecond, burst);
+            }
+        }
+    }
+
+    public double getDefaultRatePerSecond() {
+        return defaultRatePerSecond;
+    }
+
+    public int getDefaultBurst() {
+        return defaultBurst;
+    }
+
+    /**
+     * @return the lane of the endpoint's calls
+     */
+    public Priority getPriority(SAEndpoint endpoint){
+        Priority priority = priorities.get(endpoint);
+        return priority != null ? priority : Priority.of(endpoint);
+    }
+
+    /**
+     * @param endpoint the endpoint to move to another lane
+     * @param priority its lane, null for the one given by {@link Priority#of(SAEndpoint)}
+     */
+    public synchronized void setPriority(SAEndpoint endpoint, Priority priority){
+        Map<SAEndpoint, Priority> copy = new EnumMap<>(priorities);
+        if(priority == null){
+            copy.remove(endpoint);
+        }else{
+            copy.put(endpoint, priority);
+        }
+        priorities = copy;
+    }
+
+    public double getReservePercent(Priority priority) {
+        return lanes.get(priority).reservePercent;
+    }
+
+    /**
+     * @param reservePercent the share of the burst, between 0 and 100, the lane's calls leave to the lanes above it
+     */
+    public void setReservePercent(Priority priority, double reservePercent) {
+        lanes.get(priority).reservePercent = reservePercent;
+    }
+
+    public long getMaxWaitMillis(Priority priority) {
+        return lanes.get(priority).maxWaitMillis;
+    }
+
+    /**
+     * @param maxWaitMillis how long the lane's calls wait for a token, 0 to reject them right away
+     */
+    public void setMaxWaitMillis(Priority priority, long maxWaitMillis) {
+        lanes.get(priority).maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * @return the calls of the lane that got a token
+     */
+    public long getPermitted(Priority priority) {
+        return lanes.get(priority).permitted.get();
+    }
+
+    /**
+     * @return the calls of the lane not sent because no token came in time
+     */
+    public long getRejected(Priority priority) {
+        return lanes.get(priority).rejected.get();
+    }
+
+    /**
+     * @return one line per lane, then one per Realm
+     */
+    @Override
+    public String toString(){
+        StringBuilder stringBuilder = new StringBuilder();
+        for(Map.Entry<Priority, Lane> entry : lanes.entrySet()){
+            stringBuilder.append(entry.getKey()).append(": permitted: ").append(entry.getValue().permitted.get())
+                    .append("; rejected: ").append(entry.getValue().rejected.get()).append("\n");
+        }
+        for(Map.Entry<String, TokenBucket> entry : buckets.entrySet()){
+            stringBuilder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+
+    private static final class Lane {
+
+        final AtomicLong permitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        volatile double reservePercent;
+        volatile long maxWaitMillis;
+
+        Lane(double reservePercent, long maxWaitMillis){
+            this.reservePercent = reservePercent;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+    }
+}
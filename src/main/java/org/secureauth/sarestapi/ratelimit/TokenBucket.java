@@ -0,0 +1,97 @@
+package org.secureauth.sarestapi.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Lock free token bucket. Rather than a token count it keeps the time at which the bucket will be full again, so
+ *     taking a token is a single compare and set and tokens refill without a background thread.
+ * </p>
+ */
+public class TokenBucket {
+
+    //The time the bucket is full again, the bucket is full while it is in the past
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+    private volatile long intervalNanos;
+    private volatile int burst;
+
+    /**
+     * @param ratePerSecond the tokens added per second, 0 or less for no limit
+     * @param burst the most tokens the bucket holds
+     */
+    public TokenBucket(double ratePerSecond, int burst){
+        setLimit(ratePerSecond, burst);
+    }
+
+    /**
+     * <p>
+     *     Takes a token, unless that would leave fewer than {@code reserved} of the burst in the bucket.
+     * </p>
+     * @param reserved the share of the burst, between 0 and 1, that must stay in the bucket
+     * @return 0 when the token was taken, otherwise the nanoseconds until it can be
+     */
+    public long tryAcquire(double reserved){
+        long interval = intervalNanos;
+        if(interval <= 0){
+            return 0;
+        }
+        //A lane can always use a full bucket, whatever it leaves to the others
+        long capacity = Math.max(interval, (long) (burst * (1 - reserved) * interval));
+        while(true){
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + interval;
+            long wait = next - now - capacity;
+            if(wait > 0){
+                return wait;
+            }
+            if(fullAt.compareAndSet(current, next)){
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     *     Changes the rate and burst, the tokens already taken still count.
+     * </p>
+     * @param ratePerSecond the tokens added per second, 0 or less for no limit
+     * @param burst the most tokens the bucket holds
+     */
+    public void setLimit(double ratePerSecond, int burst){
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = ratePerSecond > 0 ? Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond)) : 0;
+    }
+
+    /**
+     * @return the tokens added per second, 0 when there is no limit
+     */
+    public double getRatePerSecond(){
+        long interval = intervalNanos;
+        return interval > 0 ? (double) TimeUnit.SECONDS.toNanos(1) / interval : 0;
+    }
+
+    public int getBurst(){
+        return burst;
+    }
+
+    /**
+     * @return the tokens left in the bucket
+     */
+    public double getAvailable(){
+        long interval = intervalNanos;
+        if(interval <= 0){
+            return burst;
+        }
+        long owed = fullAt.get() - System.nanoTime();
+        return owed > 0 ? Math.max(0, burst - (double) owed / interval) : burst;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("ratePerSecond: ").append(getRatePerSecond()).append("; burst: ").append(burst)
+                .append("; available: ").append((long) getAvailable()).toString();
+    }
+}
@@ -0,0 +1,439 @@
+package org.secureauth.sarestapi.resources;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Spreads requests over the Appliances of an {@link SABaseURL}. Each request goes to the Appliance with the
+ *     fewest requests outstanding, or with {@link Selection#LATENCY_WEIGHTED} to the one with the lowest average
+ *     response time times outstanding requests.
+ * </p>
+ * <p>
+ *     An Appliance failing {@link #getEjectAfterFailures()} requests in a row (no response or an HTTP status of 500
+ *     or more) is taken out of rotation for {@link #getEjectMillis()}. With more than one Appliance a background
+ *     check also opens a TCP connection to each of them every {@link #getHealthCheckMillis()}: an Appliance that
+ *     does not accept it is ejected, and put back once it does. An Appliance ejected for failed requests may still
+ *     accept connections, so it stays out for the whole {@link #getEjectMillis()} whatever the check finds. When
+ *     every Appliance is ejected requests still go to the one coming back soonest.
+ * </p>
+ * <p>
+ *     A request that could not connect was never sent, so it fails over to the next Appliance whatever its method;
+ *     each Appliance is tried at most once per request. Failures after connecting are returned as they are.
+ * </p>
+ */
+public class ApplianceBalancer {
+
+    private static Logger logger=LoggerFactory.getLogger(ApplianceBalancer.class);
+
+    public enum Selection {
+        LEAST_OUTSTANDING,
+        LATENCY_WEIGHTED
+    }
+
+    public static final int DEFAULT_EJECT_AFTER_FAILURES = 3;
+    public static final long DEFAULT_EJECT_MILLIS = 30000;
+    public static final long DEFAULT_HEALTH_CHECK_MILLIS = 10000;
+    public static final int DEFAULT_HEALTH_CHECK_TIMEOUT = 2000;
+
+    private final List<ApplianceNode> nodes;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile Selection selection = Selection.LEAST_OUTSTANDING;
+    private volatile int ejectAfterFailures = DEFAULT_EJECT_AFTER_FAILURES;
+    private volatile long ejectMillis = DEFAULT_EJECT_MILLIS;
+    private volatile long healthCheckMillis = DEFAULT_HEALTH_CHECK_MILLIS;
+    private volatile int healthCheckTimeout = DEFAULT_HEALTH_CHECK_TIMEOUT;
+    private volatile boolean healthChecksStarted;
+    private volatile ConcurrencyLimiter limiter;
+    private final List<SAAsyncExecuter.CapacityListener> capacityListeners = new CopyOnWriteArrayList<>();
+    //Blocking calls wait here for a slot; a lock rather than a monitor so waiting virtual threads don't pin their carrier
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition capacityFreed = capacityLock.newCondition();
+    private ScheduledExecutorService healthChecker;
+    private boolean closed;
+
+    public ApplianceBalancer(SABaseURL saBaseURL){
+        List<ApplianceNode> list = new ArrayList<>();
+        for(SABaseURL appliance : saBaseURL.getAppliances()){
+            list.add(new ApplianceNode(appliance));
+        }
+        this.nodes = Collections.unmodifiableList(list);
+    }
+
+    public List<ApplianceNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param tried the Appliances this request already failed on, may be null
+     * @return the Appliance to send the request to, null when all of them were tried
+     */
+    ApplianceNode choose(List<ApplianceNode> tried){
+        int size = nodes.size();
+        if(size == 1){
+            ApplianceNode node = nodes.get(0);
+            return tried == null || !tried.contains(node) ? node : null;
+        }
+        if(!healthChecksStarted){
+            startHealthChecks();
+        }
+
+        long now = System.nanoTime();
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        boolean weighted = selection == Selection.LATENCY_WEIGHTED;
+        boolean limited = limiter != null;
+        ApplianceNode best = null;
+        double bestScore = 0;
+        //Used when every Appliance in rotation is at its concurrency limit
+        ApplianceNode full = null;
+        double fullScore = 0;
+        ApplianceNode soonest = null;
+        for(int i = 0; i < size; i++){
+            ApplianceNode node = nodes.get((start + i) % size);
+            if(tried != null && tried.contains(node)){
+                continue;
+            }
+            if(node.isEjected(now)){
+                if(soonest == null || node.getEjectedUntil() - soonest.getEjectedUntil() < 0){
+                    soonest = node;
+                }
+                continue;
+            }
+            //Appliances not measured yet score lowest so each gets measured; with limits the share of the limit in use counts
+            int outstanding = node.getOutstanding();
+            double score = weighted ? (double) node.getAverageNanos() * (outstanding + 1)
+                    : limited ? (double) outstanding / Math.max(1, node.getLimit()) : outstanding;
+            if(limited && outstanding >= node.getLimit()){
+                if(full == null || score < fullScore){
+                    full = node;
+                    fullScore = score;
+                }
+                continue;
+            }
+            if(best == null || score < bestScore){
+                best = node;
+                bestScore = score;
+            }
+        }
+        return best != null ? best : full != null ? full : soonest;
+    }
+
+    /**
+     * <p>
+     *     Begins a request on the Appliance, unless the {@link ConcurrencyLimiter} has no room left on it.
+     * </p>
+     */
+    boolean tryBegin(ApplianceNode node){
+        ConcurrencyLimiter concurrencyLimiter = limiter;
+        if(concurrencyLimiter == null){
+            node.begin();
+            return true;
+        }
+        return node.tryBegin(node.getLimit());
+    }
+
+    /**
+     * <p>
+     *     Chooses an Appliance and begins a request on it, waiting up to {@link ConcurrencyLimiter#getMaxWaitMillis()}
+     *     when every Appliance is at its limit.
+     * </p>
+     * @return the Appliance the request was begun on, null when there was no room in time or all were tried
+     */
+    ApplianceNode awaitBegin(List<ApplianceNode> tried){
+        ApplianceNode node = choose(tried);
+        if(node == null || tryBegin(node)){
+            return node;
+        }
+        ConcurrencyLimiter concurrencyLimiter = limiter;
+        if(concurrencyLimiter == null || !concurrencyLimiter.enterQueue()){
+            return null;
+        }
+        try{
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(concurrencyLimiter.getMaxWaitMillis());
+            capacityLock.lock();
+            try{
+                while(true){
+                    node = choose(tried);
+                    if(node == null || tryBegin(node)){
+                        return node;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if(remaining <= 0){
+                        concurrencyLimiter.onRejected();
+                        return null;
+                    }
+                    capacityFreed.awaitNanos(remaining);
+                }
+            }finally{
+                capacityLock.unlock();
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }finally{
+            concurrencyLimiter.leaveQueue();
+        }
+    }
+
+    /**
+     * @return true when a request could begin on an Appliance without waiting
+     */
+    boolean hasCapacity(){
+        if(limiter == null){
+            return true;
+        }
+        long now = System.nanoTime();
+        boolean ejected = true;
+        boolean room = false;
+        for(ApplianceNode node : nodes){
+            boolean free = node.getOutstanding() < node.getLimit();
+            if(!node.isEjected(now)){
+                if(free){
+                    return true;
+                }
+                ejected = false;
+            }
+            room |= free;
+        }
+        //Requests still go to an ejected Appliance when all of them are
+        return ejected && room;
+    }
+
+    //Runs when a slot frees up while a ConcurrencyLimiter is set, to start queued asynchronous requests
+    void addCapacityListener(SAAsyncExecuter.CapacityListener listener){
+        //Without a ConcurrencyLimiter freed() never runs, drop the listeners of collected executers here too
+        for(SAAsyncExecuter.CapacityListener existing : capacityListeners){
+            if(existing.isCollected()){
+                capacityListeners.remove(existing);
+            }
+        }
+        capacityListeners.add(listener);
+    }
+
+    //Ends a request that was begun but never sent
+    void abandon(ApplianceNode node){
+        node.abandon();
+        freed();
+    }
+
+    //Ends a request that was sent and then cancelled, without a sample for the limiter
+    void cancel(ApplianceNode node){
+        node.cancel();
+        freed();
+    }
+
+    void end(ApplianceNode node, long elapsedNanos, boolean failed){
+        int inFlight = node.getOutstanding();
+        boolean ejected = node.end(elapsedNanos, failed, nodes.size() > 1 ? ejectAfterFailures : Integer.MAX_VALUE,
+                TimeUnit.MILLISECONDS.toNanos(ejectMillis));
+        ConcurrencyLimiter concurrencyLimiter = limiter;
+        if(concurrencyLimiter != null){
+            concurrencyLimiter.onSample(node, elapsedNanos, inFlight, failed);
+            freed();
+        }
+        if(ejected){
+            logger.warn(new StringBuilder().append("Appliance ").append(node.getApplianceURL()).append(" failed ")
+                    .append(node.getConsecutiveFailures()).append(" requests in a row, out of rotation for ")
+                    .append(ejectMillis).append("ms").toString());
+        }
+    }
+
+    private void freed(){
+        ConcurrencyLimiter concurrencyLimiter = limiter;
+        if(concurrencyLimiter == null){
+            return;
+        }
+        if(concurrencyLimiter.hasWaiting()){
+            capacityLock.lock();
+            try{
+                capacityFreed.signal();
+            }finally{
+                capacityLock.unlock();
+            }
+        }
+        for(SAAsyncExecuter.CapacityListener listener : capacityListeners){
+            if(!listener.capacityFreed()){
+                capacityListeners.remove(listener);
+            }
+        }
+    }
+
+    /**
+     * @return true when the request failed before reaching the Appliance, so sending it elsewhere is safe
+     */
+    public static boolean isConnectFailure(Throwable throwable){
+        for(Throwable cause = throwable; cause != null; cause = cause.getCause()){
+            if(cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                    || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException){
+                return true;
+            }
+            //HttpURLConnection reports connect timeouts as a plain SocketTimeoutException
+            if(cause instanceof SocketTimeoutException && "connect timed out".equals(cause.getMessage())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void startHealthChecks(){
+        if(healthChecksStarted){
+            return;
+        }
+        healthChecksStarted = true;
+        if(closed || healthCheckMillis <= 0){
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sa-appliance-health-check");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        healthChecker.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                checkHealth();
+            }
+        }, healthCheckMillis, healthCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkHealth(){
+        for(ApplianceNode node : nodes){
+            SABaseURL appliance = node.getSABaseURL();
+            long started = System.nanoTime();
+            try (Socket socket = new Socket()){
+                socket.connect(new InetSocketAddress(appliance.getAppliance(), Integer.parseInt(appliance.getPort())), healthCheckTimeout);
+                if(node.healthCheckPassed()){
+                    logger.info(new StringBuilder().append("Appliance ").append(node.getApplianceURL()).append(" is back in rotation").toString());
+                }
+            }catch(Exception e){
+                if(node.healthCheckFailed(TimeUnit.MILLISECONDS.toNanos(ejectMillis))){
+                    logger.warn(new StringBuilder().append("Appliance ").append(node.getApplianceURL())
+                            .append(" failed its health check, out of rotation for ").append(ejectMillis).append("ms: ")
+                            .append(e.getMessage()).toString());
+                }
+            }
+            logger.debug(new StringBuilder().append("Health check of ").append(node.getApplianceURL()).append(" took ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).append("ms").toString());
+        }
+    }
+
+    /**
+     * <p>
+     *     Stops the background health checks.
+     * </p>
+     */
+    public synchronized void close(){
+        closed = true;
+        healthChecksStarted = true;
+        if(healthChecker != null){
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @param limiter caps the requests outstanding at each Appliance, null for no cap; the limits start over
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter limiter) {
+        for(ApplianceNode node : nodes){
+            if(limiter != null){
+                limiter.reset(node);
+            }else{
+                node.setLimit(0);
+            }
+        }
+        this.limiter = limiter;
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+    }
+
+    public int getEjectAfterFailures() {
+        return ejectAfterFailures;
+    }
+
+    /**
+     * @param ejectAfterFailures the failed requests in a row that take an Appliance out of rotation
+     */
+    public void setEjectAfterFailures(int ejectAfterFailures) {
+        this.ejectAfterFailures = ejectAfterFailures;
+    }
+
+    public long getEjectMillis() {
+        return ejectMillis;
+    }
+
+    /**
+     * @param ejectMillis how long a failing Appliance stays out of rotation
+     */
+    public void setEjectMillis(long ejectMillis) {
+        this.ejectMillis = ejectMillis;
+    }
+
+    public long getHealthCheckMillis() {
+        return healthCheckMillis;
+    }
+
+    /**
+     * @param healthCheckMillis the time between two health checks, 0 to disable them; set before the first request
+     */
+    public void setHealthCheckMillis(long healthCheckMillis) {
+        this.healthCheckMillis = healthCheckMillis;
+    }
+
+    public int getHealthCheckTimeout() {
+        return healthCheckTimeout;
+    }
+
+    /**
+     * @param healthCheckTimeout the connect timeout of a health check, in milliseconds
+     */
+    public void setHealthCheckTimeout(int healthCheckTimeout) {
+        this.healthCheckTimeout = healthCheckTimeout;
+    }
+
+    /**
+     * @return one line per Appliance
+     */
+    @Override
+    public String toString(){
+        StringBuilder stringBuilder = new StringBuilder();
+        for(ApplianceNode node : nodes){
+            stringBuilder.append(node).append("\n");
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,209 @@
+package org.secureauth.sarestapi.resources;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.secureauth.sarestapi.data.SABaseURL;
+
+/**
+ * <p>
+ *     One Appliance behind an {@link ApplianceBalancer}, with the load and health the balancer chooses by.
+ * </p>
+ */
+public class ApplianceNode {
+
+    //Weight of the newest sample in the response time average
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final SABaseURL saBaseURL;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong ejections = new AtomicLong();
+    //Racing updates may drop a sample, which an average can afford
+    private volatile long averageNanos;
+    private volatile long ejectedUntil;
+    private volatile boolean ejected;
+    //Set when the health check rather than failed requests took the Appliance out of rotation
+    private volatile boolean ejectedByHealthCheck;
+    //Concurrency limit, 0 without a ConcurrencyLimiter; the estimate and averages behind it are guarded by this node
+    private volatile int limit;
+    double estimatedLimit;
+    double shortRttNanos;
+    long minRttNanos;
+    int untilProbe;
+
+    ApplianceNode(SABaseURL saBaseURL){
+        this.saBaseURL = saBaseURL;
+    }
+
+    public SABaseURL getSABaseURL() {
+        return saBaseURL;
+    }
+
+    public String getApplianceURL() {
+        return saBaseURL.getApplianceURL();
+    }
+
+    /**
+     * @return the requests sent and not answered yet
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return the moving average of the time to a response, 0 before the first one
+     */
+    public long getAverageNanos() {
+        return averageNanos;
+    }
+
+    /**
+     * @return the requests the {@link ConcurrencyLimiter} lets through at the same time, 0 without a limiter
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * @return the number of times the Appliance was taken out of rotation
+     */
+    public long getEjections() {
+        return ejections.get();
+    }
+
+    /**
+     * @return true while the Appliance is out of rotation
+     */
+    public boolean isEjected() {
+        return isEjected(System.nanoTime());
+    }
+
+    boolean isEjected(long now) {
+        return ejected && now - ejectedUntil < 0;
+    }
+
+    long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    void begin(){
+        outstanding.incrementAndGet();
+        requests.incrementAndGet();
+    }
+
+    //Begins a request when fewer than limit are outstanding
+    boolean tryBegin(int limit){
+        while(true){
+            int current = outstanding.get();
+            if(current >= limit){
+                return false;
+            }
+            if(outstanding.compareAndSet(current, current + 1)){
+                requests.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    //Ends a request that was begun but never sent
+    void abandon(){
+        outstanding.decrementAndGet();
+        requests.decrementAndGet();
+    }
+
+    //Ends a request that was sent and then cancelled, it says nothing about the Appliance
+    void cancel(){
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * @return true when this failure took the Appliance out of rotation
+     */
+    boolean end(long elapsedNanos, boolean failed, int ejectAfterFailures, long ejectNanos){
+        outstanding.decrementAndGet();
+        if(!failed){
+            sample(elapsedNanos);
+            consecutiveFailures.set(0);
+            return false;
+        }
+        failures.incrementAndGet();
+        return failure(ejectAfterFailures, ejectNanos);
+    }
+
+    void sample(long elapsedNanos){
+        long average = averageNanos;
+        averageNanos = average == 0 ? elapsedNanos : (long) (average + (elapsedNanos - average) * EWMA_WEIGHT);
+    }
+
+    boolean failure(int ejectAfterFailures, long ejectNanos){
+        if(consecutiveFailures.incrementAndGet() < ejectAfterFailures || isEjected()){
+            return false;
+        }
+        eject(ejectNanos, false);
+        return true;
+    }
+
+    /**
+     * @return true when this failed health check took the Appliance out of rotation
+     */
+    boolean healthCheckFailed(long ejectNanos){
+        if(isEjected()){
+            return false;
+        }
+        eject(ejectNanos, true);
+        return true;
+    }
+
+    private void eject(long ejectNanos, boolean byHealthCheck){
+        ejectedByHealthCheck = byHealthCheck;
+        ejectedUntil = System.nanoTime() + ejectNanos;
+        ejected = true;
+        ejections.incrementAndGet();
+    }
+
+    /**
+     * <p>
+     *     A connection only shows the Appliance is reachable, so it puts back an Appliance the health check took out,
+     *     while one taken out by failed requests sits out its time. The failures in a row are left as they are.
+     * </p>
+     * @return true when this health check put the Appliance back in rotation
+     */
+    boolean healthCheckPassed(){
+        if(!ejected){
+            return false;
+        }
+        boolean wasEjected = isEjected();
+        if(wasEjected && !ejectedByHealthCheck){
+            return false;
+        }
+        ejected = false;
+        return wasEjected;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append(saBaseURL.getAppliance()).append(s.COLON).append(saBaseURL.getPort())
+                .append("; outstanding: ").append(outstanding.get()).append(limit > 0 ? "/" + limit : "").append("; averageMillis: ").append(averageNanos / 1000000)
+                .append("; requests: ").append(requests.get()).append("; failures: ").append(failures.get())
+                .append("; ejected: ").append(isEjected()).toString();
+    }
+}
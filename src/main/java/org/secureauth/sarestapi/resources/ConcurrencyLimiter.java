@@ -0,0 +1,250 @@
+package org.secureauth.sarestapi.resources;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Caps the requests outstanding at each Appliance, with a cap that follows the Appliance's latency. Set with
+ *     {@code saAccess.setConcurrencyLimiter(new ConcurrencyLimiter())}.
+ * </p>
+ * <p>
+ *     Each Appliance starts at {@link #getInitialLimit()}. Every response compares a short term average of the
+ *     response time with the fastest response seen: while responses are within {@link #getTolerance()} times the
+ *     fastest the limit grows by about its square root, beyond that it shrinks in proportion, by at most half per
+ *     response. Failed requests (no response or an HTTP status of 500 or more) cut the limit by
+ *     {@link #getBackoffRatio()}. The limit only grows while at least half of it is in use, so an idle client does
+ *     not build up a limit the Appliance can not take. About every {@link #getProbeInterval()} responses the limit is
+ *     halved and the fastest response measured again, so the limit follows an Appliance that became slower for good.
+ * </p>
+ * <p>
+ *     A blocking call waits at most {@link #getMaxWaitMillis()} for a free slot, asynchronous calls stay in their
+ *     queue until one frees up. When {@link #getMaxQueued()} calls already wait, or the wait times out, the call is
+ *     not sent and returns a response with status {@code concurrency_limited} ({@link s#STATUS_CONCURRENCY_LIMITED});
+ *     types without a status field get null.
+ * </p>
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 4;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_TOLERANCE = 1.5;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final double DEFAULT_SMOOTHING = 0.2;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 1000;
+    public static final int DEFAULT_MAX_QUEUED = 1000;
+    public static final int DEFAULT_PROBE_INTERVAL = 1000;
+
+    //Weight of the newest response time in the short term average, about the last 10 responses
+    private static final double SHORT_WEIGHT = 2.0 / 11;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private volatile int minLimit = DEFAULT_MIN_LIMIT;
+    private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+    private volatile double tolerance = DEFAULT_TOLERANCE;
+    private volatile double backoffRatio = DEFAULT_BACKOFF_RATIO;
+    private volatile double smoothing = DEFAULT_SMOOTHING;
+    private volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+    private volatile int maxQueued = DEFAULT_MAX_QUEUED;
+    private volatile int probeInterval = DEFAULT_PROBE_INTERVAL;
+
+    //Starts an Appliance again from the initial limit
+    void reset(ApplianceNode node){
+        synchronized(node){
+            node.estimatedLimit = initialLimit;
+            node.shortRttNanos = 0;
+            node.minRttNanos = 0;
+            node.untilProbe = nextProbe();
+            node.setLimit(initialLimit);
+        }
+    }
+
+    /**
+     * @param inFlight the requests outstanding at the Appliance when the response came, this one included
+     */
+    void onSample(ApplianceNode node, long rttNanos, int inFlight, boolean failed){
+        synchronized(node){
+            double limit = node.estimatedLimit;
+            if(failed){
+                limit = limit * backoffRatio;
+            }else{
+                node.shortRttNanos = average(node.shortRttNanos, rttNanos, SHORT_WEIGHT);
+                if(node.minRttNanos == 0 || rttNanos < node.minRttNanos){
+                    node.minRttNanos = rttNanos;
+                }
+                if(--node.untilProbe <= 0){
+                    //Measure the fastest response again with less load on the Appliance
+                    node.untilProbe = nextProbe();
+                    node.minRttNanos = 0;
+                    limit = limit / 2;
+                }else if(inFlight * 2 < limit){
+                    return;
+                }else{
+                    double gradient = Math.max(0.5, Math.min(1.0, tolerance * node.minRttNanos / node.shortRttNanos));
+                    double next = limit * gradient + Math.sqrt(limit);
+                    limit = limit * (1 - smoothing) + next * smoothing;
+                }
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, limit));
+            node.estimatedLimit = limit;
+            node.setLimit((int) limit);
+        }
+    }
+
+    //Probes are spread out so Appliances and clients don't probe in step
+    private int nextProbe(){
+        int interval = probeInterval;
+        return interval / 2 + ThreadLocalRandom.current().nextInt(interval + 1);
+    }
+
+    private static double average(double average, long sample, double weight){
+        return average == 0 ? sample : average + (sample - average) * weight;
+    }
+
+    //True when queued calls and the blocking calls waiting fill the queue, the call is then rejected
+    boolean isQueueFull(int queued){
+        if(queued + waiting.get() >= maxQueued){
+            rejected.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    //Counts a blocking call waiting for a slot, false when too many already wait
+    boolean enterQueue(){
+        if(isQueueFull(0)){
+            return false;
+        }
+        waiting.incrementAndGet();
+        return true;
+    }
+
+    void leaveQueue(){
+        waiting.decrementAndGet();
+    }
+
+    boolean hasWaiting(){
+        return waiting.get() > 0;
+    }
+
+    void onRejected(){
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * @return the blocking calls waiting for a slot
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * @return the calls not sent because of the limits
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * @param initialLimit the limit of each Appliance before its response times are known; set before the limiter
+     */
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @param tolerance how much slower than the fastest response the average may get before the limit shrinks
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * @param backoffRatio the factor applied to the limit when a request fails
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * @param smoothing how much of each new estimate is taken into the limit, between 0 and 1
+     */
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @param maxWaitMillis how long a blocking call waits for a slot, 0 to reject it right away
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * @param maxQueued the calls, blocking and asynchronous, that may wait for a slot
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public int getProbeInterval() {
+        return probeInterval;
+    }
+
+    /**
+     * @param probeInterval the responses, on average, between two measures of the fastest response
+     */
+    public void setProbeInterval(int probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("waiting: ").append(waiting.get()).append("; rejected: ").append(rejected.get()).toString();
+    }
+}
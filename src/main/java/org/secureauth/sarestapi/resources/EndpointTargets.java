@@ -0,0 +1,87 @@
+package org.secureauth.sarestapi.resources;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+
+/**
+ * <p>
+ *     WebTargets of the Appliance endpoints, for one Client. The fixed part of a request path, the Realm and the
+ *     endpoint up to the user id or group name, is parsed once per Appliance; a request only appends the rest of its
+ *     path to that WebTarget instead of having Jersey parse the whole URL. The path appended is the one the request
+ *     was signed with, so what is signed and what is sent come from the same string.
+ * </p>
+ */
+final class EndpointTargets {
+
+    //Bounds the cache should Realms keep changing, paths over it get a new WebTarget every time
+    static final int MAX_TARGETS = 512;
+
+    private final Client client;
+    //Appliance URL, then fixed part of the path
+    private final ConcurrentMap<String, ConcurrentMap<String, WebTarget>> targets = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    EndpointTargets(Client client){
+        this.client = client;
+    }
+
+    Client getClient() {
+        return client;
+    }
+
+    /**
+     * @param node the Appliance to send to
+     * @param uriPath the path of the request below the Appliance URL, starting with the Realm
+     */
+    WebTarget target(ApplianceNode node, String uriPath){
+        String applianceURL = node.getApplianceURL();
+        int variable = variableStart(uriPath);
+        //Jersey reads these as the start of a query or fragment only when it parses the whole URL
+        if(variable >= 0 && (uriPath.indexOf('?', variable) >= 0 || uriPath.indexOf('#', variable) >= 0)){
+            return client.target(applianceURL + uriPath);
+        }
+        String fixed = variable < 0 ? uriPath : uriPath.substring(0, variable);
+
+        ConcurrentMap<String, WebTarget> byPath = targets.get(applianceURL);
+        if(byPath == null){
+            ConcurrentMap<String, WebTarget> created = new ConcurrentHashMap<>();
+            byPath = targets.putIfAbsent(applianceURL, created);
+            if(byPath == null){
+                byPath = created;
+            }
+        }
+        WebTarget target = byPath.get(fixed);
+        if(target == null){
+            target = client.target(applianceURL + fixed);
+            if(size.get() < MAX_TARGETS && byPath.putIfAbsent(fixed, target) == null){
+                size.incrementAndGet();
+            }
+        }
+        return variable < 0 ? target : target.path(uriPath.substring(variable));
+    }
+
+    /**
+     * @return the number of WebTargets held
+     */
+    int size() {
+        return size.get();
+    }
+
+    //Index of the part of the path after /users/ or /groups/, which changes with every user; -1 when there is none
+    static int variableStart(String uriPath){
+        int start = uriPath.indexOf(s.APPLIANCE_USERS);
+        int length = s.APPLIANCE_USERS.length();
+        if(start < 0){
+            start = uriPath.indexOf(s.APPLIANCE_IDM_GROUPS);
+            length = s.APPLIANCE_IDM_GROUPS.length();
+        }
+        if(start < 0 || start + length == uriPath.length()){
+            return -1;
+        }
+        return start + length;
+    }
+}
@@ -0,0 +1,601 @@
+package org.secureauth.sarestapi.resources;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import javax.ws.rs.client.AsyncInvoker;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.secureauth.sarestapi.hedge.HedgePolicy;
+import org.secureauth.sarestapi.jfr.DeserializeEvent;
+import org.secureauth.sarestapi.jfr.SAFlightRecorder;
+import org.secureauth.sarestapi.metrics.RequestMetrics;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Runs requests through Jersey's async invoker so the calling thread is released as soon as the request is
+ *     handed off. At most {@code maxInFlight} requests are on the wire at any time, further requests wait in a
+ *     queue without holding a thread until a slot frees up.
+ * </p>
+ */
+public class SAAsyncExecuter {
+
+    private static Logger logger=LoggerFactory.getLogger(SAAsyncExecuter.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private final SAExecuter saExecuter;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final CapacityListener capacityListener;
+
+    public SAAsyncExecuter(SAExecuter saExecuter, int maxInFlight){
+        if(maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1");
+        this.saExecuter = saExecuter;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        //With a ConcurrencyLimiter queued requests wait for the Appliances too, start them when a slot frees up
+        this.capacityListener = new CapacityListener(this);
+        saExecuter.getBalancer().addCapacityListener(capacityListener);
+    }
+
+    /**
+     * @param method the HTTP Method (GET, POST, PUT)
+     * @param auth the Authorization header
+     * @param query the full URL of the request
+     * @param payload the serialized JSON body, sent as is, null sends no entity
+     * @param ts the X-SA-Date header
+     * @param valueType the response type
+     * @param <T> the response type
+     * @return a future completed with the response, or completed exceptionally when the request fails
+     */
+    public <T> CompletableFuture<T> executeAsync(final String method, final String auth, final String query, final byte[] payload, final String ts, final Class<T> valueType){
+        return executeAsync(method, auth, query, payload, ts, valueType, null);
+    }
+
+    /**
+     * <p>
+     *     Same as above, recording the HTTP status and the send and read times in metrics when it is not null. The
+     *     metrics are filled in before the future completes.
+     * </p>
+     */
+    public <T> CompletableFuture<T> executeAsync(final String method, final String auth, final String query, final byte[] payload, final String ts, final Class<T> valueType, final RequestMetrics metrics){
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        pending.add(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(method, auth, query, null, null, payload, ts, valueType, future, metrics, null);
+            }
+        });
+        drain();
+        return future;
+    }
+
+    /**
+     * <p>
+     *     Sends the request to one of the Appliances chosen by the {@link ApplianceBalancer}, and to the next one
+     *     when it could not connect.
+     * </p>
+     * @param uriPath the path of the request below the Appliance URL, starting with the Realm
+     */
+    public <T> CompletableFuture<T> executeBalancedAsync(final String method, final String auth, final String uriPath, final byte[] payload, final String ts, final Class<T> valueType, final RequestMetrics metrics){
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        if(isQueueFull()){
+            future.complete(SAExecuter.concurrencyLimited(method, uriPath, valueType));
+            return future;
+        }
+        pending.add(new Runnable() {
+            @Override
+            public void run() {
+                ApplianceNode node = saExecuter.getBalancer().choose(null);
+                if(begin(node, method, uriPath, valueType, future)){
+                    dispatch(method, auth, uriPath, node, null, payload, ts, valueType, future, metrics, null);
+                }
+            }
+        });
+        drain();
+        return future;
+    }
+
+    /**
+     * <p>
+     *     Sends the request like {@link #executeBalancedAsync}, and once more, to another Appliance when there is one,
+     *     when it was not answered within the delay of the {@link HedgePolicy}. The future completes with the first
+     *     response and the other request is cancelled, giving its slot back at once; it only fails when every request
+     *     sent failed. A hedge is only sent while a slot is free and no request waits for one. Cancelling the
+     *     future cancels both requests.
+     * </p>
+     * @param endpoint the endpoint of the request, one the policy hedges
+     */
+    public <T> CompletableFuture<T> executeHedgedAsync(final String method, final String auth, final String uriPath, final byte[] payload, final String ts,
+                                                       final Class<T> valueType, final RequestMetrics metrics, final HedgePolicy hedgePolicy, final SAEndpoint endpoint){
+        return executeHedgedAsync(method, auth, uriPath, payload, ts, valueType, metrics, hedgePolicy, endpoint, -1);
+    }
+
+    /**
+     * <p>
+     *     Same as above; with a {@link ConcurrencyLimiter} set, a call still queued after maxQueueMillis is completed as
+     *     concurrency limited and not sent.
+     * </p>
+     * @param maxQueueMillis how long the call may wait for a slot, -1 for as long as it takes
+     */
+    public <T> CompletableFuture<T> executeHedgedAsync(final String method, final String auth, final String uriPath, final byte[] payload, final String ts,
+                                                       final Class<T> valueType, final RequestMetrics metrics, final HedgePolicy hedgePolicy, final SAEndpoint endpoint,
+                                                       long maxQueueMillis){
+        final HedgedCall<T> call = new HedgedCall<>(hedgePolicy, endpoint, metrics);
+        if(isQueueFull()){
+            call.result.complete(SAExecuter.concurrencyLimited(method, uriPath, valueType));
+            return call.result;
+        }
+        hedgePolicy.onRequest();
+        pending.add(new Runnable() {
+            @Override
+            public void run() {
+                ApplianceNode node = saExecuter.getBalancer().choose(null);
+                if(!call.start(node)){
+                    //Cancelled or timed out while queued, drain() picks up the next request once the slot is free again
+                    permits.release();
+                    return;
+                }
+                if(!begin(node, method, uriPath, valueType, call.primary)){
+                    return;
+                }
+                dispatch(method, auth, uriPath, node, null, payload, ts, valueType, call.primary, call.primaryMetrics, call);
+                HedgeTimer.TIMER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        hedge(method, auth, uriPath, payload, ts, valueType, call);
+                    }
+                }, hedgePolicy.getDelayNanos(endpoint), TimeUnit.NANOSECONDS);
+            }
+        });
+        final ConcurrencyLimiter limiter = saExecuter.getBalancer().getConcurrencyLimiter();
+        if(limiter != null && maxQueueMillis >= 0 && !call.result.isDone()){
+            HedgeTimer.TIMER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if(call.expire()){
+                        limiter.onRejected();
+                        call.result.complete(SAExecuter.concurrencyLimited(method, uriPath, valueType));
+                    }
+                }
+            }, maxQueueMillis, TimeUnit.MILLISECONDS);
+        }
+        drain();
+        return call.result;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getQueued() {
+        return pending.size();
+    }
+
+    //Start queued requests while there are free slots
+    private void drain(){
+        ApplianceBalancer balancer = saExecuter.getBalancer();
+        while(!pending.isEmpty() && balancer.hasCapacity() && permits.tryAcquire()){
+            Runnable next = pending.poll();
+            if(next == null){
+                permits.release();
+                continue;
+            }
+            next.run();
+        }
+        //Requests left waiting for an Appliance keep this executer reachable from the balancer until they start
+        if(pending.isEmpty()){
+            capacityListener.waiting = null;
+            //A request queued while the reference was cleared
+            if(!pending.isEmpty()){
+                capacityListener.waiting = this;
+            }
+        }else{
+            capacityListener.waiting = this;
+        }
+    }
+
+    private void release(){
+        permits.release();
+        drain();
+    }
+
+    //True when a ConcurrencyLimiter is set and its queue is full, the request is then not queued
+    private boolean isQueueFull(){
+        ConcurrencyLimiter limiter = saExecuter.getBalancer().getConcurrencyLimiter();
+        return limiter != null && limiter.isQueueFull(pending.size());
+    }
+
+    //Begins a request started by drain() on the Appliance, or completes it as limited and gives its slot back
+    private <T> boolean begin(ApplianceNode node, String method, String uriPath, Class<T> valueType, CompletableFuture<T> future){
+        if(saExecuter.getBalancer().tryBegin(node)){
+            return true;
+        }
+        saExecuter.getBalancer().getConcurrencyLimiter().onRejected();
+        //drain() picks up the next request once the slot is free again
+        permits.release();
+        future.complete(SAExecuter.concurrencyLimited(method, uriPath, valueType));
+        return false;
+    }
+
+    //Sends the hedge of a call still waiting for its response, when the budget and a free slot allow it
+    private <T> void hedge(String method, String auth, String uriPath, byte[] payload, String ts, Class<T> valueType, HedgedCall<T> call){
+        if(call.result.isDone() || !pending.isEmpty() || !permits.tryAcquire()){
+            return;
+        }
+        //The Appliance of the first request counts as tried, so the hedge and its failover go elsewhere
+        List<ApplianceNode> tried = new ArrayList<>();
+        tried.add(call.primaryNode);
+        ApplianceBalancer balancer = saExecuter.getBalancer();
+        ApplianceNode node = balancer.choose(tried);
+        if(node == null){
+            node = call.primaryNode;
+        }
+        if(!balancer.tryBegin(node)){
+            release();
+            return;
+        }
+        if(!call.hedgePolicy.tryHedge() || !call.send()){
+            balancer.abandon(node);
+            release();
+            return;
+        }
+        dispatch(method, auth, uriPath, node, tried, payload, ts, valueType, call.hedge, call.hedgeMetrics, call);
+    }
+
+    //node is the Appliance the request was begun on, null when uriPath is the full URL; tried holds the Appliances that could not connect;
+    //call is the hedged call future is a request of, so the request can be cancelled when the other one answers first
+    private <T> void dispatch(final String method, final String auth, final String uriPath, final ApplianceNode node, final List<ApplianceNode> tried,
+                              final byte[] payload, final String ts, final Class<T> valueType, final CompletableFuture<T> future, final RequestMetrics metrics,
+                              final HedgedCall<T> call){
+        final ApplianceBalancer balancer = saExecuter.getBalancer();
+        final long sent = System.nanoTime();
+        //Whoever sets it, the callback or a cancel, ends the request on its Appliance and gives the slot back
+        final AtomicBoolean ended = new AtomicBoolean();
+        if(node != null && metrics != null){
+            metrics.setAppliance(node.getSABaseURL().getAppliance());
+        }
+        try{
+            Client client = saExecuter.getClient();
+            WebTarget target = node != null ? saExecuter.targets(client).target(node, uriPath) : client.target(uriPath);
+            AsyncInvoker invoker = target.request()
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header("Authorization", auth)
+                    .header("X-SA-Date", ts)
+                    .async();
+
+            InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+                @Override
+                public void completed(Response response) {
+                    if(!ended.compareAndSet(false, true)){
+                        //Cancelled, its slot is already given back
+                        response.close();
+                        return;
+                    }
+                    T entity = null;
+                    Exception error = null;
+                    long received = System.nanoTime();
+                    if(node != null){
+                        balancer.end(node, received - sent, response.getStatus() >= 500);
+                    }
+                    if(future.isCancelled()){
+                        //The other request of a hedged call answered first
+                        response.close();
+                        release();
+                        return;
+                    }
+                    try{
+                        if(metrics != null){
+                            metrics.setHttpStatus(response.getStatus());
+                            metrics.setResponseBytes(response.getLength());
+                            metrics.setSendNanos(received - sent);
+                        }
+                        DeserializeEvent event = SAFlightRecorder.get().beginDeserialize();
+                        entity = response.readEntity(valueType);
+                        if(metrics != null){
+                            metrics.setDeserializeNanos(System.nanoTime() - received);
+                        }
+                        if(event != null){
+                            SAExecuter.commitDeserialize(event, method, uriPath, response, valueType, metrics);
+                        }
+                    }catch(Exception e){
+                        logger.error(new StringBuilder().append("Exception reading async response: \nQuery:\n\t")
+                                .append(node != null ? node.getApplianceURL() : "").append(uriPath).append("\nError:").append(e.getMessage()).toString(), e);
+                        error = e;
+                    }finally{
+                        response.close();
+                        release();
+                    }
+                    //Complete after the slot is released so callers chaining on the future don't hold it
+                    if(error != null){
+                        future.completeExceptionally(error);
+                    }else{
+                        future.complete(entity);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable throwable) {
+                    if(!ended.compareAndSet(false, true)){
+                        return;
+                    }
+                    if(node != null){
+                        balancer.end(node, System.nanoTime() - sent, true);
+                    }
+                    if(future.isCancelled()){
+                        release();
+                        return;
+                    }
+                    if(node != null){
+                        if(ApplianceBalancer.isConnectFailure(throwable)){
+                            List<ApplianceNode> failed = tried != null ? tried : new ArrayList<ApplianceNode>();
+                            failed.add(node);
+                            ApplianceNode next = balancer.choose(failed);
+                            if(next != null && balancer.tryBegin(next)){
+                                logger.warn(new StringBuilder().append("Unable to connect to ").append(node.getApplianceURL())
+                                        .append(", sending ").append(method).append(" request to ").append(next.getApplianceURL()).toString());
+                                //Keeps the slot it holds
+                                dispatch(method, auth, uriPath, next, failed, payload, ts, valueType, future, metrics, call);
+                                return;
+                            }
+                        }
+                    }
+                    logger.error(new StringBuilder().append("Exception executing async request: \nQuery:\n\t")
+                            .append(node != null ? node.getApplianceURL() : "").append(uriPath).append("\nError:").append(throwable.getMessage()).toString(), throwable);
+                    release();
+                    future.completeExceptionally(throwable);
+                }
+            };
+
+            final Future<Response> request = payload == null ? invoker.method(method, callback)
+                    : invoker.method(method, Entity.entity(payload, MediaType.APPLICATION_JSON_TYPE), callback);
+            if(call != null){
+                call.sending(future, new Runnable() {
+                    @Override
+                    public void run() {
+                        request.cancel(true);
+                        if(ended.compareAndSet(false, true)){
+                            if(node != null){
+                                balancer.cancel(node);
+                            }
+                            release();
+                        }
+                    }
+                });
+            }
+        }catch(Exception e){
+            if(!ended.compareAndSet(false, true)){
+                return;
+            }
+            if(node != null){
+                balancer.end(node, System.nanoTime() - sent, true);
+            }
+            logger.error(new StringBuilder().append("Exception submitting async request: \nQuery:\n\t")
+                    .append(node != null ? node.getApplianceURL() : "").append(uriPath).append("\nError:").append(e.getMessage()).toString(), e);
+            future.completeExceptionally(e);
+            if(tried == null){
+                //Called from drain(), which picks up the next request once the slot is free again
+                permits.release();
+            }else{
+                release();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     *     The first request of a hedged call and its hedge, completing the call with the first response.
+     * </p>
+     */
+    private static final class HedgedCall<T> {
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final CompletableFuture<T> primary = new CompletableFuture<>();
+        final CompletableFuture<T> hedge = new CompletableFuture<>();
+        final HedgePolicy hedgePolicy;
+        final SAEndpoint endpoint;
+        final RequestMetrics metrics;
+        //Each request gets its own metrics, the ones of the request answering are copied to the call's
+        final RequestMetrics primaryMetrics;
+        final RequestMetrics hedgeMetrics;
+        volatile ApplianceNode primaryNode;
+        volatile long started;
+        //Cancel the request on the wire for each attempt, replaced when it fails over to another Appliance
+        private Runnable primaryCancel;
+        private Runnable hedgeCancel;
+        private boolean sent;
+        private boolean done;
+        private int failures;
+
+        HedgedCall(HedgePolicy hedgePolicy, SAEndpoint endpoint, RequestMetrics metrics){
+            this.hedgePolicy = hedgePolicy;
+            this.endpoint = endpoint;
+            this.metrics = metrics;
+            this.primaryMetrics = metrics != null ? new RequestMetrics() : null;
+            this.hedgeMetrics = metrics != null ? new RequestMetrics() : null;
+            primary.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T response, Throwable throwable) {
+                    finish(primary, primaryMetrics, hedge, response, throwable);
+                }
+            });
+            hedge.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T response, Throwable throwable) {
+                    finish(hedge, hedgeMetrics, primary, response, throwable);
+                }
+            });
+            result.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T response, Throwable throwable) {
+                    if(result.isCancelled()){
+                        //A blocking caller that gave up reuses its metrics, no attempt may copy into them afterwards
+                        synchronized(HedgedCall.this){
+                            done = true;
+                        }
+                        cancel(primary);
+                        cancel(hedge);
+                    }
+                }
+            });
+        }
+
+        //Marks the first request as sent, false when the call was cancelled or timed out while queued
+        synchronized boolean start(ApplianceNode node){
+            if(done || result.isDone()){
+                return false;
+            }
+            primaryNode = node;
+            started = System.nanoTime();
+            return true;
+        }
+
+        //Ends a call still queued, false when its first request was already sent
+        synchronized boolean expire(){
+            if(done || primaryNode != null){
+                return false;
+            }
+            done = true;
+            return true;
+        }
+
+        //Marks the hedge as sent, false when the call is already over
+        synchronized boolean send(){
+            if(done){
+                return false;
+            }
+            sent = true;
+            return true;
+        }
+
+        //Keeps the way to cancel the request just sent for attempt, cancelling it right away when attempt already lost
+        void sending(CompletableFuture<T> attempt, Runnable cancel){
+            synchronized(this){
+                if(!attempt.isCancelled()){
+                    if(attempt == primary){
+                        primaryCancel = cancel;
+                    }else{
+                        hedgeCancel = cancel;
+                    }
+                    return;
+                }
+            }
+            cancel.run();
+        }
+
+        private void cancel(CompletableFuture<T> attempt){
+            Runnable cancel;
+            synchronized(this){
+                attempt.cancel(false);
+                cancel = attempt == primary ? primaryCancel : hedgeCancel;
+            }
+            if(cancel != null){
+                cancel.run();
+            }
+        }
+
+        private void finish(CompletableFuture<T> attempt, RequestMetrics attemptMetrics, CompletableFuture<T> other, T response, Throwable throwable){
+            if(attempt.isCancelled()){
+                return;
+            }
+            synchronized(this){
+                if(done){
+                    return;
+                }
+                if(throwable != null && sent && ++failures < 2){
+                    //The other request may still answer
+                    return;
+                }
+                done = true;
+                if(metrics != null){
+                    metrics.copyResponse(attemptMetrics);
+                    metrics.setHedged(sent);
+                }
+            }
+            if(throwable == null){
+                hedgePolicy.record(endpoint, System.nanoTime() - started);
+                if(attempt == hedge){
+                    hedgePolicy.onHedgeWin();
+                }
+            }
+            cancel(other);
+            if(throwable != null){
+                result.completeExceptionally(throwable);
+            }else{
+                result.complete(response);
+            }
+        }
+    }
+
+    //Holds the timer of the hedges, only started once a call is hedged
+    /**
+     * <p>
+     *     Registered with the {@link ApplianceBalancer} to start queued requests when a slot frees up. It holds the
+     *     executer weakly, so an SAAsyncAccess that is no longer used can be collected and its listener dropped,
+     *     and strongly only while requests wait in the executer's queue.
+     * </p>
+     */
+    static final class CapacityListener {
+
+        private final WeakReference<SAAsyncExecuter> executer;
+        private volatile SAAsyncExecuter waiting;
+
+        private CapacityListener(SAAsyncExecuter executer){
+            this.executer = new WeakReference<>(executer);
+        }
+
+        /**
+         * @return false when the executer was collected and the listener can be dropped
+         */
+        boolean capacityFreed(){
+            SAAsyncExecuter saAsyncExecuter = executer.get();
+            if(saAsyncExecuter == null){
+                return false;
+            }
+            saAsyncExecuter.drain();
+            return true;
+        }
+
+        boolean isCollected(){
+            return executer.get() == null;
+        }
+    }
+
+    private static final class HedgeTimer {
+
+        static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sa-hedge-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
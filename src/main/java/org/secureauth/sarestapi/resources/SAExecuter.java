@@ -2,15 +2,14 @@ package org.secureauth.sarestapi.resources;
 
 
 
-import java.security.SecureRandom;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
-
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 
@@ -24,16 +23,22 @@ import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
 
 import org.secureauth.sarestapi.data.UserProfile.UserToGroups;
 import org.secureauth.sarestapi.data.UserProfile.UsersToGroup;
-import org.secureauth.sarestapi.filters.SACheckRequestFilter;
+import org.secureauth.sarestapi.hedge.HedgePolicy;
+import org.secureauth.sarestapi.jfr.DeserializeEvent;
+import org.secureauth.sarestapi.jfr.SAFlightRecorder;
+import org.secureauth.sarestapi.metrics.RequestMetrics;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.transport.DefaultTransport;
+import org.secureauth.sarestapi.transport.SATransport;
 import org.secureauth.sarestapi.util.JSONUtil;
+import org.secureauth.sarestapi.util.StatusResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 //Jersey 2 Libs
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
-import org.glassfish.jersey.client.ClientConfig;
 import javax.ws.rs.core.Response;
 
 
@@ -59,67 +64,273 @@ OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
 
 public class SAExecuter {
 
-    private ClientConfig config = null;
+    private final SATransport transport;
 
-    private Client client=null;
+    private volatile Client client=null;
+    //WebTargets of the client, replaced with it
+    private volatile EndpointTargets targets=null;
+    //A lock rather than a monitor, so virtual threads waiting for the client don't pin their carrier thread
+    private final ReentrantLock clientLock = new ReentrantLock();
     private static Logger logger=LoggerFactory.getLogger(SAExecuter.class);
 
     private SABaseURL saBaseURL = null;
+    private final ApplianceBalancer balancer;
+    private volatile SAAsyncExecuter hedgeExecuter;
+
     public SAExecuter(SABaseURL saBaseURL){
+        this(saBaseURL, new DefaultTransport());
+    }
+
+    public SAExecuter(SABaseURL saBaseURL, SATransport transport){
         this.saBaseURL = saBaseURL;
+        this.transport = transport;
+        this.balancer = new ApplianceBalancer(saBaseURL);
     }
 
-    //Set up our Connection
-    private void createConnection() throws Exception{
+    //Set up our Connection once and share it between all threads
+    Client getClient() throws Exception{
+        Client result = client;
+        if(result == null) {
+            clientLock.lock();
+            try {
+                result = client;
+                if (result == null) {
+                    try {
+                        result = transport.createClient(saBaseURL);
+                    } catch (Exception e) {
+                        logger.error(new StringBuilder().append("Exception occurred while attempting to associating our SSL cert to the session.").toString(), e);
+                    }
 
-        config = new ClientConfig();
-        SSLContext ctx = null;
-        ctx = SSLContext.getInstance("TLS");
+                    if (result == null) throw new Exception(new StringBuilder().append("Unable to create connection object, creation attempt returned NULL.").toString());
+                    targets = new EndpointTargets(result);
+                    client = result;
+                }
+            } finally {
+                clientLock.unlock();
+            }
+        }
+        return result;
+    }
 
+    //Release the connection and the resources held by the transport
+    public void close(){
+        clientLock.lock();
+        try {
+            balancer.close();
+            if(client != null){
+                client.close();
+                client = null;
+                targets = null;
+            }
+            transport.close();
+        } finally {
+            clientLock.unlock();
+        }
+    }
 
-        TrustManager[] certs = new TrustManager[]{
-                new X509TrustManager(){
-                    @Override
-                    public X509Certificate[] getAcceptedIssuers(){
-                        return null;
-                    }
+    //Send a request whose body was already serialized and signed, the bytes are written as is
+    public <T> T execute(String method, String auth, String query, byte[] payload, String ts, Class<T> valueType)throws Exception {
+        return execute(method, auth, query, payload, ts, valueType, null);
+    }
 
-                    @Override
-                    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {}
+    //Same as above, recording the HTTP status and the send and read times in metrics when it is not null
+    public <T> T execute(String method, String auth, String query, byte[] payload, String ts, Class<T> valueType, RequestMetrics metrics)throws Exception {
+        Client client = getClient();
+        try{
+            return send(client.target(query), null, method, auth, query, payload, ts, valueType, metrics);
+        }catch(Exception e){
+            if(metrics != null){
+                metrics.setError(e);
+            }
+            logger.error(new StringBuilder().append("Exception ").append(method).append(" Request: \nQuery:\n\t")
+                    .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }
+        return null;
+    }
 
-                    @Override
-                    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException{}
+    /**
+     * <p>
+     *     Sends the request to one of the Appliances of the SABaseURL chosen by the {@link ApplianceBalancer}, and to
+     *     the next one when it could not connect.
+     * </p>
+     * @param uriPath the path of the request below the Appliance URL, starting with the Realm
+     */
+    public <T> T executeBalanced(String method, String auth, String uriPath, byte[] payload, String ts, Class<T> valueType, RequestMetrics metrics)throws Exception {
+        Client client = getClient();
+        List<ApplianceNode> tried = null;
+        ApplianceNode node = balancer.awaitBegin(null);
+        if(node == null){
+            return concurrencyLimited(method, uriPath, valueType);
+        }
+        while(true){
+            try{
+                return send(targets(client).target(node, uriPath), node, method, auth, uriPath, payload, ts, valueType, metrics);
+            }catch(Exception e){
+                if(ApplianceBalancer.isConnectFailure(e)){
+                    if(tried == null){
+                        tried = new ArrayList<>();
+                    }
+                    tried.add(node);
+                    ApplianceNode next = balancer.awaitBegin(tried);
+                    if(next != null){
+                        logger.warn(new StringBuilder().append("Unable to connect to ").append(node.getApplianceURL())
+                                .append(", sending ").append(method).append(" request to ").append(next.getApplianceURL()).toString());
+                        node = next;
+                        continue;
+                    }
                 }
-        };
-
-        ctx.init(null, certs, new SecureRandom());
+                if(metrics != null){
+                    metrics.setError(e);
+                }
+                logger.error(new StringBuilder().append("Exception ").append(method).append(" Request: \nQuery:\n\t")
+                        .append(node.getApplianceURL()).append(uriPath).append("\nError:").append(e.getMessage()).toString(), e);
+                return null;
+            }
+        }
+    }
 
+    /**
+     * <p>
+     *     Same as {@link #executeBalanced}, hedged as set by the {@link HedgePolicy}: the requests go through the
+     *     async invoker while the calling thread waits for the first response, at most
+     *     {@link HedgePolicy#getTimeoutMillis()}. They count against the {@link SAAsyncExecuter#DEFAULT_MAX_IN_FLIGHT}
+     *     cap of an {@link SAAsyncExecuter} of their own, so they never queue behind the requests of an SAAsyncAccess,
+     *     and wait for a slot at most {@link ConcurrencyLimiter#getMaxWaitMillis()} like other blocking calls.
+     * </p>
+     * @param endpoint the endpoint of the request, one the policy hedges
+     */
+    public <T> T executeHedged(String method, String auth, String uriPath, byte[] payload, String ts, Class<T> valueType, RequestMetrics metrics,
+                               HedgePolicy hedgePolicy, SAEndpoint endpoint)throws Exception {
+        ConcurrencyLimiter limiter = balancer.getConcurrencyLimiter();
+        CompletableFuture<T> future = getHedgeExecuter().executeHedgedAsync(method, auth, uriPath, payload, ts, valueType, metrics, hedgePolicy, endpoint,
+                limiter != null ? limiter.getMaxWaitMillis() : -1);
         try{
+            return future.get(hedgePolicy.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }catch(ExecutionException e){
+            //Already logged by the request that failed
+            if(metrics != null){
+                metrics.setError(e.getCause());
+            }
+        }catch(TimeoutException e){
+            //Cancels the requests still on the wire
+            future.cancel(false);
+            if(metrics != null){
+                metrics.setError(e);
+            }
+            logger.error(new StringBuilder().append("No response within ").append(hedgePolicy.getTimeoutMillis())
+                    .append("ms to ").append(method).append(" Request: \nQuery:\n\t").append(uriPath).toString(), e);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            if(metrics != null){
+                metrics.setError(e);
+            }
+            logger.error(new StringBuilder().append("Interrupted waiting for ").append(method).append(" Request: \nQuery:\n\t")
+                    .append(uriPath).toString(), e);
+        }
+        return null;
+    }
 
-            config.register(SACheckRequestFilter.class);
-             client = ClientBuilder.newBuilder()
-                     .withConfig(config)
-                     .sslContext(ctx)
-                    .hostnameVerifier(new HostnameVerifier() {
-                        @Override
-                        public boolean verify(String s, SSLSession sslSession) {
-                            return saBaseURL.isSelfSigned();
-                        }
-                    })
-                    .build();
+    private SAAsyncExecuter getHedgeExecuter(){
+        SAAsyncExecuter result = hedgeExecuter;
+        if(result == null){
+            synchronized (this){
+                result = hedgeExecuter;
+                if(result == null){
+                    result = new SAAsyncExecuter(this, SAAsyncExecuter.DEFAULT_MAX_IN_FLIGHT);
+                    hedgeExecuter = result;
+                }
+            }
+        }
+        return result;
+    }
 
-        }catch(Exception e){
-            logger.error(new StringBuilder().append("Exception occurred while attempting to associating our SSL cert to the session.").toString(), e);
+    //The response of a call not sent because every Appliance was at its concurrency limit
+    static <T> T concurrencyLimited(String method, String uriPath, Class<T> valueType){
+        logger.debug(new StringBuilder().append("Concurrency limit reached, ").append(method).append(" ").append(uriPath)
+                .append(" not sent").toString());
+        return StatusResponse.create(valueType, s.STATUS_CONCURRENCY_LIMITED,
+                "Too many requests outstanding at the Appliances, request not sent");
+    }
+
+    //The WebTargets of client, new ones when the client was closed and created again since it was read
+    EndpointTargets targets(Client client){
+        EndpointTargets result = targets;
+        if(result == null || result.getClient() != client){
+            result = new EndpointTargets(client);
+        }
+        return result;
+    }
+
+    //Sends the request and reads the response, node is the Appliance it was begun on, null when not balanced
+    private <T> T send(WebTarget target, ApplianceNode node, String method, String auth, String query, byte[] payload, String ts, Class<T> valueType, RequestMetrics metrics) throws Exception {
+        Response response = null;
+        boolean failed = true;
+        long sent = System.nanoTime();
+        long received = 0;
+        if(node != null && metrics != null){
+            metrics.setAppliance(node.getSABaseURL().getAppliance());
+        }
+        try{
+            Invocation.Builder builder = target.request().
+                    accept(MediaType.APPLICATION_JSON).
+                    header("Authorization", auth).
+                    header("X-SA-Date", ts);
+            if(payload == null){
+                response = builder.method(method);
+            }else{
+                response = builder.method(method, Entity.entity(payload, MediaType.APPLICATION_JSON_TYPE));
+            }
+            received = System.nanoTime();
+            failed = response.getStatus() >= 500;
+            if(metrics != null){
+                metrics.setHttpStatus(response.getStatus());
+                metrics.setResponseBytes(response.getLength());
+                metrics.setSendNanos(received - sent);
+            }
+            DeserializeEvent event = SAFlightRecorder.get().beginDeserialize();
+            T genericResponse = response.readEntity(valueType);
+            if(metrics != null){
+                metrics.setDeserializeNanos(System.nanoTime() - received);
+            }
+            if(event != null){
+                commitDeserialize(event, method, query, response, valueType, metrics);
+            }
+            return genericResponse;
+        }finally{
+            if(node != null){
+                balancer.end(node, (received != 0 ? received : System.nanoTime()) - sent, failed);
+            }
+            if(response != null) {
+                response.close();
+            }
         }
+    }
+
+    public ApplianceBalancer getBalancer() {
+        return balancer;
+    }
 
-        if(client == null) throw new Exception(new StringBuilder().append("Unable to create connection object, creation attempt returned NULL.").toString());
+    static void commitDeserialize(DeserializeEvent event, String method, String query, Response response, Class<?> valueType, RequestMetrics metrics){
+        event.setEndpoint((metrics != null && metrics.getEndpoint() != null ? metrics.getEndpoint() : SAEndpoint.of(method, query)).name());
+        event.setResponseType(valueType.getSimpleName());
+        event.setHttpStatus(response.getStatus());
+        event.setBytes(response.getLength());
+        event.commit();
     }
 
-    //Get Factors for the user requested
+    //The per-operation methods below predate the generic path. They serialize the body again, pretty printed,
+    //so it may not match the bytes that were signed, and they skip the metrics, circuit breakers, rate limits,
+    //Appliance balancing and concurrency limits of SAAccess. Nothing in the SDK calls them any more.
+
+    /**
+     * Get Factors for the user requested
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeGetRequest(String auth, String query,String ts,  Class<T> valueType)throws Exception {
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -133,22 +344,28 @@ public class SAExecuter {
                     header("X-SA-Date", ts).
                     get();
             genericResponse = response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Get Request: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return genericResponse;
 
     }
 
-    //Validate User against Repository
+    /**
+     * Validate User against Repository
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public BaseResponse executeValidateUser(String header,String query, AuthRequest authRequest,String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
 
         WebTarget target = null;
@@ -165,22 +382,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest),MediaType.APPLICATION_JSON));
 
             responseObject = response.readEntity(BaseResponse.class);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Validating User: \nQuery:\n\t")
                     .append(query).append("\nError: \n\t").toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate Users Password
+    /**
+     * Validate Users Password
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public BaseResponse executeValidateUserPassword(String auth,String query, AuthRequest authRequest,String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -194,22 +417,28 @@ public class SAExecuter {
                     header("X-SA-Date", ts).
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
             responseObject=response.readEntity(BaseResponse.class);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Validating User Password: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate Users Pin
+    /**
+     * Validate Users Pin
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public BaseResponse executeValidateUserPin(String auth,String query, AuthRequest authRequest,String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -223,22 +452,28 @@ public class SAExecuter {
                     header("X-SA-Date", ts).
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
             responseObject=response.readEntity(BaseResponse.class);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Validating User Password: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate Users KBA
+    /**
+     * Validate Users KBA
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public BaseResponse executeValidateKba(String auth,String query, AuthRequest authRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -253,22 +488,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(BaseResponse.class);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Validating KBA: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate User Oath Token
+    /**
+     * Validate User Oath Token
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public BaseResponse executeValidateOath(String auth,String query, AuthRequest authRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -283,22 +524,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(BaseResponse.class);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Validating OATH: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate OTP By Phone
+    /**
+     * Validate OTP By Phone
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeOTPByPhone(String auth,String query, AuthRequest authRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -314,23 +561,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(ResponseObject.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Delivering OTP by Phone: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate User OATH by SMS
+    /**
+     * Validate User OATH by SMS
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeOTPBySMS(String auth, String query, AuthRequest authRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -345,22 +597,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(ResponseObject.class);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Delivering OTP by SMS: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate User OTP by Email
+    /**
+     * Validate User OTP by Email
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeOTPByEmail(String auth,String query, AuthRequest authRequest,String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -375,23 +633,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest), MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(ResponseObject.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Delivering OTP by Email: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-     // post request
+    /**
+     * Post request
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executePostRequest(String auth,String query, AuthRequest authRequest,String ts, Class<T> valueType)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -406,22 +669,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest),MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Delivering OTP by Push: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Validate User Token by Help Desk Call
+    /**
+     * Validate User Token by Help Desk Call
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeOTPByHelpDesk(String auth,String query, AuthRequest authRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -436,23 +705,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(authRequest),MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(ResponseObject.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Delivering OTP by HelpDesk: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Run IP Evaluation against user and IP Address
+    /**
+     * Run IP Evaluation against user and IP Address
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public IPEval executeIPEval(String auth, String query, IPEvalRequest ipEvalRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -471,23 +745,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(ipEvalRequest), MediaType.APPLICATION_JSON));
 
             ipEval = response.readEntity(IPEval.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running IP Evaluation: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return ipEval;
 
     }
 
-    //Run AccessHistories Post
+    /**
+     * Run AccessHistories Post
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeAccessHistory(String auth, String query, AccessHistoryRequest accessHistoryRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -502,22 +781,27 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(accessHistoryRequest),MediaType.APPLICATION_JSON));
 
             accessHistory = response.readEntity(ResponseObject.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running Access History POST: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return accessHistory;
 
     }
-    // Run DFP Validate
+    /**
+     * Run DFP Validate
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public DFPValidateResponse executeDFPValidate(String auth, String query, DFPValidateRequest dfpValidateRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -532,22 +816,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(dfpValidateRequest),MediaType.APPLICATION_JSON));
 
             dfpValidateResponse = response.readEntity(DFPValidateResponse.class);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running Access History POST: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return dfpValidateResponse;
 
     }
 
-    // Run DFP Confirm
+    /**
+     * Run DFP Confirm
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public DFPConfirmResponse executeDFPConfirm(String auth, String query, DFPConfirmRequest dfpConfirmRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -563,22 +853,27 @@ public class SAExecuter {
 
 
             dfpConfirmResponse = response.readEntity(DFPConfirmResponse.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running DFP Confirm POST: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return dfpConfirmResponse;
 
     }
 
-    //Get JavaScript Source for DFP and Behavioral
+    /**
+     * Get JavaScript Source for DFP and Behavioral
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeGetJSObject(String auth, String query,String ts,  Class<T> valueType)throws Exception {
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -592,22 +887,28 @@ public class SAExecuter {
                     header("X-SA-Date", ts).
                     get();
             jsObjectResponse = response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception getting JS Object SRC: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return jsObjectResponse;
 
     }
 
-    //Run BehaveBio Post
+    /**
+     * Run BehaveBio Post
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public BehaveBioResponse executeBehaveBioPost(String auth, String query, BehaveBioRequest behaveBioRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -622,23 +923,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(behaveBioRequest),MediaType.APPLICATION_JSON));
 
             behaveBioResponse = response.readEntity(BehaveBioResponse.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running BehaveBio POST: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return behaveBioResponse;
 
     }
 
-    //Run BehaveBio Put
+    /**
+     * Run BehaveBio Put
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeBehaveBioReset(String auth, String query, BehaveBioResetRequest behaveBioResetRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -653,23 +959,28 @@ public class SAExecuter {
                     put(Entity.entity(JSONUtil.convertObjectToJSON(behaveBioResetRequest),MediaType.APPLICATION_JSON));
 
             behaveBioResponse = response.readEntity(ResponseObject.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running BehaveBio POST: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return behaveBioResponse;
 
     }
 
-    //Run Password Reset (Admin level reset)
+    /**
+     * Run Password Reset (Admin level reset)
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeUserPasswordReset(String auth, String query, UserPasswordRequest userPasswordRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -684,23 +995,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(userPasswordRequest),MediaType.APPLICATION_JSON));
 
             passwordResetResponse = response.readEntity(ResponseObject.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running Password Reset POST: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return passwordResetResponse;
 
     }
 
-    //Run Change Password (Self Service)
+    /**
+     * Run Change Password (Self Service)
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public ResponseObject executeUserPasswordChange(String auth, String query, UserPasswordRequest userPasswordRequest, String ts)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -715,23 +1031,28 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(userPasswordRequest),MediaType.APPLICATION_JSON));
 
             passwordChangeResponse = response.readEntity(ResponseObject.class);
-
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Running Password Reset POST: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return passwordChangeResponse;
 
     }
 
-    //Update User Profile
+    /**
+     * Update User Profile
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeUserProfileUpdateRequest(String auth, String query,NewUserProfile userProfile, String ts, Class<T> valueType)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -746,22 +1067,28 @@ public class SAExecuter {
                     put(Entity.entity(JSONUtil.convertObjectToJSON(userProfile), MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Updating User Profile: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //create User Profile
+    /**
+     * Create User Profile
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeUserProfileCreateRequest(String auth, String query, NewUserProfile newUserProfile, String ts, Class<T> valueType)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -776,21 +1103,27 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(newUserProfile),MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Creating User Profile: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Single User to Single Group
+    /**
+     * Single User to Single Group
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeSingleUserToSingleGroup(String auth, String query,String ts,  Class<T> valueType)throws Exception {
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -804,22 +1137,28 @@ public class SAExecuter {
                     header("X-SA-Date", ts).
                     post(Entity.entity("",MediaType.APPLICATION_JSON));
             genericResponse = response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Adding user to Group: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return genericResponse;
 
     }
 
-    //Single Group Multiple Users
+    /**
+     * Single Group Multiple Users
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeGroupToUsersRequest(String auth, String query, UsersToGroup usersToGroup, String ts, Class<T> valueType)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -834,21 +1173,27 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(usersToGroup),MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Associating Users to Group: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
 
     }
 
-    //Single Group to Single User
+    /**
+     * Single Group to Single User
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeSingleGroupToSingleUser(String auth, String query,String ts,  Class<T> valueType)throws Exception {
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -862,22 +1207,28 @@ public class SAExecuter {
                     header("X-SA-Date", ts).
                     post(Entity.entity("",MediaType.APPLICATION_JSON));
             genericResponse = response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Adding Group to User: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return genericResponse;
 
     }
 
-    //Signle User to Multiple Groups
+    /**
+     * Signle User to Multiple Groups
+     * @deprecated use the matching {@link org.secureauth.sarestapi.SAAccess} method, or {@link #executeBalanced} with
+     *     the bytes that were signed
+     */
+    @Deprecated
     public <T> T executeUserToGroupsRequest(String auth, String query, UserToGroups userToGroups, String ts, Class<T> valueType)throws Exception{
 
-        if(client == null) {
-            createConnection();
-        }
+        Client client = getClient();
 
         WebTarget target = null;
         Response response = null;
@@ -892,10 +1243,13 @@ public class SAExecuter {
                     post(Entity.entity(JSONUtil.convertObjectToJSON(userToGroups),MediaType.APPLICATION_JSON));
 
             responseObject=response.readEntity(valueType);
-            response.close();
         }catch(Exception e){
             logger.error(new StringBuilder().append("Exception Associating Users to Group: \nQuery:\n\t")
                     .append(query).append("\nError:").append(e.getMessage()).toString(), e);
+        }finally{
+            if(response != null) {
+                response.close();
+            }
         }
 
         return responseObject;
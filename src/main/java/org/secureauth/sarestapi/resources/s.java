@@ -55,6 +55,12 @@ public class s {
     public static final String STATUS_NOT_FOUND="not_found";
     public static final String STATUS_FAILED="failed";
     public static final String STATUS_ERROR="error";
+    //Set by the SDK, not the Appliance, when a circuit breaker rejected the call
+    public static final String STATUS_CIRCUIT_OPEN="circuit_open";
+    //Set by the SDK, not the Appliance, when too many calls were outstanding at the Appliances
+    public static final String STATUS_CONCURRENCY_LIMITED="concurrency_limited";
+    //Set by the SDK, not the Appliance, when the Realm's RateLimiter had no token for the call
+    public static final String STATUS_RATE_LIMITED="rate_limited";
 
     public static final String PHONES="Phones";
     public static final String PHONE="Phone";
@@ -0,0 +1,186 @@
+package org.secureauth.sarestapi.retry;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.secureauth.sarestapi.metrics.RequestMetrics;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.resources.ApplianceBalancer;
+
+/**
+ * <p>
+ *     Retries failed calls. Set on an SAAccess with {@code saAccess.setRetryPolicy(new RetryPolicy())}; its
+ *     SAAsyncAccess uses the same policy. Every attempt is signed again with a fresh X-SA-Date.
+ * </p>
+ * <p>
+ *     Calls to the endpoints in {@link #SAFE} only read from the Appliance, so they are retried when no response
+ *     came (connect failure, timeout, reset connection) or the response had an HTTP status of 500 or more. Other
+ *     calls (authentication, OTP delivery, push to accept, password and profile changes...) may already have taken
+ *     effect, so they are only retried when they could not connect and were never sent.
+ * </p>
+ * <p>
+ *     Attempts are spaced with decorrelated jitter: each wait is random between {@link #getBaseDelayMillis()} and
+ *     three times the previous wait, at most {@link #getMaxDelayMillis()}. The budget keeps the retries under
+ *     {@link #getBudgetPercent()} of the calls, with a burst of at most {@link #MAX_BURST} retries, so an Appliance
+ *     that is down does not get several times its usual load.
+ * </p>
+ */
+public class RetryPolicy {
+
+    public static final Set<SAEndpoint> SAFE = Collections.unmodifiableSet(EnumSet.of(SAEndpoint.FACTORS,
+            SAEndpoint.GET_USER, SAEndpoint.IPEVAL, SAEndpoint.DFP_JS, SAEndpoint.BEHAVEBIO_JS, SAEndpoint.PUSH_STATUS));
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 50;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 2000;
+    public static final double DEFAULT_BUDGET_PERCENT = 20;
+    public static final int MAX_BURST = 10;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    private volatile Set<SAEndpoint> safeEndpoints = SAFE;
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long baseDelayMillis = DEFAULT_BASE_DELAY_MILLIS;
+    private volatile long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private volatile double budgetPercent = DEFAULT_BUDGET_PERCENT;
+    private double budget = MAX_BURST;
+
+    /**
+     * @return true when calls to the endpoint are retried whatever went wrong
+     */
+    public boolean isSafe(SAEndpoint endpoint){
+        return endpoint != null && safeEndpoints.contains(endpoint);
+    }
+
+    /**
+     * @param metrics the measurements of the attempt that just ended
+     * @return true when the attempt failed in a way that can be retried for the endpoint
+     */
+    public boolean isRetryable(SAEndpoint endpoint, RequestMetrics metrics){
+        Throwable error = metrics.getError();
+        if(error != null && ApplianceBalancer.isConnectFailure(error)){
+            return true;
+        }
+        return isSafe(endpoint) && (metrics.getHttpStatus() >= 500 || (error != null && metrics.getHttpStatus() == 0));
+    }
+
+    /**
+     * <p>
+     *     Counts a call, adding its share to the budget.
+     * </p>
+     */
+    public synchronized void onRequest(){
+        requests.incrementAndGet();
+        budget = Math.min(MAX_BURST, budget + budgetPercent / 100);
+    }
+
+    /**
+     * @return true when the budget allows one more retry, which is then counted
+     */
+    public synchronized boolean tryRetry(){
+        if(budget < 1){
+            exhausted.incrementAndGet();
+            return false;
+        }
+        budget--;
+        retries.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @param previousDelayMillis the previous wait of the call, 0 before its first retry
+     * @return the wait before the next attempt
+     */
+    public long nextDelayMillis(long previousDelayMillis){
+        long base = baseDelayMillis;
+        long upper = Math.max(base, previousDelayMillis * 3);
+        long delay = upper > base ? ThreadLocalRandom.current().nextLong(base, upper + 1) : base;
+        return Math.min(maxDelayMillis, delay);
+    }
+
+    public Set<SAEndpoint> getSafeEndpoints() {
+        return safeEndpoints;
+    }
+
+    /**
+     * @param safeEndpoints the endpoints retried after a response or a timeout, all of them in {@link #SAFE}
+     */
+    public void setSafeEndpoints(Set<SAEndpoint> safeEndpoints) {
+        if(!SAFE.containsAll(safeEndpoints)){
+            throw new IllegalArgumentException(new StringBuilder().append("Only read only endpoints are safe to retry: ")
+                    .append(SAFE).toString());
+        }
+        this.safeEndpoints = safeEndpoints.isEmpty() ? Collections.<SAEndpoint>emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(safeEndpoints));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts the attempts of a call, the first one included
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    /**
+     * @param baseDelayMillis the shortest wait between two attempts
+     */
+    public void setBaseDelayMillis(long baseDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * @param maxDelayMillis the longest wait between two attempts
+     */
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public double getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * @param budgetPercent the most retries, as a percentage of the calls
+     */
+    public void setBudgetPercent(double budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return the retries not made because the budget was used up
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("requests: ").append(requests.get()).append("; retries: ").append(retries.get())
+                .append("; exhausted: ").append(exhausted.get()).toString();
+    }
+}
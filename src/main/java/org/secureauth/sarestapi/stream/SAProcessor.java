@@ -0,0 +1,288 @@
+package org.secureauth.sarestapi.stream;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * <p>
+ *     Reactive Streams Processor making one Appliance call per element received, e.g. getUserProfile for every user
+ *     id of a group, and publishing a {@link StreamResult} per element. At most concurrency elements are requested
+ *     from the Publisher and not yet delivered to the Subscriber, so a slow Subscriber slows down the calls instead
+ *     of results piling up. A failed call is delivered as a failed result and the stream goes on; onError is only
+ *     passed on from the Publisher, after the results still in progress.
+ * </p>
+ * <p>
+ *     Processors are for one Publisher and one Subscriber. On Java 9 and later, wrap them with
+ *     org.reactivestreams.FlowAdapters to use them with java.util.concurrent.Flow:
+ * </p>
+ * <pre>
+ *     Flow.Processor&lt;String, StreamResult&lt;String, UserProfileResponse&gt;&gt; profiles =
+ *             FlowAdapters.toFlowProcessor(SAStreams.userProfiles(saAsyncAccess, 32, SAProcessor.Delivery.UNORDERED));
+ *     userIds.subscribe(profiles);
+ *     profiles.subscribe(subscriber);
+ * </pre>
+ * @see SAStreams
+ */
+public class SAProcessor<T, R> implements Processor<T, StreamResult<T, R>> {
+
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    public enum Delivery {
+        /** results in the order the elements were received, a slow call holds back the results after it */
+        ORDERED,
+        /** results as soon as their call completes */
+        UNORDERED
+    }
+
+    /**
+     * The Appliance call made for an element, usually a method of {@link org.secureauth.sarestapi.SAAsyncAccess}
+     */
+    public interface Call<T, R> {
+        CompletableFuture<R> call(T element) throws Exception;
+    }
+
+    private final Call<T, R> call;
+    private final int concurrency;
+    private final Delivery delivery;
+
+    //Elements not yet delivered: all of them in the order received when ordered, the completed ones otherwise
+    private final Queue<Slot<T, R>> slots = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicReference<Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Subscriber<? super StreamResult<T, R>>> downstream = new AtomicReference<>();
+    //Only one thread at a time runs drain(), the only place signals go to the Subscriber and requests to the Publisher
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException invalidRequest;
+
+    //Guarded by wip
+    private boolean terminated;
+    private int outstanding;
+
+    /**
+     * @param call the Appliance call made for every element
+     * @param concurrency the number of elements requested from the Publisher and not yet delivered
+     * @param delivery whether results keep the order of the elements
+     */
+    public SAProcessor(Call<T, R> call, int concurrency, Delivery delivery){
+        if(concurrency < 1){
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.call = call;
+        this.concurrency = concurrency;
+        this.delivery = delivery;
+    }
+
+    public SAProcessor(Call<T, R> call){
+        this(call, DEFAULT_CONCURRENCY, Delivery.ORDERED);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super StreamResult<T, R>> subscriber) {
+        if(subscriber == null){
+            throw new NullPointerException("subscriber");
+        }
+        if(!downstream.compareAndSet(null, subscriber)){
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("SAProcessor allows only one Subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if(n <= 0){
+                    invalidRequest = new IllegalArgumentException(new StringBuilder().append("request must be positive, was ").append(n).toString());
+                }else{
+                    long current, next;
+                    do{
+                        current = requested.get();
+                        if(current == Long.MAX_VALUE){
+                            break;
+                        }
+                        next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                    }while(!requested.compareAndSet(current, next));
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if(subscription == null){
+            throw new NullPointerException("subscription");
+        }
+        if(!upstream.compareAndSet(null, subscription)){
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(T element) {
+        if(element == null){
+            throw new NullPointerException("element");
+        }
+        if(done || cancelled){
+            return;
+        }
+        inProgress.incrementAndGet();
+        final Slot<T, R> slot = new Slot<>(element);
+        if(delivery == Delivery.ORDERED){
+            slots.add(slot);
+        }
+        CompletableFuture<R> future;
+        try{
+            future = call.call(element);
+            if(future == null){
+                throw new NullPointerException("call returned no future");
+            }
+        }catch(Throwable e){
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete(new BiConsumer<R, Throwable>() {
+            @Override
+            public void accept(R response, Throwable throwable) {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                slot.result = new StreamResult<>(slot.element, cause == null ? response : null, cause);
+                if(delivery == Delivery.UNORDERED){
+                    slots.add(slot);
+                }
+                drain();
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if(throwable == null){
+            throw new NullPointerException("throwable");
+        }
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    private void drain(){
+        if(wip.getAndIncrement() != 0){
+            return;
+        }
+        int missed = 1;
+        do{
+            Subscriber<? super StreamResult<T, R>> subscriber = downstream.get();
+            if(subscriber != null && !terminated){
+                if(cancelled || invalidRequest != null){
+                    terminated = true;
+                    slots.clear();
+                    Subscription subscription = upstream.get();
+                    if(subscription != null){
+                        subscription.cancel();
+                    }
+                    if(!cancelled){
+                        subscriber.onError(invalidRequest);
+                    }
+                }else{
+                    long demand = requested.get();
+                    long emitted = 0;
+                    while(emitted != demand && !cancelled){
+                        Slot<T, R> slot = slots.peek();
+                        if(slot == null || slot.result == null){
+                            break;
+                        }
+                        slots.poll();
+                        inProgress.decrementAndGet();
+                        outstanding--;
+                        emitted++;
+                        subscriber.onNext(slot.result);
+                    }
+                    if(emitted != 0 && demand != Long.MAX_VALUE){
+                        requested.addAndGet(-emitted);
+                    }
+                    if(!cancelled){
+                        if(done && inProgress.get() == 0){
+                            terminated = true;
+                            if(error != null){
+                                subscriber.onError(error);
+                            }else{
+                                subscriber.onComplete();
+                            }
+                        }else if(!done && upstream.get() != null && outstanding < concurrency){
+                            int more = concurrency - outstanding;
+                            outstanding = concurrency;
+                            upstream.get().request(more);
+                        }
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        }while(missed != 0);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public Delivery getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * @return elements received whose result is not delivered yet, including the calls waiting on the Appliance
+     */
+    public int getInProgress() {
+        return inProgress.get();
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("concurrency: ").append(concurrency).append("; delivery: ").append(delivery)
+                .append("; inProgress: ").append(inProgress.get()).append("; requested: ").append(requested.get())
+                .append("; done: ").append(done).append("; cancelled: ").append(cancelled).toString();
+    }
+
+    private static final class Slot<T, R> {
+        private final T element;
+        private volatile StreamResult<T, R> result;
+
+        private Slot(T element){
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.secureauth.sarestapi.stream;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.secureauth.sarestapi.SAAsyncAccess;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.Requests.IPEvalRequest;
+import org.secureauth.sarestapi.data.Response.FactorsResponse;
+import org.secureauth.sarestapi.data.Response.UserProfileResponse;
+
+/**
+ * <p>
+ *     {@link SAProcessor}s for the bulk lookups: user profiles or factors for a Publisher of user ids, and IP risk
+ *     for a Publisher of IP addresses or of user id and IP address pairs, e.g. the lines of an access log. Calls go
+ *     through the SAAsyncAccess, so its caches, rate limiter and in-flight cap apply to them too.
+ * </p>
+ */
+public final class SAStreams {
+
+    private SAStreams(){
+    }
+
+    /**
+     * @see SAAsyncAccess#getUserProfile(String)
+     * @param saAsyncAccess the Realm the users are in
+     * @param concurrency the number of users requested from the Publisher and not yet delivered
+     * @param delivery whether results keep the order of the user ids
+     */
+    public static SAProcessor<String, UserProfileResponse> userProfiles(final SAAsyncAccess saAsyncAccess, int concurrency, SAProcessor.Delivery delivery){
+        return new SAProcessor<>(new SAProcessor.Call<String, UserProfileResponse>() {
+            @Override
+            public CompletableFuture<UserProfileResponse> call(String userid) {
+                return saAsyncAccess.getUserProfile(userid);
+            }
+        }, concurrency, delivery);
+    }
+
+    /**
+     * @see SAAsyncAccess#factorsByUser(String)
+     * @param saAsyncAccess the Realm the users are in
+     * @param concurrency the number of users requested from the Publisher and not yet delivered
+     * @param delivery whether results keep the order of the user ids
+     */
+    public static SAProcessor<String, FactorsResponse> factors(final SAAsyncAccess saAsyncAccess, int concurrency, SAProcessor.Delivery delivery){
+        return new SAProcessor<>(new SAProcessor.Call<String, FactorsResponse>() {
+            @Override
+            public CompletableFuture<FactorsResponse> call(String userid) {
+                return saAsyncAccess.factorsByUser(userid);
+            }
+        }, concurrency, delivery);
+    }
+
+    /**
+     * @see SAAsyncAccess#iPEvaluation(String, String)
+     * @param saAsyncAccess the Realm to evaluate in
+     * @param userid the User ID every IP address is evaluated for
+     * @param concurrency the number of IP addresses requested from the Publisher and not yet delivered
+     * @param delivery whether results keep the order of the IP addresses
+     */
+    public static SAProcessor<String, IPEval> ipEvaluations(final SAAsyncAccess saAsyncAccess, final String userid, int concurrency, SAProcessor.Delivery delivery){
+        return new SAProcessor<>(new SAProcessor.Call<String, IPEval>() {
+            @Override
+            public CompletableFuture<IPEval> call(String ipAddress) {
+                return saAsyncAccess.iPEvaluation(userid, ipAddress);
+            }
+        }, concurrency, delivery);
+    }
+
+    /**
+     * @see SAAsyncAccess#iPEvaluation(String, String)
+     * @param saAsyncAccess the Realm to evaluate in
+     * @param concurrency the number of requests taken from the Publisher and not yet delivered
+     * @param delivery whether results keep the order of the requests
+     * @return a processor evaluating the user id and IP address of every request, the type is ignored
+     */
+    public static SAProcessor<IPEvalRequest, IPEval> ipEvaluations(final SAAsyncAccess saAsyncAccess, int concurrency, SAProcessor.Delivery delivery){
+        return new SAProcessor<>(new SAProcessor.Call<IPEvalRequest, IPEval>() {
+            @Override
+            public CompletableFuture<IPEval> call(IPEvalRequest ipEvalRequest) {
+                return saAsyncAccess.iPEvaluation(ipEvalRequest.getUser_id(), ipEvalRequest.getIp_address());
+            }
+        }, concurrency, delivery);
+    }
+}
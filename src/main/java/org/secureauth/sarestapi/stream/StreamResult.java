@@ -0,0 +1,68 @@
+package org.secureauth.sarestapi.stream;
+
+/**
+ * <p>
+ *     Outcome of one element passed through an {@link SAProcessor}: the element, and either the Appliance response or
+ *     the exception of the call. A failed call does not end the stream, the next elements are still processed.
+ * </p>
+ */
+public class StreamResult<T, R> {
+
+    private T element;
+    private R response;
+    private Throwable error;
+
+    public StreamResult(){}
+
+    public StreamResult(T element, R response, Throwable error){
+        this.element = element;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * @return the element received from the Publisher, e.g. the user id or the IP address
+     */
+    public T getElement() {
+        return element;
+    }
+
+    public void setElement(T element) {
+        this.element = element;
+    }
+
+    /**
+     * @return the Appliance response, null when the call failed
+     */
+    public R getResponse() {
+        return response;
+    }
+
+    public void setResponse(R response) {
+        this.response = response;
+    }
+
+    /**
+     * @return the exception of the call, null when the Appliance answered
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    /**
+     * @return true when the Appliance answered; its status still tells whether the user or IP was found
+     */
+    public boolean isSuccess() {
+        return error == null && response != null;
+    }
+
+    @Override
+    public String toString(){
+        return new StringBuilder().append("element: ").append(element).append("; success: ").append(isSuccess())
+                .append("; response: ").append(response).append("; error: ").append(error).toString();
+    }
+}
@@ -0,0 +1,79 @@
+package org.secureauth.sarestapi.transport;
+
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.secureauth.sarestapi.filters.SACheckRequestFilter;
+import org.secureauth.sarestapi.util.ObjectMapperResolver;
+
+/**
+ * <p>
+ *     Transport using Jersey's default HttpURLConnection connector. This is the transport the SDK has always used
+ *     and remains the default when no other transport is supplied.
+ * </p>
+ */
+public class DefaultTransport implements SATransport {
+
+    public DefaultTransport(){}
+
+    @Override
+    public Client createClient(final SABaseURL saBaseURL) throws Exception {
+        ClientConfig config = createConfig();
+
+        return ClientBuilder.newBuilder()
+                .withConfig(config)
+                .sslContext(createSSLContext())
+                .hostnameVerifier(new HostnameVerifier() {
+                    @Override
+                    public boolean verify(String s, SSLSession sslSession) {
+                        return saBaseURL.isSelfSigned();
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public void close(){}
+
+    //Config shared by every transport
+    protected ClientConfig createConfig(){
+        ClientConfig config = new ClientConfig();
+        config.register(SACheckRequestFilter.class);
+        config.register(ObjectMapperResolver.class);
+        return config;
+    }
+
+    //SSL Context accepting the Appliance certificate
+    protected SSLContext createSSLContext() throws Exception {
+        SSLContext ctx = SSLContext.getInstance("TLS");
+
+        TrustManager[] certs = new TrustManager[]{
+                new X509TrustManager(){
+                    @Override
+                    public X509Certificate[] getAcceptedIssuers(){
+                        return null;
+                    }
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {}
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException{}
+                }
+        };
+
+        ctx.init(null, certs, new SecureRandom());
+        return ctx;
+    }
+}
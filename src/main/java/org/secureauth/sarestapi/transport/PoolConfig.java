@@ -0,0 +1,108 @@
+package org.secureauth.sarestapi.transport;
+
+/**
+ * <p>
+ *     Settings for the {@link PooledTransport} connection pool. The defaults are tuned for a single Appliance
+ *     serving interactive logins; raise the limits when several applications share one SAAccess instance.
+ * </p>
+ */
+public class PoolConfig {
+
+    //Pool limits
+    private int maxTotal = 200;
+    private int maxPerRoute = 100;
+
+    //Socket timeouts in milliseconds, 0 means wait forever
+    private int connectTimeout = 5000;
+    private int readTimeout = 30000;
+
+    //Connections idle for longer than this are closed by the evictor
+    private long idleTimeout = 60000;
+    //Maximum lifetime of a pooled connection, 0 or less keeps connections until they go idle
+    private long timeToLive = 0;
+    //How often the evictor sweeps the pool
+    private long evictionInterval = 5000;
+
+    //TLS session cache, lets new sockets resume a session instead of doing a full handshake
+    private int sslSessionCacheSize = 1000;
+    private int sslSessionTimeout = 86400;
+
+    public PoolConfig(){}
+
+    public PoolConfig(int maxTotal, int maxPerRoute){
+        this.maxTotal=maxTotal;
+        this.maxPerRoute=maxPerRoute;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public int getSslSessionCacheSize() {
+        return sslSessionCacheSize;
+    }
+
+    public void setSslSessionCacheSize(int sslSessionCacheSize) {
+        this.sslSessionCacheSize = sslSessionCacheSize;
+    }
+
+    public int getSslSessionTimeout() {
+        return sslSessionTimeout;
+    }
+
+    public void setSslSessionTimeout(int sslSessionTimeout) {
+        this.sslSessionTimeout = sslSessionTimeout;
+    }
+}
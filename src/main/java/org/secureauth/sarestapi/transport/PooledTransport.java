@@ -0,0 +1,130 @@
+package org.secureauth.sarestapi.transport;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.secureauth.sarestapi.data.SABaseURL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Transport backed by the Apache HttpClient connector and a keep-alive connection pool. Connections to the
+ *     Appliance are reused between requests so steady state traffic does not pay for TCP and TLS setup, idle
+ *     connections are evicted in the background and new sockets resume cached TLS sessions.
+ * </p>
+ * <p>
+ *     Each SAAccess instance should be given its own PooledTransport. Call {@link #close()} when the SAAccess
+ *     instance is no longer used to release the pool and the evictor thread.
+ * </p>
+ */
+public class PooledTransport extends DefaultTransport {
+
+    private static Logger logger=LoggerFactory.getLogger(PooledTransport.class);
+
+    private final PoolConfig poolConfig;
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+    private volatile ScheduledExecutorService evictor;
+
+    public PooledTransport(){
+        this(new PoolConfig());
+    }
+
+    public PooledTransport(PoolConfig poolConfig){
+        this.poolConfig = poolConfig;
+    }
+
+    @Override
+    public synchronized Client createClient(SABaseURL saBaseURL) throws Exception {
+        SSLContext ctx = createSSLContext();
+        ctx.getClientSessionContext().setSessionCacheSize(poolConfig.getSslSessionCacheSize());
+        ctx.getClientSessionContext().setSessionTimeout(poolConfig.getSslSessionTimeout());
+
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(ctx, saBaseURL.isSelfSigned()
+                        ? SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER
+                        : SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER))
+                .build();
+
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(registry, null, null, null,
+                poolConfig.getTimeToLive() > 0 ? poolConfig.getTimeToLive() : -1, TimeUnit.MILLISECONDS);
+        manager.setMaxTotal(poolConfig.getMaxTotal());
+        manager.setDefaultMaxPerRoute(poolConfig.getMaxPerRoute());
+
+        ClientConfig config = createConfig();
+        config.connectorProvider(new ApacheConnectorProvider());
+        config.property(ApacheClientProperties.CONNECTION_MANAGER, manager);
+        //Idle connections are evicted in the background, checking every leased connection for staleness costs a blocking read per request
+        config.property(ApacheClientProperties.REQUEST_CONFIG, RequestConfig.custom().setStaleConnectionCheckEnabled(false).build());
+        config.property(ClientProperties.CONNECT_TIMEOUT, poolConfig.getConnectTimeout());
+        config.property(ClientProperties.READ_TIMEOUT, poolConfig.getReadTimeout());
+
+        Client client = ClientBuilder.newClient(config);
+
+        close();
+        connectionManager = manager;
+        startEvictor(manager);
+
+        return client;
+    }
+
+    @Override
+    public synchronized void close(){
+        if(evictor != null){
+            evictor.shutdownNow();
+            evictor = null;
+        }
+        if(connectionManager != null){
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+    }
+
+    /**
+     * @return the connection pool, or null when no client has been created yet
+     */
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    //Close expired and idle connections so the Appliance never hands us a socket it already dropped
+    private void startEvictor(final PoolingHttpClientConnectionManager manager){
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sa-connection-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try{
+                    manager.closeExpiredConnections();
+                    manager.closeIdleConnections(poolConfig.getIdleTimeout(), TimeUnit.MILLISECONDS);
+                }catch(Exception e){
+                    logger.warn(new StringBuilder().append("Exception evicting idle connections: ").append(e.getMessage()).toString(), e);
+                }
+            }
+        }, poolConfig.getEvictionInterval(), poolConfig.getEvictionInterval(), TimeUnit.MILLISECONDS);
+    }
+}
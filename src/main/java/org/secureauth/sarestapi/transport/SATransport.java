@@ -0,0 +1,27 @@
+package org.secureauth.sarestapi.transport;
+
+import javax.ws.rs.client.Client;
+
+import org.secureauth.sarestapi.data.SABaseURL;
+
+/**
+ * <p>
+ *     Builds the Jersey {@link Client} used by {@link org.secureauth.sarestapi.resources.SAExecuter} to talk to the
+ *     SecureAuth Appliance. The executer asks for the client exactly once and shares it between all threads, so
+ *     implementations only need to hand back a fully configured client.
+ * </p>
+ */
+public interface SATransport {
+
+    /**
+     * @param saBaseURL the Appliance the client will connect to
+     * @return a fully configured, thread safe {@link Client}
+     * @throws Exception when the client can not be created
+     */
+    Client createClient(SABaseURL saBaseURL) throws Exception;
+
+    /**
+     * Releases any resources (connection pools, background threads) held by this transport.
+     */
+    void close();
+}
@@ -0,0 +1,67 @@
+package org.secureauth.sarestapi.transport;
+
+import javax.ws.rs.client.Client;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.secureauth.sarestapi.data.SABaseURL;
+
+/**
+ * <p>
+ *     Transport for calls made from virtual threads. On Java 21 and later the jar's META-INF/versions/21 copy of
+ *     this class is loaded instead: it sends requests with java.net.http.HttpClient, whose blocking calls park the
+ *     virtual thread rather than pinning its carrier thread in a monitor, and handles responses on virtual threads.
+ * </p>
+ * <p>
+ *     On older runtimes, or when the classes are not loaded from the jar, it is the {@link DefaultTransport} with
+ *     connect and read timeouts, so code written for it keeps working on Java 8.
+ * </p>
+ */
+public class VirtualThreadTransport extends DefaultTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    protected final int connectTimeout;
+    protected final int readTimeout;
+
+    public VirtualThreadTransport(){
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * @param connectTimeout the connect timeout, in milliseconds
+     * @param readTimeout the time to wait for a response, in milliseconds
+     */
+    public VirtualThreadTransport(int connectTimeout, int readTimeout){
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    //Declared here so both copies of the class have the same API, as multi-release jars require
+    @Override
+    public Client createClient(SABaseURL saBaseURL) throws Exception {
+        return super.createClient(saBaseURL);
+    }
+
+    @Override
+    public void close(){
+        super.close();
+    }
+
+    @Override
+    protected ClientConfig createConfig(){
+        ClientConfig config = super.createConfig();
+        config.property(ClientProperties.CONNECT_TIMEOUT, connectTimeout);
+        config.property(ClientProperties.READ_TIMEOUT, readTimeout);
+        return config;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+}
@@ -2,11 +2,24 @@ package org.secureauth.sarestapi.util;
 
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import org.secureauth.sarestapi.data.Requests.DFPValidateRequest;
+import org.secureauth.sarestapi.data.BehavioralBio.BehaveBioRequest;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.PushAcceptStatus;
+import org.secureauth.sarestapi.data.Requests.*;
+import org.secureauth.sarestapi.data.Response.*;
+import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
+import org.secureauth.sarestapi.data.UserProfile.UserToGroups;
+import org.secureauth.sarestapi.data.UserProfile.UsersToGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author rrowcliffe@secureauth.com
@@ -28,37 +41,154 @@ OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
  */
 
 
+/**
+ * <p>
+ *     JSON conversion shared by the whole SDK. A single ObjectMapper is configured once and never changed afterwards,
+ *     readers and writers are cached per type so Jackson's serializer and deserializer caches are reused instead of
+ *     being rebuilt on every call. The request and response types of the Rest API are warmed up when the class loads.
+ * </p>
+ * <p>
+ *     When jackson-module-afterburner is on the classpath it is registered with the mapper.
+ * </p>
+ */
 public class JSONUtil {
 
+    private static Logger logger=LoggerFactory.getLogger(JSONUtil.class);
+
+    private static final String AFTERBURNER = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+
+    //Configured once below, must not be reconfigured once readers and writers have been handed out
+    static final ObjectMapper MAPPER = createMapper();
+
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> PRETTY_WRITERS = new ConcurrentHashMap<>();
+
+    //Types sent to and received from the Appliance
+    private static final Class<?>[] REQUEST_TYPES = {
+            AccessHistoryRequest.class, AdaptiveAuthRequest.class, AuthRequest.class, BehaveBioResetRequest.class,
+            DFPConfirmRequest.class, DFPValidateRequest.class, IPEvalRequest.class, PushToAcceptRequest.class,
+            UserPasswordRequest.class, BehaveBioRequest.class, NewUserProfile.class, UsersToGroup.class,
+            UserToGroups.class
+    };
+    private static final Class<?>[] RESPONSE_TYPES = {
+            AdaptiveAuthResponse.class, BaseResponse.class, BehaveBioResponse.class, DFPConfirmResponse.class,
+            DFPValidateResponse.class, FactorsResponse.class, GroupAssociationResponse.class, JSObjectResponse.class,
+            ResponseObject.class, UserProfileResponse.class, IPEval.class, PushAcceptStatus.class
+    };
+
+    static {
+        for(Class<?> type : REQUEST_TYPES){
+            writerFor(type);
+        }
+        for(Class<?> type : RESPONSE_TYPES){
+            readerFor(type);
+        }
+    }
+
     public JSONUtil (){}
 
+    /**
+     * @param type the type to read
+     * @return the cached reader for the type
+     */
+    public static ObjectReader readerFor(Class<?> type){
+        ObjectReader reader = READERS.get(type);
+        if(reader == null){
+            reader = MAPPER.readerFor(type);
+            ObjectReader existing = READERS.putIfAbsent(type, reader);
+            if(existing != null){
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * @param type the type to write
+     * @return the cached compact writer for the type
+     */
+    public static ObjectWriter writerFor(Class<?> type){
+        ObjectWriter writer = WRITERS.get(type);
+        if(writer == null){
+            writer = MAPPER.writerFor(type);
+            ObjectWriter existing = WRITERS.putIfAbsent(type, writer);
+            if(existing != null){
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+    //Pretty printed writer for the type, used for toString
+    private static ObjectWriter prettyWriterFor(Class<?> type){
+        ObjectWriter writer = PRETTY_WRITERS.get(type);
+        if(writer == null){
+            writer = writerFor(type).withDefaultPrettyPrinter();
+            ObjectWriter existing = PRETTY_WRITERS.putIfAbsent(type, writer);
+            if(existing != null){
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * <p>
+     *     Serializes the object to compact UTF-8 JSON. Request bodies are serialized once with this method and the
+     *     same bytes are signed and sent.
+     * </p>
+     * @param object the object to serialize
+     * @return the JSON bytes, or null when the object can not be serialized
+     */
+    public static byte[] convertObjectToJSONBytes(Object object){
+        try {
+            return object == null ? MAPPER.writeValueAsBytes(null) : writerFor(object.getClass()).writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
      public static String convertObjectToJSON(Object object){
-        ObjectWriter ow = new ObjectMapper().writer().withDefaultPrettyPrinter();
         String json = null;
         try {
-            json = ow.writeValueAsString(object);
+            json = object == null ? MAPPER.writeValueAsString(null) : prettyWriterFor(object.getClass()).writeValueAsString(object);
         } catch (JsonProcessingException e) {
             e.printStackTrace();
         }
         return json;
     }
 
-
-    public static DFPValidateRequest getObjectFromJSONString(String dfpJsonString){
-        ObjectMapper mapper = new ObjectMapper();
-        StringBuilder stringBuilder = new StringBuilder();
-        DFPValidateRequest dfpValidateRequest = new DFPValidateRequest();
-
+    /**
+     * @param json the JSON document
+     * @param valueType the type to read
+     * @param <T> the type to read
+     * @return the object, or null when the document can not be read
+     */
+    public static <T> T convertJSONToObject(String json, Class<T> valueType){
         try{
-            dfpValidateRequest = mapper.readValue(dfpJsonString,DFPValidateRequest.class);
-
-
-        }catch(JsonProcessingException jpe){
-            jpe.printStackTrace();
+            return readerFor(valueType).readValue(json);
         }catch(IOException ie){
             ie.printStackTrace();
         }
+        return null;
+    }
+
+    public static DFPValidateRequest getObjectFromJSONString(String dfpJsonString){
+        DFPValidateRequest dfpValidateRequest = convertJSONToObject(dfpJsonString, DFPValidateRequest.class);
+        return dfpValidateRequest != null ? dfpValidateRequest : new DFPValidateRequest();
+    }
 
-        return dfpValidateRequest;
+    private static ObjectMapper createMapper(){
+        ObjectMapper mapper = new ObjectMapper();
+        try{
+            mapper.registerModule((Module) Class.forName(AFTERBURNER).newInstance());
+        }catch(ClassNotFoundException e){
+            //Afterburner is optional
+        }catch(Exception e){
+            logger.warn(new StringBuilder().append("Unable to register the Afterburner module: ").append(e.getMessage()).toString(), e);
+        }
+        return mapper;
     }
 }
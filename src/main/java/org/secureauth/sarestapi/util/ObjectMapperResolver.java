@@ -0,0 +1,19 @@
+package org.secureauth.sarestapi.util;
+
+import javax.ws.rs.ext.ContextResolver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * <p>
+ *     Hands the shared {@link JSONUtil} mapper to the Jackson JAX-RS provider so response entities are read with
+ *     the same pre-warmed mapper instead of one built by the provider.
+ * </p>
+ */
+public class ObjectMapperResolver implements ContextResolver<ObjectMapper> {
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return JSONUtil.MAPPER;
+    }
+}
@@ -0,0 +1,218 @@
+package org.secureauth.sarestapi.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+import org.secureauth.sarestapi.data.SAAuth;
+import org.secureauth.sarestapi.resources.s;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Builds the Authorization header for requests of a single Realm. Produces the same header as
+ *     {@link RestApiHeader}, but the Application Key is decoded once and every thread keeps its own initialized
+ *     {@link Mac} together with the buffers used to build the header, so signing a request does not look up the
+ *     algorithm, rebuild the key or allocate intermediate strings.
+ * </p>
+ * <p>
+ *     The Application ID and Key are read when the signer is created, create a new signer after changing them.
+ * </p>
+ */
+public class RequestSigner {
+
+    private static Logger logger=LoggerFactory.getLogger(RequestSigner.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte[] BASIC = "Basic ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    //Base64 length of a 32 byte HmacSHA256
+    private static final int SIGNATURE_LENGTH = 44;
+
+    private final String applicationID;
+    private final byte[] applicationIDBytes;
+    private final SecretKeySpec secretKey;
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>(){
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    public RequestSigner(SAAuth saAuth){
+        this.applicationID = saAuth.getApplicationID();
+        this.applicationIDBytes = applicationID.getBytes(StandardCharsets.UTF_8);
+
+        SecretKeySpec key = null;
+        try{
+            byte[] secretByte = new Hex(StandardCharsets.UTF_8).decode(saAuth.getApplicationKey().getBytes(StandardCharsets.UTF_8));
+            key = new SecretKeySpec(secretByte, ALGORITHM);
+        }catch(Exception e){
+            logger.error(new StringBuilder().append("Exception occurred while decoding the Application Key\n").append(e.getMessage()).append("\n").toString(), e);
+        }
+        this.secretKey = key;
+    }
+
+    public String getApplicationID() {
+        return applicationID;
+    }
+
+    //No Payload in header
+    public String getAuthorizationHeader(String requestMethod, String uriPath, String ts){
+        return getAuthorizationHeader(requestMethod, uriPath, (String) null, ts);
+    }
+
+    /**
+     * <p>
+     *     Signs an already serialized body. The bytes are fed to the HMAC as they are, so the signature covers
+     *     exactly what is sent as the request entity.
+     * </p>
+     * @param requestMethod the HTTP Method
+     * @param uriPath the path of the request, without the leading slash
+     * @param payload the UTF-8 JSON body of the request
+     * @param ts the X-SA-Date header
+     * @return the Authorization header
+     */
+    public String getAuthorizationHeader(String requestMethod, String uriPath, byte[] payload, String ts){
+        Scratch sc = scratch.get();
+        StringBuilder stringBuilder = sc.prefix(requestMethod, uriPath, ts);
+        stringBuilder.append("\n");
+
+        int signatureLength = 0;
+        try{
+            Mac mac = sc.mac();
+            int length = sc.encode(stringBuilder);
+            mac.update(sc.encoded.array(), 0, length);
+            mac.update(payload);
+            mac.doFinal(sc.hmac, 0);
+            signatureLength = encodeBase64(sc.hmac, 0, sc.hmac.length, sc.credentials, applicationIDBytes.length + 1) - applicationIDBytes.length - 1;
+        }catch(Exception e){
+            sc.mac = null;
+            logger.error(new StringBuilder().append("Exception occurred while generating Authorization Header\n").append(e.getMessage()).append("\n").toString(), e);
+        }
+        return sc.header(signatureLength);
+    }
+
+    /**
+     * @param requestMethod the HTTP Method
+     * @param uriPath the path of the request, without the leading slash
+     * @param payload the JSON body of the request, null when the request has no body
+     * @param ts the X-SA-Date header
+     * @return the Authorization header
+     */
+    public String getAuthorizationHeader(String requestMethod, String uriPath, String payload, String ts){
+        Scratch sc = scratch.get();
+
+        //Build our string for the AuthHeader
+        StringBuilder stringBuilder = sc.prefix(requestMethod, uriPath, ts);
+        if(payload != null){
+            stringBuilder.append("\n").append(payload);
+        }
+
+        //Create a SHA256 Hash
+        int signatureLength = 0;
+        try{
+            Mac mac = sc.mac();
+            int length = sc.encode(stringBuilder);
+            mac.update(sc.encoded.array(), 0, length);
+            mac.doFinal(sc.hmac, 0);
+            signatureLength = encodeBase64(sc.hmac, 0, sc.hmac.length, sc.credentials, applicationIDBytes.length + 1) - applicationIDBytes.length - 1;
+        }catch(Exception e){
+            sc.mac = null;
+            logger.error(new StringBuilder().append("Exception occurred while generating Authorization Header\n").append(e.getMessage()).append("\n").toString(), e);
+        }
+        return sc.header(signatureLength);
+    }
+
+    //Encodes len bytes of src at dst[dstOffset], returns the end offset in dst
+    private static int encodeBase64(byte[] src, int offset, int len, byte[] dst, int dstOffset){
+        int d = dstOffset;
+        int end = offset + len - len % 3;
+        for(int i = offset; i < end; i += 3){
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[d++] = BASE64[bits >>> 18 & 0x3f];
+            dst[d++] = BASE64[bits >>> 12 & 0x3f];
+            dst[d++] = BASE64[bits >>> 6 & 0x3f];
+            dst[d++] = BASE64[bits & 0x3f];
+        }
+        int remaining = offset + len - end;
+        if(remaining > 0){
+            int bits = (src[end] & 0xff) << 16 | (remaining == 2 ? (src[end + 1] & 0xff) << 8 : 0);
+            dst[d++] = BASE64[bits >>> 18 & 0x3f];
+            dst[d++] = BASE64[bits >>> 12 & 0x3f];
+            dst[d++] = remaining == 2 ? BASE64[bits >>> 6 & 0x3f] : (byte) '=';
+            dst[d++] = '=';
+        }
+        return d;
+    }
+
+    //Per thread Mac and buffers
+    private class Scratch {
+        private final StringBuilder stringBuilder = new StringBuilder(256);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer encoded = ByteBuffer.allocate(256);
+        private final byte[] hmac = new byte[32];
+        //"applicationID:signature" and "Basic " + base64 of it
+        private final byte[] credentials = new byte[applicationIDBytes.length + 1 + SIGNATURE_LENGTH];
+        private final byte[] header = new byte[BASIC.length + (credentials.length + 2) / 3 * 4];
+        private Mac mac;
+
+        private Scratch(){
+            System.arraycopy(applicationIDBytes, 0, credentials, 0, applicationIDBytes.length);
+            credentials[applicationIDBytes.length] = ':';
+            System.arraycopy(BASIC, 0, header, 0, BASIC.length);
+        }
+
+        private StringBuilder prefix(String requestMethod, String uriPath, String ts){
+            stringBuilder.setLength(0);
+            stringBuilder.append(requestMethod).append("\n")
+                    .append(ts).append("\n")
+                    .append(applicationID).append("\n")
+                    .append(s.SLASH).append(uriPath);
+            return stringBuilder;
+        }
+
+        //"Basic " + base64("applicationID:signature")
+        private String header(int signatureLength){
+            int end = encodeBase64(credentials, 0, applicationIDBytes.length + 1 + signatureLength, header, BASIC.length);
+            return new String(header, 0, end, StandardCharsets.US_ASCII);
+        }
+
+        private Mac mac() throws Exception {
+            if(mac == null){
+                Mac m = Mac.getInstance(ALGORITHM);
+                m.init(secretKey);
+                mac = m;
+            }
+            return mac;
+        }
+
+        //UTF-8 encode into the reusable buffer, growing it when the payload does not fit. Returns the encoded length
+        private int encode(CharSequence chars){
+            while(true){
+                encoded.clear();
+                encoder.reset();
+                CharBuffer in = CharBuffer.wrap(chars);
+                CoderResult result = encoder.encode(in, encoded, true);
+                if(!result.isOverflow()){
+                    result = encoder.flush(encoded);
+                }
+                if(!result.isOverflow()){
+                    return encoded.position();
+                }
+                encoded = ByteBuffer.allocate(encoded.capacity() * 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.secureauth.sarestapi.util;
+
+import org.secureauth.sarestapi.data.PushAcceptStatus;
+import org.secureauth.sarestapi.data.Response.BaseResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Builds the responses the SDK returns in place of the Appliance's when it does not send a call, e.g. because a
+ *     circuit is open or too many calls are outstanding.
+ * </p>
+ */
+public class StatusResponse {
+
+    private static Logger logger=LoggerFactory.getLogger(StatusResponse.class);
+
+    /**
+     * @param valueType the response type of the call
+     * @param status the status to report
+     * @param message the message to report
+     * @return a response of the requested type with the status and message, null when the type has no status
+     */
+    public static <T> T create(Class<T> valueType, String status, String message){
+        try{
+            if(BaseResponse.class.isAssignableFrom(valueType)){
+                BaseResponse response = (BaseResponse) valueType.newInstance();
+                response.setStatus(status);
+                response.setMessage(message);
+                return valueType.cast(response);
+            }
+            if(PushAcceptStatus.class.isAssignableFrom(valueType)){
+                PushAcceptStatus response = (PushAcceptStatus) valueType.newInstance();
+                response.setStatus(status);
+                response.setMessage(message);
+                return valueType.cast(response);
+            }
+        }catch(Exception e){
+            logger.error(new StringBuilder().append("Unable to create the ").append(status).append(" response for ")
+                    .append(valueType.getName()).toString(), e);
+        }
+        return null;
+    }
+}
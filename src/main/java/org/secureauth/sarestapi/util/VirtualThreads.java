@@ -0,0 +1,43 @@
+package org.secureauth.sarestapi.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *     Creates the executors of virtual thread mode. On Java 21 and later the jar's META-INF/versions/21 copy of this
+ *     class is loaded instead and starts a virtual thread per task; this one, for older runtimes, falls back to
+ *     daemon platform threads.
+ * </p>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads(){
+    }
+
+    /**
+     * @return true when {@link #newExecutor(String)} runs tasks on virtual threads
+     */
+    public static boolean isAvailable(){
+        return false;
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @return an executor starting a thread per task, reusing idle platform threads on runtimes without virtual threads
+     */
+    public static ExecutorService newExecutor(final String name){
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
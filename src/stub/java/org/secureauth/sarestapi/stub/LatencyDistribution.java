@@ -0,0 +1,68 @@
+package org.secureauth.sarestapi.stub;
+
+import java.util.Random;
+
+/**
+ * <p>
+ *     Service time added by the {@link StubAppliance} before it answers a request.
+ * </p>
+ */
+public abstract class LatencyDistribution {
+
+    /**
+     * @param random the random source of the calling thread
+     * @return the delay in microseconds
+     */
+    public abstract long nextMicros(Random random);
+
+    public static LatencyDistribution none(){
+        return fixed(0);
+    }
+
+    public static LatencyDistribution fixed(final double millis){
+        final long micros = (long) (millis * 1000);
+        return new LatencyDistribution() {
+            @Override
+            public long nextMicros(Random random) {
+                return micros;
+            }
+        };
+    }
+
+    public static LatencyDistribution uniform(final double minMillis, final double maxMillis){
+        return new LatencyDistribution() {
+            @Override
+            public long nextMicros(Random random) {
+                return (long) ((minMillis + random.nextDouble() * (maxMillis - minMillis)) * 1000);
+            }
+        };
+    }
+
+    public static LatencyDistribution exponential(final double meanMillis){
+        return new LatencyDistribution() {
+            @Override
+            public long nextMicros(Random random) {
+                return (long) (-Math.log(1 - random.nextDouble()) * meanMillis * 1000);
+            }
+        };
+    }
+
+    /**
+     * <p>
+     *     Long tailed distribution, the usual shape of real service times.
+     * </p>
+     * @param medianMillis the median delay
+     * @param p99Millis the 99th percentile delay, must be above the median
+     */
+    public static LatencyDistribution logNormal(final double medianMillis, double p99Millis){
+        final double mu = Math.log(medianMillis);
+        //2.326 is the 99th percentile of the standard normal distribution
+        final double sigma = (Math.log(p99Millis) - mu) / 2.326;
+        return new LatencyDistribution() {
+            @Override
+            public long nextMicros(Random random) {
+                return (long) (Math.exp(mu + sigma * random.nextGaussian()) * 1000);
+            }
+        };
+    }
+}
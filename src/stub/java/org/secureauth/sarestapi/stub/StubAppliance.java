@@ -0,0 +1,295 @@
+package org.secureauth.sarestapi.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.secureauth.sarestapi.resources.s;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     In process stand-in for a SecureAuth Appliance, for load and latency testing of the SDK without a real
+ *     Appliance. Serves the Rest API endpoints of one Realm over plain HTTP, checks the Authorization and X-SA-Date
+ *     headers the same way the Appliance does, and can add latency, fail a share of the requests and throttle.
+ * </p>
+ * <p>
+ *     Delayed responses are scheduled rather than slept on, so a handful of threads can serve thousands of
+ *     requests per second whatever the configured latency.
+ * </p>
+ * <pre>
+ *     StubAppliance stub = new StubAppliance(new StubConfig()).start();
+ *     SAAccess saAccess = new SAAccess("127.0.0.1", String.valueOf(stub.getPort()), false, false, ...);
+ * </pre>
+ */
+public class StubAppliance {
+
+    private static Logger logger=LoggerFactory.getLogger(StubAppliance.class);
+
+    static {
+        //Without TCP_NODELAY, Nagle and delayed ACKs add ~40ms to every response
+        if(System.getProperty("sun.net.httpserver.nodelay") == null){
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final StubConfig config;
+    private final StubRouter router;
+    private final String realmPrefix;
+    private final SecretKeySpec secretKey;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong unauthorized = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    //Requests admitted in the current second
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+
+    public StubAppliance(StubConfig config){
+        this.config = config;
+        this.router = new StubRouter(config);
+        this.realmPrefix = s.SLASH + config.getRealm();
+        try{
+            this.secretKey = new SecretKeySpec(Hex.decodeHex(config.getApplicationKey().toCharArray()), "HmacSHA256");
+        }catch(DecoderException e){
+            throw new IllegalArgumentException("The Application Key must be hex encoded", e);
+        }
+    }
+
+    public synchronized StubAppliance start() throws IOException {
+        if(server != null){
+            return this;
+        }
+        executor = Executors.newFixedThreadPool(config.getThreads(), threadFactory("sa-stub-worker"));
+        scheduler = Executors.newScheduledThreadPool(2, threadFactory("sa-stub-latency"));
+
+        server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), config.getBacklog());
+        server.setExecutor(executor);
+        server.createContext(s.SLASH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        logger.info(new StringBuilder().append("Stub Appliance listening on ").append(config.getHost()).append(":").append(getPort())
+                .append(" for realm ").append(config.getRealm()).toString());
+        return this;
+    }
+
+    public synchronized void stop(){
+        if(server == null){
+            return;
+        }
+        server.stop(0);
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        server = null;
+    }
+
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    public StubConfig getConfig() {
+        return config;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getUnauthorized() {
+        return unauthorized.get();
+    }
+
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    private void serve(final HttpExchange exchange){
+        requests.incrementAndGet();
+        StubResponse response;
+        try{
+            byte[] body = readBody(exchange.getRequestBody());
+            response = answer(exchange, body);
+        }catch(Exception e){
+            logger.error(new StringBuilder().append("Exception serving ").append(exchange.getRequestURI()).append("\nError:").append(e.getMessage()).toString(), e);
+            response = StubResponse.status(500, s.STATUS_SERVER_ERROR, "Internal server error.");
+        }
+
+        final StubResponse answer = response;
+        long delay = config.getLatency().nextMicros(ThreadLocalRandom.current());
+        if(delay <= 0){
+            send(exchange, answer);
+        }else{
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(exchange, answer);
+                }
+            }, delay, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private StubResponse answer(HttpExchange exchange, byte[] body) throws Exception {
+        if(!admit()){
+            throttled.incrementAndGet();
+            return StubResponse.status(429, s.STATUS_ERROR, "Too many requests.");
+        }
+
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getRawPath();
+        if(!path.startsWith(realmPrefix + "/")){
+            return StubResponse.status(404, s.STATUS_INVALID, "Realm not found.");
+        }
+
+        String ts = exchange.getRequestHeaders().getFirst("X-SA-Date");
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if(ts == null || authorization == null){
+            unauthorized.incrementAndGet();
+            return StubResponse.status(401, s.STATUS_INVALID, "Authorization and X-SA-Date headers are required.");
+        }
+        if(config.isVerifySignature() && !verify(method, path, ts, authorization, body)){
+            unauthorized.incrementAndGet();
+            return StubResponse.status(401, s.STATUS_INVALID, "AuthHeader is not valid.");
+        }
+
+        Random random = ThreadLocalRandom.current();
+        if(config.getErrorRate() > 0 && random.nextDouble() < config.getErrorRate()){
+            injectedErrors.incrementAndGet();
+            return StubResponse.status(500, s.STATUS_SERVER_ERROR, "Injected server error.");
+        }
+
+        return router.route(method, path.substring(realmPrefix.length()), body);
+    }
+
+    //Recompute the HMAC over METHOD\nX-SA-Date\nApplicationID\npath[\nbody] and compare it with the header
+    private boolean verify(String method, String path, String ts, String authorization, byte[] body) throws Exception {
+        if(!authorization.startsWith("Basic ")){
+            return false;
+        }
+        String credentials = new String(Base64.decodeBase64(authorization.substring(6)), StandardCharsets.UTF_8);
+        int colon = credentials.indexOf(':');
+        if(colon < 0 || !config.getApplicationID().equals(credentials.substring(0, colon))){
+            return false;
+        }
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(secretKey);
+        mac.update(new StringBuilder().append(method).append("\n").append(ts).append("\n")
+                .append(config.getApplicationID()).append("\n").append(path).toString().getBytes(StandardCharsets.UTF_8));
+        if(body.length > 0){
+            mac.update((byte) '\n');
+            mac.update(body);
+        }
+        byte[] expected = mac.doFinal();
+        return MessageDigest.isEqual(expected, Base64.decodeBase64(credentials.substring(colon + 1)));
+    }
+
+    //Fixed one second window, enough to make the SDK see 429s at a chosen rate
+    private boolean admit(){
+        int limit = config.getMaxRequestsPerSecond();
+        if(limit <= 0){
+            return true;
+        }
+        long second = System.nanoTime() / 1000000000L;
+        long start = windowStart.get();
+        if(second != start && windowStart.compareAndSet(start, second)){
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= limit;
+    }
+
+    private static void send(HttpExchange exchange, StubResponse response){
+        try{
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.getCode(), response.getBody().length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(response.getBody());
+            out.close();
+        }catch(IOException e){
+            logger.debug(new StringBuilder().append("Client went away: ").append(e.getMessage()).toString());
+            exchange.close();
+        }
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while((read = in.read(buffer)) != -1){
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static ThreadFactory threadFactory(final String name){
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * <p>
+     *     Runs a stub from the command line until it is killed.
+     * </p>
+     * @param args [port [median latency ms, p99 latency ms [error rate [max requests per second]]]]
+     */
+    public static void main(String[] args) throws Exception {
+        StubConfig config = new StubConfig();
+        config.setHost("0.0.0.0");
+        config.setPort(args.length > 0 ? Integer.parseInt(args[0]) : 8443);
+        if(args.length > 2){
+            config.setLatency(LatencyDistribution.logNormal(Double.parseDouble(args[1]), Double.parseDouble(args[2])));
+        }
+        if(args.length > 3){
+            config.setErrorRate(Double.parseDouble(args[3]));
+        }
+        if(args.length > 4){
+            config.setMaxRequestsPerSecond(Integer.parseInt(args[4]));
+        }
+        new StubAppliance(config).start();
+        Thread.currentThread().join();
+    }
+}
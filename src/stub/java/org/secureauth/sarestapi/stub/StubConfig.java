@@ -0,0 +1,178 @@
+package org.secureauth.sarestapi.stub;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Settings for a {@link StubAppliance}. Change them before the stub is started, except for the latency, error rate
+ *     and throttling settings which may be changed while it runs.
+ * </p>
+ */
+public class StubConfig {
+
+    private String host = "127.0.0.1";
+    private int port = 0;
+    private int threads = Runtime.getRuntime().availableProcessors() * 2;
+    private int backlog = 1024;
+
+    private String realm = "secureauth1";
+    private String applicationID = "8a1c9f2d6b3e4a5f9c0d1e2f3a4b5c6d";
+    private String applicationKey = "0a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f9";
+    private boolean verifySignature = true;
+
+    private final Map<String, String> users = new LinkedHashMap<>();
+    private boolean autoProvision = true;
+    private String defaultPassword = "Password1!";
+    private int pushPendingPolls = 2;
+
+    private volatile LatencyDistribution latency = LatencyDistribution.none();
+    private volatile double errorRate = 0;
+    private volatile int maxRequestsPerSecond = 0;
+
+    public StubConfig(){
+        users.put("jdoe", defaultPassword);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     * @return the port to listen on, 0 picks a free port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    public String getApplicationID() {
+        return applicationID;
+    }
+
+    public void setApplicationID(String applicationID) {
+        this.applicationID = applicationID;
+    }
+
+    public String getApplicationKey() {
+        return applicationKey;
+    }
+
+    public void setApplicationKey(String applicationKey) {
+        this.applicationKey = applicationKey;
+    }
+
+    /**
+     * @return true when requests with a missing or wrong Authorization header are rejected with a 401
+     */
+    public boolean isVerifySignature() {
+        return verifySignature;
+    }
+
+    public void setVerifySignature(boolean verifySignature) {
+        this.verifySignature = verifySignature;
+    }
+
+    /**
+     * @return the users known when the stub starts, by user id and password
+     */
+    public Map<String, String> getUsers() {
+        return users;
+    }
+
+    public void addUser(String userId, String password){
+        users.put(userId, password);
+    }
+
+    /**
+     * @return true when unknown user ids are created on first use with the default password, so load tests can use
+     * any number of users
+     */
+    public boolean isAutoProvision() {
+        return autoProvision;
+    }
+
+    public void setAutoProvision(boolean autoProvision) {
+        this.autoProvision = autoProvision;
+    }
+
+    public String getDefaultPassword() {
+        return defaultPassword;
+    }
+
+    public void setDefaultPassword(String defaultPassword) {
+        this.defaultPassword = defaultPassword;
+    }
+
+    /**
+     * @return how many times the status of a push to accept is reported as PENDING before it is ACCEPTED
+     */
+    public int getPushPendingPolls() {
+        return pushPendingPolls;
+    }
+
+    public void setPushPendingPolls(int pushPendingPolls) {
+        this.pushPendingPolls = pushPendingPolls;
+    }
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    public void setLatency(LatencyDistribution latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @return the fraction of requests, between 0 and 1, answered with a 500 server_error
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @return requests per second above which the stub answers 429, 0 for no limit
+     */
+    public int getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+}
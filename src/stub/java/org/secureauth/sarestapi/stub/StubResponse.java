@@ -0,0 +1,38 @@
+package org.secureauth.sarestapi.stub;
+
+import java.nio.charset.StandardCharsets;
+
+import org.secureauth.sarestapi.util.JSONUtil;
+
+/**
+ * <p>
+ *     HTTP status and JSON body answered by the {@link StubAppliance}.
+ * </p>
+ */
+class StubResponse {
+
+    private final int code;
+    private final byte[] body;
+
+    StubResponse(int code, byte[] body){
+        this.code = code;
+        this.body = body;
+    }
+
+    static StubResponse ok(Object entity){
+        return new StubResponse(200, JSONUtil.convertObjectToJSONBytes(entity));
+    }
+
+    static StubResponse status(int code, String status, String message){
+        return new StubResponse(code, new StringBuilder().append("{\"status\":\"").append(status)
+                .append("\",\"message\":\"").append(message).append("\"}").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,437 @@
+package org.secureauth.sarestapi.stub;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.secureauth.sarestapi.data.BehavioralBio.BehaveBioResult;
+import org.secureauth.sarestapi.data.BehavioralBio.BehaveBioResults;
+import org.secureauth.sarestapi.data.Factors;
+import org.secureauth.sarestapi.data.Geoloc;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.data.IPEvaluation;
+import org.secureauth.sarestapi.data.PushAcceptStatus;
+import org.secureauth.sarestapi.data.Response.*;
+import org.secureauth.sarestapi.data.UserProfile.UserProfileProperty;
+import org.secureauth.sarestapi.resources.s;
+import org.secureauth.sarestapi.util.JSONUtil;
+
+/**
+ * <p>
+ *     Answers the Rest API endpoints of {@link s} for one Realm from an in memory user store.
+ * </p>
+ */
+class StubRouter {
+
+    private static final String USERS = s.APPLIANCE_USERS;
+    private static final String GROUPS = s.APPLIANCE_IDM_GROUPS;
+
+    private final StubConfig config;
+    private final ConcurrentMap<String, StubUser> users = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> pushes = new ConcurrentHashMap<>();
+
+    StubRouter(StubConfig config){
+        this.config = config;
+        for(Map.Entry<String, String> user : config.getUsers().entrySet()){
+            users.put(user.getKey(), new StubUser(user.getKey(), user.getValue()));
+        }
+    }
+
+    /**
+     * @param method the HTTP Method
+     * @param path the raw path after the Realm
+     * @param body the request body, empty when there is none
+     */
+    StubResponse route(String method, String path, byte[] body) throws Exception {
+        Map<String, Object> request = body.length == 0 ? Collections.<String, Object>emptyMap() : readMap(body);
+
+        if(path.equals(s.APPLIANCE_AUTH) && "POST".equals(method)) return auth(request);
+        if(path.startsWith(s.APPLIANCE_AUTH + "/") && "GET".equals(method)) return pushStatus(path.substring(s.APPLIANCE_AUTH.length() + 1));
+        if(path.equals(s.APPLIANCE_AAUTH) && "POST".equals(method)) return adaptiveAuth(request);
+        if(path.equals(s.APPLIANCE_IPEVAL) && "POST".equals(method)) return ipEval(request);
+        if(path.equals(s.APPLIANCE_DFP_JS) && "GET".equals(method)) return jsSource("secureauth-dfp.js");
+        if(path.equals(s.APPLIANCE_DFP_VALIDATE) && "POST".equals(method)) return dfpValidate(request);
+        if(path.equals(s.APPLIANCE_DFP_CONFIRM) && "POST".equals(method)) return dfpConfirm(request);
+        if(path.equals(s.APPLIANCE_ACCESSHISTORY) && "POST".equals(method)) return verified((String) request.get("user_id"));
+        if(path.equals(s.APPLIANCE_BEHAVEBIO_JS) && "GET".equals(method)) return jsSource("secureauth-behavebio.js");
+        if(path.equals(s.APPLIANCE_BEHAVEBIO) && "POST".equals(method)) return behaveBio(request);
+        if(path.equals(s.APPLIANCE_BEHAVEBIO) && "PUT".equals(method)) return verified((String) request.get("userId"));
+        if(path.equals(USERS) && "POST".equals(method)) return createUser(request);
+        if(path.startsWith(USERS)) return users(method, path.substring(USERS.length()).split("/", -1), request);
+        if(path.startsWith(GROUPS)) return groups(method, path.substring(GROUPS.length()).split("/", -1), request);
+
+        return StubResponse.status(404, s.STATUS_INVALID, "Resource not found.");
+    }
+
+    private StubResponse auth(Map<String, Object> request){
+        String userId = (String) request.get("user_id");
+        String type = (String) request.get("type");
+        StubUser user = user(userId);
+        if(type == null){
+            return StubResponse.status(400, s.STATUS_INVALID, "Type is required.");
+        }
+        if(user == null){
+            return StubResponse.ok(base(new BaseResponse(), s.STATUS_NOT_FOUND, "User Id was not found.", userId));
+        }
+
+        switch(type){
+            case "user_id":
+                return StubResponse.ok(base(new BaseResponse(), s.STATUS_FOUND, "User Id found", userId));
+            case "password":
+                boolean valid = user.getPassword().equals(request.get("token"));
+                return StubResponse.ok(base(new BaseResponse(), valid ? s.STATUS_VALID : s.STATUS_INVALID,
+                        valid ? "" : "User Id or password is invalid.", userId));
+            case "pin":
+            case "kba":
+            case "oath":
+                boolean present = request.get("token") != null && !request.get("token").toString().isEmpty();
+                return StubResponse.ok(base(new BaseResponse(), present ? s.STATUS_VALID : s.STATUS_INVALID, "", userId));
+            case "call":
+            case "sms":
+            case "email":
+            case "help_desk":
+            case "push":
+                ResponseObject otp = base(new ResponseObject(), s.STATUS_VALID, "", userId);
+                otp.setOtp(100000 + ThreadLocalRandom.current().nextInt(900000));
+                return StubResponse.ok(otp);
+            case "push_accept":
+                String referenceId = UUID.randomUUID().toString();
+                pushes.put(referenceId, new AtomicInteger());
+                ResponseObject push = base(new ResponseObject(), s.STATUS_VALID, "", userId);
+                push.setReference_id(referenceId);
+                return StubResponse.ok(push);
+            default:
+                return StubResponse.ok(base(new BaseResponse(), s.STATUS_INVALID, "Request type is not supported.", userId));
+        }
+    }
+
+    private StubResponse pushStatus(String referenceId){
+        AtomicInteger polls = pushes.get(referenceId);
+        PushAcceptStatus status = new PushAcceptStatus();
+        if(polls == null){
+            status.setStatus(s.STATUS_INVALID);
+            status.setMessage("Reference Id was not found.");
+        }else{
+            status.setStatus(s.STATUS_VALID);
+            if(polls.getAndIncrement() < config.getPushPendingPolls()){
+                status.setMessage("PENDING");
+            }else{
+                status.setMessage("ACCEPTED");
+                pushes.remove(referenceId);
+            }
+        }
+        return StubResponse.ok(status);
+    }
+
+    private StubResponse adaptiveAuth(Map<String, Object> request){
+        String userId = (String) request.get("user_id");
+        AdaptiveAuthResponse response = base(new AdaptiveAuthResponse(), user(userId) != null ? s.STATUS_FOUND : s.STATUS_NOT_FOUND, "", userId);
+        response.setRealm_workflow("regular");
+        response.setSuggested_action("continue");
+        return StubResponse.ok(response);
+    }
+
+    private StubResponse ipEval(Map<String, Object> request){
+        String ip = (String) request.get("ip_address");
+        //Stable risk per address so repeated evaluations agree
+        int risk = ip == null ? 0 : (ip.hashCode() & 0x7fffffff) % 100;
+
+        Geoloc geoloc = new Geoloc();
+        geoloc.setCountry("united states");
+        geoloc.setCountry_code("US");
+        geoloc.setRegion("california");
+        geoloc.setRegion_code("CA");
+        geoloc.setCity("irvine");
+        geoloc.setLatitude("33.6694");
+        geoloc.setLongtitude("-117.8231");
+        geoloc.setInternet_service_provider("time warner cable");
+        geoloc.setOrganization("secureauth corporation");
+
+        Map<String, String> factoring = new HashMap<>();
+        factoring.put("latitude", "33.6694");
+        factoring.put("longitude", "-117.8231");
+        factoring.put("threatType", "0");
+        factoring.put("threatCategory", "0");
+
+        IPEvaluation evaluation = new IPEvaluation();
+        evaluation.setMethod("aggregation");
+        evaluation.setIp(ip);
+        evaluation.setRisk_factor(risk);
+        evaluation.setRisk_color(risk < 25 ? "green" : risk < 50 ? "yellow" : risk < 75 ? "orange" : "red");
+        evaluation.setRisk_desc(risk < 25 ? "Low Risk" : risk < 50 ? "Medium Risk" : risk < 75 ? "High Risk" : "Extreme Risk");
+        evaluation.setGeoloc(geoloc);
+        evaluation.setFactoring(factoring);
+        evaluation.setFactor_description("IP address is not a known threat");
+
+        IPEval ipEval = base(new IPEval(), s.STATUS_VERIFIED, "", (String) request.get("user_id"));
+        ipEval.setIp_evaluation(evaluation);
+        return StubResponse.ok(ipEval);
+    }
+
+    private StubResponse jsSource(String script){
+        JSObjectResponse response = new JSObjectResponse();
+        response.setSrc(new StringBuilder().append("https://").append(config.getHost()).append("/").append(config.getRealm())
+                .append("/assets/scripts/api/").append(script).toString());
+        return StubResponse.ok(response);
+    }
+
+    private StubResponse dfpValidate(Map<String, Object> request){
+        String userId = (String) request.get("user_id");
+        DFPValidateResponse response = base(new DFPValidateResponse(), s.STATUS_FOUND, "", userId);
+        response.setFingerprint_id(fingerprintId(userId));
+        response.setFingerprint_name("Chrome on Windows");
+        response.setScore(100);
+        response.setMatch_score(100);
+        response.setUpdate_score(100);
+        return StubResponse.ok(response);
+    }
+
+    private StubResponse dfpConfirm(Map<String, Object> request){
+        String userId = (String) request.get("user_id");
+        DFPConfirmResponse response = base(new DFPConfirmResponse(), s.STATUS_VERIFIED, "", userId);
+        response.setFingerprint_id((String) request.get("fingerprint_id"));
+        response.setFingerprint_name("Chrome on Windows");
+        return StubResponse.ok(response);
+    }
+
+    private StubResponse behaveBio(Map<String, Object> request){
+        BehaveBioResult result = new BehaveBioResult();
+        result.setControlID("password");
+        result.setScore(0.92);
+        result.setConfidence(0.87);
+        result.setCount(12);
+
+        BehaveBioResults results = new BehaveBioResults();
+        results.setTotalScore(0.92);
+        results.setTotalConfidence(0.87);
+        results.setDevice("Desktop");
+        results.getResults().add(result);
+
+        BehaveBioResponse response = base(new BehaveBioResponse(), s.STATUS_VALID, "", (String) request.get("userId"));
+        response.setBehaveBioResults(results);
+        return StubResponse.ok(response);
+    }
+
+    private StubResponse createUser(Map<String, Object> request){
+        String userId = (String) request.get("userId");
+        String password = (String) request.get("password");
+        if(userId == null || password == null){
+            return StubResponse.status(400, s.STATUS_INVALID, "User Id and password are required.");
+        }
+        StubUser user = new StubUser(userId, password);
+        user.update(request);
+        if(users.putIfAbsent(userId, user) != null){
+            return StubResponse.ok(base(new ResponseObject(), s.STATUS_FAILED, "User already exists.", userId));
+        }
+        return StubResponse.ok(base(new ResponseObject(), "success", "", userId));
+    }
+
+    //users/{userId}[/factors|/resetpwd|/changepwd|/groups/[{group}]]
+    private StubResponse users(String method, String[] parts, Map<String, Object> request) throws Exception {
+        String userId = URLDecoder.decode(parts[0], "UTF-8");
+        StubUser user = user(userId);
+        if(user == null){
+            return StubResponse.ok(base(new BaseResponse(), s.STATUS_NOT_FOUND, "User Id was not found.", userId));
+        }
+
+        String resource = parts.length > 1 ? parts[1] : "";
+        if(parts.length == 1 && "GET".equals(method)) return StubResponse.ok(user.toProfile());
+        if(parts.length == 1 && "PUT".equals(method)){
+            user.update(request);
+            return StubResponse.ok(base(new ResponseObject(), "success", "", userId));
+        }
+        if(s.FACTORS.equals(resource) && "GET".equals(method)) return StubResponse.ok(factors(user));
+        if("resetpwd".equals(resource) && "POST".equals(method)){
+            user.setPassword((String) request.get("password"));
+            return StubResponse.ok(base(new ResponseObject(), "success", "", userId));
+        }
+        if("changepwd".equals(resource) && "POST".equals(method)){
+            if(!user.getPassword().equals(request.get("currentPassword"))){
+                return StubResponse.ok(base(new ResponseObject(), s.STATUS_FAILED, "Current password is invalid.", userId));
+            }
+            user.setPassword((String) request.get("newPassword"));
+            return StubResponse.ok(base(new ResponseObject(), "success", "", userId));
+        }
+        if("groups".equals(resource) && "POST".equals(method)){
+            if(parts.length > 2 && !parts[2].isEmpty()){
+                user.getGroups().add(URLDecoder.decode(parts[2], "UTF-8"));
+                return StubResponse.ok(base(new ResponseObject(), "success", "", userId));
+            }
+            Object groupNames = request.get("groupNames");
+            if(groupNames instanceof Iterable){
+                for(Object group : (Iterable<?>) groupNames){
+                    user.getGroups().add(String.valueOf(group));
+                }
+            }
+            return StubResponse.ok(base(new GroupAssociationResponse(), "success", "", userId));
+        }
+        return StubResponse.status(404, s.STATUS_INVALID, "Resource not found.");
+    }
+
+    //groups/{group}/users[/{userId}]
+    private StubResponse groups(String method, String[] parts, Map<String, Object> request) throws Exception {
+        if(parts.length < 2 || !"users".equals(parts[1]) || !"POST".equals(method)){
+            return StubResponse.status(404, s.STATUS_INVALID, "Resource not found.");
+        }
+        String group = URLDecoder.decode(parts[0], "UTF-8");
+
+        if(parts.length > 2 && !parts[2].isEmpty()){
+            String userId = URLDecoder.decode(parts[2], "UTF-8");
+            StubUser user = user(userId);
+            if(user == null){
+                return StubResponse.ok(base(new GroupAssociationResponse(), s.STATUS_NOT_FOUND, "User Id was not found.", userId));
+            }
+            user.getGroups().add(group);
+            return StubResponse.ok(base(new GroupAssociationResponse(), "success", "", userId));
+        }
+
+        GroupAssociationResponse response = base(new GroupAssociationResponse(), "success", "", null);
+        Object userIds = request.get("userIds");
+        if(userIds instanceof Iterable){
+            for(Object id : (Iterable<?>) userIds){
+                StubUser user = user(String.valueOf(id));
+                if(user == null){
+                    if(!response.getFailures().containsKey(group)){
+                        response.getFailures().put(group, new ArrayList<String>());
+                    }
+                    response.getFailures().get(group).add(String.valueOf(id));
+                }else{
+                    user.getGroups().add(group);
+                }
+            }
+        }
+        return StubResponse.ok(response);
+    }
+
+    private FactorsResponse factors(StubUser user){
+        FactorsResponse response = base(new FactorsResponse(), s.STATUS_FOUND, "", user.getUserId());
+        response.getFactors().add(factor("phone", "Phone1", "XXX-XXX-6959", "sms", "call"));
+        response.getFactors().add(factor("email", "Email1", "jd***@example.com"));
+        response.getFactors().add(factor("push", fingerprintId(user.getUserId()), "iPhone", "push", "push_accept"));
+        return response;
+    }
+
+    private static Factors factor(String type, String id, String value, String... capabilities){
+        Factors factor = new Factors();
+        factor.setType(type);
+        factor.setId(id);
+        factor.setValue(value);
+        if(capabilities.length > 0){
+            factor.setCapabilities(new ArrayList<>(Arrays.asList(capabilities)));
+        }
+        return factor;
+    }
+
+    private StubResponse verified(String userId){
+        return StubResponse.ok(base(new ResponseObject(), s.STATUS_VERIFIED, "", userId));
+    }
+
+    private StubUser user(String userId){
+        if(userId == null){
+            return null;
+        }
+        StubUser user = users.get(userId);
+        if(user == null && config.isAutoProvision()){
+            StubUser created = new StubUser(userId, config.getDefaultPassword());
+            user = users.putIfAbsent(userId, created);
+            if(user == null){
+                user = created;
+            }
+        }
+        return user;
+    }
+
+    private static String fingerprintId(String userId){
+        return UUID.nameUUIDFromBytes(String.valueOf(userId).getBytes()).toString().replace("-", "");
+    }
+
+    private static <T extends BaseResponse> T base(T response, String status, String message, String userId){
+        response.setStatus(status);
+        response.setMessage(message);
+        response.setUser_id(userId);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readMap(byte[] body) throws Exception {
+        return (Map<String, Object>) JSONUtil.readerFor(Map.class).readValue(body);
+    }
+
+    /**
+     * <p>
+     *     Identity held by the stub.
+     * </p>
+     */
+    static class StubUser {
+
+        private final String userId;
+        private volatile String password;
+        private final Map<String, String> properties = new ConcurrentHashMap<>();
+        private final Set<String> groups = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+        StubUser(String userId, String password){
+            this.userId = userId;
+            this.password = password;
+            properties.put("firstName", "John");
+            properties.put("lastName", "Doe");
+            properties.put("email1", userId + "@example.com");
+        }
+
+        String getUserId() {
+            return userId;
+        }
+
+        String getPassword() {
+            return password;
+        }
+
+        void setPassword(String password) {
+            this.password = password;
+        }
+
+        Set<String> getGroups() {
+            return groups;
+        }
+
+        //Copies the properties of a NewUserProfile body
+        void update(Map<String, Object> request){
+            Object values = request.get("properties");
+            if(values instanceof Map){
+                for(Map.Entry<?, ?> value : ((Map<?, ?>) values).entrySet()){
+                    if(value.getValue() != null){
+                        properties.put(String.valueOf(value.getKey()), String.valueOf(value.getValue()));
+                    }
+                }
+            }
+            if(request.get("password") != null){
+                password = (String) request.get("password");
+            }
+        }
+
+        UserProfileResponse toProfile(){
+            UserProfileResponse profile = base(new UserProfileResponse(), s.STATUS_FOUND, "", null);
+            profile.setUserId(userId);
+            for(Map.Entry<String, String> property : properties.entrySet()){
+                UserProfileProperty value = new UserProfileProperty();
+                value.setValue(property.getValue());
+                value.setIsWritable("true");
+                value.setDisplayName(property.getKey());
+                profile.getProperties().put(property.getKey(), value);
+            }
+            synchronized (groups){
+                profile.getGroups().addAll(groups);
+            }
+            return profile;
+        }
+    }
+}
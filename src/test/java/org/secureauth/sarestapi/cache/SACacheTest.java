@@ -0,0 +1,322 @@
+package org.secureauth.sarestapi.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SACacheTest {
+
+    //Runs background reloads in the calling thread so their effect is visible as soon as the lookup returns
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static class CountingLoader implements SACache.Loader<String, String> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile String value;
+
+        private CountingLoader(String value){
+            this.value = value;
+        }
+
+        @Override
+        public String load(String key) {
+            calls.incrementAndGet();
+            return value;
+        }
+    }
+
+    @Test
+    public void missLoadsThenHitReturnsCachedValue(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        CountingLoader loader = new CountingLoader("a1");
+
+        assertEquals("a1", cache.get("a", loader));
+        loader.value = "a2";
+        assertEquals("a1", cache.get("a", loader));
+
+        assertEquals(1, loader.calls.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getLoads());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void nullValuesAreNotCached(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        CountingLoader loader = new CountingLoader(null);
+
+        assertNull(cache.get("a", loader));
+        assertNull(cache.get("a", loader));
+
+        assertEquals(2, loader.calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void expiredValueIsReloaded() throws InterruptedException {
+        SACache<String, String> cache = new SACache<>(10, 1);
+        CountingLoader loader = new CountingLoader("a1");
+
+        assertEquals("a1", cache.get("a", loader));
+        Thread.sleep(20);
+        assertNull(cache.getIfPresent("a"));
+        loader.value = "a2";
+        assertEquals("a2", cache.get("a", loader));
+
+        assertEquals(2, loader.calls.get());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void expiryOfZeroDoesNotCache(){
+        SACache<String, String> cache = new SACache<>(10, new SACache.Expiry<String>() {
+            @Override
+            public long expireAfter(String value) {
+                return value.startsWith("keep") ? 60000 : 0;
+            }
+        }, 0, DIRECT);
+
+        cache.put("a", "skip");
+        cache.put("b", "keep");
+
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("keep", cache.getIfPresent("b"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted(){
+        SACache<String, String> cache = new SACache<>(2, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.getIfPresent("a");
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals("1", cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertEquals("3", cache.getIfPresent("c"));
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        final AtomicInteger calls = new AtomicInteger();
+        SACache.AsyncLoader<String, String> loader = new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                calls.incrementAndGet();
+                return pending;
+            }
+        };
+
+        CompletableFuture<String> first = cache.getAsync("a", loader);
+        CompletableFuture<String> second = cache.getAsync("a", loader);
+        assertSame(first, second);
+        assertFalse(first.isDone());
+
+        pending.complete("a1");
+        assertEquals("a1", first.join());
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getLoads());
+        assertEquals(2, cache.getMisses());
+        assertEquals("a1", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void failedLoadIsNotCached(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        CompletableFuture<String> result = cache.getAsync("a", new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                throw new IllegalStateException("down");
+            }
+        });
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(1, cache.getLoadFailures());
+        assertEquals(0, cache.size());
+
+        CountingLoader loader = new CountingLoader("a1");
+        assertEquals("a1", cache.get("a", loader));
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void invalidateDuringLoadDiscardsTheResult(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> result = cache.getAsync("a", new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                return pending;
+            }
+        });
+
+        cache.invalidate("a");
+        pending.complete("read before the change");
+
+        assertEquals("read before the change", result.join());
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void invalidateOfAnotherKeyDuringLoadKeepsTheResult(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        cache.put("bob", "2");
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        cache.getAsync("alice", new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                return pending;
+            }
+        });
+
+        cache.invalidate("bob");
+        pending.complete("1");
+
+        assertEquals("1", cache.getIfPresent("alice"));
+        assertNull(cache.getIfPresent("bob"));
+    }
+
+    @Test
+    public void loadAfterInvalidateDuringLoadIsStored(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        final CompletableFuture<String> first = new CompletableFuture<>();
+        final CompletableFuture<String> second = new CompletableFuture<>();
+        cache.getAsync("a", new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                return first;
+            }
+        });
+        cache.invalidate("a");
+        CompletableFuture<String> result = cache.getAsync("a", new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                return second;
+            }
+        });
+
+        second.complete("after the change");
+        first.complete("before the change");
+
+        assertEquals("after the change", result.join());
+        assertEquals("after the change", cache.getIfPresent("a"));
+        assertEquals(2, cache.getLoads());
+    }
+
+    @Test
+    public void invalidateAllDuringLoadDiscardsTheResult(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        cache.put("b", "2");
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        cache.getAsync("a", new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                return pending;
+            }
+        });
+
+        cache.invalidateAll();
+        pending.complete("1");
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void loadStartedAfterInvalidateIsStored(){
+        SACache<String, String> cache = new SACache<>(10, 60000);
+        cache.put("a", "1");
+        cache.invalidate("a");
+
+        CountingLoader loader = new CountingLoader("2");
+        assertEquals("2", cache.get("a", loader));
+        assertEquals("2", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void staleValueIsServedWhileItIsReloaded() throws InterruptedException {
+        //"old" expires at once but stays usable for an hour, "new" stays fresh
+        SACache<String, String> cache = new SACache<>(10, new SACache.Expiry<String>() {
+            @Override
+            public long expireAfter(String value) {
+                return "old".equals(value) ? 1 : 60000;
+            }
+        }, 3600000, DIRECT);
+        CountingLoader loader = new CountingLoader("old");
+
+        assertEquals("old", cache.get("a", loader));
+        Thread.sleep(20);
+        loader.value = "new";
+
+        assertEquals("old", cache.get("a", loader));
+        assertEquals(1, cache.getStaleHits());
+        assertEquals(2, loader.calls.get());
+
+        assertEquals("new", cache.get("a", loader));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void staleValueIsServedByGetAsyncWhileItIsReloaded() throws InterruptedException {
+        SACache<String, String> cache = new SACache<>(10, new SACache.Expiry<String>() {
+            @Override
+            public long expireAfter(String value) {
+                return "old".equals(value) ? 1 : 60000;
+            }
+        }, 3600000, DIRECT);
+        cache.put("a", "old");
+        Thread.sleep(20);
+
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> result = cache.getAsync("a", new SACache.AsyncLoader<String, String>() {
+            @Override
+            public CompletableFuture<String> load(String key) {
+                return pending;
+            }
+        });
+
+        assertEquals("old", result.join());
+        assertNull(cache.getIfPresent("a"));
+        pending.complete("new");
+        assertEquals("new", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void refreshReplacesTheValue(){
+        SACache<String, String> cache = new SACache<>(10, new SACache.Expiry<String>() {
+            @Override
+            public long expireAfter(String value) {
+                return 60000;
+            }
+        }, 0, DIRECT);
+        cache.put("a", "1");
+
+        cache.refresh("a", new CountingLoader("2"));
+
+        assertEquals("2", cache.getIfPresent("a"));
+        assertEquals(1, cache.getLoads());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumSizeMustBePositive(){
+        new SACache<String, String>(0, 60000);
+    }
+}
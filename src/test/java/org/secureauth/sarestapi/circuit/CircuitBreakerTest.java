@@ -0,0 +1,219 @@
+package org.secureauth.sarestapi.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.metrics.RequestMetrics;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.resources.s;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private CircuitBreakers breakers;
+
+    @Before
+    public void setUp(){
+        breakers = new CircuitBreakers();
+        breakers.setWindowMillis(60000);
+        breakers.setMinimumCalls(4);
+        breakers.setFailureRateThreshold(0.5);
+        breakers.setSlowCallRateThreshold(0.75);
+        breakers.setSlowCallMillis(100);
+        breakers.setOpenMillis(60000);
+        breakers.setHalfOpenCalls(2);
+    }
+
+    private static void call(CircuitBreaker breaker, long nanos, boolean failed){
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(nanos, failed);
+    }
+
+    //Opens the breaker, then lets the open period run out
+    private CircuitBreaker halfOpen() throws InterruptedException {
+        breakers.setOpenMillis(1);
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        for(int i = 0; i < 4; i++){
+            call(breaker, FAST, true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(20);
+        return breaker;
+    }
+
+    @Test
+    public void staysClosedBelowTheMinimumCalls(){
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        for(int i = 0; i < 3; i++){
+            call(breaker, FAST, true);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1.0, breaker.getFailureRate(), 0);
+    }
+
+    @Test
+    public void staysClosedBelowTheFailureRate(){
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        call(breaker, FAST, true);
+        for(int i = 0; i < 9; i++){
+            call(breaker, FAST, false);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.1, breaker.getFailureRate(), 0.0001);
+    }
+
+    @Test
+    public void opensAtTheFailureRateAndRejectsCalls(){
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        call(breaker, FAST, false);
+        call(breaker, FAST, false);
+        call(breaker, FAST, true);
+        call(breaker, FAST, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpened());
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.getRejected());
+        //Other families are not affected
+        assertTrue(breakers.get(EndpointFamily.IPEVAL).tryAcquire());
+    }
+
+    @Test
+    public void opensAtTheSlowCallRate(){
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        call(breaker, FAST, false);
+        call(breaker, SLOW, false);
+        call(breaker, SLOW, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call(breaker, SLOW, false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(0, breaker.getFailureRate(), 0);
+    }
+
+    @Test
+    public void halfOpenLetsOnlyTheProbesThrough() throws InterruptedException {
+        CircuitBreaker breaker = halfOpen();
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void successfulProbesCloseTheCircuit() throws InterruptedException {
+        CircuitBreaker breaker = halfOpen();
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(FAST, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(FAST, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        //The calls that opened it are forgotten
+        assertEquals(0, breaker.getFailureRate(), 0);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void failedProbeOpensTheCircuitAgain() throws InterruptedException {
+        CircuitBreaker breaker = halfOpen();
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breakers.setOpenMillis(60000);
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpened());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void releasedProbeCanBeTakenAgain() throws InterruptedException {
+        CircuitBreaker breaker = halfOpen();
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.release();
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void resultsOfCallsStartedBeforeOpeningAreIgnored(){
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        assertTrue(breaker.tryAcquire());
+        for(int i = 0; i < 4; i++){
+            call(breaker, FAST, true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        breaker.onResult(FAST, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void resetClosesTheCircuit(){
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        for(int i = 0; i < 4; i++){
+            call(breaker, FAST, true);
+        }
+        breaker.reset();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void callsThatNeverReachedTheApplianceAreNotCounted(){
+        CircuitBreaker breaker = breakers.get(EndpointFamily.AUTH);
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.setTotalNanos(FAST);
+        for(int i = 0; i < 4; i++){
+            assertTrue(breaker.tryAcquire());
+            breakers.record(breaker, metrics);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        metrics.setError(new IllegalStateException("connection refused"));
+        for(int i = 0; i < 4; i++){
+            assertTrue(breaker.tryAcquire());
+            breakers.record(breaker, metrics);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void endpointsShareTheBreakerOfTheirFamily(){
+        assertEquals(breakers.get(EndpointFamily.IDM), breakers.get(SAEndpoint.GET_USER));
+        assertEquals(breakers.get(EndpointFamily.IDM), breakers.get(SAEndpoint.GROUP_TO_USERS));
+        assertEquals(breakers.get(EndpointFamily.DFP), breakers.get(SAEndpoint.DFP_VALIDATE));
+        assertEquals(breakers.get(EndpointFamily.AUTH), breakers.get(SAEndpoint.PUSH_STATUS));
+    }
+
+    @Test
+    public void rejectedCallsGetTheCircuitOpenStatusOrTheFallback(){
+        IPEval rejected = breakers.rejected(SAEndpoint.IPEVAL, IPEval.class);
+        assertEquals(s.STATUS_CIRCUIT_OPEN, rejected.getStatus());
+        assertEquals(null, rejected.getIp_evaluation());
+
+        breakers.setFallback(EndpointFamily.IPEVAL, CircuitBreakers.unknownIPRisk(0));
+        IPEval fallback = breakers.rejected(SAEndpoint.IPEVAL, IPEval.class);
+        assertEquals(s.STATUS_CIRCUIT_OPEN, fallback.getStatus());
+        assertEquals(0, fallback.getIp_evaluation().getRisk_factor());
+        assertEquals("unknown", fallback.getIp_evaluation().getRisk_desc());
+    }
+}
@@ -0,0 +1,112 @@
+package org.secureauth.sarestapi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero(){
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMeanNanos(), 0);
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void smallValuesAreExact(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1; i <= 100; i++){
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(1, histogram.getValueAtPercentile(1));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(90, histogram.getValueAtPercentile(90));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMeanNanos(), 0);
+        assertEquals(100, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void percentileReportsTheHighestValueOfTheBucket(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        //1000 is the lowest value of the bucket 1000..1007
+        histogram.record(1000);
+        histogram.record(5000);
+
+        assertEquals(1007, histogram.getValueAtPercentile(50));
+        assertEquals(5000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void percentileNeverExceedsTheMax(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.getValueAtPercentile(50));
+        assertEquals(1000, histogram.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    public void largeValuesAreWithinTheBucketPrecision(){
+        long[] values = {128, 129, 255, 256, 1023, 1024, 65535, 1000003, 123456789, 987654321987L};
+        for(long value : values){
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(value * 2);
+
+            long reported = histogram.getValueAtPercentile(50);
+            assertTrue(value + " reported as " + reported, reported >= value);
+            assertTrue(value + " reported as " + reported, reported - value <= value / 64);
+        }
+    }
+
+    @Test
+    public void percentilesOfAKnownDistribution(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        //990 fast calls at 1ms and 10 slow ones at 100ms
+        for(int i = 0; i < 990; i++){
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        for(int i = 0; i < 10; i++){
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        assertEquals(1, histogram.getValueAtPercentile(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, histogram.getValueAtPercentile(99, TimeUnit.MILLISECONDS));
+        assertEquals(100, histogram.getValueAtPercentile(99.1, TimeUnit.MILLISECONDS));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMaxNanos());
+    }
+
+    @Test
+    public void valuesOutOfRangeAreClamped(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals((1L << 40) - 1, histogram.getMaxNanos());
+        assertEquals((1L << 40) - 1, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void resetClearsEverything(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+}
@@ -0,0 +1,45 @@
+package org.secureauth.sarestapi.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+    private static RequestMetrics metrics(SAEndpoint endpoint, int httpStatus, String responseStatus, long nanos){
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.setEndpoint(endpoint);
+        metrics.setHttpStatus(httpStatus);
+        metrics.setResponseStatus(responseStatus);
+        metrics.setTotalNanos(nanos);
+        metrics.setSendNanos(nanos / 2);
+        return metrics;
+    }
+
+    @Test
+    public void recordsPerEndpointAndCountsFailures(){
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.onRequest(metrics(SAEndpoint.AUTH, 200, "valid", 100));
+        recorder.onRequest(metrics(SAEndpoint.AUTH, 200, "server_error", 100));
+        recorder.onRequest(metrics(SAEndpoint.AUTH, 503, null, 100));
+        recorder.onRequest(metrics(SAEndpoint.IPEVAL, 0, null, 100));
+        recorder.onRequest(metrics(null, 200, "found", 100));
+
+        assertEquals(3, recorder.getTotal(SAEndpoint.AUTH).getCount());
+        assertEquals(3, recorder.getSend(SAEndpoint.AUTH).getCount());
+        assertEquals(50, recorder.getSend(SAEndpoint.AUTH).getMaxNanos());
+        assertEquals(2, recorder.getFailures(SAEndpoint.AUTH));
+
+        //No response, so no send time
+        assertEquals(1, recorder.getTotal(SAEndpoint.IPEVAL).getCount());
+        assertEquals(0, recorder.getSend(SAEndpoint.IPEVAL).getCount());
+        assertEquals(1, recorder.getFailures(SAEndpoint.IPEVAL));
+
+        assertEquals(1, recorder.getTotal(SAEndpoint.OTHER).getCount());
+        assertEquals(0, recorder.getFailures(SAEndpoint.OTHER));
+
+        recorder.reset();
+        assertEquals(0, recorder.getTotal(SAEndpoint.AUTH).getCount());
+        assertEquals(0, recorder.getFailures(SAEndpoint.AUTH));
+    }
+}
@@ -0,0 +1,54 @@
+package org.secureauth.sarestapi.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.secureauth.sarestapi.resources.s;
+
+public class SAEndpointTest {
+
+    private static final String REALM = "/secureauth2";
+
+    @Test
+    public void everyEndpointIsFoundFromItsPath(){
+        assertEquals(SAEndpoint.AUTH, SAEndpoint.of("POST", REALM + s.APPLIANCE_AUTH));
+        assertEquals(SAEndpoint.PUSH_STATUS, SAEndpoint.of("GET", REALM + s.APPLIANCE_AUTH + "/4fa3c9e1"));
+        assertEquals(SAEndpoint.ADAPTIVE_AUTH, SAEndpoint.of("POST", REALM + s.APPLIANCE_AAUTH));
+        assertEquals(SAEndpoint.IPEVAL, SAEndpoint.of("POST", REALM + s.APPLIANCE_IPEVAL));
+        assertEquals(SAEndpoint.ACCESS_HISTORY, SAEndpoint.of("POST", REALM + s.APPLIANCE_ACCESSHISTORY));
+        assertEquals(SAEndpoint.DFP_JS, SAEndpoint.of("GET", REALM + s.APPLIANCE_DFP_JS));
+        assertEquals(SAEndpoint.DFP_VALIDATE, SAEndpoint.of("POST", REALM + s.APPLIANCE_DFP_VALIDATE));
+        assertEquals(SAEndpoint.DFP_CONFIRM, SAEndpoint.of("POST", REALM + s.APPLIANCE_DFP_CONFIRM));
+        assertEquals(SAEndpoint.BEHAVEBIO_JS, SAEndpoint.of("GET", REALM + s.APPLIANCE_BEHAVEBIO_JS));
+        assertEquals(SAEndpoint.BEHAVEBIO_SUBMIT, SAEndpoint.of("POST", REALM + s.APPLIANCE_BEHAVEBIO));
+        assertEquals(SAEndpoint.BEHAVEBIO_RESET, SAEndpoint.of("PUT", REALM + s.APPLIANCE_BEHAVEBIO));
+    }
+
+    @Test
+    public void userEndpointsAreFoundWhateverTheUserId(){
+        String user = REALM + s.APPLIANCE_USERS + "jdoe";
+        assertEquals(SAEndpoint.CREATE_USER, SAEndpoint.of("POST", REALM + s.APPLIANCE_USERS));
+        assertEquals(SAEndpoint.GET_USER, SAEndpoint.of("GET", user));
+        assertEquals(SAEndpoint.UPDATE_USER, SAEndpoint.of("PUT", user));
+        assertEquals(SAEndpoint.FACTORS, SAEndpoint.of("GET", user + s.APPLIANCE_FACTORS));
+        assertEquals(SAEndpoint.RESET_PASSWORD, SAEndpoint.of("POST", user + s.APPLIANCE_IDM_USERS_PASSWD_RESET));
+        assertEquals(SAEndpoint.CHANGE_PASSWORD, SAEndpoint.of("POST", user + s.APPLIANCE_IDM_USERS_PASSWD_CHANGE));
+        assertEquals(SAEndpoint.USER_TO_GROUPS, SAEndpoint.of("POST", user + s.APPLIANCE_IDM_USERS_GROUPS));
+        assertEquals(SAEndpoint.USER_TO_GROUP, SAEndpoint.of("POST", user + s.APPLIANCE_IDM_USERS_GROUPS + "admins"));
+    }
+
+    @Test
+    public void groupEndpointsAreFoundWhateverTheGroupName(){
+        String group = REALM + s.APPLIANCE_IDM_GROUPS + "admins";
+        assertEquals(SAEndpoint.GROUP_TO_USERS, SAEndpoint.of("POST", group + "/users"));
+        assertEquals(SAEndpoint.GROUP_TO_USER, SAEndpoint.of("POST", group + s.APPLIANCE_IDM_USERS + "jdoe"));
+    }
+
+    @Test
+    public void unknownPathsAreOther(){
+        assertEquals(SAEndpoint.OTHER, SAEndpoint.of("GET", REALM + "/status"));
+        assertEquals(SAEndpoint.OTHER, SAEndpoint.of("GET", REALM + "/api/v1/unknown"));
+        assertEquals(SAEndpoint.OTHER, SAEndpoint.of("POST", REALM + s.APPLIANCE_AUTH + "x"));
+        assertEquals(SAEndpoint.OTHER, SAEndpoint.of("POST", REALM + s.APPLIANCE_IPEVAL + "/extra"));
+    }
+}
@@ -0,0 +1,88 @@
+package org.secureauth.sarestapi.provisioning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.secureauth.sarestapi.data.UserProfile.NewUserProfile;
+
+public class ProfileReaderTest {
+
+    @Test
+    public void splitCsvSplitsOnCommas(){
+        assertEquals(Arrays.asList("a", "b", "c"), ProfileReader.splitCsv("a,b,c"));
+        assertEquals(Arrays.asList("a", "", "c", ""), ProfileReader.splitCsv("a,,c,"));
+        assertEquals(Arrays.asList(""), ProfileReader.splitCsv(""));
+        assertEquals(Arrays.asList(" a ", " b"), ProfileReader.splitCsv(" a , b"));
+    }
+
+    @Test
+    public void splitCsvHonoursQuotedFields(){
+        assertEquals(Arrays.asList("Doe, Jane", "x"), ProfileReader.splitCsv("\"Doe, Jane\",x"));
+        assertEquals(Arrays.asList("say \"hi\""), ProfileReader.splitCsv("\"say \"\"hi\"\"\""));
+        assertEquals(Arrays.asList("", "b"), ProfileReader.splitCsv("\"\",b"));
+        assertEquals(Arrays.asList("ab"), ProfileReader.splitCsv("a\"b\""));
+    }
+
+    @Test
+    public void csvReadsOneProfilePerRow(){
+        ProfileReader reader = ProfileReader.csv(new StringReader(
+                "userId, password, firstName, email1\n"
+                + "jdoe,secret,Jane,jdoe@example.com\n"
+                + "\n"
+                + "\"rroe\",,\"Roe, Richard\",\n"));
+
+        NewUserProfile jdoe = reader.next();
+        assertEquals("jdoe", jdoe.getUserId());
+        assertEquals("secret", jdoe.getPassword());
+        assertEquals("Jane", jdoe.getProperties().getFirstName());
+        assertEquals("jdoe@example.com", jdoe.getProperties().getEmail1());
+
+        NewUserProfile rroe = reader.next();
+        assertEquals("rroe", rroe.getUserId());
+        assertNull(rroe.getPassword());
+        assertEquals("Roe, Richard", rroe.getProperties().getFirstName());
+        assertNull(rroe.getProperties().getEmail1());
+
+        assertFalse(reader.hasNext());
+        assertEquals(4, reader.getLineNumber());
+    }
+
+    @Test
+    public void csvSkipsRowsWithTheWrongNumberOfFields(){
+        ProfileReader reader = ProfileReader.csv(new StringReader("userId,firstName\njdoe\nrroe,Richard\n"));
+
+        assertEquals("rroe", reader.next().getUserId());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void csvWithoutAUserIdColumnFails(){
+        ProfileReader.csv(new StringReader("firstName,lastName\nJane,Doe\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void csvWithAnUnknownColumnFails(){
+        ProfileReader.csv(new StringReader("userId,shoeSize\njdoe,42\n"));
+    }
+
+    @Test
+    public void jsonLinesReadsOneProfilePerLineAndSkipsBadLines(){
+        ProfileReader reader = ProfileReader.jsonLines(new StringReader(
+                "{\"userId\":\"jdoe\",\"properties\":{\"lastName\":\"Doe\"}}\n"
+                + "{not json\n"
+                + "{\"userId\":\"rroe\"}\n"));
+
+        assertTrue(reader.hasNext());
+        NewUserProfile jdoe = reader.next();
+        assertEquals("jdoe", jdoe.getUserId());
+        assertEquals("Doe", jdoe.getProperties().getLastName());
+        assertEquals("rroe", reader.next().getUserId());
+        assertFalse(reader.hasNext());
+    }
+}
@@ -0,0 +1,145 @@
+package org.secureauth.sarestapi.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.secureauth.sarestapi.data.IPEval;
+import org.secureauth.sarestapi.metrics.SAEndpoint;
+import org.secureauth.sarestapi.resources.s;
+
+public class RateLimiterTest {
+
+    private static final double NO_REFILL = 0.001;
+    private static final String REALM = "secureauth2";
+
+    private static int take(RateLimiter limiter, String realm, SAEndpoint endpoint){
+        int taken = 0;
+        while(limiter.tryAcquire(realm, endpoint, System.nanoTime()) == 0){
+            taken++;
+        }
+        return taken;
+    }
+
+    @Test
+    public void lanesLeaveTheirReserveToTheLanesAbove(){
+        RateLimiter limiter = new RateLimiter();
+        limiter.setRealmLimit(REALM, NO_REFILL, 10);
+
+        //50% of the burst is kept from BACKGROUND calls, 20% from STANDARD calls
+        assertEquals(5, take(limiter, REALM, SAEndpoint.CREATE_USER));
+        assertEquals(3, take(limiter, REALM, SAEndpoint.GET_USER));
+        assertEquals(2, take(limiter, REALM, SAEndpoint.AUTH));
+
+        assertEquals(5, limiter.getPermitted(Priority.BACKGROUND));
+        assertEquals(3, limiter.getPermitted(Priority.STANDARD));
+        assertEquals(2, limiter.getPermitted(Priority.INTERACTIVE));
+        assertEquals(1, limiter.getRejected(Priority.BACKGROUND));
+        assertEquals(1, limiter.getRejected(Priority.STANDARD));
+        assertEquals(1, limiter.getRejected(Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void interactiveCallsFindCapacityDuringABulkJob(){
+        RateLimiter limiter = new RateLimiter();
+        limiter.setRealmLimit(REALM, NO_REFILL, 10);
+
+        take(limiter, REALM, SAEndpoint.USER_TO_GROUP);
+        assertEquals(5, take(limiter, REALM, SAEndpoint.AUTH));
+    }
+
+    @Test
+    public void reservesAndPrioritiesCanBeChanged(){
+        RateLimiter limiter = new RateLimiter();
+        limiter.setRealmLimit(REALM, NO_REFILL, 10);
+        limiter.setReservePercent(Priority.BACKGROUND, 80);
+        limiter.setPriority(SAEndpoint.IPEVAL, Priority.BACKGROUND);
+
+        assertEquals(Priority.BACKGROUND, limiter.getPriority(SAEndpoint.IPEVAL));
+        assertEquals(2, take(limiter, REALM, SAEndpoint.IPEVAL));
+
+        limiter.setPriority(SAEndpoint.IPEVAL, null);
+        assertEquals(Priority.INTERACTIVE, limiter.getPriority(SAEndpoint.IPEVAL));
+        assertEquals(8, take(limiter, REALM, SAEndpoint.IPEVAL));
+    }
+
+    @Test
+    public void realmsHaveTheirOwnBucket(){
+        RateLimiter limiter = new RateLimiter(NO_REFILL, 2);
+        limiter.setRealmLimit(REALM, NO_REFILL, 4);
+
+        assertEquals(4, take(limiter, REALM, SAEndpoint.AUTH));
+        assertEquals(2, take(limiter, "secureauth3", SAEndpoint.AUTH));
+        assertEquals(2, take(limiter, "secureauth4", SAEndpoint.AUTH));
+    }
+
+    @Test
+    public void realmsWithoutALimitAreNotLimited(){
+        RateLimiter limiter = new RateLimiter();
+        limiter.setRealmLimit(REALM, NO_REFILL, 1);
+
+        for(int i = 0; i < 100; i++){
+            assertEquals(0, limiter.tryAcquire("secureauth3", SAEndpoint.CREATE_USER, System.nanoTime()));
+        }
+    }
+
+    @Test
+    public void defaultLimitChangesOnlyRealmsWithoutTheirOwn(){
+        RateLimiter limiter = new RateLimiter(NO_REFILL, 2);
+        limiter.setRealmLimit(REALM, NO_REFILL, 4);
+        limiter.bucket("secureauth3");
+
+        limiter.setDefaultLimit(NO_REFILL, 6);
+        assertEquals(4, limiter.bucket(REALM).getBurst());
+        assertEquals(6, limiter.bucket("secureauth3").getBurst());
+
+        limiter.removeRealmLimit(REALM);
+        assertEquals(6, limiter.bucket(REALM).getBurst());
+    }
+
+    @Test
+    public void callWaitsForATokenWithinTheMaxWait(){
+        RateLimiter limiter = new RateLimiter();
+        limiter.setRealmLimit(REALM, 20, 1);
+        assertTrue(limiter.acquire(REALM, SAEndpoint.AUTH));
+
+        long started = System.nanoTime();
+        assertTrue(limiter.acquire(REALM, SAEndpoint.AUTH));
+        //One token every 50ms
+        assertTrue(System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(25));
+        assertEquals(2, limiter.getPermitted(Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void callIsRejectedWhenNoTokenComesInTime(){
+        RateLimiter limiter = new RateLimiter();
+        limiter.setRealmLimit(REALM, NO_REFILL, 1);
+        assertTrue(limiter.acquire(REALM, SAEndpoint.AUTH));
+
+        assertTrue(limiter.tryAcquire(REALM, SAEndpoint.AUTH, System.nanoTime()) < 0);
+        assertFalse(limiter.acquire(REALM, SAEndpoint.AUTH));
+        assertEquals(2, limiter.getRejected(Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void tryAcquireReturnsTheWaitWithinTheMaxWait(){
+        RateLimiter limiter = new RateLimiter();
+        limiter.setRealmLimit(REALM, 10, 1);
+        limiter.setMaxWaitMillis(Priority.INTERACTIVE, 1000);
+        assertEquals(0, limiter.tryAcquire(REALM, SAEndpoint.AUTH, System.nanoTime()));
+
+        assertTrue(limiter.tryAcquire(REALM, SAEndpoint.AUTH, System.nanoTime()) > 0);
+        limiter.setMaxWaitMillis(Priority.INTERACTIVE, 0);
+        assertTrue(limiter.tryAcquire(REALM, SAEndpoint.AUTH, System.nanoTime()) < 0);
+    }
+
+    @Test
+    public void rejectedCallsGetTheRateLimitedStatus(){
+        IPEval rejected = new RateLimiter().rejected(IPEval.class);
+
+        assertEquals(s.STATUS_RATE_LIMITED, rejected.getStatus());
+    }
+}
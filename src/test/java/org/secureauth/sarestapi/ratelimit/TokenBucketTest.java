@@ -0,0 +1,89 @@
+package org.secureauth.sarestapi.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    //One token every 1000 seconds, so nothing refills while a test runs
+    private static final double NO_REFILL = 0.001;
+
+    private static int take(TokenBucket bucket, double reserved){
+        int taken = 0;
+        while(bucket.tryAcquire(reserved) == 0){
+            taken++;
+        }
+        return taken;
+    }
+
+    @Test
+    public void fullBucketGivesTheBurst(){
+        TokenBucket bucket = new TokenBucket(NO_REFILL, 10);
+
+        assertEquals(10, bucket.getAvailable(), 0.01);
+        assertEquals(10, take(bucket, 0));
+        assertEquals(0, bucket.getAvailable(), 0.01);
+    }
+
+    @Test
+    public void emptyBucketReportsTheWaitForTheNextToken(){
+        TokenBucket bucket = new TokenBucket(NO_REFILL, 1);
+        assertEquals(0, bucket.tryAcquire(0));
+
+        long wait = bucket.tryAcquire(0);
+        assertTrue(wait > TimeUnit.SECONDS.toNanos(999));
+        assertTrue(wait <= TimeUnit.SECONDS.toNanos(1000));
+    }
+
+    @Test
+    public void tokensRefillAtTheRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        assertEquals(0, bucket.tryAcquire(0));
+        long wait = bucket.tryAcquire(0);
+        assertTrue(wait > 0);
+        assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(100));
+
+        Thread.sleep(150);
+        assertEquals(0, bucket.tryAcquire(0));
+    }
+
+    @Test
+    public void reserveIsLeftInTheBucket(){
+        TokenBucket bucket = new TokenBucket(NO_REFILL, 10);
+
+        assertEquals(5, take(bucket, 0.5));
+        assertEquals(3, take(bucket, 0.2));
+        assertEquals(2, take(bucket, 0));
+    }
+
+    @Test
+    public void fullBucketIsAlwaysUsable(){
+        TokenBucket bucket = new TokenBucket(NO_REFILL, 1);
+
+        assertEquals(1, take(bucket, 0.5));
+    }
+
+    @Test
+    public void noLimitNeverWaits(){
+        TokenBucket bucket = new TokenBucket(0, 1);
+
+        for(int i = 0; i < 1000; i++){
+            assertEquals(0, bucket.tryAcquire(0.5));
+        }
+        assertEquals(0, bucket.getRatePerSecond(), 0);
+    }
+
+    @Test
+    public void setLimitKeepsTheTokensTaken(){
+        TokenBucket bucket = new TokenBucket(NO_REFILL, 10);
+        assertEquals(4, take(bucket, 0.6));
+
+        bucket.setLimit(NO_REFILL, 20);
+        assertEquals(20, bucket.getBurst());
+        assertEquals(16, take(bucket, 0));
+    }
+}
@@ -0,0 +1,125 @@
+package org.secureauth.sarestapi.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.secureauth.sarestapi.data.SABaseURL;
+
+public class ApplianceNodeTest {
+
+    private static final long EJECT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private static ApplianceNode node(){
+        return new ApplianceNode(new SABaseURL("appliance1.example.com", "443", true));
+    }
+
+    private static void fail(ApplianceNode node, int times){
+        for(int i = 0; i < times; i++){
+            node.begin();
+            node.end(1000, true, 3, EJECT_NANOS);
+        }
+    }
+
+    @Test
+    public void consecutiveFailuresEjectTheAppliance(){
+        ApplianceNode node = node();
+        fail(node, 2);
+        assertFalse(node.isEjected());
+
+        fail(node, 1);
+        assertTrue(node.isEjected());
+        assertEquals(1, node.getEjections());
+        assertEquals(3, node.getFailures());
+        assertEquals(0, node.getOutstanding());
+    }
+
+    @Test
+    public void successResetsTheFailuresInARow(){
+        ApplianceNode node = node();
+        fail(node, 2);
+        node.begin();
+        node.end(1000, false, 3, EJECT_NANOS);
+        fail(node, 2);
+
+        assertFalse(node.isEjected());
+        assertEquals(2, node.getConsecutiveFailures());
+    }
+
+    @Test
+    public void passedHealthCheckDoesNotReinstateAnApplianceEjectedByFailedRequests(){
+        ApplianceNode node = node();
+        fail(node, 3);
+
+        assertFalse(node.healthCheckPassed());
+        assertTrue(node.isEjected());
+        assertEquals(3, node.getConsecutiveFailures());
+    }
+
+    @Test
+    public void passedHealthCheckReinstatesAnApplianceItEjected(){
+        ApplianceNode node = node();
+        assertTrue(node.healthCheckFailed(EJECT_NANOS));
+        assertTrue(node.isEjected());
+        assertFalse(node.healthCheckFailed(EJECT_NANOS));
+
+        assertTrue(node.healthCheckPassed());
+        assertFalse(node.isEjected());
+        assertEquals(1, node.getEjections());
+    }
+
+    @Test
+    public void passedHealthCheckKeepsTheFailuresInARow(){
+        ApplianceNode node = node();
+        fail(node, 2);
+        node.healthCheckFailed(EJECT_NANOS);
+        node.healthCheckPassed();
+
+        //One more failure is enough to eject it again
+        fail(node, 1);
+        assertTrue(node.isEjected());
+    }
+
+    @Test
+    public void ejectionEndsAfterItsTime() throws InterruptedException {
+        ApplianceNode node = node();
+        for(int i = 0; i < 3; i++){
+            node.begin();
+            node.end(1000, true, 3, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Thread.sleep(20);
+
+        assertFalse(node.isEjected());
+        //Clears the flag without counting as a reinstatement
+        assertFalse(node.healthCheckPassed());
+        assertFalse(node.isEjected());
+    }
+
+    @Test
+    public void cancelledRequestIsNotCountedAgainstTheAppliance(){
+        ApplianceNode node = node();
+        node.begin();
+        node.cancel();
+
+        assertEquals(0, node.getOutstanding());
+        assertEquals(1, node.getRequests());
+        assertEquals(0, node.getFailures());
+        assertEquals(0, node.getConsecutiveFailures());
+    }
+
+    @Test
+    public void tryBeginStopsAtTheLimit(){
+        ApplianceNode node = node();
+        assertTrue(node.tryBegin(2));
+        assertTrue(node.tryBegin(2));
+        assertFalse(node.tryBegin(2));
+
+        node.abandon();
+        assertEquals(1, node.getOutstanding());
+        assertEquals(1, node.getRequests());
+        assertTrue(node.tryBegin(2));
+    }
+}
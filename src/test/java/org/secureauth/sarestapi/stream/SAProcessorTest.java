@@ -0,0 +1,290 @@
+package org.secureauth.sarestapi.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+//Every call returns a future completed by the test, so signals happen in the test thread in a known order
+public class SAProcessorTest {
+
+    private final Map<String, CompletableFuture<String>> calls = new HashMap<>();
+    private final SAProcessor.Call<String, String> call = new SAProcessor.Call<String, String>() {
+        @Override
+        public CompletableFuture<String> call(String element) {
+            if("throws".equals(element)){
+                throw new IllegalArgumentException("bad element");
+            }
+            CompletableFuture<String> future = new CompletableFuture<>();
+            calls.put(element, future);
+            return future;
+        }
+    };
+
+    private TestPublisher publisher;
+    private TestSubscriber subscriber;
+
+    @Before
+    public void setUp(){
+        publisher = new TestPublisher();
+        subscriber = new TestSubscriber();
+    }
+
+    private SAProcessor<String, String> processor(int concurrency, SAProcessor.Delivery delivery){
+        SAProcessor<String, String> processor = new SAProcessor<>(call, concurrency, delivery);
+        processor.onSubscribe(publisher);
+        processor.subscribe(subscriber);
+        return processor;
+    }
+
+    private void complete(String element){
+        calls.get(element).complete(element.toUpperCase());
+    }
+
+    @Test
+    public void requestsOnlyConcurrencyElementsUntilResultsAreDelivered(){
+        SAProcessor<String, String> processor = processor(3, SAProcessor.Delivery.ORDERED);
+        assertEquals(3, publisher.requested);
+
+        processor.onNext("a");
+        processor.onNext("b");
+        processor.onNext("c");
+        complete("a");
+        complete("b");
+        complete("c");
+
+        //The Subscriber asked for nothing, so nothing is delivered and nothing more is requested
+        assertEquals(0, subscriber.results.size());
+        assertEquals(3, publisher.requested);
+        assertEquals(3, processor.getInProgress());
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.results.size());
+        assertEquals(4, publisher.requested);
+
+        subscriber.subscription.request(5);
+        assertEquals(3, subscriber.results.size());
+        assertEquals(6, publisher.requested);
+        assertEquals(0, processor.getInProgress());
+    }
+
+    @Test
+    public void slowCallsHoldBackTheRequests(){
+        SAProcessor<String, String> processor = processor(2, SAProcessor.Delivery.UNORDERED);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        processor.onNext("a");
+        processor.onNext("b");
+        assertEquals(2, publisher.requested);
+
+        complete("b");
+        assertEquals(1, subscriber.results.size());
+        assertEquals(3, publisher.requested);
+    }
+
+    @Test
+    public void orderedDeliveryKeepsTheOrderOfTheElements(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        subscriber.subscription.request(10);
+        processor.onNext("a");
+        processor.onNext("b");
+        processor.onNext("c");
+
+        complete("c");
+        complete("b");
+        assertEquals(0, subscriber.results.size());
+
+        complete("a");
+        assertEquals("a", subscriber.results.get(0).getElement());
+        assertEquals("b", subscriber.results.get(1).getElement());
+        assertEquals("c", subscriber.results.get(2).getElement());
+        assertEquals("C", subscriber.results.get(2).getResponse());
+    }
+
+    @Test
+    public void unorderedDeliveryFollowsCompletion(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.UNORDERED);
+        subscriber.subscription.request(10);
+        processor.onNext("a");
+        processor.onNext("b");
+        processor.onNext("c");
+
+        complete("c");
+        complete("a");
+        complete("b");
+
+        assertEquals("c", subscriber.results.get(0).getElement());
+        assertEquals("a", subscriber.results.get(1).getElement());
+        assertEquals("b", subscriber.results.get(2).getElement());
+    }
+
+    @Test
+    public void failedCallsAreDeliveredAsFailedResults(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        subscriber.subscription.request(10);
+        processor.onNext("a");
+        processor.onNext("throws");
+        processor.onNext("b");
+        calls.get("a").completeExceptionally(new IllegalStateException("timed out"));
+        complete("b");
+        processor.onComplete();
+
+        assertEquals(3, subscriber.results.size());
+        assertFalse(subscriber.results.get(0).isSuccess());
+        assertEquals("timed out", subscriber.results.get(0).getError().getMessage());
+        assertTrue(subscriber.results.get(1).getError() instanceof IllegalArgumentException);
+        assertTrue(subscriber.results.get(2).isSuccess());
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void completesOnlyAfterTheCallsInProgress(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        subscriber.subscription.request(10);
+        processor.onNext("a");
+        processor.onComplete();
+        assertFalse(subscriber.completed);
+
+        complete("a");
+        assertEquals(1, subscriber.results.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void completesOnlyAfterTheResultsAreRequested(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        processor.onNext("a");
+        complete("a");
+        processor.onComplete();
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void publisherErrorIsPassedOnAfterTheResults(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        subscriber.subscription.request(10);
+        processor.onNext("a");
+        IllegalStateException failure = new IllegalStateException("reader failed");
+        processor.onError(failure);
+        assertNull(subscriber.error);
+
+        complete("a");
+        assertEquals(1, subscriber.results.size());
+        assertSame(failure, subscriber.error);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void cancelStopsTheStreamAndCancelsThePublisher(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        subscriber.subscription.request(10);
+        processor.onNext("a");
+        processor.onNext("b");
+        complete("a");
+        assertEquals(1, subscriber.results.size());
+
+        subscriber.subscription.cancel();
+        assertTrue(publisher.cancelled);
+
+        complete("b");
+        processor.onNext("c");
+        processor.onComplete();
+        assertEquals(1, subscriber.results.size());
+        assertFalse(calls.containsKey("c"));
+        assertFalse(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void invalidRequestFailsTheStream(){
+        processor(4, SAProcessor.Delivery.ORDERED);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void secondSubscriberIsRejected(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        TestSubscriber second = new TestSubscriber();
+        processor.subscribe(second);
+
+        assertTrue(second.error instanceof IllegalStateException);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void secondPublisherIsCancelled(){
+        SAProcessor<String, String> processor = processor(4, SAProcessor.Delivery.ORDERED);
+        TestPublisher second = new TestPublisher();
+        processor.onSubscribe(second);
+
+        assertTrue(second.cancelled);
+        assertEquals(0, second.requested);
+        assertFalse(publisher.cancelled);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concurrencyMustBePositive(){
+        new SAProcessor<>(call, 0, SAProcessor.Delivery.ORDERED);
+    }
+
+    private static class TestPublisher implements Subscription {
+        private long requested;
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class TestSubscriber implements Subscriber<StreamResult<String, String>> {
+        private final List<StreamResult<String, String>> results = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(StreamResult<String, String> result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}